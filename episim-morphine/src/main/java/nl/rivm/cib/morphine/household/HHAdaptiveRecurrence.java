@@ -0,0 +1,110 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+/**
+ * {@link HHAdaptiveRecurrence} thins out a base recurrence (e.g. the
+ * {@link HHConfig#attitudePropagatorRecurrence() propagator cron}) while
+ * propagation has converged: each round whose {@link HHPropagation.Convergence
+ * maximum change} remains below some threshold multiplies the interval (in
+ * base occurrences) by some factor, up to some maximum, and any disturbance
+ * (e.g. from {@link HHAttractor#adjustments()}) returns to the base
+ * recurrence.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHAdaptiveRecurrence
+{
+
+	/**
+	 * @param threshold the maximum change below which to stretch the interval,
+	 *            or 0 to never stretch
+	 * @param factor the (integer) factor to stretch the interval by
+	 * @param maxInterval the maximum interval, in base occurrences
+	 * @return a {@link HHAdaptiveRecurrence}
+	 */
+	public static HHAdaptiveRecurrence of( final double threshold,
+		final int factor, final int maxInterval )
+	{
+		if( threshold < 0 ) throw new IllegalArgumentException(
+				"Illegal threshold: " + threshold );
+		if( factor < 1 || maxInterval < 1 ) throw new IllegalArgumentException(
+				"Illegal factor or interval: " + factor + ", " + maxInterval );
+		return new HHAdaptiveRecurrence( threshold, factor, maxInterval );
+	}
+
+	private final double threshold;
+
+	private final int factor;
+
+	private final int maxInterval;
+
+	/** the current interval, in base occurrences */
+	private int interval = 1;
+
+	/** the base occurrences since the last due one */
+	private int elapsed = 0;
+
+	private HHAdaptiveRecurrence( final double threshold, final int factor,
+		final int maxInterval )
+	{
+		this.threshold = threshold;
+		this.factor = factor;
+		this.maxInterval = maxInterval;
+	}
+
+	/** @return the current interval, in base occurrences */
+	public int interval()
+	{
+		return this.interval;
+	}
+
+	/**
+	 * @return {@code true} iff the current base occurrence is due, i.e. the
+	 *         interval has elapsed
+	 */
+	public boolean isDue()
+	{
+		if( ++this.elapsed < this.interval ) return false;
+		this.elapsed = 0;
+		return true;
+	}
+
+	/**
+	 * @param convergence the {@link HHPropagation.Convergence} of the last
+	 *            (due) round
+	 */
+	public void update( final HHPropagation.Convergence convergence )
+	{
+		if( this.threshold > 0 && convergence.max() < this.threshold )
+			this.interval = (int) Math.min( this.maxInterval,
+					(long) this.interval * this.factor );
+		else
+			this.interval = 1;
+	}
+
+	/** return to the base recurrence, e.g. upon some disturbance */
+	public void reset()
+	{
+		this.interval = 1;
+		this.elapsed = 0; // so the next base occurrence is due
+	}
+}
@@ -0,0 +1,162 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * {@link HHAppreciationTable} precompiles
+ * {@link HHAttitudePropagator#filteredAppreciation(BigDecimal, BigDecimal)}
+ * into a primitive lookup table, having one row per distinct calculation
+ * level (e.g. just one for {@code const(0.5)}) and one column per distinct
+ * (link) appreciation, so {@link HHPropagation} may replace the per-link
+ * {@link BigDecimal} arithmetic by an array lookup. Levels are compiled as
+ * they are first resolved, up to {@link #MAX_LEVELS}, beyond which (e.g. for
+ * continuous calculation distributions) {@link #level(double)} returns
+ * {@link #NA} to fall back on evaluating the propagator directly.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHAppreciationTable
+{
+	/** the index of an unknown level or appreciation */
+	public static final int NA = -1;
+
+	/** the maximum number of calculation levels to compile */
+	public static final int MAX_LEVELS = 256;
+
+	/**
+	 * @param propagator the {@link HHAttitudePropagator} to compile
+	 * @param appreciations the (link) appreciations, possibly repeated
+	 * @return a {@link HHAppreciationTable}
+	 */
+	public static HHAppreciationTable of(
+		final HHAttitudePropagator propagator, final double... appreciations )
+	{
+		return new HHAppreciationTable( propagator,
+				Arrays.stream( appreciations ).distinct().sorted().toArray() );
+	}
+
+	private final HHAttitudePropagator propagator;
+
+	/** the distinct appreciations, sorted */
+	private final double[] appreciations;
+
+	/** the distinct calculation levels, in order of compilation */
+	private double[] levels = new double[4];
+
+	/** per level: the filtered appreciation per appreciation index */
+	private double[][] table = new double[4][];
+
+	private int levelCount = 0;
+
+	private HHAppreciationTable( final HHAttitudePropagator propagator,
+		final double[] appreciations )
+	{
+		this.propagator = propagator;
+		this.appreciations = appreciations;
+	}
+
+	/**
+	 * @param propagator an {@link HHAttitudePropagator}
+	 * @return {@code true} iff this table was compiled for given propagator
+	 */
+	public boolean compiles( final HHAttitudePropagator propagator )
+	{
+		return this.propagator == propagator;
+	}
+
+	/** @return the number of compiled calculation levels */
+	public int levelCount()
+	{
+		return this.levelCount;
+	}
+
+	/**
+	 * @param appreciation some (link) appreciation
+	 * @return its column index, or {@link #NA} if not compiled
+	 */
+	public int appreciation( final double appreciation )
+	{
+		final int k = Arrays.binarySearch( this.appreciations, appreciation );
+		return k < 0 ? NA : k;
+	}
+
+	/**
+	 * resolve (or compile) the row of some calculation level; not thread-safe
+	 * 
+	 * @param calculationLevel some household's calculation level
+	 * @return its row index, or {@link #NA} if {@link #MAX_LEVELS} are
+	 *         exhausted
+	 */
+	public int level( final double calculationLevel )
+	{
+		for( int l = 0; l < this.levelCount; l++ )
+			if( Double.compare( this.levels[l], calculationLevel ) == 0 )
+				return l;
+		if( this.levelCount == MAX_LEVELS ) return NA;
+
+		if( this.levelCount == this.levels.length )
+		{
+			this.levels = Arrays.copyOf( this.levels, 2 * this.levelCount );
+			this.table = Arrays.copyOf( this.table, 2 * this.levelCount );
+		}
+		final BigDecimal calc = BigDecimal.valueOf( calculationLevel );
+		final double[] row = new double[this.appreciations.length];
+		for( int k = 0; k < row.length; k++ )
+			row[k] = this.propagator.filteredAppreciation(
+					BigDecimal.valueOf( this.appreciations[k] ), calc )
+					.doubleValue();
+		this.levels[this.levelCount] = calculationLevel;
+		this.table[this.levelCount] = row;
+		return this.levelCount++;
+	}
+
+	/**
+	 * @param level a row index from {@link #level(double)}
+	 * @param appreciation a column index from {@link #appreciation(double)}
+	 * @return the compiled filtered appreciation
+	 */
+	public double get( final int level, final int appreciation )
+	{
+		return this.table[level][appreciation];
+	}
+
+	/**
+	 * @param level a row index from {@link #level(double)}, or {@link #NA}
+	 * @param appreciation a column index from {@link #appreciation(double)},
+	 *            or {@link #NA}
+	 * @param appreciationValue the appreciation to evaluate if not compiled
+	 * @param calculationLevel the calculation level to evaluate if not
+	 *            compiled
+	 * @return the compiled or otherwise evaluated filtered appreciation
+	 */
+	public double filteredAppreciation( final int level,
+		final int appreciation, final double appreciationValue,
+		final double calculationLevel )
+	{
+		return level == NA || appreciation == NA
+				? this.propagator.filteredAppreciation( appreciationValue,
+						calculationLevel )
+				: this.table[level][appreciation];
+	}
+}
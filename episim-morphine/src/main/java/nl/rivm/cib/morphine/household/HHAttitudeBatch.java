@@ -0,0 +1,140 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.beans.PropertyChangeEvent;
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * {@link HHAttitudeBatch} is an immutable, columnar batch of the household
+ * attitudes changed in some propagation round: the changed household rows
+ * (ascending) and their new {@link HHAttribute#CONFIDENCE} and
+ * {@link HHAttribute#COMPLACENCY} values, replacing one
+ * {@link PropertyChangeEvent} (and {@link java.util.EnumMap}) per change
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHAttitudeBatch
+{
+	private final int round;
+
+	private final int[] indices;
+
+	private final double[] confidence, complacency;
+
+	/**
+	 * @param round the propagation round
+	 * @param indices the changed household rows, owned by this batch
+	 * @param confidence the new confidence values, owned by this batch
+	 * @param complacency the new complacency values, owned by this batch
+	 */
+	HHAttitudeBatch( final int round, final int[] indices,
+		final double[] confidence, final double[] complacency )
+	{
+		this.round = round;
+		this.indices = indices;
+		this.confidence = confidence;
+		this.complacency = complacency;
+	}
+
+	/** @return the propagation round, starting at 1 */
+	public int round()
+	{
+		return this.round;
+	}
+
+	/** @return the number of changed households */
+	public int size()
+	{
+		return this.indices.length;
+	}
+
+	/**
+	 * @param k the change index in {@code [0,size)}
+	 * @return the changed household row
+	 */
+	public int index( final int k )
+	{
+		return this.indices[k];
+	}
+
+	/**
+	 * @param k the change index in {@code [0,size)}
+	 * @return the new {@link HHAttribute#CONFIDENCE} value
+	 */
+	public double confidence( final int k )
+	{
+		return this.confidence[k];
+	}
+
+	/**
+	 * @param k the change index in {@code [0,size)}
+	 * @return the new {@link HHAttribute#COMPLACENCY} value
+	 */
+	public double complacency( final int k )
+	{
+		return this.complacency[k];
+	}
+
+	/**
+	 * @param k the change index in {@code [0,size)}
+	 * @return a (legacy) {@link PropertyChangeEvent} for the change
+	 */
+	public PropertyChangeEvent toEvent( final int k )
+	{
+		final long i = this.indices[k];
+		return new PropertyChangeEvent( i, "hh" + i, null,
+				HHAttribute.toMap(
+						att -> BigDecimal.valueOf(
+								att == HHAttribute.CONFIDENCE.ordinal()
+										? this.confidence[k]
+										: this.complacency[k] ),
+						HHAttribute.CONFIDENCE, HHAttribute.COMPLACENCY ) );
+	}
+
+	/** @return a (lazy) view of the (legacy) {@link PropertyChangeEvent}s */
+	public List<PropertyChangeEvent> toEvents()
+	{
+		return new AbstractList<PropertyChangeEvent>()
+		{
+			@Override
+			public PropertyChangeEvent get( final int k )
+			{
+				return toEvent( k );
+			}
+
+			@Override
+			public int size()
+			{
+				return HHAttitudeBatch.this.size();
+			}
+		};
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "[round=" + this.round
+				+ ", size=" + size() + "]";
+	}
+}
@@ -20,10 +20,10 @@
 package nl.rivm.cib.morphine.household;
 
 import java.math.BigDecimal;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -51,6 +51,30 @@ public interface HHAttitudePropagator
 	BigDecimal filteredAppreciation( BigDecimal appreciation,
 		BigDecimal calculationLevel );
 
+	/**
+	 * primitive variant of {@link #filteredAppreciation(BigDecimal, BigDecimal)}
+	 * as used by {@link HHPropagation}
+	 * 
+	 * @param appreciation the (active) link weight
+	 * @param calculationLevel the household's calculation level
+	 * @return the filtered appreciation
+	 */
+	default double filteredAppreciation( final double appreciation,
+		final double calculationLevel )
+	{
+		return filteredAppreciation( BigDecimal.valueOf( appreciation ),
+				BigDecimal.valueOf( calculationLevel ) ).doubleValue();
+	}
+
+	/**
+	 * @return the {@link HHPropagation.Kernel} accumulating the (filtered)
+	 *         appreciations in {@link HHPropagation}
+	 */
+	default HHPropagation.Kernel kernel()
+	{
+		return HHPropagation.Kernel.SCALAR;
+	}
+
 	/**
 	 * propagate the new weighted averages of default social attributes:
 	 * {@link HHAttribute#CONFIDENCE} and {@link HHAttribute#COMPLACENCY}
@@ -100,7 +124,7 @@ public interface HHAttitudePropagator
 
 		final Matrix colV = hhAttributes.selectColumns( Ret.LINK,
 				attributePressuredCols );
-		final Set<Long> attrLogged = new HashSet<>();
+		final Set<Long> attrLogged = ConcurrentHashMap.newKeySet();
 		final Map<Long, Integer> changed = LongStream.range( 0, hhTotal )
 				.parallel() // !!
 				.mapToObj( i ->
@@ -249,4 +273,30 @@ public interface HHAttitudePropagator
 					calculationLevel );
 		}
 	}
+
+	/**
+	 * {@link ThresholdLanes} is a {@link Threshold} accumulated by the
+	 * {@link HHPropagation.Kernel#LANES} kernel
+	 */
+	class ThresholdLanes extends Threshold
+	{
+		@Override
+		public HHPropagation.Kernel kernel()
+		{
+			return HHPropagation.Kernel.LANES;
+		}
+	}
+
+	/**
+	 * {@link ShiftedLanes} is a {@link Shifted} accumulated by the
+	 * {@link HHPropagation.Kernel#LANES} kernel
+	 */
+	class ShiftedLanes extends Shifted
+	{
+		@Override
+		public HHPropagation.Kernel kernel()
+		{
+			return HHPropagation.Kernel.LANES;
+		}
+	}
 }
\ No newline at end of file
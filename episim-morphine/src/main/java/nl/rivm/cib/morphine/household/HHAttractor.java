@@ -21,6 +21,7 @@ package nl.rivm.cib.morphine.household;
 
 import java.math.BigDecimal;
 import java.text.ParseException;
+import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
@@ -61,6 +62,10 @@ public interface HHAttractor extends HHScenarioConfigurable
 
 	boolean ALTERNATIVE_DEFAULT = false;
 
+	String POPULATION_SHARE_KEY = "population-share";
+
+	double POPULATION_SHARE_DEFAULT = 1;
+
 	/**
 	 * @return an {@link Observable} stream of {@link HHAttribute} values
 	 *         {@link Map mapped} as {@link BigDecimal}
@@ -69,6 +74,30 @@ public interface HHAttractor extends HHScenarioConfigurable
 
 	HesitancyProfileJson.Category toHesitancyProfile();
 
+	/**
+	 * @param row this attractor's row
+	 * @param until the (exclusive) horizon, e.g. the end of the run
+	 * @param timeline the {@link HHSignalTimeline.Builder} to add the
+	 *            {@link #adjustments()} to, all at once
+	 * @return {@code true} iff compiled, otherwise the {@link #adjustments()}
+	 *         should be observed instead
+	 * @throws ParseException if the schedule can not be compiled
+	 */
+	default boolean compile( final int row, final ZonedDateTime until,
+		final HHSignalTimeline.Builder timeline ) throws ParseException
+	{
+		return false;
+	}
+
+	/**
+	 * @return the (relative) share of households in this attractor (region),
+	 *         as drawn by a {@link HHAttractorBroker.Regional} broker
+	 */
+	default double populationShare()
+	{
+		return POPULATION_SHARE_DEFAULT;
+	}
+
 	/**
 	 * {@link SignalSchedule} executes simple position updates configured as
 	 * {@link SignalSchedule.SignalYaml} entries
@@ -109,6 +138,29 @@ public interface HHAttractor extends HHScenarioConfigurable
 			} );
 		}
 
+		@Override
+		public boolean compile( final int row, final ZonedDateTime until,
+			final HHSignalTimeline.Builder timeline ) throws ParseException
+		{
+			if( this.config == null ) return true;
+
+			final ZonedDateTime offset = scheduler().offset();
+			final double day = HHSignalTimeline.toDays( offset,
+					now().toJava8( offset ) );
+			for( HHAttribute attr : HHAttribute.values() )
+				if( this.config.has( attr.jsonValue() ) ) timeline.add( day,
+						row, attr.ordinal(),
+						this.config.get( attr.jsonValue() ).asDouble() );
+
+			if( this.config.has( SCHEDULE_KEY ) )
+				compile( this.config.get( SCHEDULE_KEY ), HHAttribute.class,
+						until,
+						( time, attr, value ) -> timeline.add(
+								HHSignalTimeline.toDays( offset, time ), row,
+								attr.ordinal(), value.asDouble() ) );
+			return true;
+		}
+
 		@Override
 		public HHAttractor reset( final JsonNode config ) throws ParseException
 		{
@@ -137,6 +189,16 @@ public interface HHAttractor extends HHScenarioConfigurable
 					fromConfig( RELIGIOUS_KEY, RELIGIOUS_DEFAULT ),
 					fromConfig( ALTERNATIVE_KEY, ALTERNATIVE_DEFAULT ) );
 		}
+
+		@Override
+		public double populationShare()
+		{
+			return this.config == null
+					|| !this.config.has( POPULATION_SHARE_KEY )
+							? POPULATION_SHARE_DEFAULT
+							: this.config.get( POPULATION_SHARE_KEY )
+									.asDouble();
+		}
 	}
 
 	interface Factory
@@ -0,0 +1,114 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import io.coala.random.PseudoRandom;
+import nl.rivm.cib.util.AliasTable;
+
+/**
+ * {@link HHAttractorBroker} assigns (new) households to attractors, e.g.
+ * regions, by their index in the int-indexed attractor array
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+@FunctionalInterface
+public interface HHAttractorBroker
+{
+	/**
+	 * @param hhIndex the (new) household's row
+	 * @return its attractor index
+	 */
+	int next( long hhIndex );
+
+	/** {@link Type} selects the {@link HHAttractorBroker} implementation */
+	enum Type
+	{
+		/** @see Modulo */
+		MODULO,
+
+		/** @see Regional */
+		REGIONAL;
+
+		/**
+		 * @param shares the (relative) population share per attractor, see
+		 *            {@link HHAttractor#populationShare()}
+		 * @param rng the {@link PseudoRandom} stream to draw from
+		 * @return a new {@link HHAttractorBroker} of this {@link Type}
+		 */
+		public HHAttractorBroker create( final double[] shares,
+			final PseudoRandom rng )
+		{
+			switch( this )
+			{
+			case REGIONAL:
+				return new Regional( shares, rng );
+			default:
+				return new Modulo( shares.length );
+			}
+		}
+	}
+
+	/**
+	 * {@link Modulo} assigns household row {@code i} to attractor
+	 * {@code i % attractorCount}, i.e. in turns of equal share
+	 */
+	class Modulo implements HHAttractorBroker
+	{
+		private final int attractorCount;
+
+		public Modulo( final int attractorCount )
+		{
+			if( attractorCount < 1 ) throw new IllegalArgumentException(
+					"Illegal attractor count: " + attractorCount );
+			this.attractorCount = attractorCount;
+		}
+
+		@Override
+		public int next( final long hhIndex )
+		{
+			return (int) (hhIndex % this.attractorCount);
+		}
+	}
+
+	/**
+	 * {@link Regional} draws each household's attractor, e.g. its municipality
+	 * or neighbourhood, by the attractors' (relative) population shares from
+	 * an {@link AliasTable}, in O(1) time regardless of the attractor count
+	 */
+	class Regional implements HHAttractorBroker
+	{
+		private final AliasTable table;
+
+		private final PseudoRandom rng;
+
+		public Regional( final double[] shares, final PseudoRandom rng )
+		{
+			this.table = AliasTable.of( shares );
+			this.rng = rng;
+		}
+
+		@Override
+		public int next( final long hhIndex )
+		{
+			return this.table.draw( this.rng );
+		}
+	}
+}
@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.time.LocalDate;
 import java.time.Period;
@@ -215,6 +217,101 @@ public interface HHConfig extends GlobalConfig
 				.iterate();
 	}
 
+	/**
+	 * @see HHNetworkMetrics
+	 * @return the number of wedges sampled per household for logging the
+	 *         social network metrics at init and at each statistics export,
+	 *         or 0 to disable
+	 */
+	@Key( STATISTICS_PREFIX + "network-metrics-wedges" )
+	@DefaultValue( "0" )
+	int statisticsNetworkMetricsWedges();
+
+	/**
+	 * @see HHJournal
+	 * @return the directory for journal segments, or empty to disable
+	 */
+	@Key( STATISTICS_PREFIX + "journal-dir" )
+	@DefaultValue( "" )
+	String journalDir();
+
+	/** @see HHJournal */
+	@Key( STATISTICS_PREFIX + "journal-segment-records" )
+	@DefaultValue( "" + (1 << 21) )
+	int journalSegmentRecords();
+
+	/**
+	 * @return a {@link HHJournal} writing into {@link #journalDir()}, or
+	 *         {@code null} if disabled
+	 * @throws IOException
+	 */
+	default HHJournal journal() throws IOException
+	{
+		final String dir = journalDir();
+		return dir == null || dir.trim().isEmpty() ? null
+				: HHJournal.open( Paths.get( dir.trim() ),
+						journalSegmentRecords() );
+	}
+
+	/**
+	 * {@link ExecutionMode} selects how {@link HHModel} advances household
+	 * transitions, i.e. impressions, home-leaving and migrations
+	 */
+	enum ExecutionMode
+	{
+		/** schedule each household transition as a separate event */
+		EVENT_DRIVEN,
+
+		/**
+		 * process all transitions due within each
+		 * {@link HHConfig#executionStep()} in bulk, by scanning their due-time
+		 * columns and applying them in due order, as {@link #EVENT_DRIVEN}
+		 * does for a {@link HHConfig#calendarBucketWidth()} of equal size
+		 */
+		TIME_STEPPED;
+	}
+
+	@Key( REPLICATION_PREFIX + "execution-mode" )
+	@DefaultValue( "EVENT_DRIVEN" )
+	ExecutionMode executionMode();
+
+	/**
+	 * @see ExecutionMode#TIME_STEPPED
+	 * @return the step of bulk transitions, by default equal to the
+	 *         (default) {@link #calendarBucketWidth()} so as to match the
+	 *         outputs of {@link ExecutionMode#EVENT_DRIVEN}
+	 */
+	@Key( REPLICATION_PREFIX + "execution-step" )
+	@DefaultValue( "1 h" )
+	@ConverterClass( QuantityConfigConverter.class )
+	Quantity<Time> executionStep();
+
+	default double executionStepDays()
+	{
+		return QuantityUtil.toBigDecimal( executionStep(), TimeUnits.DAYS )
+				.doubleValue();
+	}
+
+	/**
+	 * @see ExecutionMode#EVENT_DRIVEN
+	 * @see nl.rivm.cib.util.CalendarQueue
+	 */
+	@Key( REPLICATION_PREFIX + "calendar-bucket-width" )
+	@DefaultValue( "1 h" )
+	@ConverterClass( QuantityConfigConverter.class )
+	Quantity<Time> calendarBucketWidth();
+
+	default double calendarBucketWidthDays()
+	{
+		return QuantityUtil.toBigDecimal( calendarBucketWidth(), TimeUnits.DAYS )
+				.doubleValue();
+	}
+
+	/** @see nl.rivm.cib.util.CalendarQueue */
+	@Key( REPLICATION_PREFIX + "calendar-bucket-count" )
+	@DefaultValue( "4096" )
+	int calendarBucketCount();
+
 	@Key( POPULATION_PREFIX + "size" )
 	@DefaultValue( "" + 100000 )
 	long populationSize();
@@ -236,10 +333,17 @@ public interface HHConfig extends GlobalConfig
 	default QuantityDistribution<Time> householdReferentAgeDist(
 		final Parser distParser ) throws ParseException
 	{
-		return distParser.<Number>parse( householdReferentAgeDist() )
+		return householdReferentAgeYearsDist( distParser )
 				.toQuantities( TimeUnits.ANNUM );
 	}
 
+	/** @return the referent age distribution in (primitive) years */
+	default ProbabilityDistribution<Number> householdReferentAgeYearsDist(
+		final Parser distParser ) throws ParseException
+	{
+		return distParser.<Number>parse( householdReferentAgeDist() );
+	}
+
 	@Key( POPULATION_PREFIX + "hh-ref-male-prob" )
 	@DefaultValue( ".5" )
 	double householdReferentMaleProb();
@@ -264,14 +368,20 @@ public interface HHConfig extends GlobalConfig
 
 	default QuantityDistribution<Time> householdReplacementDist(
 		final Factory distFactory, final long hhTotal )
+	{
+		return householdReplacementDaysDist( distFactory, hhTotal )
+				.toQuantities( TimeUnits.DAYS );
+	}
+
+	/** @return the replacement interval distribution in (primitive) days */
+	default ProbabilityDistribution<Double> householdReplacementDaysDist(
+		final Factory distFactory, final long hhTotal )
 	{
 		final Quantity<?> rate = householdMigrationRate().multiply( hhTotal )
 				.to( TimeUnits.DAILY );
-		return distFactory
-				.createExponential( // mean <- 1/rate
-						DecimalUtil.divide( BigDecimal.ONE,
-								DecimalUtil.valueOf( rate.getValue() ) ) )
-				.toQuantities( TimeUnits.DAYS );
+		return distFactory.createExponential( // mean <- 1/rate
+				DecimalUtil.divide( BigDecimal.ONE,
+						DecimalUtil.valueOf( rate.getValue() ) ) );
 	}
 
 	static BigDecimal inverse( final Number value )
@@ -378,6 +488,29 @@ public interface HHConfig extends GlobalConfig
 		}
 	}
 
+	/**
+	 * @see HHAttractorBroker.Type
+	 * @return the type of broker assigning households to attractors
+	 */
+	@Key( HESITANCY_PREFIX + "attractor-broker" )
+	@DefaultValue( "MODULO" )
+	HHAttractorBroker.Type hesitancyAttractorBrokerType();
+
+	/**
+	 * @param attractors the int-indexed attractors
+	 * @param rng the {@link PseudoRandom} stream to draw from
+	 * @return the {@link HHAttractorBroker}, weighing regional attractors by
+	 *         their {@link HHAttractor#populationShare()}
+	 */
+	default HHAttractorBroker hesitancyAttractorBroker(
+		final HHAttractor[] attractors, final PseudoRandom rng )
+	{
+		return hesitancyAttractorBrokerType().create(
+				Arrays.stream( attractors )
+						.mapToDouble( HHAttractor::populationShare ).toArray(),
+				rng );
+	}
+
 	/** @see RelationFrequencyJson */
 	@Key( HESITANCY_PREFIX + "relation-frequencies" )
 	@DefaultValue( "${" + CONFIG_BASE_KEY + "}relation-frequency.json" )
@@ -388,6 +521,20 @@ public interface HHConfig extends GlobalConfig
 		ConditionalDistribution<Quantity<Time>, RelationFrequencyJson.Category>
 		hesitancyRelationFrequencyDist(
 			final ProbabilityDistribution.Factory distFactory )
+	{
+		final RelationFrequencyJson.IntervalIndex index = hesitancyRelationFrequencyIndex(
+				distFactory.getStream() );
+		return c -> QuantityUtil.valueOf( index.drawDays( c.gender(),
+				c.relation(), c.floorAge().doubleValue() ), TimeUnits.DAYS );
+	}
+
+	/**
+	 * @param rng the {@link PseudoRandom} stream to draw intervals from
+	 * @return a precompiled {@link RelationFrequencyJson.IntervalIndex}, with a
+	 *         default interval of one year for any uncovered category
+	 */
+	default RelationFrequencyJson.IntervalIndex
+		hesitancyRelationFrequencyIndex( final PseudoRandom rng )
 	{
 		final List<RelationFrequencyJson> map = JsonUtil
 				.readArrayAsync( this::hesitancyRelationFrequencies,
@@ -395,15 +542,8 @@ public interface HHConfig extends GlobalConfig
 				.toList().blockingGet();
 		@SuppressWarnings( "unchecked" )
 		final Quantity<Time> defaultDelay = QuantityUtil.valueOf( "1 yr" );
-		return c ->
-		{
-			return map.stream()
-					.filter( json -> json.relation == c.relation()
-							&& json.gender == c.gender()
-							&& json.ageRange().contains( c.floorAge() ) )
-					.map( json -> json.intervalDist( distFactory ).draw() )
-					.findFirst().orElse( defaultDelay );
-		};
+		return RelationFrequencyJson.IntervalIndex.of( map, rng, QuantityUtil
+				.toBigDecimal( defaultDelay, TimeUnits.DAYS ).doubleValue() );
 	}
 
 	@Key( HESITANCY_PREFIX + "relation-impact-rate" )
@@ -465,6 +605,22 @@ public interface HHConfig extends GlobalConfig
 				} ) );
 	}
 
+	/**
+	 * @param rng the {@link PseudoRandom} stream to draw from
+	 * @return a {@link HHProfileSampler} compiled from the
+	 *         {@link #hesitancyProfiles()} and their
+	 *         {@link #hesitancyProfileSample()}
+	 */
+	default HHProfileSampler hesitancyProfileSampler( final PseudoRandom rng )
+	{
+		return HHProfileSampler.of(
+				HesitancyProfileJson.parse( this::hesitancyProfiles ).toList()
+						.blockingGet(),
+				JsonUtil.valueOf( hesitancyProfileSample(),
+						BigDecimal[][].class ),
+				rng );
+	}
+
 	/** @see HesitancyProfileJson */
 	@Key( HESITANCY_PREFIX + "calculation-dist" )
 	@DefaultValue( "const(0.5)" )
@@ -477,10 +633,94 @@ public interface HHConfig extends GlobalConfig
 				.map( DecimalUtil::valueOf );
 	}
 
+	/**
+	 * @see HHConnector
+	 * @return the number of links added per household, i.e. about half the
+	 *         mean degree, for each {@link #hesitancySocialNetworkType()}
+	 */
 	@Key( HESITANCY_PREFIX + "social-network-degree" )
 	@DefaultValue( "10" )
 	int hesitancySocialNetworkDegree();
 
+	/**
+	 * @see HHConnector.Type
+	 * @return the social network model
+	 */
+	@Key( HESITANCY_PREFIX + "social-network-type" )
+	@DefaultValue( "WATTS_STROGATZ" )
+	HHConnector.Type hesitancySocialNetworkType();
+
+	/**
+	 * @see HHNetwork.Ordering
+	 * @return the ordering of the social network (and propagation) indices
+	 */
+	@Key( HESITANCY_PREFIX + "social-network-ordering" )
+	@DefaultValue( "NONE" )
+	HHNetwork.Ordering hesitancySocialNetworkOrdering();
+
+	/**
+	 * @see HHNetwork#pack()
+	 * @return {@code true} iff the social network's peers and weights are
+	 *         stored compressed, trading some decoding for memory
+	 */
+	@Key( HESITANCY_PREFIX + "social-network-packed" )
+	@DefaultValue( "false" )
+	boolean hesitancySocialNetworkPacked();
+
+	/**
+	 * @see HHNetwork#dynamic(int, int)
+	 * @return {@code true} iff replacement households (migrants, home
+	 *         leavers) detach their ties and rejoin the social network, by
+	 *         the rules of its {@link HHConnector}; excludes packing
+	 */
+	@Key( HESITANCY_PREFIX + "social-network-dynamic" )
+	@DefaultValue( "false" )
+	boolean hesitancySocialNetworkDynamic();
+
+	/**
+	 * @return the number of spare ties reserved per household in a dynamic
+	 *         social network, i.e. the degree it may gain by rewiring
+	 */
+	@Key( HESITANCY_PREFIX + "social-network-slack" )
+	@DefaultValue( "4" )
+	int hesitancySocialNetworkSlack();
+
+	/**
+	 * @see HHEdgeFile
+	 * @return the path of a social network to load instead of generating
+	 *         one, or empty for none
+	 */
+	@Key( HESITANCY_PREFIX + "social-network-file" )
+	@DefaultValue( "" )
+	String hesitancySocialNetworkFile();
+
+	/**
+	 * @see HHEdgeFile
+	 * @return the path to export the generated social network to, or empty
+	 *         for none
+	 */
+	@Key( HESITANCY_PREFIX + "social-network-export" )
+	@DefaultValue( "" )
+	String hesitancySocialNetworkExportFile();
+
+	default Path hesitancySocialNetworkExport()
+	{
+		final String file = hesitancySocialNetworkExportFile();
+		return file == null || file.trim().isEmpty() ? null
+				: Paths.get( file.trim() );
+	}
+
+	default HHConnector hesitancySocialNetwork( final PseudoRandom rng,
+		final int attractorCount )
+	{
+		final String file = hesitancySocialNetworkFile();
+		if( file != null && !file.trim().isEmpty() )
+			return new HHConnector.FromFile( Paths.get( file.trim() ) );
+		return hesitancySocialNetworkType().create( rng,
+				hesitancySocialNetworkBeta(), attractorCount,
+				hesitancySocialAssortativity() );
+	}
+
 	@Key( HESITANCY_PREFIX + "social-network-beta" )
 	@DefaultValue( "0.5" ) // 0 = lattice, 1 = random network
 	double hesitancySocialNetworkBeta();
@@ -542,6 +782,76 @@ public interface HHConfig extends GlobalConfig
 				.offset( scheduler.offset() ).iterate();
 	}
 
+	/**
+	 * @see HHPropagation
+	 * @return the minimum attitude change that triggers recomputation of
+	 *         peers in the next round, or 0 to recompute all every round
+	 */
+	@Key( HESITANCY_PREFIX + "propagator-epsilon" )
+	@DefaultValue( "0" )
+	double attitudePropagatorEpsilon();
+
+	/**
+	 * @see HHPropagation
+	 * @return the number of incremental rounds between full recomputations,
+	 *         or 0 for never
+	 */
+	@Key( HESITANCY_PREFIX + "propagator-full-rounds" )
+	@DefaultValue( "0" )
+	int attitudePropagatorFullRounds();
+
+	/**
+	 * @see HHPropagation
+	 * @return the number of propagation worker threads, or 0 for all
+	 *         available processors
+	 */
+	@Key( HESITANCY_PREFIX + "propagator-parallelism" )
+	@DefaultValue( "0" )
+	int attitudePropagatorParallelism();
+
+	/**
+	 * @see HHPropagation.Schedule
+	 * @return the propagation update schedule
+	 */
+	@Key( HESITANCY_PREFIX + "propagator-schedule" )
+	@DefaultValue( "JACOBI" )
+	HHPropagation.Schedule attitudePropagatorSchedule();
+
+	/**
+	 * @see HHShards
+	 * @return the number of attractor shards exchanging their boundary
+	 *         attitudes over the loopback interface, or 0 for none
+	 */
+	@Key( HESITANCY_PREFIX + "propagator-shards" )
+	@DefaultValue( "0" )
+	int attitudePropagatorShards();
+
+	/**
+	 * @see HHAdaptiveRecurrence
+	 * @return the maximum attitude change below which to stretch the
+	 *         propagation interval, or 0 to always propagate
+	 */
+	@Key( HESITANCY_PREFIX + "propagator-adaptive-threshold" )
+	@DefaultValue( "0" )
+	double attitudePropagatorAdaptiveThreshold();
+
+	/** @see HHAdaptiveRecurrence */
+	@Key( HESITANCY_PREFIX + "propagator-adaptive-factor" )
+	@DefaultValue( "2" )
+	int attitudePropagatorAdaptiveFactor();
+
+	/** @see HHAdaptiveRecurrence */
+	@Key( HESITANCY_PREFIX + "propagator-adaptive-max-interval" )
+	@DefaultValue( "8" )
+	int attitudePropagatorAdaptiveMaxInterval();
+
+	default HHAdaptiveRecurrence attitudePropagatorAdaptiveRecurrence()
+	{
+		return HHAdaptiveRecurrence.of( attitudePropagatorAdaptiveThreshold(),
+				attitudePropagatorAdaptiveFactor(),
+				attitudePropagatorAdaptiveMaxInterval() );
+	}
+
 //	@Key( "morphine.measles.contact-period" )
 //	@DefaultValue( "10 h" )
 //	Duration contactPeriod();
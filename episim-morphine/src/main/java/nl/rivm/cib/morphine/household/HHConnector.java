@@ -19,8 +19,12 @@
  */
 package nl.rivm.cib.morphine.household;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.LongStream;
@@ -30,10 +34,18 @@ import java.util.stream.StreamSupport;
 import org.ujmp.core.Matrix;
 import org.ujmp.core.SparseMatrix;
 
+import io.coala.exception.Thrower;
 import io.coala.random.PseudoRandom;
 
 /**
- * {@link HHConnector}
+ * {@link HHConnector} connects (household) nodes into a social network.
+ * Each connector reads its degree {@code K} as the number of links added per
+ * node, yielding a mean degree of about {@code 2K}: a
+ * {@link WattsStrogatz} lattice links each node to its {@code K} next
+ * neighbours, a {@link BarabasiAlbert} node adds {@code K} links, a
+ * {@link Configuration} node gets {@code 2K} stubs and a
+ * {@link StochasticBlock} node expects {@code 2K} links, see
+ * {@link HHConfig#hesitancySocialNetworkDegree()}.
  * 
  * @version $Id$
  * @author Rick van Krevelen
@@ -43,7 +55,7 @@ public interface HHConnector
 
 	/**
 	 * @param size number of nodes to connect
-	 * @param k the average connection degree
+	 * @param k the number of links per node, i.e. half the mean degree
 	 * @return the connected graph; if symmetric then for for each W(i,j): i>=j
 	 */
 	default Matrix connect( long size, long k )
@@ -88,6 +100,55 @@ public interface HHConnector
 		return result;
 	}
 
+	/**
+	 * draw the new peers of some (replacement) node rejoining the connected
+	 * graph, e.g. to rewire a {@link HHNetwork#isDynamic() dynamic}
+	 * {@link HHNetwork}; by default, peers are drawn uniformly
+	 * 
+	 * @param i the rejoining node
+	 * @param k the number of peers to draw
+	 * @param uniform draws some node uniformly
+	 * @param preferential draws some node proportional to its degree
+	 * @param legalJ a link accepter, e.g. some assortativity filter
+	 * @return at most k distinct legal peers
+	 */
+	default long[] rejoin( final long i, final int k,
+		final LongSupplier uniform, final LongSupplier preferential,
+		final Predicate<long[]> legalJ )
+	{
+		return draw( i, k, uniform, legalJ );
+	}
+
+	/**
+	 * utility method
+	 * 
+	 * @param i the rejoining node
+	 * @param k the number of peers to draw
+	 * @param peer draws some candidate peer
+	 * @param legalJ a link accepter, e.g. some assortativity filter
+	 * @return at most k distinct legal peers, making 10 attempts per peer
+	 */
+	static long[] draw( final long i, final int k, final LongSupplier peer,
+		final Predicate<long[]> legalJ )
+	{
+		final long[] result = new long[k];
+		int n = 0;
+		for( int l = 0; l < k; l++ )
+			for( int attempt = 0; attempt < 10; attempt++ )
+			{
+				final long j = peer.getAsLong();
+				boolean used = j == i;
+				for( int m = 0; !used && m < n; m++ )
+					used = result[m] == j;
+				if( !used && legalJ.test( new long[] { i, j } ) )
+				{
+					result[n++] = j;
+					break;
+				}
+			}
+		return Arrays.copyOf( result, n );
+	}
+
 	/**
 	 * utility method
 	 * 
@@ -165,6 +226,49 @@ public interface HHConnector
 				.flatMapToLong( s -> s );
 	}
 
+	/**
+	 * {@link Type} selects an {@link HHConnector} implementation, e.g. from
+	 * {@link HHConfig#hesitancySocialNetworkType()}
+	 */
+	enum Type
+	{
+		/** @see WattsStrogatz */
+		WATTS_STROGATZ,
+
+		/** @see BarabasiAlbert */
+		BARABASI_ALBERT,
+
+		/** @see Configuration */
+		CONFIGURATION,
+
+		/** @see StochasticBlock */
+		STOCHASTIC_BLOCK;
+
+		/**
+		 * @param rng the {@link PseudoRandom} stream to draw from
+		 * @param beta the {@link WattsStrogatz} rewiring probability
+		 * @param blocks the {@link StochasticBlock} count, e.g. attractors
+		 * @param assortativity the {@link StochasticBlock} within-block
+		 *            fraction of links
+		 * @return a new {@link HHConnector} of this {@link Type}
+		 */
+		public HHConnector create( final PseudoRandom rng, final double beta,
+			final int blocks, final double assortativity )
+		{
+			switch( this )
+			{
+			case BARABASI_ALBERT:
+				return new BarabasiAlbert( rng );
+			case CONFIGURATION:
+				return new Configuration( rng );
+			case STOCHASTIC_BLOCK:
+				return new StochasticBlock( rng, blocks, assortativity );
+			default:
+				return new WattsStrogatz( rng, beta );
+			}
+		}
+	}
+
 	/**
 	 * {@link WattsStrogatz} implements a <a href=
 	 * "https://www.wikiwand.com/en/Watts_and_Strogatz_model">Watts–Strogatz
@@ -243,4 +347,388 @@ public interface HHConnector
 			return result;
 		}
 	}
+
+	/**
+	 * {@link BarabasiAlbert} implements the <a href=
+	 * "https://www.wikiwand.com/en/Barab%C3%A1si%E2%80%93Albert_model">Barabási-Albert
+	 * (BA) model</a> for connecting random scale-free graphs by preferential
+	 * attachment: each next peer links to {@code k} distinct earlier peers,
+	 * each drawn uniformly from an array repeating every peer once per link
+	 * end, i.e. proportional to its current degree, taking O(E) time overall
+	 */
+	class BarabasiAlbert implements HHConnector
+	{
+		private final PseudoRandom rng;
+
+		public BarabasiAlbert( final PseudoRandom rng )
+		{
+			this.rng = rng;
+		}
+
+		/** rejoining nodes attach preferentially, as in growing the graph */
+		@Override
+		public long[] rejoin( final long i, final int k,
+			final LongSupplier uniform, final LongSupplier preferential,
+			final Predicate<long[]> legalJ )
+		{
+			return HHConnector.draw( i, k, preferential, legalJ );
+		}
+
+		@Override
+		public Matrix connect( final long size, final Supplier<Long> degree,
+			final Predicate<long[]> legalJ )
+		{
+			return edges( Math.toIntExact( size ), degree, legalJ )
+					.toMatrix( size );
+		}
+
+		/**
+		 * @param size number of nodes to connect
+		 * @param degree the number of links added by each next peer
+		 * @param legalJ a link accepter, e.g. some assortativity filter
+		 * @return the connected graph as {@link HHEdgeList}
+		 */
+		public HHEdgeList edges( final int size, final Supplier<Long> degree,
+			final Predicate<long[]> legalJ )
+		{
+			final HHEdgeList result = HHEdgeList.of( size );
+			int[] ends = new int[2 * size];
+			int n = 0;
+			int[] chosen = new int[0];
+			for( int i = 1; i < size; i++ )
+			{
+				final int K = (int) Math.min( i, degree.get() );
+				if( chosen.length < K ) chosen = new int[K];
+				int k = 0;
+				if( n == 0 || K == i )
+				{
+					// seed: link to all earlier peers
+					for( int j = 0; j < i && k < K; j++ )
+						if( legalJ.test( new long[] { j, i } ) ) chosen[k++] = j;
+				} else
+					for( int l = 0; l < K; l++ )
+						for( int attempt = 0; attempt < 10; attempt++ )
+						{
+							// draw proportional to degree, skip used or illegal
+							final int j = ends[this.rng.nextInt( n )];
+							if( contains( chosen, k, j )
+									|| !legalJ.test( new long[] { j, i } ) )
+								continue;
+							chosen[k++] = j;
+							break;
+						}
+
+				if( n + 2 * k > ends.length )
+					ends = Arrays.copyOf( ends, 2 * (n + 2 * k) );
+				for( int l = 0; l < k; l++ )
+				{
+					result.add( chosen[l], i, 1 );
+					ends[n++] = chosen[l];
+					ends[n++] = i;
+				}
+			}
+			return result;
+		}
+
+		private static boolean contains( final int[] a, final int n,
+			final int v )
+		{
+			for( int l = 0; l < n; l++ )
+				if( a[l] == v ) return true;
+			return false;
+		}
+	}
+
+	/**
+	 * {@link Configuration} implements the <a href=
+	 * "https://www.wikiwand.com/en/Configuration_model">configuration
+	 * model</a> for connecting random graphs with a target degree sequence:
+	 * each peer gets twice as many link ends (stubs) as the links drawn from
+	 * the degree supplier, all stubs are shuffled and paired, and self-loops, illegal and repeated
+	 * links are dropped, taking O(N+E) time overall
+	 */
+	class Configuration implements HHConnector
+	{
+		private final PseudoRandom rng;
+
+		public Configuration( final PseudoRandom rng )
+		{
+			this.rng = rng;
+		}
+
+		/** rejoining nodes pair with random stubs, i.e. by peer degree */
+		@Override
+		public long[] rejoin( final long i, final int k,
+			final LongSupplier uniform, final LongSupplier preferential,
+			final Predicate<long[]> legalJ )
+		{
+			return HHConnector.draw( i, k, preferential, legalJ );
+		}
+
+		@Override
+		public Matrix connect( final long size, final Supplier<Long> degree,
+			final Predicate<long[]> legalJ )
+		{
+			return edges( Math.toIntExact( size ), degree, legalJ )
+					.toMatrix( size );
+		}
+
+		/**
+		 * @param size number of nodes to connect
+		 * @param degree the number of links per peer, drawn once per peer,
+		 *            i.e. half its target degree (or stubs)
+		 * @param legalJ a link accepter, e.g. some assortativity filter
+		 * @return the connected graph as {@link HHEdgeList}
+		 */
+		public HHEdgeList edges( final int size, final Supplier<Long> degree,
+			final Predicate<long[]> legalJ )
+		{
+			final int[] target = new int[size];
+			long total = 0;
+			for( int i = 0; i < size; i++ )
+				total += target[i] = (int) Math.min( size - 1,
+						2 * degree.get() );
+			final int[] stubs = new int[Math.toIntExact( total )];
+			for( int i = 0, n = 0; i < size; i++ )
+				for( int d = 0; d < target[i]; d++ )
+					stubs[n++] = i;
+
+			// Fisher-Yates shuffle
+			for( int n = stubs.length - 1; n > 0; n-- )
+			{
+				final int m = this.rng.nextInt( n + 1 ), tmp = stubs[n];
+				stubs[n] = stubs[m];
+				stubs[m] = tmp;
+			}
+
+			// pair consecutive stubs, ignoring any odd one out
+			final HHEdgeList result = HHEdgeList.of( stubs.length / 2 );
+			for( int n = 1; n < stubs.length; n += 2 )
+				if( stubs[n - 1] != stubs[n] && legalJ
+						.test( new long[] { stubs[n - 1], stubs[n] } ) )
+					result.add( stubs[n - 1], stubs[n], 1 );
+			return result.compact( size );
+		}
+	}
+
+	/**
+	 * {@link StochasticBlock} implements a <a href=
+	 * "https://www.wikiwand.com/en/Stochastic_block_model">stochastic block
+	 * model</a> for connecting assortative random graphs in a single pass:
+	 * each peer belongs to a block (e.g. its attractor), either given per peer
+	 * or {@code i % blocks} by default, such that a fraction
+	 * {@code assortativity} of the expected degree {@code 2k} links within the
+	 * block. Within each block, rather than testing every pair, the gaps
+	 * between successive links are drawn from a geometric distribution. The
+	 * links between blocks are sampled as a single total, each from a uniform
+	 * peer to a uniform peer outside its block, so that every peer (of blocks
+	 * of any size) expects half its out-of-block links from either side. This
+	 * takes O(N+E) time overall, regardless of the number of blocks.
+	 */
+	class StochasticBlock implements HHConnector
+	{
+		private final PseudoRandom rng;
+		private final int blocks;
+		private final double assortativity;
+
+		public StochasticBlock( final PseudoRandom rng, final int blocks,
+			final double assortativity )
+		{
+			if( blocks < 1 ) throw new IllegalArgumentException(
+					"Illegal block count: " + blocks );
+			this.rng = rng;
+			this.blocks = blocks;
+			this.assortativity = assortativity;
+		}
+
+		/**
+		 * @param i a peer
+		 * @return the block of peer {@code i}
+		 */
+		public int block( final int i )
+		{
+			return i % this.blocks;
+		}
+
+		@Override
+		public Matrix connect( final long size, final Supplier<Long> degree,
+			final Predicate<long[]> legalJ )
+		{
+			return edges( Math.toIntExact( size ), degree.get(), legalJ )
+					.toMatrix( size );
+		}
+
+		/**
+		 * @param size number of nodes to connect
+		 * @param k the number of links per peer, i.e. half its expected
+		 *            degree
+		 * @param legalJ a link accepter, e.g. some additional filter
+		 * @return the connected graph as {@link HHEdgeList}, grouped by
+		 *         {@link HHEdgeList#from smallest peer}
+		 */
+		public HHEdgeList edges( final int size, final double k,
+			final Predicate<long[]> legalJ )
+		{
+			final int B = Math.min( this.blocks, Math.max( 1, size ) );
+			final int[][] members = new int[B][];
+			for( int b = 0; b < B; b++ )
+			{
+				members[b] = new int[(size - b + this.blocks - 1)
+						/ this.blocks];
+				for( int r = 0; r < members[b].length; r++ )
+					members[b][r] = b + r * this.blocks;
+			}
+			return edges( members, size, k, legalJ );
+		}
+
+		/**
+		 * @param blockOf the block per peer, e.g. its (regional) attractor
+		 * @param k the number of links per peer, i.e. half its expected
+		 *            degree
+		 * @param legalJ a link accepter, e.g. some additional filter
+		 * @return the connected graph as {@link HHEdgeList}, grouped by
+		 *         {@link HHEdgeList#from smallest peer}
+		 */
+		public HHEdgeList edges( final int[] blockOf, final double k,
+			final Predicate<long[]> legalJ )
+		{
+			final int[] counts = new int[this.blocks];
+			for( int b : blockOf )
+				counts[b]++;
+			final int[][] members = new int[this.blocks][];
+			for( int b = 0; b < this.blocks; b++ )
+				members[b] = new int[counts[b]];
+			Arrays.fill( counts, 0 );
+			for( int i = 0; i < blockOf.length; i++ )
+				members[blockOf[i]][counts[blockOf[i]]++] = i;
+			return edges( members, blockOf.length, k, legalJ );
+		}
+
+		private HHEdgeList edges( final int[][] members, final int size,
+			final double k, final Predicate<long[]> legalJ )
+		{
+			final double degree = 2 * k;
+			final HHEdgeList result = HHEdgeList.of(
+					(int) Math.min( Integer.MAX_VALUE - 8, k * size ) );
+			// peers ordered by block, so those outside a block are contiguous
+			final int[] order = new int[size], start = new int[members.length],
+					block = new int[size];
+			int eligible = 0;
+			for( int b = 0, n = 0; b < members.length; b++ )
+			{
+				final int nb = members[b].length;
+				if( nb > 1 ) within( result, members[b],
+						this.assortativity * degree / (nb - 1), legalJ );
+				if( nb < size ) eligible += nb;
+				start[b] = n;
+				for( int i : members[b] )
+				{
+					block[i] = b;
+					order[n++] = i;
+				}
+			}
+
+			// each peer links (1-a)k times to uniform peers outside its block
+			final double expected = (1 - this.assortativity) * k * eligible;
+			long links = (long) expected;
+			if( this.rng.nextDouble() < expected - links ) links++;
+			for( long l = 0; l < links; l++ )
+			{
+				final int i = order[this.rng.nextInt( size )], b = block[i],
+						nb = members[b].length;
+				if( nb == size ) continue;
+				int r = this.rng.nextInt( size - nb );
+				if( r >= start[b] ) r += nb;
+				add( result, i, order[r], legalJ );
+			}
+			// drop any repeated links between blocks
+			return result.compact( size );
+		}
+
+		/** @return the number of pairs to skip until the next link */
+		private long skip( final double p )
+		{
+			if( p >= 1 ) return 0;
+			// bound to avoid overflow when links are (very) rare
+			return (long) Math.min( Long.MAX_VALUE >> 1,
+					Math.log( 1 - this.rng.nextDouble() )
+							/ Math.log( 1 - p ) );
+		}
+
+		private void within( final HHEdgeList result, final int[] members,
+			final double p, final Predicate<long[]> legalJ )
+		{
+			final int n = members.length;
+			if( p <= 0 ) return;
+			// walk the upper triangle of pairs (r,s), r<s, row by row
+			final long pairs = (long) n * (n - 1) / 2;
+			long rowStart = 0, rowEnd = n - 1;
+			int r = 0;
+			for( long t = skip( p ); t < pairs; t += 1 + skip( p ) )
+			{
+				while( t >= rowEnd )
+				{
+					r++;
+					rowStart = rowEnd;
+					rowEnd += n - 1 - r;
+				}
+				add( result, members[r],
+						members[(int) (r + 1 + t - rowStart)], legalJ );
+			}
+		}
+
+		private static void add( final HHEdgeList result, final int i,
+			final int j, final Predicate<long[]> legalJ )
+		{
+			if( legalJ.test( new long[] { i, j } ) ) result.add( i, j, 1 );
+		}
+	}
+
+	/**
+	 * {@link FromFile} loads a (pre-generated or empirical) network from an
+	 * {@link HHEdgeFile}, ignoring the degree supplier
+	 */
+	class FromFile implements HHConnector
+	{
+		private final Path file;
+
+		public FromFile( final Path file )
+		{
+			this.file = file;
+		}
+
+		@Override
+		public Matrix connect( final long size, final Supplier<Long> degree,
+			final Predicate<long[]> legalJ )
+		{
+			final HHEdgeList edges = edges( Math.toIntExact( size ) );
+			final Matrix result = SparseMatrix.Factory.zeros( size, size );
+			for( int e = 0; e < edges.size(); e++ )
+			{
+				final long[] x = { edges.from( e ), edges.to( e ) };
+				if( legalJ.test( x ) )
+					result.setAsDouble( edges.weight( e ), x );
+			}
+			return result;
+		}
+
+		/**
+		 * @param size the expected number of nodes
+		 * @return the loaded {@link HHEdgeList}
+		 */
+		public HHEdgeList edges( final int size )
+		{
+			try
+			{
+				final int nodes = HHEdgeFile.nodes( this.file );
+				if( nodes != size ) throw new IllegalArgumentException(
+						"Expected " + size + " nodes, but " + this.file
+								+ " has " + nodes );
+				return HHEdgeFile.read( this.file );
+			} catch( final IOException e )
+			{
+				return Thrower.rethrowUnchecked( e );
+			}
+		}
+	}
 }
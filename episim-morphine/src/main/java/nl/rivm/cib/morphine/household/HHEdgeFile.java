@@ -0,0 +1,203 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.Logger;
+
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHEdgeFile} reads and writes an {@link HHEdgeList} in a compact
+ * binary format, e.g. to load empirical contact networks or to reuse
+ * generated ones across repeated studies. After a {@link #HEADER_BYTES} byte
+ * header (magic, version, node count and link count, all int) follow three
+ * arrays, one value per link sorted by its smallest peer: the (int) gap
+ * between successive smallest peers, the (int) gap from smallest to largest
+ * peer, and the (double) weight. Reading maps each array through NIO rather
+ * than parsing (text) records.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHEdgeFile
+{
+	/** */
+	private static final Logger LOG = LogUtil.getLogger( HHEdgeFile.class );
+
+	/** the file signature, i.e. "HHEL" */
+	public static final int MAGIC = 0x4848454C;
+
+	/** the current format version */
+	public static final int VERSION = 1;
+
+	/** the number of header bytes */
+	public static final int HEADER_BYTES = 16;
+
+	/** the number of bytes buffered per write */
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private HHEdgeFile()
+	{
+		// static utility
+	}
+
+	/**
+	 * write given links, after {@link HHEdgeList#compact compacting} them
+	 * 
+	 * @param file the file to (over)write
+	 * @param edges the {@link HHEdgeList} to write
+	 * @param nodes the number of peers
+	 * @throws IOException
+	 */
+	public static void write( final Path file, final HHEdgeList edges,
+		final int nodes ) throws IOException
+	{
+		edges.compact( nodes );
+		final int m = edges.size();
+		if( file.getParent() != null )
+			Files.createDirectories( file.getParent() );
+		try( final FileChannel channel = FileChannel.open( file,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING ) )
+		{
+			final ByteBuffer buf = ByteBuffer.allocateDirect( BUFFER_BYTES );
+			buf.putInt( MAGIC ).putInt( VERSION ).putInt( nodes ).putInt( m );
+			for( int e = 0, prev = 0; e < m; prev = edges.from( e++ ) )
+				put( channel, buf, Integer.BYTES )
+						.putInt( edges.from( e ) - prev );
+			for( int e = 0; e < m; e++ )
+				put( channel, buf, Integer.BYTES )
+						.putInt( edges.to( e ) - edges.from( e ) );
+			for( int e = 0; e < m; e++ )
+				put( channel, buf, Double.BYTES ).putDouble( edges.weight( e ) );
+			drain( channel, buf );
+		}
+		LOG.trace( "Wrote {} links between {} nodes to: {}", m, nodes, file );
+	}
+
+	/** @return {@code buf}, drained if it lacks room for {@code bytes} */
+	private static ByteBuffer put( final FileChannel channel,
+		final ByteBuffer buf, final int bytes ) throws IOException
+	{
+		if( buf.remaining() < bytes ) drain( channel, buf );
+		return buf;
+	}
+
+	private static void drain( final FileChannel channel, final ByteBuffer buf )
+		throws IOException
+	{
+		buf.flip();
+		while( buf.hasRemaining() )
+			channel.write( buf );
+		buf.clear();
+	}
+
+	/**
+	 * @param file the file to read
+	 * @return the number of peers in the file's network
+	 * @throws IOException
+	 */
+	public static int nodes( final Path file ) throws IOException
+	{
+		try( final FileChannel channel = FileChannel.open( file,
+				StandardOpenOption.READ ) )
+		{
+			return header( channel, file ).getInt( 8 );
+		}
+	}
+
+	/**
+	 * @param file the file to read
+	 * @return the {@link HHEdgeList} sorted by {@link HHEdgeList#from}
+	 * @throws IOException
+	 */
+	public static HHEdgeList read( final Path file ) throws IOException
+	{
+		try( final FileChannel channel = FileChannel.open( file,
+				StandardOpenOption.READ ) )
+		{
+			final ByteBuffer header = header( channel, file );
+			final int nodes = header.getInt( 8 ), m = header.getInt( 12 );
+			final long expected = HEADER_BYTES + (long) m
+					* (2 * Integer.BYTES + Double.BYTES);
+			if( channel.size() < expected ) throw new IOException(
+					"Truncated edge file, size " + channel.size() + " < "
+							+ expected + ": " + file );
+
+			long pos = HEADER_BYTES;
+			final IntBuffer fromGaps = channel
+					.map( FileChannel.MapMode.READ_ONLY, pos,
+							(long) m * Integer.BYTES )
+					.asIntBuffer();
+			pos += (long) m * Integer.BYTES;
+			final IntBuffer toGaps = channel
+					.map( FileChannel.MapMode.READ_ONLY, pos,
+							(long) m * Integer.BYTES )
+					.asIntBuffer();
+			pos += (long) m * Integer.BYTES;
+			final DoubleBuffer weights = channel
+					.map( FileChannel.MapMode.READ_ONLY, pos,
+							(long) m * Double.BYTES )
+					.asDoubleBuffer();
+
+			final HHEdgeList result = HHEdgeList.of( m );
+			for( int e = 0, from = 0; e < m; e++ )
+			{
+				final int fromGap = fromGaps.get( e ), toGap = toGaps.get( e );
+				from += fromGap;
+				final int to = from + toGap;
+				if( fromGap < 0 || toGap < 0 ) throw new IOException(
+						"Link " + from + "-" + to + " out of order: " + file );
+				// (int) overflows wrap negative
+				if( from < 0 || to < 0 || from >= nodes || to >= nodes )
+					throw new IOException( "Link " + from + "-" + to
+							+ " exceeds node count " + nodes + ": " + file );
+				result.add( from, to, weights.get( e ) );
+			}
+			LOG.trace( "Read {} links between {} nodes from: {}", m, nodes,
+					file );
+			return result;
+		}
+	}
+
+	private static ByteBuffer header( final FileChannel channel,
+		final Path file ) throws IOException
+	{
+		final ByteBuffer result = ByteBuffer.allocate( HEADER_BYTES );
+		while( result.hasRemaining() )
+			if( channel.read( result ) < 0 ) throw new IOException(
+					"Truncated edge file header: " + file );
+		if( result.getInt( 0 ) != MAGIC )
+			throw new IOException( "Not an edge file: " + file );
+		if( result.getInt( 4 ) != VERSION ) throw new IOException(
+				"Unsupported edge file version " + result.getInt( 4 ) + ": "
+						+ file );
+		return result;
+	}
+}
@@ -0,0 +1,218 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.util.Arrays;
+
+import org.ujmp.core.Matrix;
+import org.ujmp.core.SparseMatrix;
+
+/**
+ * {@link HHEdgeList} is a compact, growable list of undirected weighted links
+ * stored as primitive columns, each link {@code (i,j)} normalized to
+ * {@code i<j}, so {@link HHConnector}s can generate a network in O(E) time and
+ * memory before converting it (once) to a {@link Matrix} or
+ * {@link HHNetwork}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHEdgeList
+{
+
+	/**
+	 * @param capacity the initial number of links to reserve
+	 * @return an empty {@link HHEdgeList}
+	 */
+	public static HHEdgeList of( final int capacity )
+	{
+		return new HHEdgeList( Math.max( 1, capacity ) );
+	}
+
+	/**
+	 * @param network the {@link HHNetwork} adjacency
+	 * @param offset the first row to include, e.g. skipping the attractors
+	 * @return the {@link HHEdgeList} of links between rows {@code i,j >=
+	 *         offset}, shifted to peers {@code i-offset, j-offset}
+	 */
+	public static HHEdgeList of( final HHNetwork network, final int offset )
+	{
+		final HHEdgeList result = of( network.slots() / 2 );
+		final int[] buffer = new int[network.maxDegree()];
+		// indices before the offset (attractors) are never reordered
+		for( int i = offset; i < network.size(); i++ )
+		{
+			final int[] peers = network.peersAt( i, buffer );
+			final int base = network.base( i );
+			for( int k = network.offsets[i]; k < network.end( i ); k++ )
+				if( peers[k - base] > i ) result.add( network.row( i ) - offset,
+						network.row( peers[k - base] ) - offset,
+						network.weight( k ) );
+		}
+		return result;
+	}
+
+	private int[] from;
+
+	private int[] to;
+
+	private double[] weight;
+
+	private int size = 0;
+
+	private HHEdgeList( final int capacity )
+	{
+		this.from = new int[capacity];
+		this.to = new int[capacity];
+		this.weight = new double[capacity];
+	}
+
+	/** @return the number of links */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * @param i a peer
+	 * @param j another peer
+	 * @param w the link weight
+	 * @return the link index, or -1 if {@code i==j} (self-loops are skipped)
+	 */
+	public int add( final int i, final int j, final double w )
+	{
+		if( i == j ) return -1;
+		if( this.size == this.from.length )
+		{
+			final int n = this.size + (this.size >> 1) + 1;
+			this.from = Arrays.copyOf( this.from, n );
+			this.to = Arrays.copyOf( this.to, n );
+			this.weight = Arrays.copyOf( this.weight, n );
+		}
+		this.from[this.size] = Math.min( i, j );
+		this.to[this.size] = Math.max( i, j );
+		this.weight[this.size] = w;
+		return this.size++;
+	}
+
+	/** @return the smallest peer of link {@code e} */
+	public int from( final int e )
+	{
+		return this.from[e];
+	}
+
+	/** @return the largest peer of link {@code e} */
+	public int to( final int e )
+	{
+		return this.to[e];
+	}
+
+	/** @return the weight of link {@code e} */
+	public double weight( final int e )
+	{
+		return this.weight[e];
+	}
+
+	/**
+	 * @param e the link index
+	 * @param w the new weight of link {@code e}
+	 */
+	public void weight( final int e, final double w )
+	{
+		this.weight[e] = w;
+	}
+
+	/**
+	 * @param nodes the number of peers
+	 * @return the degree per peer
+	 */
+	public int[] degrees( final int nodes )
+	{
+		final int[] result = new int[nodes];
+		for( int e = 0; e < this.size; e++ )
+		{
+			result[this.from[e]]++;
+			result[this.to[e]]++;
+		}
+		return result;
+	}
+
+	/**
+	 * remove duplicate links (keeping the first weight) in O(N+E) time using a
+	 * counting sort on the smallest peer, leaving links grouped by
+	 * {@link #from}
+	 * 
+	 * @param nodes the number of peers
+	 * @return this {@link HHEdgeList}
+	 */
+	public HHEdgeList compact( final int nodes )
+	{
+		final int[] offsets = new int[nodes + 1];
+		for( int e = 0; e < this.size; e++ )
+			offsets[this.from[e] + 1]++;
+		for( int i = 0; i < nodes; i++ )
+			offsets[i + 1] += offsets[i];
+
+		final int[] fill = Arrays.copyOf( offsets, nodes ),
+				to = new int[this.size];
+		final double[] weight = new double[this.size];
+		for( int e = 0; e < this.size; e++ )
+		{
+			final int k = fill[this.from[e]]++;
+			to[k] = this.to[e];
+			weight[k] = this.weight[e];
+		}
+
+		// stamp each row's peers to skip repeats
+		final int[] mark = new int[nodes];
+		int n = 0;
+		for( int i = 0; i < nodes; i++ )
+			for( int k = offsets[i]; k < offsets[i + 1]; k++ )
+			{
+				final int j = to[k];
+				if( mark[j] == i + 1 ) continue;
+				mark[j] = i + 1;
+				this.from[n] = i;
+				this.to[n] = j;
+				this.weight[n] = weight[k];
+				n++;
+			}
+		this.size = n;
+		return this;
+	}
+
+	/**
+	 * @param nodes the number of peers
+	 * @return a (sparse) upper-triangular {@link Matrix} with W(i,j) for i&lt;j
+	 */
+	public Matrix toMatrix( final long nodes )
+	{
+		final Matrix result = SparseMatrix.Factory.zeros( nodes, nodes );
+		for( int e = 0; e < this.size; e++ )
+			result.setAsDouble( this.weight[e], this.from[e], this.to[e] );
+		return result;
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "[" + this.size + "]";
+	}
+}
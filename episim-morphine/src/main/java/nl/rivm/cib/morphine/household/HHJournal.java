@@ -0,0 +1,328 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.Logger;
+import org.ujmp.core.Matrix;
+
+import io.coala.exception.Thrower;
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHJournal} is an append-only log of fixed-size binary records, one
+ * per {@link Type} of household transition, written to memory-mapped
+ * segment files that roll over every {@code segmentRecords} records. Each
+ * record holds {@link #RECORD_BYTES} bytes: its time (in days, double), its
+ * {@link Type} (ordinal + 1, int), its (household or person) row (int) and
+ * two {@link Type}-specific values (double). Unused (zero) tails of the
+ * (sparse, pre-allocated) last segment mark the end of the journal.
+ * <p>
+ * The {@link Reader} replays the records in order, e.g. to reconstruct the
+ * household attributes at any instant via {@link Reader#replay(double,
+ * Matrix)}, without rerunning the simulation.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHJournal implements Closeable
+{
+	/** */
+	private static final Logger LOG = LogUtil.getLogger( HHJournal.class );
+
+	/** the number of bytes per record */
+	public static final int RECORD_BYTES = 32;
+
+	/** the segment file name prefix */
+	public static final String SEGMENT_PREFIX = "journal-";
+
+	/** the segment file name suffix */
+	public static final String SEGMENT_SUFFIX = ".bin";
+
+	/** {@link Type} of records, with their row and values */
+	public enum Type
+	{
+		/**
+		 * a household's attitude was drawn or propagated; row: household,
+		 * values: {@link HHAttribute#CONFIDENCE}, {@link HHAttribute#COMPLACENCY}
+		 */
+		ATTITUDE,
+
+		/**
+		 * a household (row) was created or replaced; values:
+		 * {@link HHAttribute#IDENTIFIER}, {@link HHAttribute#ATTRACTOR_REF}
+		 */
+		HOUSEHOLD,
+
+		/** a household impressed a peer; row: household, values: peer, weight */
+		IMPRESSION,
+
+		/** a household (row) migrated, to be replaced; values: unused */
+		MIGRATION,
+
+		/** a household's child left home, to be replaced; values: unused */
+		LEAVE_HOME,
+
+		/** a person (row) was vaccinated; values: household, unused */
+		VACCINATION,
+
+		/**
+		 * an attractor (row) was disturbed; values: {@link HHAttribute}
+		 * ordinal, its new value
+		 */
+		DISTURBANCE,
+
+		/**
+		 * a household (row) was linked to a new peer, e.g. when rewired;
+		 * values: peer, weight
+		 */
+		LINK;
+
+		private static final Type[] VALUES = values();
+	}
+
+	/**
+	 * @param dir the directory to write segment files into, replacing any
+	 *            segment files of an earlier journal
+	 * @param segmentRecords the number of records per segment file
+	 * @return a {@link HHJournal}
+	 * @throws IOException
+	 */
+	public static HHJournal open( final Path dir, final int segmentRecords )
+		throws IOException
+	{
+		if( segmentRecords < 1 ) throw new IllegalArgumentException(
+				"Illegal segment size: " + segmentRecords );
+		Files.createDirectories( dir );
+		// stale segments would otherwise be replayed after the new ones
+		try( final Stream<Path> files = Files.list( dir ) )
+		{
+			for( Path file : files.filter( HHJournal::isSegment )
+					.collect( Collectors.toList() ) )
+				Files.delete( file );
+		}
+		return new HHJournal( dir, segmentRecords );
+	}
+
+	/**
+	 * @param dir the directory containing the segment files
+	 * @return a {@link Reader} of the journal's records
+	 * @throws IOException
+	 */
+	public static Reader read( final Path dir ) throws IOException
+	{
+		try( final Stream<Path> files = Files.list( dir ) )
+		{
+			return new Reader( files.filter( HHJournal::isSegment ).sorted()
+					.collect( Collectors.toList() ) );
+		}
+	}
+
+	static boolean isSegment( final Path file )
+	{
+		final String name = file.getFileName().toString();
+		return name.startsWith( SEGMENT_PREFIX )
+				&& name.endsWith( SEGMENT_SUFFIX );
+	}
+
+	static Path segment( final Path dir, final int index )
+	{
+		return dir.resolve( String.format( "%s%06d%s", SEGMENT_PREFIX, index,
+				SEGMENT_SUFFIX ) );
+	}
+
+	private final Path dir;
+
+	private final int segmentRecords;
+
+	private int segment = 0;
+
+	private long count = 0;
+
+	private MappedByteBuffer buffer = null;
+
+	private HHJournal( final Path dir, final int segmentRecords )
+	{
+		this.dir = dir;
+		this.segmentRecords = segmentRecords;
+	}
+
+	/** @return the number of records appended so far */
+	public long count()
+	{
+		return this.count;
+	}
+
+	/**
+	 * append a record
+	 * 
+	 * @param time the time in (primitive) days
+	 * @param type the record {@link Type}
+	 * @param row the (household or person) row
+	 * @param value0 the first {@link Type}-specific value
+	 * @param value1 the second {@link Type}-specific value
+	 */
+	public void append( final double time, final Type type, final int row,
+		final double value0, final double value1 )
+	{
+		if( this.buffer == null || !this.buffer.hasRemaining() ) roll();
+		this.buffer.putDouble( time ).putInt( type.ordinal() + 1 )
+				.putInt( row ).putDouble( value0 ).putDouble( value1 );
+		this.count++;
+	}
+
+	private void roll()
+	{
+		if( this.buffer != null ) this.buffer.force();
+		final Path file = segment( this.dir, this.segment++ );
+		try( final FileChannel channel = FileChannel.open( file,
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING ) )
+		{
+			// the mapping remains valid after closing its channel
+			this.buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0,
+					(long) this.segmentRecords * RECORD_BYTES );
+		} catch( final IOException e )
+		{
+			Thrower.rethrowUnchecked( e );
+		}
+		LOG.trace( "Journal segment: {}", file );
+	}
+
+	@Override
+	public void close()
+	{
+		if( this.buffer == null ) return;
+		this.buffer.force();
+		this.buffer = null;
+		LOG.info( "Journaled {} records in {} segment(s) at: {}", this.count,
+				this.segment, this.dir );
+	}
+
+	/** {@link Reader} replays the records of a {@link HHJournal} in order */
+	public static class Reader
+	{
+		/** visits the records of a {@link HHJournal} */
+		@FunctionalInterface
+		public interface Visitor
+		{
+			/**
+			 * @param time the time in (primitive) days
+			 * @param type the record {@link Type}
+			 * @param row the (household or person) row
+			 * @param value0 the first {@link Type}-specific value
+			 * @param value1 the second {@link Type}-specific value
+			 */
+			void visit( double time, Type type, int row, double value0,
+				double value1 );
+		}
+
+		private final List<Path> segments;
+
+		private Reader( final List<Path> segments )
+		{
+			this.segments = new ArrayList<>( segments );
+		}
+
+		/**
+		 * visit all records up to (and including) given time, in order
+		 * 
+		 * @param until the (primitive) time in days to stop after
+		 * @param visitor the {@link Visitor} of records
+		 * @return the number of records visited
+		 * @throws IOException
+		 */
+		public long replay( final double until, final Visitor visitor )
+			throws IOException
+		{
+			long result = 0;
+			for( Path file : this.segments )
+				try( final FileChannel channel = FileChannel.open( file,
+						StandardOpenOption.READ ) )
+				{
+					final ByteBuffer buf = channel.map(
+							FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+					while( buf.remaining() >= RECORD_BYTES )
+					{
+						final double time = buf.getDouble();
+						final int type = buf.getInt();
+						if( type == 0 || time > until ) return result; // end
+						visitor.visit( time, Type.VALUES[type - 1],
+								buf.getInt(), buf.getDouble(),
+								buf.getDouble() );
+						result++;
+					}
+				}
+			return result;
+		}
+
+		/**
+		 * reconstruct the journaled household attributes
+		 * ({@link HHAttribute#CONFIDENCE}, {@link HHAttribute#COMPLACENCY},
+		 * {@link HHAttribute#IDENTIFIER}, {@link HHAttribute#ATTRACTOR_REF}
+		 * and attractor disturbances) at given time
+		 * 
+		 * @param until the (primitive) time in days
+		 * @param hhAttributes the household attributes {@link Matrix} to
+		 *            update, e.g. zeros having the model's dimensions
+		 * @return the number of records replayed
+		 * @throws IOException
+		 */
+		public long replay( final double until, final Matrix hhAttributes )
+			throws IOException
+		{
+			return replay( until, ( time, type, row, value0, value1 ) ->
+			{
+				switch( type )
+				{
+				case ATTITUDE:
+					hhAttributes.setAsDouble( value0, row,
+							HHAttribute.CONFIDENCE.ordinal() );
+					hhAttributes.setAsDouble( value1, row,
+							HHAttribute.COMPLACENCY.ordinal() );
+					break;
+				case HOUSEHOLD:
+					hhAttributes.setAsLong( (long) value0, row,
+							HHAttribute.IDENTIFIER.ordinal() );
+					hhAttributes.setAsInt( (int) value1, row,
+							HHAttribute.ATTRACTOR_REF.ordinal() );
+					break;
+				case DISTURBANCE:
+					hhAttributes.setAsDouble( value1, row, (int) value0 );
+					break;
+				default:
+				}
+			} );
+		}
+	}
+}
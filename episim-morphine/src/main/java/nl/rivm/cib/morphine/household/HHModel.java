@@ -3,26 +3,28 @@ package nl.rivm.cib.morphine.household;
 import java.beans.PropertyChangeEvent;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.time.LocalDate;
+import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import javax.measure.Quantity;
-import javax.measure.quantity.Frequency;
 import javax.measure.quantity.Time;
 
 import org.apache.logging.log4j.Logger;
@@ -39,11 +41,8 @@ import io.coala.math.DecimalUtil;
 import io.coala.math.QuantityUtil;
 import io.coala.math.Range;
 import io.coala.math.Tuple;
-import io.coala.random.ConditionalDistribution;
 import io.coala.random.ProbabilityDistribution;
 import io.coala.random.PseudoRandom;
-import io.coala.random.QuantityDistribution;
-import io.coala.time.Expectation;
 import io.coala.time.Instant;
 import io.coala.time.Scenario;
 import io.coala.time.Scheduler;
@@ -59,6 +58,9 @@ import nl.rivm.cib.morphine.dao.HHStatisticsDao;
 import nl.rivm.cib.morphine.json.HesitancyProfileJson;
 import nl.rivm.cib.morphine.json.HesitancyProfileJson.VaccineStatus;
 import nl.rivm.cib.morphine.json.RelationFrequencyJson;
+import nl.rivm.cib.util.CalendarQueue;
+import nl.rivm.cib.util.DueHeap;
+import nl.rivm.cib.util.SlotAllocator;
 import tec.uom.se.ComparableQuantity;
 
 /**
@@ -75,6 +77,12 @@ public class HHModel implements Scenario
 	/** */
 	private static final Logger LOG = LogUtil.getLogger( HHModel.class );
 
+	/** precomputed scale factor for primitive (double) time arithmetic */
+	private static final double DAYS_PER_ANNUM = QuantityUtil
+			.toBigDecimal( QuantityUtil.valueOf( 1, TimeUnits.ANNUM ),
+					TimeUnits.DAYS )
+			.doubleValue();
+
 	/** */
 	private static final HHAttribute[] CHILD_REF_COLUMN_INDICES = {
 			// HHAttribute.REFERENT_REF,
@@ -103,6 +111,10 @@ public class HHModel implements Scenario
 	private transient Instant dtInstant = null;
 	/** current (cached) date/time */
 	private transient LocalDate dtCache = null;
+	/** current (cached) virtual time instant */
+	private transient Instant nowDaysInstant = null;
+	/** current (cached) virtual time in days */
+	private transient double nowDaysCache = 0;
 	/** */
 	private final AtomicInteger statsIteration = new AtomicInteger();
 	/** (A + N) x |HHAttr| */
@@ -116,8 +128,41 @@ public class HHModel implements Scenario
 	 * (j,i):n_rounds
 	 */
 	private Matrix hhNetworkActivity;
-	/** */
-	private final Map<Long, Expectation> hhNetworkExpectations = new HashMap<>();
+	/** primitive adjacency of {@link #hhNetwork}, with active links */
+	private HHNetwork hhAdjacency;
+	/** the rules for (re)connecting households in {@link #hhAdjacency} */
+	private HHConnector hhConnector;
+	/** primitive (incremental) propagation across {@link #hhAdjacency} */
+	private HHPropagation hhPropagation;
+	/** attractor-sharded propagation replacing {@link #hhPropagation} */
+	private HHShards hhShards;
+	/** thins out the propagation recurrence while attitudes converge */
+	private HHAdaptiveRecurrence hhPropagationRecurrence;
+	/** optional binary record of household transitions, or {@code null} */
+	private HHJournal hhJournal;
+	/**
+	 * event-driven household transitions: impression per row, home-leaving
+	 * per row (offset {@link #impressDue}.length) and the migration process
+	 */
+	private CalendarQueue hhCalendar;
+	/** whether to advance household transitions in bulk time steps */
+	private boolean timeStepped;
+	/** the {@link HHConfig#executionStep()} in (primitive) days */
+	private double stepDays;
+	/** per household: its (shuffled) peers remaining to impress */
+	private long[][] impressPeers;
+	/** per household: the last index of its peers remaining to impress */
+	private int[] impressRemaining;
+	/** per household: its impression interval in (primitive) days */
+	private double[] impressInterval;
+	/** per household: its next impression due time in days, if time-stepped */
+	private double[] impressDue;
+	/** per household: its home-leaving due time in days, if time-stepped */
+	private double[] leaveHomeDue;
+	/** the next migration due time in days, if time-stepped */
+	private double migrateDue;
+	/** the household transitions due in the current step, if time-stepped */
+	private DueHeap hhStepOrder;
 	/** */
 	private final AtomicLong hhCount = new AtomicLong();
 	/** */
@@ -133,54 +178,54 @@ public class HHModel implements Scenario
 	// private transient ConditionalDistribution<CbsNeighborhood, Region.ID>
 	// hoodDist;
 
-	private Map<String, HHAttractor> attractors = Collections.emptyMap();
+	/** the attractors, indexed by their (row) index */
+	private HHAttractor[] attractors = {};
 
-	// private Map<String, Integer> attractorIndex = new HashMap<>();
 	private String[] attractorNames;
 
-	/**
-	 * {@link AttractorBroker} assigns regions to households
-	 */
-	@FunctionalInterface
-	public interface AttractorBroker
-	{
-		int next( Long hhIndex );
-	}
+	/** assigns (regional) attractors to new households */
+	private HHAttractorBroker attractorBroker;
 
-	/** */
-	private AttractorBroker attractorBroker;
+	/** the attractors' (compiled) signals, applied by {@link #signal} */
+	private HHSignalTimeline signals;
 	/** */
 	private ProbabilityDistribution<CBSHousehold> hhTypeDist;
 	/** */
-	private QuantityDistribution<Time> hhRefAgeDist;
+	private ProbabilityDistribution<Number> hhRefAgeYearsDist;
 	/** TODO from config */
 	private final Range<ComparableQuantity<Time>> vaccinationAge = Range.of(
 			DecimalUtil.ONE_HALF, BigDecimal.valueOf( 4 ), TimeUnits.ANNUM );
+	/** {@link #vaccinationAge} lower bound in (primitive) years */
+	private double vaccinationAgeMinYears;
 
 	/** */
 	private ProbabilityDistribution<Boolean> hhRefMaleDist;
 	/** */
-	private BigDecimal hhImpressImpactRate;
+	private double hhImpressImpactRate;
 	/** */
-	private ConditionalDistribution<Quantity<Time>, RelationFrequencyJson.Category> hhImpressIntervalDist;
+	private RelationFrequencyJson.IntervalIndex hhImpressIntervalIndex;
+	/** replacement intervals in (primitive) days */
+	private ProbabilityDistribution<Double> hhMigrateDaysDist;
 	/** */
-	private QuantityDistribution<Time> hhMigrateDist;
-	/** */
-	private Quantity<Time> hhLeaveHomeAge;
+	private double hhLeaveHomeAgeYears;
 
 	/** */
-	private transient ConditionalDistribution<HesitancyProfileJson, HesitancyProfileJson.Category> hesitancyProfileDist;
+	private transient HHProfileSampler hesitancySampler;
+	/** {@link HHProfileSampler#categoryIndex} per attractor */
+	private transient int[] attractorCategories;
+	/** out-parameter for {@link HHProfileSampler#drawAttitude} */
+	private final double[] attitudeDraw = new double[2];
 	/** */
 	private transient ProbabilityDistribution<BigDecimal> calculationDist;
 	/** */
 	private transient ProbabilityDistribution<Boolean> schoolAssortativity;
+	/** the fraction of ties within the own attractor, when rewiring */
+	private double socialAssortativity;
 	/** */
 	private transient HHAttitudeEvaluator attitudeEvaluator;
 	/** */
 	private transient HHAttitudePropagator attitudePropagator;
 	/** */
-	private transient ConditionalDistribution<Map<HHAttribute, BigDecimal>, HesitancyProfileJson> hesitancyDist;
-	/** */
 	private transient ProbabilityDistribution<VaxOccasion> vaxOccasionDist;
 
 	// private transient ConditionalDistribution<Quantity<Time>, GenderAge>
@@ -214,18 +259,21 @@ public class HHModel implements Scenario
 		final PseudoRandom rng = this.distFactory.getStream();
 		LOG.info( "seed: {}, offset: {}", rng.seed(), scheduler().offset() );
 
-		this.attractors = this.config.hesitancyAttractors( this.binder );
-		this.attractorNames = this.attractors.keySet().stream()
-				.toArray( String[]::new );
+		final Map<String, HHAttractor> attractorMap = this.config
+				.hesitancyAttractors( this.binder );
+		this.attractors = attractorMap.values()
+				.toArray( new HHAttractor[attractorMap.size()] );
+		this.attractorNames = attractorMap.keySet()
+				.toArray( new String[attractorMap.size()] );
 
 		final CBSHousehold hhType = this.config
 				.householdTypeDist( this.distParser ).draw(); // assuming
 																								// constant
 		final long ppTotal = this.config.populationSize(),
 				hhTotal = ppTotal / hhType.size(),
-				edges = hhTotal + this.attractors.size();
+				edges = hhTotal + this.attractors.length;
 		LOG.info( "Populate #pp: {}, #hh: {}, #attractors: {}, #link-max: {}",
-				ppTotal, hhTotal, this.attractors.size(), edges );
+				ppTotal, hhTotal, this.attractors.length, edges );
 
 		// or Matrix.Factory.linkToJDBC(host, port, db, table, user, password)
 		// or
@@ -236,34 +284,82 @@ public class HHModel implements Scenario
 				HHMemberAttribute.values().length );
 		this.hhNetwork = SparseMatrix.Factory.zeros( edges, edges );
 		this.hhNetworkActivity = SparseMatrix.Factory.zeros( edges, edges );
+		this.hhIndex = new SlotAllocator( (int) hhTotal );
+		this.ppIndex = new SlotAllocator( (int) ppTotal );
+		this.impressPeers = new long[(int) edges][];
+		this.impressRemaining = new int[(int) edges];
+		this.impressInterval = new double[(int) edges];
+		this.impressDue = new double[(int) edges];
+		Arrays.fill( this.impressDue, Double.POSITIVE_INFINITY );
+		this.leaveHomeDue = new double[(int) edges];
+		Arrays.fill( this.leaveHomeDue, Double.POSITIVE_INFINITY );
+		this.timeStepped = this.config
+				.executionMode() == HHConfig.ExecutionMode.TIME_STEPPED;
+		this.stepDays = this.config.executionStepDays();
+		this.hhPropagationRecurrence = this.config
+				.attitudePropagatorAdaptiveRecurrence();
+		this.hhJournal = this.config.journal();
+		if( this.hhJournal != null ) scheduler().time().lastOrError()
+				.subscribe( t -> this.hhJournal.close(), this::logError );
+		if( this.timeStepped )
+		{
+			this.hhStepOrder = new DueHeap();
+			if( this.stepDays != this.config.calendarBucketWidthDays() )
+				LOG.warn( "Execution step {} differs from calendar bucket width"
+						+ " {}, so {} outputs differ from {}",
+						this.config.executionStep(),
+						this.config.calendarBucketWidth(),
+						HHConfig.ExecutionMode.TIME_STEPPED,
+						HHConfig.ExecutionMode.EVENT_DRIVEN );
+		} else
+			this.hhCalendar = new CalendarQueue( 2 * (int) edges + 1,
+					this.config.calendarBucketWidthDays(),
+					this.config.calendarBucketCount(),
+					( time, fire ) -> afterDays(
+							Math.max( 0, time - nowDays() ) )
+									.call( t -> fire.run() )::remove,
+					this::fireHousehold );
 
 		// this.config.hesitancyRelationFrequencies();
 
-		this.attractors.forEach( ( name, attractor ) ->
+		final ZonedDateTime until = scheduler().offset()
+				.plus( this.config.duration() );
+		final HHSignalTimeline.Builder signals = HHSignalTimeline.builder();
+		for( HHAttractor attractor : this.attractors )
 		{
 			final int index = (int) this.hhCount.getAndIncrement();
-			// this.attractorIndex.put( name, index );
+			final String name = this.attractorNames[index];
 			this.hhAttributes.setAsInt( index, index,
 					HHAttribute.ATTRACTOR_REF.ordinal() );
 			this.hhAttributes.setAsInt( index, index,
 					HHAttribute.IDENTIFIER.ordinal() );
+			if( attractor.compile( index, until, signals ) ) continue;
+
+			// not compiled: observe its adjustments as separate events
 			attractor.adjustments().subscribe( map ->
 			{
-				map.forEach( ( att, val ) -> this.hhAttributes
-						.setAsBigDecimal( val, index, att.ordinal() ) );
-				LOG.debug( "t={}, disturbance @{}: {} -> {}",
-						prettyDate( now() ), name, map,
-						map.entrySet().stream()
-								.collect( Collectors.toMap( Map.Entry::getKey,
-										e -> this.hhAttributes.getAsObject(
-												index, e.getKey()
-														.ordinal() ) ) ) );
+				map.forEach( ( att, val ) ->
+				{
+					this.hhAttributes.setAsBigDecimal( val, index,
+							att.ordinal() );
+					journal( HHJournal.Type.DISTURBANCE, index, att.ordinal(),
+							val.doubleValue() );
+				} );
+				// disturbance: return to the base propagation recurrence
+				this.hhPropagationRecurrence.reset();
+				LOG.debug( "t={}, disturbance @{}: {}", prettyDate( now() ),
+						name, map );
 			}, this::logError );
-		} );
+		}
+		this.signals = signals.build();
+		LOG.info( "Compiled {} attractor signals until {}",
+				this.signals.size(), until.toLocalDate() );
+		signal( nowDays() );
 
-		this.hhImpressImpactRate = this.config.hesitancyRelationImpactRate();
-		this.hhImpressIntervalDist = this.config
-				.hesitancyRelationFrequencyDist( this.distFactory );
+		this.hhImpressImpactRate = this.config.hesitancyRelationImpactRate()
+				.doubleValue();
+		this.hhImpressIntervalIndex = this.config
+				.hesitancyRelationFrequencyIndex( this.distFactory.getStream() );
 
 		// this.timeRange = Range
 		// .upFromAndIncluding( scheduler().offset().toLocalDate() );
@@ -273,26 +369,36 @@ public class HHModel implements Scenario
 		// this.hoodDist = this.config.neighborhoodDist( this.distFactory,
 		// regRef -> fallbackRegRef );
 		// final Map<Long, Region.ID> regions = new HashMap<>();
-		final AttractorBroker broker = hhIndex -> (int) (hhIndex
-				% this.attractors.size());
-		this.attractorBroker = broker;
+		this.attractorBroker = this.config.hesitancyAttractorBroker(
+				this.attractors, this.distFactory.getStream() );
 		this.hhTypeDist = this.config.householdTypeDist( this.distParser );
 		this.hhRefMaleDist = this.config
 				.householdReferentMaleDist( this.distFactory );
-		this.hhRefAgeDist = this.config
-				.householdReferentAgeDist( this.distParser );
+		this.hhRefAgeYearsDist = this.config
+				.householdReferentAgeYearsDist( this.distParser );
+		this.vaccinationAgeMinYears = QuantityUtil.toBigDecimal(
+				this.vaccinationAge.lowerValue(), TimeUnits.ANNUM )
+				.doubleValue();
 		// this.peerPressureIntervalDist = this.config
 		// .peerPressureInterval( this.distFactory );
 
-		this.hesitancyProfileDist = this.config.hesitancyProfilesGrouped(
-				this.distFactory, HesitancyProfileJson::toCategory );
+		this.hesitancySampler = this.config
+				.hesitancyProfileSampler( this.distFactory.getStream() );
+		this.attractorCategories = Arrays.stream( this.attractors )
+				.mapToInt( attractor -> HHProfileSampler
+						.categoryIndex( attractor.toHesitancyProfile() ) )
+				.toArray();
 		this.calculationDist = this.config
 				.hesitancyCalculationDist( this.distParser );
 
-		this.hhLeaveHomeAge = this.config.householdLeaveHomeAge();
-		this.hhMigrateDist = this.config
-				.householdReplacementDist( this.distFactory, hhTotal );
-		after( this.hhMigrateDist.draw() ).call( this::migrateHousehold );
+		this.hhLeaveHomeAgeYears = QuantityUtil.toBigDecimal(
+				this.config.householdLeaveHomeAge(), TimeUnits.ANNUM )
+				.doubleValue();
+		this.hhMigrateDaysDist = this.config
+				.householdReplacementDaysDist( this.distFactory, hhTotal );
+		scheduleHousehold( 2 * this.impressDue.length,
+				nowDays() + this.hhMigrateDaysDist.draw() );
+		if( this.timeStepped ) afterDays( this.stepDays ).call( this::step );
 
 		final ProbabilityDistribution<Number> vaccinationUtilityDist = this.config
 				.vaccinationUtilityDist( this.distParser );
@@ -306,10 +412,6 @@ public class HHModel implements Scenario
 				vaccinationUtilityDist.draw(), vaccinationProximityDist.draw(),
 				vaccinationClarityDist.draw(), vaccinationAffinityDist.draw() );
 
-		// reference to json indices
-		this.hesitancyDist = this.config
-				.hesitancyProfileSample( this.distFactory.getStream() );
-
 		// populate households
 		for( long time = System.currentTimeMillis(), agPrev = 0; this.persons
 				.get() < ppTotal; )
@@ -328,193 +430,95 @@ public class HHModel implements Scenario
 
 		LOG.info( "Populated: {} pp ({}%) across {} hh in {} attractor/regions",
 				this.persons.get(), this.persons.get() * 100 / ppTotal,
-				this.hhCount.get() - this.attractors.size(),
-				this.attractors.size() );
+				this.hhCount.get() - this.attractors.length,
+				this.attractors.length );
 
 		final double beta = this.config.hesitancySocialNetworkBeta();
-		final HHConnector conn = new HHConnector.WattsStrogatz( rng, beta );
-		final long A = attractors.size(), N = this.hhCount.get() - A,
-				Na = N / A + 1, // add
-				// 1
-				// extra
-				// for
-				// partition
-				// rounding
-				// errors
+		final HHConnector conn = this.config.hesitancySocialNetwork( rng,
+				this.attractors.length );
+		final long A = this.attractors.length, N = this.hhCount.get() - A;
+		final int[] attractorOf = new int[(int) N];
+		final int[][] members = members( A, attractorOf );
+		final long Na = Arrays.stream( members ).mapToLong( m -> m.length )
+				.max().orElse( 0 ),
 				K = Math.min( Na - 1,
 						this.config.hesitancySocialNetworkDegree() );
 
 		this.schoolAssortativity = this.config
 				.hesitancySchoolAssortativity( this.distParser );
 
-		final double assortativity = this.config.hesitancySocialAssortativity(),
-				dissortativity = (1.0 - assortativity);
-		final Supplier<Long> assortK = () -> (long) (assortativity * K * (A - 1)
-				/ A);
-		final Supplier<Long> dissortK =
-				// () -> Math.round( (1.0 - assortativity) * K / (A - 1) )
-				this.distFactory.createPoisson( // use poisson for small degree
-						dissortativity * K )::draw;
-
-		// final long assortativeK = A < 2 ? K
-		// : (long) (K * this.config.hesitancySocialAssortativity()),
-		// dissortativeK = A < 2 ? 0
-		// : Math.max( 1, (K - assortativeK) / (A - 1) );
-
-		final Matrix[] assorting = LongStream.range( 0, A ).mapToObj( a ->
-		{
-			final BigDecimal inpeerW = this.hhAttributes.getAsBigDecimal( a,
-					HHAttribute.IMPRESSION_INPEER_WEIGHT.ordinal() );
-			if( inpeerW.signum() < 1 ) LOG.warn( "no weight: {}", inpeerW );
-			final Matrix m = conn.connect( Na, assortK, x -> true,
-					x -> inpeerW );
-			return m;
-		} ).toArray( Matrix[]::new );
-
-		final Matrix dissorting = conn.connect( N, dissortK,
-				x -> this.attractorBroker.next( x[0] ) != this.attractorBroker
-						.next( x[1] ),
-				x -> this.hhAttributes.getAsBigDecimal( x[0] % A,
-						HHAttribute.IMPRESSION_OUTPEER_WEIGHT.ordinal() ) );
-
-		// create the social network (between households/parents)
-		LongStream.range( A, this.hhAttributes.getRowCount() ).forEach( i ->
-		{
-			this.hhAttributes.setAsBoolean( this.schoolAssortativity.draw(), i,
-					HHAttribute.SCHOOL_ASSORTATIVITY.ordinal() );
-
-			final int aOwn = (int) (i % A);
-			final long ia = (i - A) / A; // i within assortative sub-group
-
-			final boolean log = (i - A) % (N / 5) == 0;
-			if( A < 2 || assortativity >= 1 )
-			{
-				final AtomicReference<BigDecimal> totalW = new AtomicReference<>(
-						BigDecimal.ZERO );
-				final long[] inpeers = HHConnector
-						.availablePeers( assorting[aOwn], ia ).map( ja ->
-						{
-							final BigDecimal w = HHConnector
-									.getSymmetric( assorting[aOwn], ia, ja );
-							totalW.getAndUpdate( bd -> bd.add( w ) );
-							final long j = A + A * ja + aOwn;
-							HHConnector.setSymmetric( this.hhNetwork, w, i, j );
-							return j;
-						} ).toArray();
-				if( log )
-					LOG.trace( "hh #{} ({}/{} -> {}) in-peers: {} = {}/{}", i,
-							ia, Na, this.attractorNames[aOwn], inpeers,
-							inpeers.length, K + 1 );
-
-				final BigDecimal inpeerW = totalW.get(),
-						selfW = inpeerW.multiply(
-								this.hhAttributes.getAsBigDecimal( aOwn,
-										HHAttribute.IMPRESSION_SELF_MULTIPLIER
-												.ordinal() ) ),
-						attrW = inpeerW.multiply(
-								this.hhAttributes.getAsBigDecimal( aOwn,
-										HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER
-												.ordinal() ) );
-				// set stubbornness
-				// HHConnector.setSymmetric( this.hhNetwork, selfW, i );
-				// this.hhNetwork.setAsBigDecimal( attrW, i, aOwn );
-				this.hhAttributes.setAsBigDecimal( inpeerW, i,
-						HHAttribute.IMPRESSION_INPEER_WEIGHT.ordinal() );
-				// this.hhAttributes.setAsBigDecimal( BigDecimal.ZERO, A + i,
-				// HHAttribute.SOCIAL_IMPACT_OUTPEER.ordinal() );
-				this.hhAttributes.setAsBigDecimal( selfW, i,
-						HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal() );
-				this.hhAttributes.setAsBigDecimal( attrW, i,
-						HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER.ordinal() );
-				this.hhAttributes.setAsInt( inpeers.length, i,
-						HHAttribute.SOCIAL_NETWORK_SIZE.ordinal() );
-				this.hhAttributes.setAsBigDecimal( BigDecimal.ONE, i,
-						HHAttribute.SOCIAL_ASSORTATIVITY.ordinal() );
-			} else
-			{
-				// get separate assort + dissort j's just for logging
-				final AtomicReference<BigDecimal> totalAssortW = new AtomicReference<>(
-						BigDecimal.ZERO ),
-						totalDissortW = new AtomicReference<>(
-								BigDecimal.ZERO );
-				final long[] inpeers = HHConnector
-						.availablePeers( assorting[aOwn], ia )
-						.filter( ja -> ja * A + aOwn < N ) // skip
-						// if
-						// >N
-						.map( ja ->
-						{
-							final BigDecimal w = HHConnector
-									.getSymmetric( assorting[aOwn], ia, ja );
-							totalAssortW.getAndUpdate( bd -> bd.add( w ) );
-							final long j = A + A * ja + aOwn;
-							HHConnector.setSymmetric( this.hhNetwork, w, i, j );
-							return j;
-						} ).toArray();
-				// TODO don't copy, but initialize with outpeers already
-				final long[] outpeers = HHConnector
-						.availablePeers( dissorting, i - A ).map( j ->
-						{
-							final BigDecimal w = HHConnector
-									.getSymmetric( dissorting, i - A, j );
-							totalDissortW.getAndUpdate( bd -> bd.add( w ) );
-							HHConnector.setSymmetric( this.hhNetwork, w, i,
-									A + j );
-							return j;
-						} ).toArray();
-				final int peerTotal = inpeers.length + outpeers.length;
-				final long[] stored = contacts( i );
-				final List<Long> peers = Stream.of( inpeers, outpeers )
-						.flatMap( ll -> Arrays.stream( ll ).mapToObj( l -> l ) )
-						.sorted().collect( Collectors.toList() );
-				final String[] diff = Arrays.stream( stored )
-						.filter( l -> !peers.contains( l ) )
-						.mapToObj( l -> "" + l + "\\" + (l % A)
-								+ "\\" + HHConnector
-										.getSymmetric( this.hhNetwork, i, l ) )
-						.toArray( String[]::new );
-				if( peerTotal == 0 || peerTotal != stored.length ) LOG.warn(
-						"hh #{} ({}/{} -> {}) peers: in {}({}/{}) "
-								+ "+ out {}({}/{}) = {}/{}, added {}: {}",
-						i, ia, Na, this.attractorNames[aOwn], inpeers,
-						inpeers.length,
-						DecimalUtil.toScale( assortativity * K, 1 ), outpeers,
-						outpeers.length,
-						DecimalUtil.toScale( dissortativity * K, 1 ), peerTotal,
-						K, diff.length, diff );
-				final BigDecimal inpeerW = totalAssortW.get(),
-						outpeerW = totalDissortW.get(),
-						selfW = inpeerW.add( outpeerW ).multiply(
-								this.hhAttributes.getAsBigDecimal( aOwn,
-										HHAttribute.IMPRESSION_SELF_MULTIPLIER
-												.ordinal() ) ),
-						attrW = inpeerW.add( outpeerW ).multiply(
-								this.hhAttributes.getAsBigDecimal( aOwn,
-										HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER
-												.ordinal() ) );
-				// HHConnector.setSymmetric( this.hhNetwork, selfW, i );
-				// this.hhNetwork.setAsBigDecimal( attrW, i, aOwn );
-
-				this.hhAttributes.setAsBigDecimal( inpeerW, i,
-						HHAttribute.IMPRESSION_INPEER_WEIGHT.ordinal() );
-				this.hhAttributes.setAsBigDecimal( outpeerW, i,
-						HHAttribute.IMPRESSION_OUTPEER_WEIGHT.ordinal() );
-				this.hhAttributes.setAsBigDecimal( selfW, i,
-						HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal() );
-				this.hhAttributes.setAsBigDecimal( attrW, i,
-						HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER.ordinal() );
-				this.hhAttributes.setAsInt( peerTotal, i,
-						HHAttribute.SOCIAL_NETWORK_SIZE.ordinal() );
-				if( peerTotal != 0 ) this.hhAttributes.setAsBigDecimal(
-						DecimalUtil.divide( inpeers.length, peerTotal ), i,
-						HHAttribute.SOCIAL_ASSORTATIVITY.ordinal() );
-			}
-
-		} );
+		final double assortativity = this.config.hesitancySocialAssortativity();
+		this.socialAssortativity = assortativity;
+		this.hhConnector = conn;
+		if( conn instanceof HHConnector.FromFile )
+			connectEdges( ((HHConnector.FromFile) conn).edges( (int) N ), A,
+					attractorOf );
+		else if( conn instanceof HHConnector.StochasticBlock )
+			connectBlocks( (HHConnector.StochasticBlock) conn, A, attractorOf,
+					K );
+		else
+			connectSubgraphs( conn, A, attractorOf, members, K,
+					assortativity );
 
 		LOG.info( "Networked, model: {}, degree: {}, beta: {}, assort: {}",
-				HHConnector.WattsStrogatz.class.getSimpleName(), K, beta,
+				conn.getClass().getSimpleName(), K, beta,
 				assortativity );
+		this.hhAdjacency = HHNetwork.of( this.hhNetwork );
+		final HHNetwork.Ordering ordering = this.config
+				.hesitancySocialNetworkOrdering();
+		if( ordering != HHNetwork.Ordering.NONE )
+		{
+			final double gap = this.hhAdjacency.meanPeerGap();
+			this.hhAdjacency = this.hhAdjacency.reorder( ordering, (int) A );
+			LOG.info( "Reordered network ({}), mean peer gap: {} -> {}",
+					ordering, DecimalUtil.toScale( gap, 1 ), DecimalUtil
+							.toScale( this.hhAdjacency.meanPeerGap(), 1 ) );
+		}
+		final Path networkExport = this.config.hesitancySocialNetworkExport();
+		if( networkExport != null ) HHEdgeFile.write( networkExport,
+				HHEdgeList.of( this.hhAdjacency, (int) A ), (int) N );
+		if( this.config.hesitancySocialNetworkDynamic() )
+		{
+			final int slack = this.config.hesitancySocialNetworkSlack();
+			this.hhAdjacency = this.hhAdjacency.dynamic( (int) A, slack );
+			LOG.info( "Dynamic network, slack: {}, bytes: {}", slack,
+					this.hhAdjacency.bytes() );
+			if( this.config.hesitancySocialNetworkPacked() )
+				LOG.warn( "Dynamic network can't be packed, ignoring" );
+		} else if( this.config.hesitancySocialNetworkPacked() )
+		{
+			final long bytes = this.hhAdjacency.bytes();
+			this.hhAdjacency = this.hhAdjacency.pack();
+			LOG.info( "Packed network, bytes: {} -> {}", bytes,
+					this.hhAdjacency.bytes() );
+		}
+		final int wedges = this.config.statisticsNetworkMetricsWedges();
+		if( wedges > 0 )
+			LOG.info( "Network metrics: {}", networkMetrics( wedges ) );
+		final int shards = this.config.attitudePropagatorShards();
+		final HHPropagation.Schedule schedule = this.config
+				.attitudePropagatorSchedule();
+		if( shards > 1 && (this.hhAdjacency.isDynamic()
+				|| schedule != HHPropagation.Schedule.JACOBI) )
+			LOG.warn( "Sharding requires a static network and JACOBI "
+					+ "schedule, ignoring {} shards", shards );
+		else if( shards > 1 )
+		{
+			this.hhShards = HHShards.of( this.hhAdjacency, this.hhAttributes,
+					(int) A, shards, this.config.attitudePropagatorEpsilon(),
+					this.config.attitudePropagatorFullRounds(),
+					this.config.attitudePropagatorParallelism() );
+			LOG.info( "Sharded propagation: {}", this.hhShards.plan() );
+			scheduler().time().lastOrError().subscribe(
+					t -> this.hhShards.close(), this::logError );
+		}
+		if( this.hhShards == null ) this.hhPropagation = HHPropagation.of(
+				this.hhAdjacency, (int) A,
+				this.config.attitudePropagatorEpsilon(),
+				this.config.attitudePropagatorFullRounds(),
+				this.config.attitudePropagatorParallelism(), schedule );
+		if( this.hhPropagation != null ) scheduler().time().lastOrError()
+				.subscribe( t -> this.hhPropagation.close(), this::logError );
 
 		this.attitudeEvaluator = this.config.attitudeEvaluatorType()
 				.newInstance();
@@ -533,12 +537,40 @@ public class HHModel implements Scenario
 
 	}
 
-	private Subject<PropertyChangeEvent> networkEvents = PublishSubject
+	private Subject<HHAttitudeBatch> networkBatches = PublishSubject
 			.create();
 
+	/** @return one {@link HHAttitudeBatch} of changes per propagation round */
+	public Observable<HHAttitudeBatch> networkBatches()
+	{
+		return this.networkBatches;
+	}
+
+	/** @return a {@link PropertyChangeEvent} per changed household */
 	public Observable<PropertyChangeEvent> network()
 	{
-		return this.networkEvents;
+		return this.networkBatches.flatMapIterable( HHAttitudeBatch::toEvents );
+	}
+
+	private Subject<HHPropagation.Convergence> convergenceEvents = PublishSubject
+			.create();
+
+	/** @return the {@link HHPropagation.Convergence} of each round */
+	public Observable<HHPropagation.Convergence> convergence()
+	{
+		return this.convergenceEvents;
+	}
+
+	/**
+	 * @param wedges the number of wedges to sample per household
+	 * @return the {@link HHNetworkMetrics} of the current social network and
+	 *         household attitudes
+	 */
+	public HHNetworkMetrics networkMetrics( final int wedges )
+	{
+		return HHNetworkMetrics.of( this.hhAdjacency, this.hhAttributes,
+				this.attractors.length, wedges,
+				this.distFactory.getStream().seed().longValue() );
 	}
 
 	public Observable<HHStatisticsDao> statistics()
@@ -567,6 +599,10 @@ public class HHModel implements Scenario
 					final int s = this.statsIteration.getAndIncrement();
 					LOG.debug( "t={}, exporting statistics #{}",
 							prettyDate( t ), s );
+					final int wedges = this.config
+							.statisticsNetworkMetricsWedges();
+					if( wedges > 0 ) LOG.info( "t={}, network metrics: {}",
+							prettyDate( t ), networkMetrics( wedges ) );
 					final Matrix hhAttributes = this.hhAttributes.clone();
 					final Matrix ppAttributes = this.ppAttributes.clone();
 
@@ -605,35 +641,29 @@ public class HHModel implements Scenario
 		} );
 	}
 
-	private void pushChangedAttributes( final long i )
-	{
-		if( this.networkEvents.hasObservers() ) this.networkEvents.onNext(
-				new PropertyChangeEvent( i, "hh" + i, null, HHAttribute.toMap(
-						k -> this.hhAttributes.getAsBigDecimal( i, k ),
-						HHAttribute.CONFIDENCE, HHAttribute.COMPLACENCY ) ) );
-	}
-
 	private void impressFirst( final long i )
 	{
-		final Quantity<Time> dt = QuantityUtil.valueOf(
-				this.hhAttributes.getAsBigDecimal( i,
-						HHAttribute.IMPRESSION_PERIOD_DAYS.ordinal() ),
-				TimeUnits.DAYS ).divide( this.hhImpressImpactRate );
+		final double dt = this.hhAttributes.getAsDouble( i,
+				HHAttribute.IMPRESSION_PERIOD_DAYS.ordinal() )
+				/ this.hhImpressImpactRate;
+		final long[] J = contacts( i );
+		this.impressPeers[(int) i] = J;
+		this.impressRemaining[(int) i] = J.length - 1;
+		this.impressInterval[(int) i] = dt;
 		// cancel previous (if any) and initiate social network activation
-		this.hhNetworkExpectations.compute( i, ( k, v ) ->
-		{
-			if( v != null ) v.remove();
-			final long[] J = contacts( i );
-			return after( dt )
-					.call( t1 -> impressNext( i, dt, J, J.length - 1 ) );
-		} );
+		scheduleHousehold( (int) i, nowDays() + dt );
 	}
 
-	private void impressNext( final long i, final Quantity<Time> dt,
-		final long[] J, final int n )
+	/**
+	 * @param i the impressing household row
+	 * @param due the time this impression was due, in (primitive) days
+	 */
+	private void impressNext( final long i, final double due )
 	{
+		final int n = this.impressRemaining[(int) i];
 		if( n > 0 )
 		{
+			final long[] J = this.impressPeers[(int) i];
 			final int k = this.distFactory.getStream().nextInt( J.length );
 			if( k <= n ) // ignore pick if member already removed
 			{
@@ -650,38 +680,188 @@ public class HHModel implements Scenario
 				this.hhNetworkActivity.setAsObject( w, x );
 				this.hhNetworkActivity.setAsInt(
 						this.hhNetworkActivity.getAsInt( y ) + 1, y );
+				this.hhAdjacency.activate( (int) i, (int) j );
+				journal( HHJournal.Type.IMPRESSION, i, j,
+						w instanceof Number ? ((Number) w).doubleValue() : 0 );
 			}
 			// LOG.trace( "hh #{} {}", i, n );
-			this.hhNetworkExpectations.put( i, after( dt )
-					.call( t -> impressNext( i, dt, J, k > n ? n : n - 1 ) ) );
+			this.impressRemaining[(int) i] = k > n ? n : n - 1;
+			scheduleHousehold( (int) i, due + this.impressInterval[(int) i] );
 		} else
 		{
 			// LOG.trace( "hh #{} saturated", i );
-			this.hhNetworkExpectations.remove( i );
+			this.impressPeers[(int) i] = null;
+			cancelHousehold( (int) i );
 		}
 	}
 
+	/**
+	 * (re)schedule a household transition, replacing any pending due time
+	 * 
+	 * @param entry the transition, as handled by {@link #fireHousehold}
+	 * @param time the absolute due time in (primitive) days
+	 */
+	private void scheduleHousehold( final int entry, final double time )
+	{
+		final int n = this.impressDue.length;
+		if( !this.timeStepped )
+			this.hhCalendar.schedule( entry, time );
+		else if( entry < n )
+			this.impressDue[entry] = time;
+		else if( entry < 2 * n )
+			this.leaveHomeDue[entry - n] = time;
+		else
+			this.migrateDue = time;
+	}
+
+	/** @param entry the household transition to cancel, if pending */
+	private void cancelHousehold( final int entry )
+	{
+		if( this.timeStepped )
+			scheduleHousehold( entry, Double.POSITIVE_INFINITY );
+		else
+			this.hhCalendar.cancel( entry );
+	}
+
+	/**
+	 * @param entry the household transition, if time-stepped
+	 * @return its due time in (primitive) days, or infinity if not pending
+	 */
+	private double dueHousehold( final int entry )
+	{
+		final int n = this.impressDue.length;
+		return entry < n ? this.impressDue[entry]
+				: entry < 2 * n ? this.leaveHomeDue[entry - n]
+						: this.migrateDue;
+	}
+
+	/**
+	 * handler of household transitions, i.e. the {@link #hhCalendar} entries
+	 * if {@link HHConfig.ExecutionMode#EVENT_DRIVEN event-driven}: an
+	 * impression per row, home-leaving per row (offset
+	 * {@link #impressDue}.length) and the migration process
+	 * 
+	 * @param entry the due transition, no longer pending
+	 * @param due the time the entry was due, in (primitive) days
+	 */
+	private void fireHousehold( final int entry, final double due )
+	{
+		final int n = this.impressDue.length;
+		if( entry < n )
+			impressNext( entry, due );
+		else if( entry < 2 * n )
+		{
+			LOG.trace( "t={}, replace home leaver #{}", prettyDate( now() ),
+					entry - n );
+			journal( HHJournal.Type.LEAVE_HOME, entry - n, 0, 0 );
+			createHousehold( entry - n );
+		} else
+			scheduleHousehold( entry, due + replaceMigrant( now() ) );
+	}
+
+	/**
+	 * {@link HHConfig.ExecutionMode#TIME_STEPPED time-stepped} driver: scan
+	 * the due-time columns in parallel for the household transitions due
+	 * before now, then apply them (sharing the random stream and network
+	 * matrices) in due order, ties by entry, including follow-ups falling due
+	 * within the step, just as the {@link #hhCalendar} fires each of its
+	 * ticks. Transitions observe the end of their step as current time, e.g.
+	 * for timing a new household's first impression, so with an
+	 * {@link HHConfig#executionStep()} equal to the
+	 * {@link HHConfig#calendarBucketWidth()} both modes apply the same
+	 * transitions
+	 * 
+	 * @param t the current {@link Instant}
+	 */
+	private void step( final Instant t )
+	{
+		final double now = nowDays();
+		final int A = this.attractors.length, n = this.impressDue.length;
+		final int[] due = IntStream.range( A, n ).parallel()
+				.filter( i -> this.impressDue[i] < now
+						|| this.leaveHomeDue[i] < now )
+				.toArray();
+		for( int i : due )
+		{
+			if( this.impressDue[i] < now )
+				this.hhStepOrder.push( i, this.impressDue[i] );
+			if( this.leaveHomeDue[i] < now )
+				this.hhStepOrder.push( n + i, this.leaveHomeDue[i] );
+		}
+		if( this.migrateDue < now )
+			this.hhStepOrder.push( 2 * n, this.migrateDue );
+
+		while( !this.hhStepOrder.isEmpty() )
+		{
+			final double time = this.hhStepOrder.peekDue();
+			final int entry = this.hhStepOrder.poll();
+			// skip transitions rescheduled meanwhile, e.g. by a replacement
+			if( dueHousehold( entry ) != time ) continue;
+			cancelHousehold( entry );
+			fireHousehold( entry, time );
+			// e.g. the next impression may fall due within this step
+			final double next = dueHousehold( entry );
+			if( next < now ) this.hhStepOrder.push( entry, next );
+		}
+
+		afterDays( this.stepDays ).call( this::step );
+	}
+
 	private void propagate( final Instant t )
 	{
+		if( !this.hhPropagationRecurrence.isDue() )
+		{
+			LOG.debug( "t={}, propagation skipped, converged (interval: {})",
+					prettyDate( t ), this.hhPropagationRecurrence.interval() );
+			// keep the activity (and impression) cadence of the base recurrence
+			resetActivity();
+			return;
+		}
 		LOG.debug( "t={}, propagating...", prettyDate( t ) );
 
 		// TODO optimize: execute network activation in this single event
 
-		final Map<Long, Integer> changed = this.attitudePropagator
-				.propagate( this.hhNetworkActivity, this.hhAttributes );
-		changed.forEach( ( i, n ) ->
+		final HHPropagation.Visitor visitor = ( i, n, updated ) ->
 		{
-			pushChangedAttributes( i );
 			final long[] y = { i, HHAttribute.IMPRESSION_FEEDS.ordinal() };
 			this.hhAttributes.setAsInt( this.hhAttributes.getAsInt( y ) + n,
 					y );
-		} );
+		};
+		final HHPropagation.Convergence convergence = this.hhShards != null
+				? this.hhShards.propagate( this.attitudePropagator,
+						this.hhAttributes, visitor )
+				: this.hhPropagation.propagate( this.attitudePropagator,
+						this.hhAttributes, visitor );
+		this.hhPropagationRecurrence.update( convergence );
+		LOG.debug( "t={}, propagated {}", prettyDate( t ), convergence );
+		if( this.convergenceEvents.hasObservers() )
+			this.convergenceEvents.onNext( convergence );
+		if( this.networkBatches.hasObservers() || this.hhJournal != null )
+		{
+			final HHAttitudeBatch changes = this.hhShards != null
+					? this.hhShards.changes() : this.hhPropagation.changes();
+			for( int k = 0; k < changes.size(); k++ )
+				journal( HHJournal.Type.ATTITUDE, changes.index( k ),
+						changes.confidence( k ), changes.complacency( k ) );
+			if( this.networkBatches.hasObservers() )
+				this.networkBatches.onNext( changes );
+		}
+		resetActivity();
+	}
+
+	/**
+	 * clear the links activated since the last (base) propagation round and
+	 * start the households' next impression round
+	 */
+	private void resetActivity()
+	{
 		// this.hhNetworkActivity.clear();
+		this.hhAdjacency.deactivateAll();
 		final long n = this.hhNetworkActivity.getRowCount();
-		LongStream.range( this.attractors.size(), n ).forEach( i ->
+		LongStream.range( this.attractors.length, n ).forEach( i ->
 		{
-			LongStream.range( i + 1, n )
-					.forEach( j -> this.hhNetworkActivity.setAsInt( 0, i, j ) );
+			for( long j : contacts( i ) )
+				if( j > i ) this.hhNetworkActivity.setAsInt( 0, i, j );
 			impressFirst( i );
 			final long[] x = { i, HHAttribute.IMPRESSION_ROUNDS.ordinal() };
 			this.hhAttributes.setAsInt( this.hhAttributes.getAsInt( x ) + 1,
@@ -732,24 +912,29 @@ public class HHModel implements Scenario
 						this.ppAttributes.setAsInt(
 								HHMemberStatus.ARTIFICIAL_IMMUNE.ordinal(),
 								ppRef, HHMemberAttribute.STATUS.ordinal() );
+						journal( HHJournal.Type.VACCINATION, ppRef, hh, 0 );
 					} );
 				} );
 	}
 
 	private static final long NA = -1L;
 
-	private void migrateHousehold( final Instant t )
+	/**
+	 * @param t the current {@link Instant}
+	 * @return the interval until the next migration in (primitive) days
+	 */
+	private double replaceMigrant( final Instant t )
 	{
-		final long A = this.attractors.size(),
+		final long A = this.attractors.length,
 				N = this.hhAttributes.getRowCount() - A,
 				i = A + this.distFactory.getStream().nextLong( N );
+		journal( HHJournal.Type.MIGRATION, i, 0, 0 );
 		createHousehold( i );
 
-		final Quantity<Time> dt = this.hhMigrateDist.draw();
-		LOG.trace( "t={}, replace migrant #{}, next after: {}", prettyDate( t ),
-				i, QuantityUtil.toScale( dt, 1 ) );
-
-		after( dt ).call( this::migrateHousehold );
+		final double dt = this.hhMigrateDaysDist.draw();
+		LOG.trace( "t={}, replace migrant #{}, next after: {} days",
+				prettyDate( t ), i, DecimalUtil.toScale( dt, 1 ) );
+		return dt;
 	}
 
 	private int createHousehold( final long oldIndex )
@@ -758,48 +943,48 @@ public class HHModel implements Scenario
 		final long hhIndex;
 		if( oldIndex == NA ) // no replacement
 		{
-			hhIndex = this.attractors.size() + this.hhIndex.computeIfAbsent( id,
-					key -> (long) this.hhIndex.size() );
-		} else // replacement household
+			hhIndex = this.attractors.length + this.hhIndex.allocate( id );
+		} else // replacement household, reusing its row
 		{
 			hhIndex = oldIndex;
-			this.hhIndex.remove( this.hhAttributes.getAsLong( hhIndex,
-					HHAttribute.IDENTIFIER.ordinal() ) );
+			this.hhIndex.replace( this.hhAttributes.getAsLong( hhIndex,
+					HHAttribute.IDENTIFIER.ordinal() ), id );
 		}
 
-		final int attractorRef =
-				// Region.ID.of( hhCat.regionRef() );
-				this.attractorBroker.next( hhIndex );
+		// a replacement moves into the dwelling, i.e. region, it replaces
+		final int attractorRef = oldIndex != NA
+				? this.hhAttributes.getAsInt( hhIndex,
+						HHAttribute.ATTRACTOR_REF.ordinal() )
+				: this.attractorBroker.next( hhIndex );
 
-		final HHAttractor attractor = this.attractors
-				.get( this.attractorNames[attractorRef] );
 		// final boolean religious = this.hhAttributes.getAsBoolean(
 		// attractorIndex, HHAttribute.RELIGIOUS.ordinal() );
 		// final boolean alternative = this.hhAttributes.getAsBoolean(
 		// attractorIndex, HHAttribute.ALTERNATIVE.ordinal() );
-		final HesitancyProfileJson profile = this.hesitancyProfileDist
-				.draw( attractor.toHesitancyProfile() );
+		final int profileRef = this.hesitancySampler
+				.drawProfile( this.attractorCategories[attractorRef] );
+		final HesitancyProfileJson profile = this.hesitancySampler
+				.profile( profileRef );
 
 		final boolean hhRefMale = this.hhRefMaleDist.draw();
 		// final Cbs71486json.Category hhCat = this.localHouseholdDist.draw(
 		// dt() );
-		final Quantity<Time> hhRefAge =
+		final double hhRefAgeYears =
 				// hhCat.ageDist( this.distFactory::createUniformContinuous
 				// ).draw();
-				this.hhRefAgeDist.draw();
+				this.hhRefAgeYearsDist.draw().doubleValue();
 		final CBSHousehold hhType =
 				// hhCat.hhTypeDist( this.distFactory::createCategorical
 				// ).draw();
 				this.hhTypeDist.draw();
 
-		final Quantity<Time> impressDelay = Arrays
-				.stream( RelationFrequencyJson.Relation.values() )
-				.map( r -> this.hhImpressIntervalDist
-						.draw( new RelationFrequencyJson.Category( hhRefMale, r,
-								hhRefAge ) )
-						.inverse().asType( Frequency.class ) )
-				.reduce( ( f1, f2 ) -> f1.add( f2 ) ).get().inverse()
-				.asType( Time.class );
+		// combined impression period: the inverse of summed relation rates
+		double impressRate = 0;
+		for( RelationFrequencyJson.Relation r : RelationFrequencyJson.Relation
+				.values() )
+			impressRate += 1. / this.hhImpressIntervalIndex.drawDays( hhRefMale,
+					r, hhRefAgeYears );
+		final double impressDelayDays = 1. / impressRate;
 
 		// final long partnerRef = hhType.adultCount() < 2 ? NA
 		// : createPerson(
@@ -807,20 +992,19 @@ public class HHModel implements Scenario
 		// QuantityUtil.valueOf( 3, TimeUnits.ANNUM ) ),
 		// hhStatus );
 
-		final Quantity<Time> child1Age = hhRefAge.subtract(
+		final double child1AgeYears = hhRefAgeYears
 				// TODO from distribution, e.g. 60036ned, 37201
-				QuantityUtil.valueOf( 20, TimeUnits.ANNUM ) );
+				- 20;
 		final HHMemberStatus hhStatus = oldIndex == NA // newborn
 				|| profile.status == VaccineStatus.none
-				|| this.vaccinationAge.lowerValue()
-						.isGreaterThanOrEqualTo( child1Age )
-								? HHMemberStatus.SUSCEPTIBLE
-								: HHMemberStatus.ARTIFICIAL_IMMUNE;
+				|| this.vaccinationAgeMinYears >= child1AgeYears
+						? HHMemberStatus.SUSCEPTIBLE
+						: HHMemberStatus.ARTIFICIAL_IMMUNE;
 		final long referentRef = createPerson(
 				oldIndex == NA ? NA
 						: this.hhAttributes.getAsLong( hhIndex,
 								HHAttribute.REFERENT_REF.ordinal() ),
-				hhRefMale, hhRefAge, hhStatus );
+				hhRefMale, hhRefAgeYears, hhStatus );
 		final boolean child1Male = true;
 		final long child1Ref = hhType
 				.childCount() < 1
@@ -830,7 +1014,7 @@ public class HHModel implements Scenario
 										: this.hhAttributes.getAsLong( hhIndex,
 												HHAttribute.CHILD1_REF
 														.ordinal() ),
-								child1Male, child1Age, hhStatus );
+								child1Male, child1AgeYears, hhStatus );
 		// final long child2Ref = hhType.childCount() < 2 ? NA
 		// : createPerson(
 		// hhRefAge.subtract(
@@ -856,8 +1040,7 @@ public class HHModel implements Scenario
 		// expressingRef );
 
 		final BigDecimal initialCalculation = this.calculationDist.draw();
-		final Map<HHAttribute, BigDecimal> initialHesitancy = this.hesitancyDist
-				.draw( profile );
+		this.hesitancySampler.drawAttitude( profileRef, this.attitudeDraw );
 
 		// update attractor values
 		final long[] x_a = { attractorRef,
@@ -868,14 +1051,13 @@ public class HHModel implements Scenario
 		// set household attribute values
 		this.hhAttributes.setAsLong( id, hhIndex,
 				HHAttribute.IDENTIFIER.ordinal() );
-		this.hhAttributes.setAsBigDecimal( now().to( TimeUnits.DAYS ).decimal(),
+		this.hhAttributes.setAsBigDecimal( BigDecimal.valueOf( nowDays() ),
 				hhIndex, HHAttribute.SINCE_DAYS.ordinal() );
 		this.hhAttributes.setAsInt( 0, hhIndex,
 				HHAttribute.IMPRESSION_ROUNDS.ordinal() );
 		this.hhAttributes.setAsInt( attractorRef, hhIndex,
 				HHAttribute.ATTRACTOR_REF.ordinal() );
-		this.hhAttributes.setAsBigDecimal(
-				QuantityUtil.toBigDecimal( impressDelay, TimeUnits.DAYS ),
+		this.hhAttributes.setAsBigDecimal( BigDecimal.valueOf( impressDelayDays ),
 				hhIndex, HHAttribute.IMPRESSION_PERIOD_DAYS.ordinal() );
 		this.hhAttributes.setAsInt( 0, hhIndex,
 				HHAttribute.IMPRESSION_FEEDS.ordinal() );
@@ -886,11 +1068,17 @@ public class HHModel implements Scenario
 		this.hhAttributes.setAsBigDecimal( initialCalculation, hhIndex,
 				HHAttribute.CALCULATION.ordinal() );
 		this.hhAttributes.setAsBigDecimal(
-				initialHesitancy.get( HHAttribute.CONFIDENCE ), hhIndex,
-				HHAttribute.CONFIDENCE.ordinal() );
+				BigDecimal.valueOf(
+						this.attitudeDraw[HHProfileSampler.CONFIDENCE] ),
+				hhIndex, HHAttribute.CONFIDENCE.ordinal() );
 		this.hhAttributes.setAsBigDecimal(
-				initialHesitancy.get( HHAttribute.COMPLACENCY ), hhIndex,
-				HHAttribute.COMPLACENCY.ordinal() );
+				BigDecimal.valueOf(
+						this.attitudeDraw[HHProfileSampler.COMPLACENCY] ),
+				hhIndex, HHAttribute.COMPLACENCY.ordinal() );
+		journal( HHJournal.Type.HOUSEHOLD, hhIndex, id, attractorRef );
+		journal( HHJournal.Type.ATTITUDE, hhIndex,
+				this.attitudeDraw[HHProfileSampler.CONFIDENCE],
+				this.attitudeDraw[HHProfileSampler.COMPLACENCY] );
 		this.hhAttributes.setAsLong( referentRef, hhIndex,
 				HHAttribute.REFERENT_REF.ordinal() );
 		// this.hhAttributes.setAsLong( partnerRef, hhIndex,
@@ -902,50 +1090,502 @@ public class HHModel implements Scenario
 		// this.hhAttributes.setAsLong( child3Ref, hhIndex,
 		// HHAttribute.CHILD3_REF.ordinal() );
 
-		// reset network activity
-		Arrays.stream( contacts( hhIndex ) ).forEach( j ->
+		// reset network activity, or form new ties if dynamic
+		if( oldIndex != NA && this.hhAdjacency != null
+				&& this.hhAdjacency.isDynamic() )
+			rewire( hhIndex );
+		else
 		{
-			this.hhNetworkActivity.setAsInt( 0, hhIndex, j );
-			this.hhNetworkActivity.setAsInt( 0, j, hhIndex );
-		} );
+			Arrays.stream( contacts( hhIndex ) ).forEach( j ->
+			{
+				this.hhNetworkActivity.setAsInt( 0, hhIndex, j );
+				this.hhNetworkActivity.setAsInt( 0, j, hhIndex );
+			} );
+			if( this.hhAdjacency != null )
+				this.hhAdjacency.deactivate( (int) hhIndex );
+		}
 
 		impressFirst( hhIndex );
 
-		after( this.hhLeaveHomeAge.subtract( child1Age ) ).call( t ->
+		final double leaveHomeDelay = (this.hhLeaveHomeAgeYears
+				- child1AgeYears) * DAYS_PER_ANNUM;
+		// (re)schedule, replacing any home-leaving due for the previous family
+		scheduleHousehold( this.impressDue.length + (int) hhIndex,
+				nowDays() + leaveHomeDelay );
+
+		return hhType.size();
+	}
+
+	/**
+	 * @param A the number of attractors
+	 * @param attractorOf the out-parameter receiving the attractor per
+	 *            household (row {@code A + x})
+	 * @return the households {@code x} per attractor, in row order
+	 */
+	private int[][] members( final long A, final int[] attractorOf )
+	{
+		final int[] counts = new int[(int) A];
+		for( int x = 0; x < attractorOf.length; x++ )
+			counts[attractorOf[x] = this.hhAttributes.getAsInt( A + x,
+					HHAttribute.ATTRACTOR_REF.ordinal() )]++;
+		final int[][] result = new int[(int) A][];
+		for( int a = 0; a < A; a++ )
+			result[a] = new int[counts[a]];
+		Arrays.fill( counts, 0 );
+		for( int x = 0; x < attractorOf.length; x++ )
+			result[attractorOf[x]][counts[attractorOf[x]]++] = x;
+		return result;
+	}
+
+	/**
+	 * connect households in separate assortative (per attractor) and
+	 * dissortative sub-graphs, merged per household
+	 */
+	private void connectSubgraphs( final HHConnector conn, final long A,
+		final int[] attractorOf, final int[][] members, final long K,
+		final double assortativity )
+	{
+		final long N = attractorOf.length;
+		// rank of each household within its own attractor
+		final int[] rank = new int[(int) N];
+		for( int[] m : members )
+			for( int r = 0; r < m.length; r++ )
+				rank[m[r]] = r;
+		final double dissortativity = (1.0 - assortativity);
+		final Supplier<Long> assortK = () -> (long) (assortativity * K * (A - 1)
+				/ A);
+		final Supplier<Long> dissortK =
+				// () -> Math.round( (1.0 - assortativity) * K / (A - 1) )
+				this.distFactory.createPoisson( // use poisson for small degree
+						dissortativity * K )::draw;
+
+		// final long assortativeK = A < 2 ? K
+		// : (long) (K * this.config.hesitancySocialAssortativity()),
+		// dissortativeK = A < 2 ? 0
+		// : Math.max( 1, (K - assortativeK) / (A - 1) );
+
+		final Matrix[] assorting = LongStream.range( 0, A ).mapToObj( a ->
+		{
+			final BigDecimal inpeerW = this.hhAttributes.getAsBigDecimal( a,
+					HHAttribute.IMPRESSION_INPEER_WEIGHT.ordinal() );
+			if( inpeerW.signum() < 1 ) LOG.warn( "no weight: {}", inpeerW );
+			final Matrix m = conn.connect( members[(int) a].length, assortK,
+					x -> true, x -> inpeerW );
+			return m;
+		} ).toArray( Matrix[]::new );
+
+		final Matrix dissorting = conn.connect( N, dissortK,
+				x -> attractorOf[(int) x[0]] != attractorOf[(int) x[1]],
+				x -> this.hhAttributes.getAsBigDecimal( attractorOf[(int) x[0]],
+						HHAttribute.IMPRESSION_OUTPEER_WEIGHT.ordinal() ) );
+
+		// create the social network (between households/parents)
+		LongStream.range( A, A + N ).forEach( i ->
 		{
-			LOG.trace( "t={}, replace home leaver #{}", prettyDate( t ),
-					hhIndex );
-			createHousehold( hhIndex );
+			this.hhAttributes.setAsBoolean( this.schoolAssortativity.draw(), i,
+					HHAttribute.SCHOOL_ASSORTATIVITY.ordinal() );
+
+			final int aOwn = attractorOf[(int) (i - A)];
+			final long ia = rank[(int) (i - A)], // within assortative sub-group
+					Na = members[aOwn].length;
+
+			final boolean log = (i - A) % (N / 5) == 0;
+			if( A < 2 || assortativity >= 1 )
+			{
+				final AtomicReference<BigDecimal> totalW = new AtomicReference<>(
+						BigDecimal.ZERO );
+				final long[] inpeers = HHConnector
+						.availablePeers( assorting[aOwn], ia ).map( ja ->
+						{
+							final BigDecimal w = HHConnector
+									.getSymmetric( assorting[aOwn], ia, ja );
+							totalW.getAndUpdate( bd -> bd.add( w ) );
+							final long j = A + members[aOwn][(int) ja];
+							HHConnector.setSymmetric( this.hhNetwork, w, i, j );
+							return j;
+						} ).toArray();
+				if( log )
+					LOG.trace( "hh #{} ({}/{} -> {}) in-peers: {} = {}/{}", i,
+							ia, Na, this.attractorNames[aOwn], inpeers,
+							inpeers.length, K + 1 );
+
+				final BigDecimal inpeerW = totalW.get(),
+						selfW = inpeerW.multiply(
+								this.hhAttributes.getAsBigDecimal( aOwn,
+										HHAttribute.IMPRESSION_SELF_MULTIPLIER
+												.ordinal() ) ),
+						attrW = inpeerW.multiply(
+								this.hhAttributes.getAsBigDecimal( aOwn,
+										HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER
+												.ordinal() ) );
+				// set stubbornness
+				// HHConnector.setSymmetric( this.hhNetwork, selfW, i );
+				// this.hhNetwork.setAsBigDecimal( attrW, i, aOwn );
+				this.hhAttributes.setAsBigDecimal( inpeerW, i,
+						HHAttribute.IMPRESSION_INPEER_WEIGHT.ordinal() );
+				// this.hhAttributes.setAsBigDecimal( BigDecimal.ZERO, A + i,
+				// HHAttribute.SOCIAL_IMPACT_OUTPEER.ordinal() );
+				this.hhAttributes.setAsBigDecimal( selfW, i,
+						HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal() );
+				this.hhAttributes.setAsBigDecimal( attrW, i,
+						HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER.ordinal() );
+				this.hhAttributes.setAsInt( inpeers.length, i,
+						HHAttribute.SOCIAL_NETWORK_SIZE.ordinal() );
+				this.hhAttributes.setAsBigDecimal( BigDecimal.ONE, i,
+						HHAttribute.SOCIAL_ASSORTATIVITY.ordinal() );
+			} else
+			{
+				// get separate assort + dissort j's just for logging
+				final AtomicReference<BigDecimal> totalAssortW = new AtomicReference<>(
+						BigDecimal.ZERO ),
+						totalDissortW = new AtomicReference<>(
+								BigDecimal.ZERO );
+				final long[] inpeers = HHConnector
+						.availablePeers( assorting[aOwn], ia ).map( ja ->
+						{
+							final BigDecimal w = HHConnector
+									.getSymmetric( assorting[aOwn], ia, ja );
+							totalAssortW.getAndUpdate( bd -> bd.add( w ) );
+							final long j = A + members[aOwn][(int) ja];
+							HHConnector.setSymmetric( this.hhNetwork, w, i, j );
+							return j;
+						} ).toArray();
+				// TODO don't copy, but initialize with outpeers already
+				final long[] outpeers = HHConnector
+						.availablePeers( dissorting, i - A ).map( j ->
+						{
+							final BigDecimal w = HHConnector
+									.getSymmetric( dissorting, i - A, j );
+							totalDissortW.getAndUpdate( bd -> bd.add( w ) );
+							HHConnector.setSymmetric( this.hhNetwork, w, i,
+									A + j );
+							return j;
+						} ).toArray();
+				final int peerTotal = inpeers.length + outpeers.length;
+				final long[] stored = contacts( i );
+				final List<Long> peers = Stream.of( inpeers, outpeers )
+						.flatMap( ll -> Arrays.stream( ll ).mapToObj( l -> l ) )
+						.sorted().collect( Collectors.toList() );
+				final String[] diff = Arrays.stream( stored )
+						.filter( l -> !peers.contains( l ) )
+						.mapToObj( l -> "" + l + "\\"
+								+ attractorOf[(int) (l - A)] + "\\" + HHConnector
+										.getSymmetric( this.hhNetwork, i, l ) )
+						.toArray( String[]::new );
+				if( peerTotal == 0 || peerTotal != stored.length ) LOG.warn(
+						"hh #{} ({}/{} -> {}) peers: in {}({}/{}) "
+								+ "+ out {}({}/{}) = {}/{}, added {}: {}",
+						i, ia, Na, this.attractorNames[aOwn], inpeers,
+						inpeers.length,
+						DecimalUtil.toScale( assortativity * K, 1 ), outpeers,
+						outpeers.length,
+						DecimalUtil.toScale( dissortativity * K, 1 ), peerTotal,
+						K, diff.length, diff );
+				final BigDecimal inpeerW = totalAssortW.get(),
+						outpeerW = totalDissortW.get(),
+						selfW = inpeerW.add( outpeerW ).multiply(
+								this.hhAttributes.getAsBigDecimal( aOwn,
+										HHAttribute.IMPRESSION_SELF_MULTIPLIER
+												.ordinal() ) ),
+						attrW = inpeerW.add( outpeerW ).multiply(
+								this.hhAttributes.getAsBigDecimal( aOwn,
+										HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER
+												.ordinal() ) );
+				// HHConnector.setSymmetric( this.hhNetwork, selfW, i );
+				// this.hhNetwork.setAsBigDecimal( attrW, i, aOwn );
+
+				this.hhAttributes.setAsBigDecimal( inpeerW, i,
+						HHAttribute.IMPRESSION_INPEER_WEIGHT.ordinal() );
+				this.hhAttributes.setAsBigDecimal( outpeerW, i,
+						HHAttribute.IMPRESSION_OUTPEER_WEIGHT.ordinal() );
+				this.hhAttributes.setAsBigDecimal( selfW, i,
+						HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal() );
+				this.hhAttributes.setAsBigDecimal( attrW, i,
+						HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER.ordinal() );
+				this.hhAttributes.setAsInt( peerTotal, i,
+						HHAttribute.SOCIAL_NETWORK_SIZE.ordinal() );
+				if( peerTotal != 0 ) this.hhAttributes.setAsBigDecimal(
+						DecimalUtil.divide( inpeers.length, peerTotal ), i,
+						HHAttribute.SOCIAL_ASSORTATIVITY.ordinal() );
+			}
+
 		} );
+	}
 
-		return hhType.size();
+	/**
+	 * connect households in one pass using a
+	 * {@link HHConnector.StochasticBlock} model having the attractors as
+	 * blocks, weighted by their in- or out-peer weights
+	 */
+	private void connectBlocks( final HHConnector.StochasticBlock conn,
+		final long A, final int[] attractorOf, final long K )
+	{
+		final double[] inpeerW = new double[(int) A],
+				outpeerW = new double[(int) A];
+		for( int a = 0; a < A; a++ )
+		{
+			inpeerW[a] = this.hhAttributes.getAsDouble( a,
+					HHAttribute.IMPRESSION_INPEER_WEIGHT.ordinal() );
+			outpeerW[a] = this.hhAttributes.getAsDouble( a,
+					HHAttribute.IMPRESSION_OUTPEER_WEIGHT.ordinal() );
+			if( inpeerW[a] <= 0 ) LOG.warn( "no weight: {}", inpeerW[a] );
+		}
+
+		// households i = A + x have their attractor as block
+		final HHEdgeList edges = conn.edges( attractorOf, K, x -> true );
+		for( int e = 0; e < edges.size(); e++ )
+		{
+			final int a = attractorOf[edges.from( e )];
+			edges.weight( e, a == attractorOf[edges.to( e )] ? inpeerW[a]
+					: outpeerW[a] );
+		}
+		connectEdges( edges, A, attractorOf );
+	}
+
+	/**
+	 * connect households (rows {@code A + x}) by given links, then set the
+	 * respective social network attributes per household, counting links
+	 * within their own attractor as in-peers
+	 */
+	private void connectEdges( final HHEdgeList edges, final long A,
+		final int[] attractorOf )
+	{
+		final int N = attractorOf.length;
+		final BigDecimal[] totalInW = new BigDecimal[(int) N],
+				totalOutW = new BigDecimal[(int) N];
+		Arrays.fill( totalInW, BigDecimal.ZERO );
+		Arrays.fill( totalOutW, BigDecimal.ZERO );
+		final int[] inpeers = new int[(int) N], outpeers = new int[(int) N];
+		for( int e = 0; e < edges.size(); e++ )
+		{
+			final int x = edges.from( e ), y = edges.to( e );
+			final BigDecimal w = BigDecimal.valueOf( edges.weight( e ) );
+			this.hhNetwork.setAsBigDecimal( w, A + x, A + y );
+			if( attractorOf[x] == attractorOf[y] )
+			{
+				totalInW[x] = totalInW[x].add( w );
+				totalInW[y] = totalInW[y].add( w );
+				inpeers[x]++;
+				inpeers[y]++;
+			} else
+			{
+				totalOutW[x] = totalOutW[x].add( w );
+				totalOutW[y] = totalOutW[y].add( w );
+				outpeers[x]++;
+				outpeers[y]++;
+			}
+		}
+
+		for( int x = 0; x < N; x++ )
+		{
+			final long i = A + x, aOwn = attractorOf[x];
+			final int peerTotal = inpeers[x] + outpeers[x];
+			this.hhAttributes.setAsBoolean( this.schoolAssortativity.draw(), i,
+					HHAttribute.SCHOOL_ASSORTATIVITY.ordinal() );
+			final BigDecimal totalW = totalInW[x].add( totalOutW[x] );
+			this.hhAttributes.setAsBigDecimal( totalInW[x], i,
+					HHAttribute.IMPRESSION_INPEER_WEIGHT.ordinal() );
+			this.hhAttributes.setAsBigDecimal( totalOutW[x], i,
+					HHAttribute.IMPRESSION_OUTPEER_WEIGHT.ordinal() );
+			this.hhAttributes.setAsBigDecimal(
+					totalW.multiply( this.hhAttributes.getAsBigDecimal( aOwn,
+							HHAttribute.IMPRESSION_SELF_MULTIPLIER
+									.ordinal() ) ),
+					i, HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal() );
+			this.hhAttributes.setAsBigDecimal(
+					totalW.multiply( this.hhAttributes.getAsBigDecimal( aOwn,
+							HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER
+									.ordinal() ) ),
+					i, HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER.ordinal() );
+			this.hhAttributes.setAsInt( peerTotal, i,
+					HHAttribute.SOCIAL_NETWORK_SIZE.ordinal() );
+			if( peerTotal != 0 ) this.hhAttributes.setAsBigDecimal(
+					DecimalUtil.divide( inpeers[x], peerTotal ), i,
+					HHAttribute.SOCIAL_ASSORTATIVITY.ordinal() );
+		}
+		LOG.trace( "Networked {} hh across {} attractors: {} links", N, A,
+				edges.size() );
+	}
+
+	/**
+	 * detach the ties of (replaced) household i and let it rejoin the dynamic
+	 * {@link #hhAdjacency} by the rules of the {@link #hhConnector}, forming
+	 * as many new ties, each within its own attractor by
+	 * {@link #socialAssortativity}, then update the social network attributes
+	 * of i and its former and new peers, all in O(degree) time
+	 * 
+	 * @param i the replaced household row
+	 */
+	private void rewire( final long i )
+	{
+		final long[] old = this.hhAdjacency.detach( (int) i );
+		for( long j : old )
+		{
+			HHConnector.setSymmetric( this.hhNetwork, BigDecimal.ZERO, i, j );
+			this.hhNetworkActivity.setAsInt( 0, i, j );
+			this.hhNetworkActivity.setAsInt( 0, j, i );
+		}
+
+		final PseudoRandom rng = this.distFactory.getStream();
+		final long A = this.attractors.length,
+				N = this.hhAttributes.getRowCount() - A;
+		final int aOwn = this.hhAttributes.getAsInt( i,
+				HHAttribute.ATTRACTOR_REF.ordinal() );
+		int within = 0;
+		for( int k = 0; k < old.length; k++ )
+			if( A < 2 || rng.nextDouble() < this.socialAssortativity ) within++;
+		final LongSupplier uniform = () -> A + rng.nextLong( N ),
+				preferential = () ->
+				{
+					// a random tie's end, i.e. proportional to degree
+					for( int attempt = 0; attempt < 10; attempt++ )
+					{
+						final int j = this.hhAdjacency.peer(
+								rng.nextInt( this.hhAdjacency.slots() ) );
+						if( j >= 0 ) return j;
+					}
+					return uniform.getAsLong();
+				};
+		final Predicate<long[]> legalJ = x -> x[1] >= A
+				&& this.hhAdjacency.spare( (int) x[1] ) > 0
+				&& this.hhAdjacency.slot( (int) x[0], (int) x[1] ) < 0,
+				assortJ = x -> this.hhAttributes.getAsInt( x[1],
+						HHAttribute.ATTRACTOR_REF.ordinal() ) == aOwn;
+		final long[] inpeers = this.hhConnector.rejoin( i, within, uniform,
+				preferential, legalJ.and( assortJ ) ),
+				outpeers = this.hhConnector.rejoin( i, old.length - within,
+						uniform, preferential,
+						legalJ.and( assortJ.negate() ) );
+		final double inpeerW = this.hhAttributes.getAsDouble( aOwn,
+				HHAttribute.IMPRESSION_INPEER_WEIGHT.ordinal() ),
+				outpeerW = this.hhAttributes.getAsDouble( aOwn,
+						HHAttribute.IMPRESSION_OUTPEER_WEIGHT.ordinal() );
+		for( long[] peers : new long[][] { inpeers, outpeers } )
+			for( long j : peers )
+			{
+				final double w = peers == inpeers ? inpeerW : outpeerW;
+				if( !this.hhAdjacency.link( (int) i, (int) j, w ) ) continue;
+				HHConnector.setSymmetric( this.hhNetwork,
+						BigDecimal.valueOf( w ), i, j );
+				this.hhNetworkActivity.setAsInt( 0, i, j );
+				this.hhNetworkActivity.setAsInt( 0, j, i );
+				journal( HHJournal.Type.LINK, i, j, w );
+			}
+
+		networked( i );
+		for( long[] peers : new long[][] { old, inpeers, outpeers } )
+			for( long j : peers )
+				networked( j );
+	}
+
+	/**
+	 * (re)set the social network attributes of household i from its current
+	 * ties in the {@link #hhAdjacency}, as in
+	 * {@link #connectEdges(HHEdgeList, long, int[])}
+	 * 
+	 * @param i the household row
+	 */
+	private void networked( final long i )
+	{
+		final int aOwn = this.hhAttributes.getAsInt( i,
+				HHAttribute.ATTRACTOR_REF.ordinal() );
+		final long[] peers = this.hhAdjacency.peers( (int) i );
+		double inW = 0, outW = 0;
+		int inpeers = 0;
+		for( long j : peers )
+		{
+			final double w = this.hhAdjacency.weight( (int) i, (int) j );
+			if( this.hhAttributes.getAsInt( j,
+					HHAttribute.ATTRACTOR_REF.ordinal() ) == aOwn )
+			{
+				inW += w;
+				inpeers++;
+			} else
+				outW += w;
+		}
+		final BigDecimal totalW = BigDecimal.valueOf( inW + outW );
+		this.hhAttributes.setAsBigDecimal( BigDecimal.valueOf( inW ), i,
+				HHAttribute.IMPRESSION_INPEER_WEIGHT.ordinal() );
+		this.hhAttributes.setAsBigDecimal( BigDecimal.valueOf( outW ), i,
+				HHAttribute.IMPRESSION_OUTPEER_WEIGHT.ordinal() );
+		this.hhAttributes.setAsBigDecimal(
+				totalW.multiply( this.hhAttributes.getAsBigDecimal( aOwn,
+						HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal() ) ),
+				i, HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal() );
+		this.hhAttributes.setAsBigDecimal(
+				totalW.multiply( this.hhAttributes.getAsBigDecimal( aOwn,
+						HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER
+								.ordinal() ) ),
+				i, HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER.ordinal() );
+		this.hhAttributes.setAsInt( peers.length, i,
+				HHAttribute.SOCIAL_NETWORK_SIZE.ordinal() );
+		if( peers.length != 0 ) this.hhAttributes.setAsBigDecimal(
+				DecimalUtil.divide( inpeers, peers.length ), i,
+				HHAttribute.SOCIAL_ASSORTATIVITY.ordinal() );
+	}
+
+	/**
+	 * apply the attractor {@link #signals} due, then reschedule for the next
+	 * 
+	 * @param day the current time in (primitive) days
+	 */
+	private void signal( final double day )
+	{
+		final int n = this.signals.apply( day, this::disturb );
+		if( n > 0 )
+		{
+			// disturbance: return to the base propagation recurrence
+			this.hhPropagationRecurrence.reset();
+			LOG.debug( "t={}, {} disturbance(s), {} remaining",
+					prettyDate( now() ), n, this.signals.remaining() );
+		}
+		final double next = this.signals.nextDay();
+		if( next < Double.POSITIVE_INFINITY )
+			afterDays( Math.max( 0, next - nowDays() ) )
+					.call( t -> signal( next ) );
+	}
+
+	private void disturb( final int row, final int col, final double value )
+	{
+		this.hhAttributes.setAsBigDecimal( BigDecimal.valueOf( value ), row,
+				col );
+		journal( HHJournal.Type.DISTURBANCE, row, col, value );
+	}
+
+	/** append a {@link HHJournal} record now, if journaling */
+	private void journal( final HHJournal.Type type, final long row,
+		final double value0, final double value1 )
+	{
+		if( this.hhJournal != null )
+			this.hhJournal.append( nowDays(), type, (int) row, value0, value1 );
 	}
 
 	private long[] contacts( final long i )
 	{
+		if( this.hhAdjacency != null )
+			return this.hhAdjacency.peers( (int) i );
 		return HHConnector.availablePeers( this.hhNetwork, i )// .parallel()
 				.toArray();
 	}
 
 	private long createPerson( final long oldIndex, final boolean male,
-		final Quantity<Time> initialAge, final HHMemberStatus status )
+		final double initialAgeYears, final HHMemberStatus status )
 	{
 		final long id = this.persons.incrementAndGet();
 		final long index;
 		if( oldIndex == NA )
 		{
-			index = this.ppIndex.computeIfAbsent( id,
-					key -> (long) this.ppIndex.size() );
-		} else
+			index = this.ppIndex.allocate( id );
+		} else // replacement member, reusing its row
 		{
 			index = oldIndex;
-			this.ppIndex.remove( this.ppAttributes.getAsLong( index,
-					HHMemberAttribute.IDENTIFIER.ordinal() ) );
+			this.ppIndex.replace( this.ppAttributes.getAsLong( index,
+					HHMemberAttribute.IDENTIFIER.ordinal() ), id );
 		}
 		this.ppAttributes.setAsLong( id, index,
 				HHMemberAttribute.IDENTIFIER.ordinal() );
 		this.ppAttributes.setAsBigDecimal(
-				now().to( TimeUnits.ANNUM ).subtract( initialAge ).decimal(),
+				BigDecimal.valueOf( nowDays() / DAYS_PER_ANNUM - initialAgeYears ),
 				index, HHMemberAttribute.BIRTH.ordinal() );
 		this.ppAttributes.setAsBoolean( male, index,
 				HHMemberAttribute.MALE.ordinal() );
@@ -978,9 +1618,29 @@ public class HHModel implements Scenario
 						.toJava8( scheduler().offset().toLocalDate() ));
 	}
 
-	private final Map<Long, Long> hhIndex = new HashMap<>();
+	/** @return the current virtual time in (primitive) days */
+	protected double nowDays()
+	{
+		return now().equals( this.nowDaysInstant ) ? this.nowDaysCache
+				: (this.nowDaysCache = (this.nowDaysInstant = now())
+						.to( TimeUnits.DAYS ).value().doubleValue());
+	}
+
+	/**
+	 * @param days the delay in (primitive) days
+	 * @return the {@link FutureSelf} to schedule, converting to a unit-safe
+	 *         delay only at the scheduler boundary
+	 */
+	protected FutureSelf afterDays( final double days )
+	{
+		return after( days, TimeUnits.DAYS );
+	}
+
+	/** household identifier to (non-attractor) row offset */
+	private SlotAllocator hhIndex;
 
-	private final Map<Long, Long> ppIndex = new HashMap<>();
+	/** person identifier to row */
+	private SlotAllocator ppIndex;
 
 	private void logError( final Throwable e )
 	{
@@ -0,0 +1,745 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.util.Arrays;
+
+import org.ujmp.core.Matrix;
+
+/**
+ * {@link HHNetwork} is a primitive, compressed sparse row (CSR) adjacency of
+ * the (symmetric) household social network, listing for each household row
+ * its peers in ascending order, their (static) link weights and their
+ * currently active weights, i.e. those links activated by impressions since
+ * the last {@link #deactivateAll()}. It replaces O(N) scans like
+ * {@link HHConnector#availablePeers} by O(degree) row iteration.
+ * <p>
+ * Its (internal) indices equal the household rows, unless
+ * {@link #reorder(Ordering, int) reordered} to place linked households
+ * nearby, so that gathering peer values (e.g. in {@link HHPropagation})
+ * mostly hits the cache. The public methods always take and return rows.
+ * Once (re)ordered, its static peers and weights may be {@link #pack()
+ * packed} into a {@link HHPackedAdjacency} to save memory.
+ * <p>
+ * Alternatively, a {@link #dynamic(int, int) dynamic} copy reserves some
+ * spare slots per row, so that households may {@link #detach(int)} and
+ * {@link #link(int, int, double)} peers in O(degree) time, e.g. when
+ * replaced by migrants or home leavers, without rebuilding the adjacency.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHNetwork
+{
+
+	/** {@link Ordering} of the (internal) indices */
+	public enum Ordering
+	{
+		/** indices equal rows */
+		NONE,
+
+		/**
+		 * <a href=
+		 * "https://www.wikiwand.com/en/Cuthill%E2%80%93McKee_algorithm">reverse
+		 * Cuthill-McKee</a>, i.e. breadth-first from low-degree households,
+		 * reducing the index distance between peers
+		 */
+		RCM;
+	}
+
+	/**
+	 * @param W the (upper-triangular) link weight {@link Matrix}, i.e. with
+	 *            W_(min(i,j),max(i,j)) &gt; 0 for linked peers i and j
+	 * @return the {@link HHNetwork} adjacency
+	 */
+	public static HHNetwork of( final Matrix W )
+	{
+		final int n = (int) W.getRowCount();
+		final int[] degree = new int[n];
+		int m = 0;
+		for( long[] x : W.availableCoordinates() )
+			if( x[0] != x[1] && W.getAsDouble( x ) > 0 )
+			{
+				degree[(int) x[0]]++;
+				degree[(int) x[1]]++;
+				m++;
+			}
+		final int[] offsets = new int[n + 1];
+		for( int i = 0; i < n; i++ )
+			offsets[i + 1] = offsets[i] + degree[i];
+
+		final int[] peers = new int[2 * m];
+		final double[] weights = new double[2 * m];
+		final int[] fill = Arrays.copyOf( offsets, n );
+		for( long[] x : W.availableCoordinates() )
+		{
+			if( x[0] == x[1] ) continue;
+			final double w = W.getAsDouble( x );
+			if( w <= 0 ) continue;
+			final int i = (int) x[0], j = (int) x[1];
+			peers[fill[i]] = j;
+			weights[fill[i]++] = w;
+			peers[fill[j]] = i;
+			weights[fill[j]++] = w;
+		}
+		for( int i = 0; i < n; i++ )
+			sortRow( peers, weights, offsets[i], offsets[i + 1] );
+		return new HHNetwork( offsets, peers, weights );
+	}
+
+	private static void sortRow( final int[] peers, final double[] weights,
+		final int from, final int to )
+	{
+		// insertion sort, as rows are short and typically nearly sorted
+		for( int k = from + 1; k < to; k++ )
+		{
+			final int p = peers[k];
+			final double w = weights[k];
+			int l = k - 1;
+			for( ; l >= from && peers[l] > p; l-- )
+			{
+				peers[l + 1] = peers[l];
+				weights[l + 1] = weights[l];
+			}
+			peers[l + 1] = p;
+			weights[l + 1] = w;
+		}
+	}
+
+	/** row i spans slots {@code [offsets[i], offsets[i+1])} */
+	final int[] offsets;
+
+	/** peer index per slot, or {@code null} if {@link #packed} */
+	private final int[] peers;
+
+	/** link weight per slot, or {@code null} if {@link #packed} */
+	private final double[] weights;
+
+	/** the packed peers and weights, or {@code null} */
+	private final HHPackedAdjacency packed;
+
+	/** active link weight per slot, or 0 if inactive */
+	final double[] active;
+
+	/** the number of peers per index, or {@code null} if static */
+	private final int[] degrees;
+
+	/** per index: whether rewired since {@link #clearRewired()} */
+	private final boolean[] rewired;
+
+	private int rewiredCount = 0;
+
+	/** the row per index, or {@code null} if equal */
+	private final int[] order;
+
+	/** the index per row, or {@code null} if equal */
+	private final int[] rank;
+
+	HHNetwork( final int[] offsets, final int[] peers, final double[] weights )
+	{
+		this( offsets, peers, weights, null, null, null, null );
+	}
+
+	private HHNetwork( final int[] offsets, final int[] peers,
+		final double[] weights, final HHPackedAdjacency packed,
+		final int[] degrees, final int[] order, final int[] rank )
+	{
+		this.offsets = offsets;
+		this.peers = peers;
+		this.weights = weights;
+		this.packed = packed;
+		this.active = new double[offsets[offsets.length - 1]];
+		this.degrees = degrees;
+		this.rewired = degrees == null ? null : new boolean[degrees.length];
+		this.order = order;
+		this.rank = rank;
+	}
+
+	/**
+	 * @param index an (internal) index
+	 * @param buffer a buffer of at least {@link #maxDegree()} length, to
+	 *            decode into if {@link #packed}
+	 * @return the peer indices of given index, at its slots minus
+	 *         {@link #base(int)}
+	 */
+	int[] peersAt( final int index, final int[] buffer )
+	{
+		if( this.packed == null ) return this.peers;
+		this.packed.decode( index, buffer );
+		return buffer;
+	}
+
+	/**
+	 * @param index an (internal) index
+	 * @return the offset of slots into {@link #peersAt(int, int[])}
+	 */
+	int base( final int index )
+	{
+		return this.packed == null ? 0 : this.offsets[index];
+	}
+
+	/**
+	 * @param s the slot
+	 * @return the link weight at slot s
+	 */
+	double weight( final int s )
+	{
+		return this.packed == null ? this.weights[s] : this.packed.weight( s );
+	}
+
+	/** @return the link weight per slot, decoded if {@link #packed} */
+	double[] weights()
+	{
+		if( this.packed == null ) return this.weights;
+		final double[] result = new double[slots()];
+		for( int s = 0; s < result.length; s++ )
+			result[s] = this.packed.weight( s );
+		return result;
+	}
+
+	/**
+	 * @return the maximum number of peers at any index, including any spare
+	 *         slots if {@link #isDynamic()}
+	 */
+	int maxDegree()
+	{
+		int result = 0;
+		for( int i = 0; i < size(); i++ )
+			result = Math.max( result, this.offsets[i + 1] - this.offsets[i] );
+		return result;
+	}
+
+	/**
+	 * @param index an (internal) index
+	 * @return the household row at given index
+	 */
+	int row( final int index )
+	{
+		return this.order == null ? index : this.order[index];
+	}
+
+	/**
+	 * @param row a household row
+	 * @return the (internal) index of given row
+	 */
+	int index( final int row )
+	{
+		return this.rank == null ? row : this.rank[row];
+	}
+
+	/**
+	 * @param index an (internal) index
+	 * @return the number of peers at given index
+	 */
+	int indexDegree( final int index )
+	{
+		return this.degrees == null
+				? this.offsets[index + 1] - this.offsets[index]
+				: this.degrees[index];
+	}
+
+	/**
+	 * @param index an (internal) index
+	 * @return the slot following the last peer at given index, i.e. its
+	 *         peers span slots {@code [offsets[index], end(index))}
+	 */
+	int end( final int index )
+	{
+		return this.degrees == null ? this.offsets[index + 1]
+				: this.offsets[index] + this.degrees[index];
+	}
+
+	/** @return the number of indices rewired since {@link #clearRewired()} */
+	int rewiredCount()
+	{
+		return this.rewiredCount;
+	}
+
+	/**
+	 * @param index an (internal) index
+	 * @return {@code true} iff its peers changed since {@link #clearRewired()}
+	 */
+	boolean isRewired( final int index )
+	{
+		return this.rewired != null && this.rewired[index];
+	}
+
+	/** forget which indices were rewired, e.g. once propagated */
+	void clearRewired()
+	{
+		if( this.rewiredCount == 0 ) return;
+		Arrays.fill( this.rewired, false );
+		this.rewiredCount = 0;
+	}
+
+	/** @return the number of rows */
+	public int size()
+	{
+		return this.offsets.length - 1;
+	}
+
+	/**
+	 * @return the number of (directed) slots, i.e. twice the link count plus
+	 *         any spare slots if {@link #isDynamic()}
+	 */
+	public int slots()
+	{
+		return this.active.length;
+	}
+
+	/**
+	 * @param i the household row
+	 * @return the number of peers of i
+	 */
+	public int degree( final int i )
+	{
+		return indexDegree( index( i ) );
+	}
+
+	/**
+	 * @param i the household row
+	 * @return the (ascending) peer rows of i, similar to
+	 *         {@link HHConnector#availablePeers}
+	 */
+	public long[] peers( final int i )
+	{
+		final int index = index( i ), base = base( index );
+		final int[] peers = peersAt( index, new int[indexDegree( index )] );
+		final long[] result = new long[indexDegree( index )];
+		for( int k = 0, s = this.offsets[index]; k < result.length; k++, s++ )
+			result[k] = row( peers[s - base] );
+		if( this.order != null ) Arrays.sort( result );
+		return result;
+	}
+
+	/**
+	 * @param i the household row
+	 * @param j the peer row
+	 * @return the slot of j in the row of i, or -1 if not linked
+	 */
+	public int slot( final int i, final int j )
+	{
+		return indexSlot( index( i ), index( j ) );
+	}
+
+	/**
+	 * @param a an (internal) index
+	 * @param b a peer (internal) index
+	 * @return the slot of b in the row of a, or -1 if not linked
+	 */
+	int indexSlot( final int a, final int b )
+	{
+		if( this.packed != null )
+		{
+			final int k = this.packed.find( a, b );
+			return k < 0 ? -1 : this.offsets[a] + k;
+		}
+		final int s = Arrays.binarySearch( this.peers, this.offsets[a],
+				end( a ), b );
+		return s < 0 ? -1 : s;
+	}
+
+	/**
+	 * @param i the household row
+	 * @param j the peer row
+	 * @return the (static) weight of the link between i and j, or 0 if none
+	 */
+	public double weight( final int i, final int j )
+	{
+		final int s = slot( i, j );
+		return s < 0 ? 0 : weight( s );
+	}
+
+	/**
+	 * @param s the slot
+	 * @return the peer row at slot s, or -1 if a spare slot
+	 * @throws IllegalStateException if {@link #pack() packed}
+	 */
+	public int peer( final int s )
+	{
+		if( this.packed != null )
+			throw new IllegalStateException( "Packed, use peers(i)" );
+		return this.peers[s] < 0 ? -1 : row( this.peers[s] );
+	}
+
+	/**
+	 * activate the link between i and j (in both directions) with its weight
+	 * 
+	 * @param i a household row
+	 * @param j a peer row
+	 */
+	public void activate( final int i, final int j )
+	{
+		final int s = slot( i, j ), t = slot( j, i );
+		if( s < 0 || t < 0 ) return;
+		this.active[s] = weight( s );
+		this.active[t] = weight( t );
+	}
+
+	/**
+	 * deactivate all links of i (in both directions)
+	 * 
+	 * @param i the household row
+	 */
+	public void deactivate( final int i )
+	{
+		final int a = index( i ), base = base( a );
+		final int[] peers = peersAt( a, new int[indexDegree( a )] );
+		for( int s = this.offsets[a], end = end( a ); s < end; s++ )
+		{
+			this.active[s] = 0;
+			final int t = indexSlot( peers[s - base], a );
+			if( t >= 0 ) this.active[t] = 0;
+		}
+	}
+
+	/**
+	 * greedily colour the (internal) indices so that no linked indices share a
+	 * colour, i.e. indices of the same colour may be updated concurrently
+	 * without reading each other's values
+	 * 
+	 * @param from the first index to colour, e.g. skipping attractors
+	 * @param colours the colour per index (out-parameter), -1 for indices
+	 *            before {@code from}
+	 * @return the number of colours used, at most the maximum degree + 1
+	 */
+	public int colour( final int from, final int[] colours )
+	{
+		final int maxDegree = maxDegree();
+		final int[] offsets = this.offsets, mark = new int[maxDegree + 1],
+				buffer = new int[maxDegree];
+		Arrays.fill( mark, -1 );
+		Arrays.fill( colours, 0, Math.min( from, colours.length ), -1 );
+		int result = 0;
+		for( int i = from; i < size(); i++ )
+		{
+			// mark colours of peers coloured so far
+			final int[] peers = peersAt( i, buffer );
+			final int base = base( i );
+			for( int s = offsets[i], end = end( i ); s < end; s++ )
+			{
+				final int j = peers[s - base];
+				if( j >= from && j < i ) mark[colours[j]] = i;
+			}
+			int c = 0;
+			while( mark[c] == i )
+				c++;
+			colours[i] = c;
+			result = Math.max( result, c + 1 );
+		}
+		return result;
+	}
+
+	/** deactivate all links */
+	public void deactivateAll()
+	{
+		Arrays.fill( this.active, 0 );
+	}
+
+	/**
+	 * @return a copy having its static peers and weights packed into a
+	 *         {@link HHPackedAdjacency}, with the same (active) links, or this
+	 *         {@link HHNetwork} if already packed
+	 */
+	public HHNetwork pack()
+	{
+		if( this.packed != null ) return this;
+		if( this.degrees != null )
+			throw new IllegalStateException( "Dynamic, can't pack" );
+		final HHNetwork result = new HHNetwork( this.offsets, null, null,
+				HHPackedAdjacency.of( this.offsets, this.peers, this.weights ),
+				null, this.order, this.rank );
+		System.arraycopy( this.active, 0, result.active, 0,
+				this.active.length );
+		return result;
+	}
+
+	/**
+	 * @return the number of bytes used for the static peers and weights
+	 */
+	public long bytes()
+	{
+		return 4L * this.offsets.length
+				+ (this.degrees == null ? 0 : 4L * this.degrees.length)
+				+ (this.packed != null ? this.packed.bytes()
+						: 12L * this.peers.length);
+	}
+
+	/**
+	 * @param from the first index to reserve spare slots for, e.g. skipping
+	 *            attractors
+	 * @param slack the number of spare slots per index, i.e. the number of
+	 *            peers it may gain by {@link #link(int, int, double)}
+	 * @return a dynamic copy having the same (active) links, or this
+	 *         {@link HHNetwork} if already dynamic
+	 */
+	public HHNetwork dynamic( final int from, final int slack )
+	{
+		if( this.degrees != null ) return this;
+		if( slack < 0 ) throw new IllegalArgumentException(
+				"Illegal slack: " + slack );
+		final int n = size();
+		final int[] offsets = new int[n + 1], degrees = new int[n];
+		for( int i = 0; i < n; i++ )
+		{
+			degrees[i] = indexDegree( i );
+			offsets[i + 1] = offsets[i] + degrees[i] + (i < from ? 0 : slack);
+		}
+		final int[] peers = new int[offsets[n]],
+				buffer = new int[maxDegree()];
+		final double[] weights = new double[offsets[n]];
+		Arrays.fill( peers, -1 );
+		final HHNetwork result = new HHNetwork( offsets, peers, weights, null,
+				degrees, this.order, this.rank );
+		for( int i = 0; i < n; i++ )
+		{
+			final int[] oldPeers = peersAt( i, buffer );
+			final int base = base( i );
+			int t = offsets[i];
+			for( int s = this.offsets[i]; s < end( i ); s++, t++ )
+			{
+				peers[t] = oldPeers[s - base];
+				weights[t] = weight( s );
+				result.active[t] = this.active[s];
+			}
+		}
+		return result;
+	}
+
+	/** @return {@code true} iff peers may be detached and (re)linked */
+	public boolean isDynamic()
+	{
+		return this.degrees != null;
+	}
+
+	/**
+	 * @param i the household row
+	 * @return the number of peers i may still gain, or 0 if static
+	 */
+	public int spare( final int i )
+	{
+		final int a = index( i );
+		return this.offsets[a + 1] - end( a );
+	}
+
+	private void checkDynamic()
+	{
+		if( this.degrees == null )
+			throw new IllegalStateException( "Static, use dynamic()" );
+	}
+
+	private void rewired( final int index )
+	{
+		if( this.rewired[index] ) return;
+		this.rewired[index] = true;
+		this.rewiredCount++;
+	}
+
+	/**
+	 * remove all links of i (in both directions), in O(degree) time per peer
+	 * 
+	 * @param i the household row
+	 * @return the former peer rows of i
+	 */
+	public long[] detach( final int i )
+	{
+		checkDynamic();
+		final long[] result = peers( i );
+		final int a = index( i );
+		for( int s = this.offsets[a], end = end( a ); s < end; s++ )
+		{
+			final int b = this.peers[s];
+			remove( b, indexSlot( b, a ) );
+			this.peers[s] = -1;
+			this.weights[s] = 0;
+			this.active[s] = 0;
+		}
+		this.degrees[a] = 0;
+		rewired( a );
+		return result;
+	}
+
+	/** remove slot s of index b, shifting its later peers down */
+	private void remove( final int b, final int s )
+	{
+		final int last = end( b ) - 1;
+		System.arraycopy( this.peers, s + 1, this.peers, s, last - s );
+		System.arraycopy( this.weights, s + 1, this.weights, s, last - s );
+		System.arraycopy( this.active, s + 1, this.active, s, last - s );
+		this.peers[last] = -1;
+		this.weights[last] = 0;
+		this.active[last] = 0;
+		this.degrees[b]--;
+		rewired( b );
+	}
+
+	/**
+	 * add an (inactive) link between i and j (in both directions), in
+	 * O(degree) time
+	 * 
+	 * @param i a household row
+	 * @param j a peer row
+	 * @param weight the (static) link weight
+	 * @return {@code true} iff linked, i.e. unless i equals j, these are
+	 *         already linked, or either has no {@link #spare(int)} slots
+	 */
+	public boolean link( final int i, final int j, final double weight )
+	{
+		checkDynamic();
+		if( i == j || spare( i ) == 0 || spare( j ) == 0 ) return false;
+		final int a = index( i ), b = index( j );
+		final int s = Arrays.binarySearch( this.peers, this.offsets[a],
+				end( a ), b );
+		if( s >= 0 ) return false;
+		insert( a, -s - 1, b, weight );
+		insert( b, -Arrays.binarySearch( this.peers, this.offsets[b],
+				end( b ), a ) - 1, a, weight );
+		return true;
+	}
+
+	/** insert peer b at slot s of index a, shifting its later peers up */
+	private void insert( final int a, final int s, final int b,
+		final double weight )
+	{
+		final int end = end( a );
+		System.arraycopy( this.peers, s, this.peers, s + 1, end - s );
+		System.arraycopy( this.weights, s, this.weights, s + 1, end - s );
+		System.arraycopy( this.active, s, this.active, s + 1, end - s );
+		this.peers[s] = b;
+		this.weights[s] = weight;
+		this.active[s] = 0;
+		this.degrees[a]++;
+		rewired( a );
+	}
+
+	/** @return the mean index distance between peers, i.e. their locality */
+	public double meanPeerGap()
+	{
+		final int[] buffer = new int[maxDegree()];
+		long sum = 0, count = 0;
+		for( int i = 0; i < size(); i++ )
+		{
+			final int[] peers = peersAt( i, buffer );
+			final int base = base( i );
+			for( int s = this.offsets[i]; s < end( i ); s++ )
+				sum += Math.abs( peers[s - base] - i );
+			count += indexDegree( i );
+		}
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * @param ordering the {@link Ordering} of the indices
+	 * @param from the first index to reorder, e.g. skipping attractors
+	 * @return this {@link HHNetwork} if {@link Ordering#NONE}, or a reordered
+	 *         (static) copy having the same rows and links, all inactive
+	 */
+	public HHNetwork reorder( final Ordering ordering, final int from )
+	{
+		if( ordering == Ordering.RCM ) return permute( cuthillMcKee( from ) );
+		return this;
+	}
+
+	/** @return the old index per new index, by reverse Cuthill-McKee */
+	private int[] cuthillMcKee( final int from )
+	{
+		final int n = size(), maxDegree = maxDegree();
+
+		// start each component at its lowest degree index
+		final int[] starts = new int[Math.max( 0, n - from )],
+				fill = new int[maxDegree + 2];
+		for( int i = from; i < n; i++ )
+			fill[indexDegree( i ) + 1]++;
+		for( int d = 1; d < fill.length; d++ )
+			fill[d] += fill[d - 1];
+		for( int i = from; i < n; i++ )
+			starts[fill[indexDegree( i )]++] = i;
+
+		final int[] result = new int[n];
+		for( int i = 0; i < from; i++ )
+			result[i] = i;
+		final boolean[] visited = new boolean[n];
+		final long[] queued = new long[maxDegree];
+		final int[] buffer = new int[maxDegree];
+		int head = from, tail = from;
+		for( int start : starts )
+		{
+			if( visited[start] ) continue;
+			visited[start] = true;
+			result[tail++] = start;
+			while( head < tail )
+			{
+				// enqueue unvisited peers by ascending degree
+				final int i = result[head++], base = base( i );
+				final int[] peers = peersAt( i, buffer );
+				int m = 0;
+				for( int s = this.offsets[i]; s < end( i ); s++ )
+				{
+					final int j = peers[s - base];
+					if( j < from || visited[j] ) continue;
+					visited[j] = true;
+					queued[m++] = (long) indexDegree( j ) << 32 | j;
+				}
+				Arrays.sort( queued, 0, m );
+				for( int k = 0; k < m; k++ )
+					result[tail++] = (int) queued[k];
+			}
+		}
+		for( int l = from, r = n - 1; l < r; l++, r-- )
+		{
+			final int tmp = result[l];
+			result[l] = result[r];
+			result[r] = tmp;
+		}
+		return result;
+	}
+
+	/** @return a copy having index p at (old) index {@code old[p]} */
+	private HHNetwork permute( final int[] old )
+	{
+		final int n = size();
+		final int[] position = new int[n], order = new int[n],
+				rank = new int[n], offsets = new int[n + 1];
+		for( int p = 0; p < n; p++ )
+		{
+			position[old[p]] = p;
+			order[p] = row( old[p] );
+			rank[order[p]] = p;
+			offsets[p + 1] = offsets[p] + indexDegree( old[p] );
+		}
+		final int[] peers = new int[offsets[n]],
+				buffer = new int[maxDegree()];
+		final double[] weights = new double[offsets[n]];
+		for( int p = 0; p < n; p++ )
+		{
+			final int[] oldPeers = peersAt( old[p], buffer );
+			final int base = base( old[p] );
+			int s = this.offsets[old[p]];
+			for( int k = offsets[p]; k < offsets[p + 1]; k++, s++ )
+			{
+				peers[k] = position[oldPeers[s - base]];
+				weights[k] = weight( s );
+			}
+			sortRow( peers, weights, offsets[p], offsets[p + 1] );
+		}
+		return new HHNetwork( offsets, peers, weights, null, null, order,
+				rank );
+	}
+}
@@ -0,0 +1,376 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.ujmp.core.Matrix;
+
+import io.coala.math.DecimalUtil;
+
+/**
+ * {@link HHNetworkMetrics} summarizes the (static) structure of a
+ * {@link HHNetwork} against its generation targets: the degree histogram,
+ * the local clustering coefficients (as targeted by the
+ * {@link HHConnector.WattsStrogatz} beta), counting the closed wedges (pairs
+ * of linked peers) per household or estimating these from a sample, the
+ * fraction of each attractor's links within that attractor (as targeted by
+ * {@link HHAttribute#SOCIAL_ASSORTATIVITY}), and the assortativity of
+ * {@link HHAttribute#CONFIDENCE} across links. Per attractor, only its
+ * within and total link counts are kept, i.e. O(attractors) rather than
+ * O(attractors&sup2;) memory per partition.
+ * <p>
+ * The households are scanned once, in degree-balanced {@link HHPartitions}
+ * processed in parallel, taking O(E + N &middot; wedges &middot; log(degree))
+ * time overall. Wedges are drawn by hashing the seed with the household row,
+ * so estimates do not depend on the partitioning or thread scheduling.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHNetworkMetrics
+{
+
+	/** the number of partitions per available processor */
+	private static final int PARTITIONS_PER_PROCESSOR = 4;
+
+	/**
+	 * @param network the {@link HHNetwork} adjacency
+	 * @param hhAttributes the household attributes {@link Matrix}, providing
+	 *            {@link HHAttribute#ATTRACTOR_REF} and
+	 *            {@link HHAttribute#CONFIDENCE}
+	 * @param attractorCount the number of (top) attractor rows
+	 * @param wedges the number of wedges to sample per household
+	 * @param seed the seed for sampling wedges
+	 * @return the {@link HHNetworkMetrics}
+	 */
+	public static HHNetworkMetrics of( final HHNetwork network,
+		final Matrix hhAttributes, final int attractorCount, final int wedges,
+		final long seed )
+	{
+		if( wedges < 1 ) throw new IllegalArgumentException(
+				"Illegal wedge count: " + wedges );
+		// copy the attribute columns, by (internal) index
+		final int n = network.size(), from = Math.min( attractorCount, n );
+		final int[] attractor = new int[n];
+		final double[] confidence = new double[n];
+		for( int i = 0; i < n; i++ )
+		{
+			final int row = network.row( i );
+			attractor[i] = hhAttributes.getAsInt( row,
+					HHAttribute.ATTRACTOR_REF.ordinal() );
+			confidence[i] = hhAttributes.getAsDouble( row,
+					HHAttribute.CONFIDENCE.ordinal() );
+		}
+		final HHPartitions partitions = HHPartitions.of( network, from,
+				PARTITIONS_PER_PROCESSOR
+						* Runtime.getRuntime().availableProcessors() );
+		final int maxDegree = network.maxDegree();
+		return IntStream.range( 0, partitions.count() ).parallel()
+				.mapToObj( p -> new HHNetworkMetrics( maxDegree,
+						attractorCount ).scan( network, partitions, p,
+								attractor, confidence, wedges, seed ) )
+				.reduce( HHNetworkMetrics::merge )
+				.orElseGet( () -> new HHNetworkMetrics( 0, attractorCount ) );
+	}
+
+	/** households per degree */
+	private long[] degrees;
+
+	/** per attractor: links (in both directions) within it */
+	private final long[] within;
+
+	/** per attractor: links (in both directions) of its households */
+	private final long[] links;
+
+	private long households = 0, wedgeHouseholds = 0;
+
+	/** sums of local clustering estimates, plain and weighted by wedges */
+	private double clustering = 0, wedgeClustering = 0, wedgeWeight = 0;
+
+	/** {@link HHAttribute#CONFIDENCE} sums across links (both directions) */
+	private double slots = 0, sumX = 0, sumXX = 0, sumXY = 0;
+
+	private HHNetworkMetrics( final int maxDegree, final int attractorCount )
+	{
+		this.degrees = new long[maxDegree + 1];
+		this.within = new long[attractorCount];
+		this.links = new long[attractorCount];
+	}
+
+	/** SplitMix64 finalizer, for hashing (seed, row, draw) to a draw */
+	private static long mix( long z )
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/** @return a uniform index in {@code [0,bound)} */
+	private static int draw( final long hash, final int bound )
+	{
+		return (int) ((hash >>> 33) * bound >>> 31);
+	}
+
+	private HHNetworkMetrics scan( final HHNetwork network,
+		final HHPartitions partitions, final int p, final int[] attractor,
+		final double[] confidence, final int wedges, final long seed )
+	{
+		final int[] buffer = new int[network.maxDegree()];
+		for( int k = partitions.start( p ), end = partitions
+				.end( p ); k < end; k++ )
+		{
+			final int i = partitions.row( k ),
+					degree = network.indexDegree( i ), base = network.base( i ),
+					first = network.offsets[i] - base;
+			final int[] peers = network.peersAt( i, buffer );
+			this.households++;
+			this.degrees[degree]++;
+			final int a = attractor[i];
+			final double x = confidence[i];
+			for( int s = first; s < first + degree; s++ )
+			{
+				final int j = peers[s], b = attractor[j];
+				if( a >= 0 && a < this.links.length && b >= 0
+						&& b < this.links.length )
+				{
+					this.links[a]++;
+					if( a == b ) this.within[a]++;
+				}
+				this.slots++;
+				this.sumX += x;
+				this.sumXX += x * x;
+				this.sumXY += x * confidence[j];
+			}
+			if( degree < 2 ) continue;
+
+			// count closed wedges (u,v) of distinct peers, or a sample
+			final double weight = degree * (degree - 1.) / 2;
+			int closed = 0, sampled = 0;
+			if( weight <= wedges )
+			{
+				for( int u = first; u < first + degree; u++ )
+					for( int v = u + 1; v < first + degree; v++, sampled++ )
+						if( network.indexSlot( peers[u], peers[v] ) >= 0 )
+							closed++;
+			} else
+			{
+				final long row = network.row( i );
+				for( ; sampled < wedges; sampled++ )
+				{
+					final long hash = mix(
+							seed + mix( row * wedges + sampled ) );
+					final int u = draw( hash, degree ),
+							v = (u + 1 + draw( mix( hash ), degree - 1 ))
+									% degree;
+					if( network.indexSlot( peers[first + u],
+							peers[first + v] ) >= 0 ) closed++;
+				}
+			}
+			final double local = (double) closed / sampled;
+			this.wedgeHouseholds++;
+			this.clustering += local;
+			this.wedgeClustering += local * weight;
+			this.wedgeWeight += weight;
+		}
+		return this;
+	}
+
+	private HHNetworkMetrics merge( final HHNetworkMetrics that )
+	{
+		if( that.degrees.length > this.degrees.length )
+			this.degrees = Arrays.copyOf( this.degrees, that.degrees.length );
+		for( int d = 0; d < that.degrees.length; d++ )
+			this.degrees[d] += that.degrees[d];
+		for( int a = 0; a < this.links.length; a++ )
+		{
+			this.within[a] += that.within[a];
+			this.links[a] += that.links[a];
+		}
+		this.households += that.households;
+		this.wedgeHouseholds += that.wedgeHouseholds;
+		this.clustering += that.clustering;
+		this.wedgeClustering += that.wedgeClustering;
+		this.wedgeWeight += that.wedgeWeight;
+		this.slots += that.slots;
+		this.sumX += that.sumX;
+		this.sumXX += that.sumXX;
+		this.sumXY += that.sumXY;
+		return this;
+	}
+
+	/** @return the number of households scanned, i.e. non-attractors */
+	public long households()
+	{
+		return this.households;
+	}
+
+	/**
+	 * @return the number of households per degree, up to the maximum degree
+	 */
+	public long[] degreeHistogram()
+	{
+		int max = this.degrees.length - 1;
+		while( max > 0 && this.degrees[max] == 0 )
+			max--;
+		return Arrays.copyOf( this.degrees, max + 1 );
+	}
+
+	/** @return the mean degree of households */
+	public double meanDegree()
+	{
+		return this.households == 0 ? 0 : this.slots / this.households;
+	}
+
+	/**
+	 * @return the (estimated) mean local clustering coefficient across
+	 *         households having two or more peers, as defined by Watts and
+	 *         Strogatz
+	 */
+	public double clustering()
+	{
+		return this.wedgeHouseholds == 0 ? 0
+				: this.clustering / this.wedgeHouseholds;
+	}
+
+	/**
+	 * @return the (estimated) global clustering coefficient, i.e. the
+	 *         fraction of closed wedges, or transitivity
+	 */
+	public double transitivity()
+	{
+		return this.wedgeWeight == 0 ? 0
+				: this.wedgeClustering / this.wedgeWeight;
+	}
+
+	/**
+	 * @param attractor the attractor (row) index
+	 * @return the number of links (counted in both directions) between
+	 *         households of given attractor
+	 */
+	public long within( final int attractor )
+	{
+		return this.within[attractor];
+	}
+
+	/**
+	 * @param attractor the attractor (row) index
+	 * @return the number of links (counted in both directions) of households
+	 *         of given attractor to those of any attractor
+	 */
+	public long links( final int attractor )
+	{
+		return this.links[attractor];
+	}
+
+	/**
+	 * @param attractor the attractor (row) index
+	 * @return the fraction of its households' links within the attractor,
+	 *         comparable to {@link HHAttribute#SOCIAL_ASSORTATIVITY}
+	 */
+	public double assortativity( final int attractor )
+	{
+		return this.links[attractor] == 0 ? 0
+				: (double) this.within[attractor] / this.links[attractor];
+	}
+
+	/**
+	 * @return the fraction of all links within attractors
+	 */
+	public double assortativity()
+	{
+		long within = 0, total = 0;
+		for( int a = 0; a < this.links.length; a++ )
+		{
+			within += this.within[a];
+			total += this.links[a];
+		}
+		return total == 0 ? 0 : (double) within / total;
+	}
+
+	/**
+	 * @return Newman's assortativity coefficient of the attractors, i.e.
+	 *         {@code (sum_a e_aa - sum_a a_a^2) / (1 - sum_a a_a^2)} where
+	 *         {@code e} is the normalized mixing matrix and {@code a} its row
+	 *         sums, being 1 if all links are within attractors, and 0 if
+	 *         links mix randomly
+	 */
+	public double attractorAssortativity()
+	{
+		long total = 0;
+		for( long m : this.links )
+			total += m;
+		if( total == 0 ) return 0;
+		double trace = 0, squares = 0;
+		for( int a = 0; a < this.links.length; a++ )
+		{
+			trace += (double) this.within[a] / total;
+			squares += ((double) this.links[a] / total)
+					* ((double) this.links[a] / total);
+		}
+		return squares >= 1 ? 1 : (trace - squares) / (1 - squares);
+	}
+
+	/**
+	 * @return the Pearson correlation of {@link HHAttribute#CONFIDENCE}
+	 *         between linked households, or 0 if it does not vary
+	 */
+	public double confidenceAssortativity()
+	{
+		if( this.slots == 0 ) return 0;
+		final double mean = this.sumX / this.slots,
+				variance = this.sumXX / this.slots - mean * mean;
+		return variance <= 0 ? 0
+				: (this.sumXY / this.slots - mean * mean) / variance;
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder result = new StringBuilder( "households: " )
+				.append( this.households ).append( ", mean degree: " )
+				.append( DecimalUtil.toScale( meanDegree(), 2 ) )
+				.append( ", degrees: " )
+				.append( Arrays.toString( degreeHistogram() ) )
+				.append( ", clustering: " )
+				.append( DecimalUtil.toScale( clustering(), 3 ) )
+				.append( ", transitivity: " )
+				.append( DecimalUtil.toScale( transitivity(), 3 ) )
+				.append( ", assortativity: " )
+				.append( DecimalUtil.toScale( assortativity(), 3 ) );
+		// summarize the attractors having links, rather than listing each
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for( int a = 0; a < this.links.length; a++ )
+			if( this.links[a] > 0 )
+			{
+				min = Math.min( min, assortativity( a ) );
+				max = Math.max( max, assortativity( a ) );
+			}
+		if( min <= max ) result.append( " [" )
+				.append( DecimalUtil.toScale( min, 3 ) ).append( ".." )
+				.append( DecimalUtil.toScale( max, 3 ) ).append( "]" );
+		return result.append( " (r=" )
+				.append( DecimalUtil.toScale( attractorAssortativity(), 3 ) )
+				.append( "), confidence assortativity: " )
+				.append( DecimalUtil.toScale( confidenceAssortativity(), 3 ) )
+				.toString();
+	}
+}
@@ -0,0 +1,255 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.util.Arrays;
+
+/**
+ * {@link HHPackedAdjacency} compresses the (static) peers and weights of a
+ * {@link HHNetwork} for national-scale populations. Each row's ascending
+ * peers are stored as variable-length (7 bits per byte) gaps, the first
+ * relative to the row itself (zigzag-encoded), typically taking one or two
+ * bytes per peer rather than four, especially after
+ * {@link HHNetwork#reorder reordering}. Each weight takes a 16-bit code:
+ * its index in a dictionary of (exact) distinct weights, which are few as
+ * these derive from the attractors' in- and out-peer weights, or otherwise
+ * its (lossy) half-precision value.
+ * <p>
+ * Rows are decoded sequentially, e.g. into a per-worker buffer before
+ * gathering the peer attitudes, see {@link #decode(int, int[])}.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHPackedAdjacency
+{
+
+	/** the maximum number of distinct weights coded by dictionary */
+	public static final int MAX_DICTIONARY = 1 << 16;
+
+	/**
+	 * @param offsets row i spans slots {@code [offsets[i], offsets[i+1])}
+	 * @param peers the (ascending per row) peer index per slot
+	 * @param weights the link weight per slot
+	 * @return the {@link HHPackedAdjacency}
+	 */
+	public static HHPackedAdjacency of( final int[] offsets, final int[] peers,
+		final double[] weights )
+	{
+		final int n = offsets.length - 1;
+		final int[] starts = new int[n + 1];
+		byte[] bytes = new byte[Math.max( 16, peers.length + n )];
+		int pos = 0;
+		for( int i = 0; i < n; i++ )
+		{
+			starts[i] = pos;
+			int prev = i;
+			for( int s = offsets[i]; s < offsets[i + 1]; s++ )
+			{
+				// worst case: 5 bytes per peer
+				if( bytes.length - pos < 5 )
+				{
+					final long grown = (long) bytes.length * 3 / 2 + 5;
+					if( grown > Integer.MAX_VALUE - 8 )
+						throw new IllegalStateException(
+								"Too many peers to pack: " + peers.length );
+					bytes = Arrays.copyOf( bytes, (int) grown );
+				}
+				final int gap = s == offsets[i] ? zigzag( peers[s] - i )
+						: peers[s] - prev;
+				pos = putVarint( bytes, pos, gap );
+				prev = peers[s];
+			}
+		}
+		starts[n] = pos;
+
+		final double[] distinct = distinct( weights );
+		final double[] dictionary = distinct.length <= MAX_DICTIONARY
+				? distinct : null;
+		final char[] codes = new char[weights.length];
+		for( int s = 0; s < weights.length; s++ )
+			codes[s] = dictionary == null ? toHalf( weights[s] )
+					: (char) Arrays.binarySearch( dictionary, weights[s] );
+		return new HHPackedAdjacency( starts, Arrays.copyOf( bytes, pos ),
+				codes, dictionary );
+	}
+
+	private static double[] distinct( final double[] values )
+	{
+		final double[] sorted = values.clone();
+		Arrays.sort( sorted );
+		int n = 0;
+		for( int k = 0; k < sorted.length; k++ )
+			if( n == 0 || sorted[k] != sorted[n - 1] ) sorted[n++] = sorted[k];
+		return Arrays.copyOf( sorted, n );
+	}
+
+	private static int zigzag( final int v )
+	{
+		return (v << 1) ^ (v >> 31);
+	}
+
+	private static int unzigzag( final int v )
+	{
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private static int putVarint( final byte[] bytes, int pos, int v )
+	{
+		while( (v & ~0x7F) != 0 )
+		{
+			bytes[pos++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		bytes[pos++] = (byte) v;
+		return pos;
+	}
+
+	/**
+	 * @param value a (finite) double value
+	 * @return the IEEE 754 half-precision bits, rounding to nearest
+	 */
+	static char toHalf( final double value )
+	{
+		final int bits = Float.floatToIntBits( (float) value ),
+				sign = (bits >>> 16) & 0x8000,
+				exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+		int mantissa = bits & 0x7FFFFF;
+		if( exponent >= 0x1F ) return (char) (sign | 0x7C00); // overflow
+		if( exponent <= 0 )
+		{
+			if( exponent < -10 ) return (char) sign; // underflow
+			// subnormal
+			mantissa |= 0x800000;
+			final int shift = 14 - exponent;
+			return (char) (sign | ((mantissa + (1 << (shift - 1))) >> shift));
+		}
+		// rounding may carry into the exponent, as intended
+		return (char) (sign
+				| ((exponent << 10) + ((mantissa + 0x1000) >> 13)));
+	}
+
+	/**
+	 * @param half the IEEE 754 half-precision bits
+	 * @return the respective double value
+	 */
+	static double fromHalf( final char half )
+	{
+		final int sign = (half & 0x8000) << 16, exponent = (half >>> 10) & 0x1F,
+				mantissa = half & 0x3FF;
+		if( exponent == 0 ) // zero or subnormal
+			return (sign == 0 ? 1 : -1) * mantissa * 0x1p-24;
+		if( exponent == 0x1F ) return Float.intBitsToFloat(
+				sign | 0x7F800000 | (mantissa << 13) );
+		return Float.intBitsToFloat(
+				sign | ((exponent - 15 + 127) << 23) | (mantissa << 13) );
+	}
+
+	/** row i spans bytes {@code [starts[i], starts[i+1])} */
+	private final int[] starts;
+
+	private final byte[] bytes;
+
+	/** per slot */
+	private final char[] codes;
+
+	/** the distinct weights, or {@code null} if coded as half-precision */
+	private final double[] dictionary;
+
+	private HHPackedAdjacency( final int[] starts, final byte[] bytes,
+		final char[] codes, final double[] dictionary )
+	{
+		this.starts = starts;
+		this.bytes = bytes;
+		this.codes = codes;
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * @param i the row (index)
+	 * @param peers the (out-parameter) buffer receiving the ascending peers
+	 *            of row i, having at least its degree in length
+	 * @return the number of peers decoded, i.e. the degree of i
+	 */
+	public int decode( final int i, final int[] peers )
+	{
+		final byte[] bytes = this.bytes;
+		int pos = this.starts[i], n = 0, prev = i;
+		for( final int end = this.starts[i + 1]; pos < end; )
+		{
+			int b = bytes[pos++], v = b & 0x7F;
+			for( int shift = 7; b < 0; shift += 7 )
+			{
+				b = bytes[pos++];
+				v |= (b & 0x7F) << shift;
+			}
+			prev = n == 0 ? i + unzigzag( v ) : prev + v;
+			peers[n++] = prev;
+		}
+		return n;
+	}
+
+	/**
+	 * @param i the row (index)
+	 * @param j the peer (index) to find
+	 * @return the position of j within the row of i, or -1 if not linked
+	 */
+	public int find( final int i, final int j )
+	{
+		final byte[] bytes = this.bytes;
+		int pos = this.starts[i], n = 0, prev = i;
+		for( final int end = this.starts[i + 1]; pos < end; n++ )
+		{
+			int b = bytes[pos++], v = b & 0x7F;
+			for( int shift = 7; b < 0; shift += 7 )
+			{
+				b = bytes[pos++];
+				v |= (b & 0x7F) << shift;
+			}
+			prev = n == 0 ? i + unzigzag( v ) : prev + v;
+			if( prev >= j ) return prev == j ? n : -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param s the slot
+	 * @return the (decoded) weight at slot s
+	 */
+	public double weight( final int s )
+	{
+		return this.dictionary == null ? fromHalf( this.codes[s] )
+				: this.dictionary[this.codes[s]];
+	}
+
+	/** @return {@code true} iff all weights are exact, i.e. by dictionary */
+	public boolean isExact()
+	{
+		return this.dictionary != null;
+	}
+
+	/** @return the number of bytes used for the peers and weights */
+	public long bytes()
+	{
+		return 4L * this.starts.length + this.bytes.length
+				+ 2L * this.codes.length
+				+ (this.dictionary == null ? 0 : 8L * this.dictionary.length);
+	}
+}
@@ -0,0 +1,132 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+/**
+ * {@link HHPartitions} splits a contiguous range of {@link HHNetwork}
+ * (internal) indices, here called rows, (or of positions in some row order)
+ * into consecutive partitions of (roughly) equal cost, where each row costs
+ * 1 plus its degree, as the per-household propagation work is proportional
+ * to its degree. Unlike index-based splitting of a parallel stream, this
+ * balances skewed (e.g. dissortative Poisson) degree distributions and
+ * (link-less) attractor rows across workers.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHPartitions
+{
+
+	/**
+	 * @param network the {@link HHNetwork} adjacency
+	 * @param from the first row to partition, e.g. skipping attractors
+	 * @param count the (maximum) number of partitions
+	 * @return the {@link HHPartitions} of rows {@code [from,network.size())}
+	 */
+	public static HHPartitions of( final HHNetwork network, final int from,
+		final int count )
+	{
+		return of( network, null, from, network.size(), count );
+	}
+
+	/**
+	 * @param network the {@link HHNetwork} adjacency
+	 * @param order the rows by position, or {@code null} for row order
+	 * @param from the first position to partition
+	 * @param to the position following the last position to partition
+	 * @param count the (maximum) number of partitions
+	 * @return the {@link HHPartitions} of positions {@code [from,to)}
+	 */
+	public static HHPartitions of( final HHNetwork network, final int[] order,
+		final int from, final int to, final int count )
+	{
+		if( from < 0 || from > to
+				|| to > (order == null ? network.size() : order.length) )
+			throw new IllegalArgumentException(
+					"Illegal range: [" + from + "," + to + ")" );
+		final int parts = Math.max( 1, Math.min( count, to - from ) );
+		long total = 0;
+		for( int k = from; k < to; k++ )
+			total += 1
+					+ network.indexDegree( order == null ? k : order[k] );
+		final int[] bounds = new int[parts + 1];
+		final long[] costs = new long[parts];
+		bounds[0] = from;
+		bounds[parts] = to;
+		long cost = 0;
+		int k = from;
+		for( int p = 0; p < parts; p++ )
+		{
+			final long target = total * (p + 1) / parts, begin = cost;
+			for( ; k < to && (cost < target || p == parts - 1); k++ )
+				cost += 1 + network
+						.indexDegree( order == null ? k : order[k] );
+			bounds[p + 1] = k;
+			costs[p] = cost - begin;
+		}
+		return new HHPartitions( order, bounds, costs );
+	}
+
+	/** the rows by position, or {@code null} for row order */
+	private final int[] order;
+
+	/** partition p spans positions {@code [bounds[p],bounds[p+1])} */
+	private final int[] bounds;
+
+	private final long[] costs;
+
+	private HHPartitions( final int[] order, final int[] bounds,
+		final long[] costs )
+	{
+		this.order = order;
+		this.bounds = bounds;
+		this.costs = costs;
+	}
+
+	/** @return the number of partitions */
+	public int count()
+	{
+		return this.bounds.length - 1;
+	}
+
+	/** @return the first position of partition p */
+	public int start( final int p )
+	{
+		return this.bounds[p];
+	}
+
+	/** @return the position following the last position of partition p */
+	public int end( final int p )
+	{
+		return this.bounds[p + 1];
+	}
+
+	/** @return the row at given position */
+	public int row( final int position )
+	{
+		return this.order == null ? position : this.order[position];
+	}
+
+	/** @return the cost of partition p, i.e. its rows plus their degrees */
+	public long cost( final int p )
+	{
+		return this.costs[p];
+	}
+}
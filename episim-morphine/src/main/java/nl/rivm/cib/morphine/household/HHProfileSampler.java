@@ -0,0 +1,203 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.coala.math.WeightedValue;
+import io.coala.random.PseudoRandom;
+import nl.rivm.cib.morphine.json.HesitancyProfileJson;
+import nl.rivm.cib.morphine.json.HesitancyProfileJson.HesitancyDimension;
+import nl.rivm.cib.util.AliasTable;
+
+/**
+ * {@link HHProfileSampler} compiles the weighted {@link HesitancyProfileJson}
+ * profiles into an {@link AliasTable} per {@link HesitancyProfileJson.Category}
+ * and their (covariate) initial attitude sample into primitive columns, so
+ * population generators can draw a profile and its initial
+ * {@link HHAttribute#CONFIDENCE} and {@link HHAttribute#COMPLACENCY} values
+ * without hashing {@link io.coala.math.Tuple} keys or allocating maps
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHProfileSampler
+{
+	/** out-parameter offset of the drawn {@link HHAttribute#CONFIDENCE} */
+	public static final int CONFIDENCE = 0;
+
+	/** out-parameter offset of the drawn {@link HHAttribute#COMPLACENCY} */
+	public static final int COMPLACENCY = 1;
+
+	/** number of {@link HesitancyProfileJson.Category} combinations */
+	public static final int CATEGORY_COUNT = 4;
+
+	/**
+	 * @param religious the {@link HesitancyProfileJson#religious} persuasion
+	 * @param alternative the {@link HesitancyProfileJson#alternative}
+	 *            persuasion
+	 * @return the category index in {@code [0,}{@link #CATEGORY_COUNT}{@code )}
+	 */
+	public static int categoryIndex( final boolean religious,
+		final boolean alternative )
+	{
+		return (religious ? 2 : 0) + (alternative ? 1 : 0);
+	}
+
+	public static int categoryIndex( final HesitancyProfileJson.Category cat )
+	{
+		return categoryIndex( cat.religious(), cat.alternative() );
+	}
+
+	/**
+	 * @param profiles the weighted {@link HesitancyProfileJson} profiles
+	 * @param sample the initial attitude sample (rows) referenced (by column)
+	 *            from {@link HesitancyProfileJson#indices}
+	 * @param rng the {@link PseudoRandom} stream to draw from
+	 * @return a {@link HHProfileSampler}
+	 */
+	public static HHProfileSampler of(
+		final Iterable<WeightedValue<HesitancyProfileJson>> profiles,
+		final BigDecimal[][] sample, final PseudoRandom rng )
+	{
+		final List<HesitancyProfileJson> all = new ArrayList<>();
+		final List<List<Integer>> members = new ArrayList<>();
+		final List<List<Double>> weights = new ArrayList<>();
+		for( int c = 0; c < CATEGORY_COUNT; c++ )
+		{
+			members.add( new ArrayList<>() );
+			weights.add( new ArrayList<>() );
+		}
+		for( WeightedValue<HesitancyProfileJson> wv : profiles )
+		{
+			final int c = categoryIndex( wv.getValue().religious,
+					wv.getValue().alternative );
+			members.get( c ).add( all.size() );
+			weights.get( c ).add( wv.getWeight().doubleValue() );
+			all.add( wv.getValue() );
+		}
+
+		final AliasTable[] tables = new AliasTable[CATEGORY_COUNT];
+		final int[][] categoryProfiles = new int[CATEGORY_COUNT][];
+		for( int c = 0; c < CATEGORY_COUNT; c++ )
+		{
+			categoryProfiles[c] = members.get( c ).stream()
+					.mapToInt( Integer::intValue ).toArray();
+			if( categoryProfiles[c].length > 0 ) tables[c] = AliasTable.of(
+					weights.get( c ).stream().mapToDouble( Double::doubleValue )
+							.toArray() );
+		}
+
+		final int cols = sample.length == 0 ? 0 : sample[0].length;
+		final double[] values = new double[sample.length * cols];
+		for( int row = 0; row < sample.length; row++ )
+			for( int col = 0; col < cols; col++ )
+				values[row * cols + col] = sample[row][col].doubleValue();
+
+		final int[] confCols = new int[all.size()],
+				compCols = new int[all.size()];
+		for( int p = 0; p < all.size(); p++ )
+		{
+			confCols[p] = all.get( p ).indices
+					.get( HesitancyDimension.confidence ) - 1;
+			compCols[p] = all.get( p ).indices
+					.get( HesitancyDimension.complacency ) - 1;
+		}
+		return new HHProfileSampler(
+				all.toArray( new HesitancyProfileJson[all.size()] ), tables,
+				categoryProfiles, values, sample.length, cols, confCols,
+				compCols, rng );
+	}
+
+	private final HesitancyProfileJson[] profiles;
+
+	private final AliasTable[] tables;
+
+	private final int[][] categoryProfiles;
+
+	/** the initial attitude sample, flattened row-major */
+	private final double[] sample;
+
+	private final int sampleRows;
+
+	private final int sampleCols;
+
+	private final int[] confidenceCols;
+
+	private final int[] complacencyCols;
+
+	private final PseudoRandom rng;
+
+	private HHProfileSampler( final HesitancyProfileJson[] profiles,
+		final AliasTable[] tables, final int[][] categoryProfiles,
+		final double[] sample, final int sampleRows, final int sampleCols,
+		final int[] confidenceCols, final int[] complacencyCols,
+		final PseudoRandom rng )
+	{
+		this.profiles = profiles;
+		this.tables = tables;
+		this.categoryProfiles = categoryProfiles;
+		this.sample = sample;
+		this.sampleRows = sampleRows;
+		this.sampleCols = sampleCols;
+		this.confidenceCols = confidenceCols;
+		this.complacencyCols = complacencyCols;
+		this.rng = rng;
+	}
+
+	/**
+	 * @param category the category index, see {@link #categoryIndex}
+	 * @return a profile index drawn by its relative weight within the category
+	 */
+	public int drawProfile( final int category )
+	{
+		final AliasTable table = this.tables[category];
+		if( table == null ) throw new IllegalArgumentException(
+				"No hesitancy profiles for category: " + category );
+		return this.categoryProfiles[category][table.draw( this.rng )];
+	}
+
+	/**
+	 * @param index a profile index, e.g. from {@link #drawProfile}
+	 * @return the respective {@link HesitancyProfileJson}
+	 */
+	public HesitancyProfileJson profile( final int index )
+	{
+		return this.profiles[index];
+	}
+
+	/**
+	 * draw an initial attitude for given profile from the sample
+	 * 
+	 * @param profile the profile index, e.g. from {@link #drawProfile}
+	 * @param out the out-parameter receiving the drawn values at offsets
+	 *            {@link #CONFIDENCE} and {@link #COMPLACENCY}
+	 */
+	public void drawAttitude( final int profile, final double[] out )
+	{
+		final int offset = this.rng.nextInt( this.sampleRows )
+				* this.sampleCols;
+		out[CONFIDENCE] = this.sample[offset + this.confidenceCols[profile]];
+		out[COMPLACENCY] = this.sample[offset
+				+ this.complacencyCols[profile]];
+	}
+}
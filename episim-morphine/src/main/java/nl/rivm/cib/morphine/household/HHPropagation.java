@@ -0,0 +1,895 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import org.apache.logging.log4j.Logger;
+import org.ujmp.core.Matrix;
+
+import io.coala.log.LogUtil;
+import io.coala.math.DecimalUtil;
+
+/**
+ * {@link HHPropagation} propagates {@link HHAttribute#CONFIDENCE} and
+ * {@link HHAttribute#COMPLACENCY} across the active links of a
+ * {@link HHNetwork}, like
+ * {@link HHAttitudePropagator#propagate(Matrix, Matrix)} but on primitive
+ * (columnar) copies of the household attributes. Given a positive
+ * {@code epsilon}, it propagates incrementally: a household is only
+ * recomputed if its own attitude, its calculation level, its attractor, any of
+ * its active links or any of its active peers' attitudes changed by more than
+ * {@code epsilon} since the previous round. To bound the resulting drift, all
+ * households may be recomputed every {@code fullRounds} rounds.
+ * <p>
+ * Households are recomputed in degree-balanced {@link HHPartitions} on a
+ * dedicated {@link ForkJoinPool}, each partition accumulating its own
+ * progress which is merged (and logged) after the round completes. Link
+ * appreciations are filtered via a precompiled {@link HHAppreciationTable},
+ * and accumulated by the {@link Kernel} of the {@link HHAttitudePropagator}.
+ * <p>
+ * By default, all households are updated synchronously ({@link
+ * Schedule#JACOBI}) from the previous round's attitudes. Alternatively
+ * ({@link Schedule#GAUSS_SEIDEL}), households are updated in place, colour by
+ * colour, so households of later colours already see the updates of their
+ * peers of earlier colours in the same round. As linked households never
+ * share a colour, each colour is still updated in parallel deterministically.
+ * <p>
+ * The primitive columns follow the (internal) {@link HHNetwork} indices, e.g.
+ * as {@link HHNetwork#reorder reordered} for locality, mapping these back to
+ * household rows only when loading and writing the attributes. If the
+ * network is {@link HHNetwork#isDynamic() dynamic}, households rewired since
+ * the previous round are recomputed (with their peers), and the partitions
+ * (and colours) rebuilt.
+ * <p>
+ * The worker pool is shut down on {@link #close()}.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHPropagation implements Closeable
+{
+	/** */
+	private static final Logger LOG = LogUtil.getLogger( HHPropagation.class );
+
+	/** visits households fed by their peers in some propagation round */
+	@FunctionalInterface
+	public interface Visitor
+	{
+		/**
+		 * @param i the household row
+		 * @param feeds the number of (active) peers feeding the household
+		 * @param updated whether the household's attitude was recomputed
+		 */
+		void visit( int i, int feeds, boolean updated );
+	}
+
+	/**
+	 * {@link Convergence} reports the absolute attitude changes of some
+	 * propagation round, i.e. the largest of a household's
+	 * {@link HHAttribute#CONFIDENCE} and {@link HHAttribute#COMPLACENCY}
+	 * changes, aggregated per attractor
+	 */
+	public static class Convergence
+	{
+		private final int round;
+
+		private final double[] max, mean;
+
+		Convergence( final int round, final double[] max, final double[] mean )
+		{
+			this.round = round;
+			this.max = max;
+			this.mean = mean;
+		}
+
+		/** @return the propagation round, starting at 1 */
+		public int round()
+		{
+			return this.round;
+		}
+
+		/** @return the number of attractors */
+		public int attractorCount()
+		{
+			return this.max.length;
+		}
+
+		/** @return the maximum absolute change across all households */
+		public double max()
+		{
+			double result = 0;
+			for( double m : this.max )
+				result = Math.max( result, m );
+			return result;
+		}
+
+		/**
+		 * @param attractor the attractor (row) index
+		 * @return the maximum absolute change across its households
+		 */
+		public double max( final int attractor )
+		{
+			return this.max[attractor];
+		}
+
+		/**
+		 * @param attractor the attractor (row) index
+		 * @return the mean absolute change across its households
+		 */
+		public double mean( final int attractor )
+		{
+			return this.mean[attractor];
+		}
+
+		@Override
+		public String toString()
+		{
+			final StringBuilder result = new StringBuilder( "round " )
+					.append( this.round ).append( ':' );
+			for( int a = 0; a < this.max.length; a++ )
+				result.append( " #" ).append( a ).append( "[max=" )
+						.append( DecimalUtil.toScale( this.max[a], 6 ) )
+						.append( ",mean=" )
+						.append( DecimalUtil.toScale( this.mean[a], 6 ) )
+						.append( ']' );
+			return result.toString();
+		}
+	}
+
+	/** {@link Schedule} determines which peer attitudes a household sees */
+	public enum Schedule
+	{
+		/** synchronous: all see their peers' attitudes of the previous round */
+		JACOBI,
+
+		/**
+		 * asynchronous, in colour order: households see their peers' updates
+		 * of earlier colours in the same round
+		 */
+		GAUSS_SEIDEL;
+	}
+
+	/** the number of partitions per worker, leaving slack for work-stealing */
+	private static final int PARTITIONS_PER_WORKER = 4;
+
+	/**
+	 * @param network the {@link HHNetwork} adjacency
+	 * @param attractorCount the number of (top) attractor rows
+	 * @param epsilon the minimum change to trigger recomputation of peers, or
+	 *            0 to recompute all households every round
+	 * @param fullRounds the number of rounds between full recomputations, or
+	 *            0 for never
+	 * @return a {@link HHPropagation} using all available processors
+	 */
+	public static HHPropagation of( final HHNetwork network,
+		final int attractorCount, final double epsilon, final int fullRounds )
+	{
+		return of( network, attractorCount, epsilon, fullRounds, 0 );
+	}
+
+	/**
+	 * @param network the {@link HHNetwork} adjacency
+	 * @param attractorCount the number of (top) attractor rows
+	 * @param epsilon the minimum change to trigger recomputation of peers, or
+	 *            0 to recompute all households every round
+	 * @param fullRounds the number of rounds between full recomputations, or
+	 *            0 for never
+	 * @param parallelism the number of worker threads, or 0 for all available
+	 *            processors
+	 * @return a synchronous ({@link Schedule#JACOBI}) {@link HHPropagation}
+	 */
+	public static HHPropagation of( final HHNetwork network,
+		final int attractorCount, final double epsilon, final int fullRounds,
+		final int parallelism )
+	{
+		return of( network, attractorCount, epsilon, fullRounds, parallelism,
+				Schedule.JACOBI );
+	}
+
+	/**
+	 * @param network the {@link HHNetwork} adjacency
+	 * @param attractorCount the number of (top) attractor rows
+	 * @param epsilon the minimum change to trigger recomputation of peers, or
+	 *            0 to recompute all households every round
+	 * @param fullRounds the number of rounds between full recomputations, or
+	 *            0 for never
+	 * @param parallelism the number of worker threads, or 0 for all available
+	 *            processors
+	 * @param schedule the update {@link Schedule}
+	 * @return a {@link HHPropagation}
+	 */
+	public static HHPropagation of( final HHNetwork network,
+		final int attractorCount, final double epsilon, final int fullRounds,
+		final int parallelism, final Schedule schedule )
+	{
+		if( epsilon < 0 ) throw new IllegalArgumentException(
+				"Illegal epsilon: " + epsilon );
+		if( parallelism < 0 ) throw new IllegalArgumentException(
+				"Illegal parallelism: " + parallelism );
+		return new HHPropagation( network, attractorCount, epsilon,
+				fullRounds, parallelism > 0 ? parallelism
+						: Runtime.getRuntime().availableProcessors(),
+				Objects.requireNonNull( schedule, "schedule null" ) );
+	}
+
+	/**
+	 * {@link Kernel} selects how a household's weighted average over its
+	 * active peers is accumulated
+	 */
+	public enum Kernel
+	{
+		/** a single multiply-accumulate pass over the adjacency */
+		SCALAR,
+
+		/**
+		 * gathers the active peers' (filtered) weights and attitudes into
+		 * contiguous blocks, then accumulates these in {@link #LANES}
+		 * independent lanes, allowing the JIT to pipeline (or vectorize) the
+		 * arithmetic; its sums may differ from {@link #SCALAR} by rounding
+		 */
+		LANES;
+
+		/** the number of independent accumulator lanes */
+		public static final int WIDTH = 4;
+	}
+
+	/** {@link Tally} accumulates the progress of a single partition */
+	private static class Tally
+	{
+		int count, updated;
+
+		/** per attractor: the first updated row, or -1 */
+		final int[] first;
+
+		/** gathered (filtered) weights and attitudes for {@link Kernel#LANES} */
+		final double[] weight, confidence, complacency;
+
+		/** decoded peers of a {@link HHNetwork#pack() packed} network */
+		final int[] peers;
+
+		Tally( final int attractorCount, final int maxDegree )
+		{
+			this.first = new int[attractorCount];
+			this.peers = new int[maxDegree];
+			this.weight = new double[maxDegree];
+			this.confidence = new double[maxDegree];
+			this.complacency = new double[maxDegree];
+		}
+
+		void reset()
+		{
+			this.count = 0;
+			this.updated = 0;
+			Arrays.fill( this.first, -1 );
+		}
+	}
+
+	/** {@link Fork} recursively splits a range of partitions */
+	private static class Fork extends RecursiveAction
+	{
+		/** */
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+
+		private final IntConsumer task;
+
+		Fork( final int from, final int to, final IntConsumer task )
+		{
+			this.from = from;
+			this.to = to;
+			this.task = task;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if( this.to - this.from < 2 )
+			{
+				for( int p = this.from; p < this.to; p++ )
+					this.task.accept( p );
+				return;
+			}
+			final int mid = (this.from + this.to) >>> 1;
+			invokeAll( new Fork( this.from, mid, this.task ),
+					new Fork( mid, this.to, this.task ) );
+		}
+	}
+
+	private final HHNetwork network;
+
+	private final int rows;
+
+	private final int attractorCount;
+
+	private final double epsilon;
+
+	private final int fullRounds;
+
+	private final ForkJoinPool pool;
+
+	private final Schedule schedule;
+
+	/** per colour (just one if {@link Schedule#JACOBI}) */
+	private HHPartitions[] partitions;
+
+	private final Tally[] tallies;
+
+	private int round = 0;
+
+	/** the filtered appreciations of the current propagator */
+	private HHAppreciationTable table = null;
+
+	/** the {@link Kernel} of the current propagator */
+	private Kernel kernel = Kernel.SCALAR;
+
+	/** per slot: the {@link HHAppreciationTable} column of its weight */
+	private final int[] slotAppreciation;
+
+	/** per row: the {@link HHAppreciationTable} row of its calculation */
+	private final int[] level;
+
+	/** {@link Inputs} holds the input columns of some round */
+	private static class Inputs
+	{
+		/** per row */
+		final double[] confidence, complacency, calculation;
+
+		/** per row */
+		final int[] attractor;
+
+		/** per attractor */
+		final double[] selfMultiplier, attractorMultiplier;
+
+		Inputs( final int rows, final int attractorCount )
+		{
+			this.confidence = new double[rows];
+			this.complacency = new double[rows];
+			this.calculation = new double[rows];
+			this.attractor = new int[rows];
+			this.selfMultiplier = new double[attractorCount];
+			this.attractorMultiplier = new double[attractorCount];
+		}
+	}
+
+	/**
+	 * the current (front) and previous (back) round's inputs, swapped rather
+	 * than copied each round
+	 */
+	private Inputs front, back;
+
+	/** recomputed attitude columns */
+	private final double[] nextConfidence, nextComplacency;
+
+	/** the attitude columns read from peers, depending on the schedule */
+	private double[] peerConfidence, peerComplacency;
+
+	/** the previous round's active links */
+	private final double[] lastActive;
+
+	/** rows with inputs changed since the previous round */
+	private final boolean[] moved;
+
+	/** per row: the number of active peers feeding it this round */
+	private final int[] feeds;
+
+	/** per row: whether its attitude was recomputed this round */
+	private final boolean[] updated;
+
+	private HHPropagation( final HHNetwork network, final int attractorCount,
+		final double epsilon, final int fullRounds, final int parallelism,
+		final Schedule schedule )
+	{
+		this.network = network;
+		this.rows = network.size();
+		this.attractorCount = attractorCount;
+		this.epsilon = epsilon;
+		this.fullRounds = fullRounds;
+		this.pool = new ForkJoinPool( parallelism );
+		this.schedule = schedule;
+		this.partitions = partition();
+		// dynamic networks may be repartitioned into more partitions
+		int tallies = network.isDynamic()
+				? parallelism * PARTITIONS_PER_WORKER : 0;
+		for( HHPartitions colour : this.partitions )
+			tallies = Math.max( tallies, colour.count() );
+		this.tallies = new Tally[tallies];
+		final int maxDegree = network.maxDegree();
+		for( int p = 0; p < this.tallies.length; p++ )
+			this.tallies[p] = new Tally( attractorCount, maxDegree );
+		this.front = new Inputs( this.rows, attractorCount );
+		this.back = new Inputs( this.rows, attractorCount );
+		this.nextConfidence = new double[this.rows];
+		this.nextComplacency = new double[this.rows];
+		this.lastActive = new double[network.slots()];
+		this.moved = new boolean[this.rows];
+		this.feeds = new int[this.rows];
+		this.updated = new boolean[this.rows];
+		this.slotAppreciation = new int[network.slots()];
+		this.level = new int[this.rows];
+	}
+
+	/** @return the {@link HHPartitions} per colour, given the schedule */
+	private HHPartitions[] partition()
+	{
+		final int from = Math.min( this.attractorCount, this.rows ),
+				count = parallelism() * PARTITIONS_PER_WORKER;
+		if( this.schedule == Schedule.JACOBI ) return new HHPartitions[] {
+				HHPartitions.of( this.network, from, count ) };
+
+		// order the households by colour, then partition each colour
+		final int[] colours = new int[this.rows];
+		final int[] bounds = new int[this.network.colour( from, colours )
+				+ 1];
+		for( int i = from; i < this.rows; i++ )
+			bounds[colours[i] + 1]++;
+		for( int c = 1; c < bounds.length; c++ )
+			bounds[c] += bounds[c - 1];
+		final int[] order = new int[this.rows - from],
+				fill = Arrays.copyOf( bounds, bounds.length - 1 );
+		for( int i = from; i < this.rows; i++ )
+			order[fill[colours[i]]++] = i;
+		final HHPartitions[] result = new HHPartitions[bounds.length - 1];
+		for( int c = 0; c < result.length; c++ )
+			result[c] = HHPartitions.of( this.network, order, bounds[c],
+					bounds[c + 1], count );
+		return result;
+	}
+
+	/**
+	 * recompute the appreciations of rewired households' slots and mark these
+	 * as moved, then rebuild the partitions (and colours)
+	 */
+	private void rewire()
+	{
+		final int[] offsets = this.network.offsets;
+		final double[] weights = this.network.weights();
+		for( int i = 0; i < this.rows; i++ )
+		{
+			if( !this.network.isRewired( i ) ) continue;
+			this.moved[i] = true;
+			for( int s = offsets[i], end = offsets[i + 1]; s < end; s++ )
+				this.slotAppreciation[s] = this.table
+						.appreciation( weights[s] );
+		}
+		LOG.trace( "Rewired {} households, repartitioning",
+				this.network.rewiredCount() );
+		this.network.clearRewired();
+		this.partitions = partition();
+	}
+
+	/** shuts down the worker threads */
+	@Override
+	public void close()
+	{
+		this.pool.shutdown();
+	}
+
+	/** @return the number of worker threads */
+	public int parallelism()
+	{
+		return this.pool.getParallelism();
+	}
+
+	/** @return the update {@link Schedule} */
+	public Schedule schedule()
+	{
+		return this.schedule;
+	}
+
+	/**
+	 * @return the number of colours, i.e. of sequential phases per round, or
+	 *         1 if {@link Schedule#JACOBI}
+	 */
+	public int colours()
+	{
+		return this.partitions.length;
+	}
+
+	/**
+	 * @param colour the colour, or 0 if {@link Schedule#JACOBI}
+	 * @return the degree-balanced {@link HHPartitions} of its households
+	 */
+	public HHPartitions partitions( final int colour )
+	{
+		return this.partitions[colour];
+	}
+
+	/** @return the number of rounds propagated so far */
+	public int round()
+	{
+		return this.round;
+	}
+
+	/**
+	 * propagate one round, updating changed {@link HHAttribute#CONFIDENCE} and
+	 * {@link HHAttribute#COMPLACENCY} values in {@code hhAttributes}
+	 * 
+	 * @param propagator the {@link HHAttitudePropagator} filtering appreciation
+	 * @param hhAttributes the household attributes {@link Matrix}
+	 * @param visitor the {@link Visitor} of households fed in this round
+	 * @return the round's {@link Convergence}
+	 */
+	public Convergence propagate( final HHAttitudePropagator propagator,
+		final Matrix hhAttributes, final Visitor visitor )
+	{
+		final boolean compile = this.table == null
+				|| !this.table.compiles( propagator );
+		if( compile )
+		{
+			final double[] weights = this.network.weights();
+			this.table = HHAppreciationTable.of( propagator, weights );
+			for( int s = 0; s < this.slotAppreciation.length; s++ )
+				this.slotAppreciation[s] = this.table
+						.appreciation( weights[s] );
+			this.kernel = propagator.kernel();
+		}
+		final boolean full = compile || this.round == 0 || this.epsilon == 0
+				|| (this.fullRounds > 0 && this.round % this.fullRounds == 0);
+		this.round++;
+		load( hhAttributes, full );
+		if( this.network.rewiredCount() > 0 ) rewire();
+
+		final long start = System.currentTimeMillis();
+		for( Tally tally : this.tallies )
+			tally.reset();
+		this.peerConfidence = this.front.confidence;
+		this.peerComplacency = this.front.complacency;
+		if( this.schedule == Schedule.GAUSS_SEIDEL )
+		{
+			// update in place, starting from this round's inputs
+			System.arraycopy( this.front.confidence, 0, this.nextConfidence,
+					0, this.rows );
+			System.arraycopy( this.front.complacency, 0, this.nextComplacency,
+					0, this.rows );
+			this.peerConfidence = this.nextConfidence;
+			this.peerComplacency = this.nextComplacency;
+		}
+		for( HHPartitions colour : this.partitions )
+			this.pool.invoke( new Fork( 0, colour.count(),
+					p -> propagate( full, colour, p ) ) );
+
+		// merge the partitions' tallies, logging one update per attractor
+		int hhCount = 0, hhUpdated = 0;
+		for( Tally tally : this.tallies )
+		{
+			hhCount += tally.count;
+			hhUpdated += tally.updated;
+		}
+		for( int a = 0; a < this.attractorCount; a++ )
+		{
+			int first = -1;
+			for( Tally tally : this.tallies )
+				if( tally.first[a] >= 0 && (first < 0 || tally.first[a] < first) )
+					first = tally.first[a];
+			if( first >= 0 ) logUpdate( first, a );
+		}
+		LOG.trace( "Propagated {} in {}x{} partitions, updated {} ({}ms)",
+				hhCount, this.partitions.length, this.tallies.length, hhUpdated,
+				System.currentTimeMillis() - start );
+
+		// update all attributes at once afterwards
+		final double[] max = new double[this.attractorCount],
+				mean = new double[this.attractorCount];
+		final int[] count = new int[this.attractorCount];
+		for( int i = this.attractorCount; i < this.rows; i++ )
+		{
+			final int attr = this.front.attractor[i];
+			if( attr >= 0 && attr < this.attractorCount )
+			{
+				final double change = !this.updated[i] ? 0
+						: Math.max(
+								Math.abs( this.nextConfidence[i]
+										- this.front.confidence[i] ),
+								Math.abs( this.nextComplacency[i]
+										- this.front.complacency[i] ) );
+				max[attr] = Math.max( max[attr], change );
+				mean[attr] += change;
+				count[attr]++;
+			}
+			// keep this round's inputs, to detect changes next round
+			final int row = this.network.row( i );
+			if( this.updated[i] )
+			{
+				hhAttributes.setAsBigDecimal(
+						BigDecimal.valueOf( this.nextConfidence[i] ), row,
+						HHAttribute.CONFIDENCE.ordinal() );
+				hhAttributes.setAsBigDecimal(
+						BigDecimal.valueOf( this.nextComplacency[i] ), row,
+						HHAttribute.COMPLACENCY.ordinal() );
+			}
+			if( this.feeds[i] > 0 )
+				visitor.visit( row, this.feeds[i], this.updated[i] );
+		}
+
+		// remember the active links, before these get reset for next round
+		System.arraycopy( this.network.active, 0, this.lastActive, 0,
+				this.lastActive.length );
+
+		for( int a = 0; a < this.attractorCount; a++ )
+			if( count[a] > 0 ) mean[a] /= count[a];
+		return new Convergence( this.round, max, mean );
+	}
+
+	/** propagate the households of partition p, tallying its progress */
+	private void propagate( final boolean full, final HHPartitions partitions,
+		final int p )
+	{
+		final Tally tally = this.tallies[p];
+		for( int k = partitions.start( p ), end = partitions
+				.end( p ); k < end; k++ )
+		{
+			final int i = partitions.row( k );
+			tally.count++;
+			final int attr = this.front.attractor[i];
+			if( attr == i || attr < 0 ) // skip attractor
+			{
+				this.feeds[i] = 0;
+				this.updated[i] = false;
+				continue;
+			}
+			if( full || isDirty( i, attr, tally ) )
+			{
+				if( this.kernel == Kernel.LANES )
+					computeLanes( i, attr, tally );
+				else
+					compute( i, attr, tally );
+				if( this.updated[i] )
+				{
+					tally.updated++;
+					if( attr < this.attractorCount && (tally.first[attr] < 0
+							|| i < tally.first[attr]) )
+						tally.first[attr] = i;
+				}
+			} else
+			{
+				this.updated[i] = false;
+				this.feeds[i] = activeDegree( i );
+			}
+		}
+	}
+
+	/**
+	 * @return the {@link HHAttitudeBatch} of households updated in the last
+	 *         round, to be called before propagating the next round
+	 */
+	public HHAttitudeBatch changes()
+	{
+		int n = 0;
+		for( int i = this.attractorCount; i < this.rows; i++ )
+			if( this.updated[i] ) n++;
+		final int[] indices = new int[n];
+		final double[] confidence = new double[n], complacency = new double[n];
+		// by ascending row, even if the network indices were reordered
+		for( int row = this.attractorCount, k = 0; k < n; row++ )
+		{
+			final int i = this.network.index( row );
+			if( this.updated[i] )
+			{
+				indices[k] = row;
+				confidence[k] = this.nextConfidence[i];
+				complacency[k++] = this.nextComplacency[i];
+			}
+		}
+		return new HHAttitudeBatch( this.round, indices, confidence,
+				complacency );
+	}
+
+	/**
+	 * copy the current inputs into the primitive (front) columns, swapping
+	 * these with the previous (back) ones for detecting changes
+	 */
+	private void load( final Matrix hhAttributes, final boolean full )
+	{
+		final Inputs in = this.back, last = this.front;
+		this.front = in;
+		this.back = last;
+
+		for( int i = 0; i < this.rows; i++ )
+		{
+			final int row = this.network.row( i );
+			in.confidence[i] = hhAttributes.getAsDouble( row,
+					HHAttribute.CONFIDENCE.ordinal() );
+			in.complacency[i] = hhAttributes.getAsDouble( row,
+					HHAttribute.COMPLACENCY.ordinal() );
+			in.calculation[i] = hhAttributes.getAsDouble( row,
+					HHAttribute.CALCULATION.ordinal() );
+			// attractor rows precede, and equal, their (unordered) indices
+			in.attractor[i] = hhAttributes.getAsInt( row,
+					HHAttribute.ATTRACTOR_REF.ordinal() );
+			this.level[i] = this.table.level( in.calculation[i] );
+		}
+		for( int a = 0; a < this.attractorCount; a++ )
+		{
+			in.selfMultiplier[a] = hhAttributes.getAsDouble( a,
+					HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal() );
+			in.attractorMultiplier[a] = hhAttributes.getAsDouble( a,
+					HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER.ordinal() );
+		}
+
+		if( full ) return;
+		for( int i = 0; i < this.rows; i++ )
+			this.moved[i] = Math.abs(
+					in.confidence[i] - last.confidence[i] ) > this.epsilon
+					|| Math.abs( in.complacency[i]
+							- last.complacency[i] ) > this.epsilon
+					|| in.calculation[i] != last.calculation[i]
+					|| in.attractor[i] != last.attractor[i];
+		for( int a = 0; a < this.attractorCount; a++ )
+			this.moved[a] |= in.selfMultiplier[a] != last.selfMultiplier[a]
+					|| in.attractorMultiplier[a] != last.attractorMultiplier[a];
+	}
+
+	/** @return {@code true} iff any input of household i changed */
+	private boolean isDirty( final int i, final int attr, final Tally tally )
+	{
+		if( this.moved[i] || this.moved[attr] ) return true;
+		final int[] offsets = this.network.offsets,
+				peers = this.network.peersAt( i, tally.peers );
+		final int base = this.network.base( i );
+		final double[] active = this.network.active;
+		for( int s = offsets[i], end = this.network.end( i ); s < end; s++ )
+			if( active[s] != this.lastActive[s]
+					|| (active[s] > 0 && this.moved[peers[s - base]]) )
+				return true;
+		return false;
+	}
+
+	private int activeDegree( final int i )
+	{
+		final int[] offsets = this.network.offsets;
+		final double[] active = this.network.active;
+		int result = 0;
+		for( int s = offsets[i], end = this.network.end( i ); s < end; s++ )
+			if( active[s] > 0 ) result++;
+		return result;
+	}
+
+	/**
+	 * recompute the weighted average attitude of household i, decoding its
+	 * peers into the buffer of given (partition's) {@link Tally} if packed
+	 */
+	private void compute( final int i, final int attr, final Tally tally )
+	{
+		final int[] offsets = this.network.offsets,
+				peers = this.network.peersAt( i, tally.peers );
+		final int base = this.network.base( i );
+		final double[] active = this.network.active;
+		final double calc = this.front.calculation[i];
+		final int level = this.level[i];
+		double sumW = 0, sumConf = 0, sumComp = 0;
+		int sumJ = 0;
+		for( int s = offsets[i], end = this.network.end( i ); s < end; s++ )
+		{
+			if( active[s] <= 0 ) continue;
+			sumJ++;
+			// get peer weight and apply calculation/filter function
+			final double w = this.table.filteredAppreciation( level,
+					this.slotAppreciation[s], active[s], calc );
+			final int j = peers[s - base];
+			sumW += w;
+			sumConf += w * this.peerConfidence[j];
+			sumComp += w * this.peerComplacency[j];
+		}
+		update( i, attr, sumJ, sumW, sumConf, sumComp );
+	}
+
+	/**
+	 * {@link Kernel#LANES} variant of {@link #compute(int, int, Tally)},
+	 * using the buffers of given (partition's) {@link Tally}
+	 */
+	private void computeLanes( final int i, final int attr, final Tally tally )
+	{
+		final int[] offsets = this.network.offsets,
+				peers = this.network.peersAt( i, tally.peers );
+		final int base = this.network.base( i );
+		final double[] active = this.network.active;
+		final double calc = this.front.calculation[i];
+		final int level = this.level[i];
+
+		// gather the active peers into contiguous blocks
+		final double[] w = tally.weight, c = tally.confidence,
+				p = tally.complacency;
+		int n = 0;
+		for( int s = offsets[i], end = this.network.end( i ); s < end; s++ )
+		{
+			if( active[s] <= 0 ) continue;
+			final int j = peers[s - base];
+			w[n] = this.table.filteredAppreciation( level,
+					this.slotAppreciation[s], active[s], calc );
+			c[n] = this.peerConfidence[j];
+			p[n] = this.peerComplacency[j];
+			n++;
+		}
+
+		// accumulate Kernel.WIDTH independent lanes, then the remainder
+		double w0 = 0, w1 = 0, w2 = 0, w3 = 0, c0 = 0, c1 = 0, c2 = 0,
+				c3 = 0, p0 = 0, p1 = 0, p2 = 0, p3 = 0;
+		final int last = n - Kernel.WIDTH;
+		int k = 0;
+		for( ; k <= last; k += Kernel.WIDTH )
+		{
+			w0 += w[k];
+			w1 += w[k + 1];
+			w2 += w[k + 2];
+			w3 += w[k + 3];
+			c0 += w[k] * c[k];
+			c1 += w[k + 1] * c[k + 1];
+			c2 += w[k + 2] * c[k + 2];
+			c3 += w[k + 3] * c[k + 3];
+			p0 += w[k] * p[k];
+			p1 += w[k + 1] * p[k + 1];
+			p2 += w[k + 2] * p[k + 2];
+			p3 += w[k + 3] * p[k + 3];
+		}
+		for( ; k < n; k++ )
+		{
+			w0 += w[k];
+			c0 += w[k] * c[k];
+			p0 += w[k] * p[k];
+		}
+		update( i, attr, n, (w0 + w1) + (w2 + w3), (c0 + c1) + (c2 + c3),
+				(p0 + p1) + (p2 + p3) );
+	}
+
+	/** set the weighted average of household i given its peers' sums */
+	private void update( final int i, final int attr, final int sumJ,
+		final double sumW, final double sumConf, final double sumComp )
+	{
+		this.feeds[i] = sumJ;
+		if( !(sumW > 0) )
+		{
+			this.updated[i] = false;
+			this.feeds[i] = 0; // not fed, as in the Matrix-based propagation
+			return;
+		}
+		// determine weights for self and attractor
+		final Inputs in = this.front;
+		final double selfW = sumW * in.selfMultiplier[attr],
+				attrW = sumW * in.attractorMultiplier[attr],
+				totalW = sumW + selfW + attrW;
+		this.nextConfidence[i] = (sumConf + selfW * in.confidence[i]
+				+ attrW * in.confidence[attr]) / totalW;
+		this.nextComplacency[i] = (sumComp + selfW * in.complacency[i]
+				+ attrW * in.complacency[attr]) / totalW;
+		this.updated[i] = true;
+	}
+
+	private void logUpdate( final int i, final int attr )
+	{
+		final int scale = 4;
+		LOG.debug( "hh #{} [{},{}] ---({}/{})--> [{},{}] -> [{},{}]",
+				this.network.row( i ),
+				DecimalUtil.toScale( this.front.confidence[i], scale ),
+				DecimalUtil.toScale( this.front.complacency[i], scale ),
+				this.feeds[i], this.network.indexDegree( i ),
+				DecimalUtil.toScale( this.nextConfidence[i], scale ),
+				DecimalUtil.toScale( this.nextComplacency[i], scale ),
+				DecimalUtil.toScale( this.front.confidence[attr], 1 ),
+				DecimalUtil.toScale( this.front.complacency[attr], 1 ) );
+	}
+}
@@ -23,6 +23,7 @@ import java.text.ParseException;
 import java.time.Duration;
 import java.time.Period;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -89,7 +90,7 @@ public interface HHScenarioConfigurable extends Proactive
 						.offset( now().toJava8( scheduler().offset() ) )
 						.iterate();
 				final Map<K, List<V>> series = item.series.entrySet()
-						.parallelStream()
+						.stream()
 						.collect( Collectors.toMap(
 								e -> JsonUtil.valueOf( '"' + e.getKey() + '"',
 										keyType ),
@@ -115,7 +116,7 @@ public interface HHScenarioConfigurable extends Proactive
 		final Period period, final Map<K, List<V>> series, final int index )
 	{
 		if( series.isEmpty() || sub.isDisposed() ) return;
-		final Map<K, V> values = series.entrySet().parallelStream()
+		final Map<K, V> values = series.entrySet().stream()
 				.filter( e -> index < e.getValue().size() )
 				.collect( Collectors.toMap( Entry::getKey,
 						e -> e.getValue().get( index ) ) );
@@ -124,6 +125,7 @@ public interface HHScenarioConfigurable extends Proactive
 		if( !values.isEmpty() )
 		{
 			sub.onNext( values );
+			if( period == null ) return; // only the first, as compiled
 			final ZonedDateTime now = now().toJava8( scheduler().offset() );
 			after( Duration.between( now, now.plus( period ) ).toMillis(),
 					TimeUnits.MILLIS )
@@ -131,4 +133,71 @@ public interface HHScenarioConfigurable extends Proactive
 									index + 1 ) );
 		}
 	}
+
+	/** {@link SignalVisitor} receives each compiled signal */
+	@FunctionalInterface
+	interface SignalVisitor<K>
+	{
+		/**
+		 * @param time the signal's (absolute) time
+		 * @param key the signal's key, e.g. some {@link HHAttribute}
+		 * @param value the signal's value
+		 */
+		void visit( ZonedDateTime time, K key, JsonNode value );
+	}
+
+	/**
+	 * compile the {@link SignalYaml} schedule(s) up to some horizon at once,
+	 * rather than {@link #iterate iterating} them as events, see
+	 * {@link HHSignalTimeline}
+	 * 
+	 * @param node the {@link SignalYaml} schedule (array)
+	 * @param keyType the series' key type
+	 * @param until the (exclusive) horizon, e.g. the end of the run
+	 * @param visitor the {@link SignalVisitor} receiving each signal, in order
+	 *            of each schedule's occurrences and series
+	 * @throws ParseException if an occurrence is not a valid (cron) expression
+	 */
+	default <K> void compile( final JsonNode node, final Class<K> keyType,
+		final ZonedDateTime until, final SignalVisitor<K> visitor )
+		throws ParseException
+	{
+		if( node.isArray() )
+		{
+			for( JsonNode schedule : node )
+				compile( schedule, keyType, until, visitor );
+			return;
+		}
+		final SignalYaml item = JsonUtil.valueOf( node, SignalYaml.class );
+		final List<K> keys = new ArrayList<>();
+		final List<JsonNode[]> series = new ArrayList<>();
+		item.series.forEach( ( key, values ) ->
+		{
+			keys.add( JsonUtil.valueOf( '"' + key + '"', keyType ) );
+			series.add( values.values()
+					.toArray( new JsonNode[values.size()] ) );
+		} );
+
+		final ZonedDateTime offset = scheduler().offset();
+		for( Instant t : Timing.of( item.occurrence )
+				.offset( now().toJava8( offset ) ).iterate() )
+		{
+			ZonedDateTime time = t.toJava8( offset );
+			if( !time.isBefore( until ) ) break;
+			// each series incidence continues while any values remain
+			for( int index = 0; time.isBefore( until ); index++ )
+			{
+				boolean any = false;
+				for( int k = 0; k < keys.size(); k++ )
+					if( index < series.get( k ).length )
+					{
+						visitor.visit( time, keys.get( k ),
+								series.get( k )[index] );
+						any = true;
+					}
+				if( !any || item.period == null ) break;
+				time = time.plus( item.period );
+			}
+		}
+	}
 }
@@ -0,0 +1,481 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+
+import org.apache.logging.log4j.Logger;
+import org.ujmp.core.Matrix;
+
+import io.coala.exception.Thrower;
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHShard} propagates the households of one shard of a
+ * {@link HHShardPlan}, e.g. in a separate process. It holds a local
+ * {@link HHNetwork} and attribute {@link Matrix} spanning the (replicated)
+ * attractors, its own households and the (ghost) households of other shards
+ * linked to these, as described by its {@link HHShardPlan.Part}. Before each
+ * (synchronous, {@link HHPropagation.Schedule#JACOBI}) round it sends its
+ * boundary attitudes to a {@link Hub} on the loopback interface, which
+ * returns all shards' boundary attitudes to update the ghosts. As ghosts are
+ * never recomputed locally, each own household sees exactly the inputs of a
+ * single-process round.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHShard implements Closeable
+{
+	/** */
+	private static final Logger LOG = LogUtil.getLogger( HHShard.class );
+
+	/** a sent frame's header: shard, round and number of households */
+	static final int HEADER_BYTES = 12;
+
+	/** a returned frame's header: round and number of households */
+	static final int REPLY_BYTES = 8;
+
+	/** the attitude bytes per household */
+	static final int VALUE_BYTES = 16;
+
+	/** the input columns of all own households (and attractors) */
+	private static final int[] INPUTS = { HHAttribute.CONFIDENCE.ordinal(),
+			HHAttribute.COMPLACENCY.ordinal(),
+			HHAttribute.CALCULATION.ordinal(),
+			HHAttribute.ATTRACTOR_REF.ordinal() };
+
+	/** the additional input columns of attractors */
+	private static final int[] ATTRACTOR_INPUTS = {
+			HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal(),
+			HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER.ordinal() };
+
+	/**
+	 * @param plan the {@link HHShardPlan}
+	 * @param shard the shard to propagate
+	 * @param hub the address of the {@link Hub}
+	 * @param epsilon see {@link HHPropagation#of}
+	 * @param fullRounds see {@link HHPropagation#of}
+	 * @param parallelism see {@link HHPropagation#of}
+	 * @return a {@link HHShard} connected to the {@link Hub}
+	 * @throws IOException if the {@link Hub} is unreachable
+	 */
+	public static HHShard of( final HHShardPlan plan, final int shard,
+		final InetSocketAddress hub, final double epsilon,
+		final int fullRounds, final int parallelism ) throws IOException
+	{
+		Objects.requireNonNull( plan, "plan null" );
+		return of( plan.part( shard ), hub, epsilon, fullRounds, parallelism );
+	}
+
+	/**
+	 * @param part the {@link HHShardPlan.Part} to propagate, e.g.
+	 *            {@link HHShardPlan.Part#read read} by a separate process
+	 * @param hub the address of the {@link Hub}
+	 * @param epsilon see {@link HHPropagation#of}
+	 * @param fullRounds see {@link HHPropagation#of}
+	 * @param parallelism see {@link HHPropagation#of}
+	 * @return a {@link HHShard} connected to the {@link Hub}
+	 * @throws IOException if the {@link Hub} is unreachable
+	 */
+	public static HHShard of( final HHShardPlan.Part part,
+		final InetSocketAddress hub, final double epsilon,
+		final int fullRounds, final int parallelism ) throws IOException
+	{
+		Objects.requireNonNull( part, "part null" );
+		final HHNetwork network = part.network();
+		final SocketChannel channel = SocketChannel.open( hub );
+		channel.setOption( StandardSocketOptions.TCP_NODELAY, true );
+		final ByteBuffer hello = ByteBuffer.allocate( 4 ).putInt( 0,
+				part.shard() );
+		while( hello.hasRemaining() )
+			channel.write( hello );
+		LOG.trace( "Shard {} of {}: {} households, {} ghosts, {} links",
+				part.shard(), part.shards(),
+				part.size() - part.attractorCount() - part.ghosts(),
+				part.ghosts(), part.slots() / 2 );
+		return new HHShard( part, network,
+				HHPropagation.of( network, part.attractorCount(), epsilon,
+						fullRounds, parallelism ),
+				channel );
+	}
+
+	private final HHShardPlan.Part part;
+
+	private final HHNetwork network;
+
+	private final HHPropagation propagation;
+
+	/** the local attributes, by local index */
+	private final Matrix attributes;
+
+	/** per local index: whether it is a (ghost) household of another shard */
+	private final boolean[] ghost;
+
+	private final SocketChannel channel;
+
+	private final ByteBuffer out, in;
+
+	private HHShard( final HHShardPlan.Part part, final HHNetwork network,
+		final HHPropagation propagation, final SocketChannel channel )
+	{
+		this.part = part;
+		this.network = network;
+		this.propagation = propagation;
+		this.channel = channel;
+		this.attributes = Matrix.Factory.zeros( part.size(),
+				HHAttribute.values().length );
+		for( int k = 0; k < part.attractorCount(); k++ )
+			this.attributes.setAsInt( k, k,
+					HHAttribute.ATTRACTOR_REF.ordinal() );
+		// ghosts are never recomputed locally
+		this.ghost = new boolean[part.size()];
+		for( int g = 0; g < part.ghosts(); g++ )
+		{
+			this.ghost[part.ghost( g )] = true;
+			this.attributes.setAsInt( -1, part.ghost( g ),
+					HHAttribute.ATTRACTOR_REF.ordinal() );
+		}
+		this.out = ByteBuffer.allocateDirect(
+				HEADER_BYTES + VALUE_BYTES * part.exports() );
+		this.in = ByteBuffer.allocateDirect(
+				REPLY_BYTES + VALUE_BYTES * part.boundary() );
+	}
+
+	/** @return the shard of the {@link HHShardPlan} */
+	public int shard()
+	{
+		return this.part.shard();
+	}
+
+	/** @return the {@link HHShardPlan.Part} */
+	public HHShardPlan.Part part()
+	{
+		return this.part;
+	}
+
+	/** @return the number of local indices */
+	public int size()
+	{
+		return this.part.size();
+	}
+
+	/**
+	 * @param k a local index
+	 * @return its (global) {@link HHNetwork} index
+	 */
+	public int index( final int k )
+	{
+		return this.part.index( k );
+	}
+
+	/**
+	 * @param k a local index
+	 * @return its (global) household attributes row
+	 */
+	public int row( final int k )
+	{
+		return this.part.row( k );
+	}
+
+	/** @return the local {@link HHNetwork}, e.g. to activate its links */
+	public HHNetwork network()
+	{
+		return this.network;
+	}
+
+	/**
+	 * @return the local attributes {@link Matrix}, by local index, e.g. to
+	 *         initialize the attractors and own households
+	 */
+	public Matrix attributes()
+	{
+		return this.attributes;
+	}
+
+	/** @return the number of rounds propagated so far */
+	public int round()
+	{
+		return this.propagation.round();
+	}
+
+	/**
+	 * copy the inputs of the attractors and own households, and the active
+	 * links, from the global attributes and {@link HHNetwork} (of this
+	 * process), failing if some own household moved to an attractor of
+	 * another shard. A separate process instead initializes its
+	 * {@link #attributes()} and {@link #network()} links directly.
+	 * 
+	 * @param hhAttributes the (global) household attributes {@link Matrix}
+	 * @param global the (global) {@link HHNetwork} that was planned
+	 */
+	public void load( final Matrix hhAttributes, final HHNetwork global )
+	{
+		final int from = this.part.attractorCount();
+		for( int k = 0; k < this.part.size(); k++ )
+		{
+			if( this.ghost[k] ) continue;
+			final int row = this.part.row( k );
+			for( int col : INPUTS )
+				this.attributes.setAsDouble(
+						hhAttributes.getAsDouble( row, col ), k, col );
+			if( k < from ) for( int col : ATTRACTOR_INPUTS )
+				this.attributes.setAsDouble(
+						hhAttributes.getAsDouble( row, col ), k, col );
+			else
+			{
+				final int attr = this.attributes.getAsInt( k,
+						HHAttribute.ATTRACTOR_REF.ordinal() );
+				if( attr >= 0 && attr < from && this.part
+						.attractorOwner( attr ) != this.part.shard() )
+					throw new IllegalStateException( "Household row " + row
+							+ " moved to attractor " + attr
+							+ " of another shard" );
+			}
+		}
+		for( int s = 0; s < this.network.active.length; s++ )
+			this.network.active[s] = global.active[this.part.slot( s )];
+	}
+
+	/**
+	 * exchange the boundary attitudes, then propagate one round
+	 * 
+	 * @param propagator the {@link HHAttitudePropagator} filtering appreciation
+	 * @param visitor the {@link HHPropagation.Visitor} of (local) households
+	 *            fed in this round
+	 * @return the round's {@link HHPropagation.Convergence} of own households
+	 */
+	public HHPropagation.Convergence propagate(
+		final HHAttitudePropagator propagator,
+		final HHPropagation.Visitor visitor )
+	{
+		try
+		{
+			exchange( this.propagation.round() + 1 );
+		} catch( final IOException e )
+		{
+			Thrower.rethrowUnchecked( e );
+		}
+		return this.propagation.propagate( propagator, this.attributes,
+				visitor );
+	}
+
+	/**
+	 * @return the {@link HHAttitudeBatch} of (local) households updated in the
+	 *         last round, to be called before propagating the next round
+	 */
+	public HHAttitudeBatch changes()
+	{
+		return this.propagation.changes();
+	}
+
+	private void exchange( final int round ) throws IOException
+	{
+		final long conf = HHAttribute.CONFIDENCE.ordinal(),
+				comp = HHAttribute.COMPLACENCY.ordinal();
+		this.out.clear();
+		this.out.putInt( this.part.shard() ).putInt( round )
+				.putInt( this.part.exports() );
+		for( int e = 0; e < this.part.exports(); e++ )
+		{
+			final int k = this.part.export( e );
+			this.out.putDouble( this.attributes.getAsDouble( k, conf ) )
+					.putDouble( this.attributes.getAsDouble( k, comp ) );
+		}
+		this.out.flip();
+		while( this.out.hasRemaining() )
+			this.channel.write( this.out );
+
+		this.in.clear();
+		if( !readFully( this.channel, this.in ) )
+			throw new EOFException( "Hub closed" );
+		final int r = this.in.getInt( 0 ), total = this.in.getInt( 4 );
+		if( r != round || total != this.part.boundary() )
+			throw new IllegalStateException( "Shard " + this.part.shard()
+					+ " expected round " + round + " of "
+					+ this.part.boundary() + ", got " + r + " of " + total );
+		for( int g = 0; g < this.part.ghosts(); g++ )
+		{
+			final int k = this.part.ghost( g ),
+					at = REPLY_BYTES + VALUE_BYTES * this.part.ghostSlot( g );
+			this.attributes.setAsDouble( this.in.getDouble( at ), k, conf );
+			this.attributes.setAsDouble( this.in.getDouble( at + 8 ), k,
+					comp );
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		this.propagation.close();
+		this.channel.close();
+	}
+
+	/**
+	 * @return {@code false} iff the channel reached its end before any bytes
+	 *         were read
+	 * @throws EOFException if the channel ended halfway
+	 */
+	static boolean readFully( final SocketChannel channel,
+		final ByteBuffer buffer ) throws IOException
+	{
+		final int start = buffer.position();
+		while( buffer.hasRemaining() )
+			if( channel.read( buffer ) < 0 )
+			{
+				if( buffer.position() == start ) return false;
+				throw new EOFException( "Truncated frame" );
+			}
+		return true;
+	}
+
+	/**
+	 * {@link Hub} gathers the boundary attitudes sent by all (connected)
+	 * {@link HHShard}s each round, in shard order, and returns these to each
+	 */
+	public static class Hub implements Runnable, Closeable
+	{
+		/**
+		 * @param shards the number of {@link HHShard}s to await
+		 * @return a {@link Hub} bound to some free loopback port
+		 * @throws IOException if binding failed
+		 */
+		public static Hub open( final int shards ) throws IOException
+		{
+			final ServerSocketChannel server = ServerSocketChannel.open();
+			server.bind( new InetSocketAddress(
+					InetAddress.getLoopbackAddress(), 0 ) );
+			return new Hub( server, shards );
+		}
+
+		private final ServerSocketChannel server;
+
+		private final SocketChannel[] shards;
+
+		private Hub( final ServerSocketChannel server, final int shards )
+		{
+			this.server = server;
+			this.shards = new SocketChannel[shards];
+		}
+
+		/** @return the bound (loopback) address */
+		public InetSocketAddress address() throws IOException
+		{
+			return (InetSocketAddress) this.server.getLocalAddress();
+		}
+
+		/** accept all shards, then relay their rounds until one closes */
+		@Override
+		public void run()
+		{
+			try
+			{
+				final ByteBuffer hello = ByteBuffer.allocate( 4 );
+				for( int k = 0; k < this.shards.length; k++ )
+				{
+					final SocketChannel channel = this.server.accept();
+					channel.setOption( StandardSocketOptions.TCP_NODELAY,
+							true );
+					hello.clear();
+					if( !readFully( channel, hello ) )
+						throw new EOFException( "No shard" );
+					final int s = hello.getInt( 0 );
+					if( s < 0 || s >= this.shards.length
+							|| this.shards[s] != null )
+						throw new IllegalStateException(
+								"Illegal shard: " + s );
+					this.shards[s] = channel;
+				}
+				final ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES ),
+						reply = ByteBuffer.allocate( REPLY_BYTES );
+				final ByteBuffer[] frames = new ByteBuffer[this.shards.length
+						+ 1];
+				frames[0] = reply;
+				for( long bytes; (bytes = relay( header, frames )) > 0; )
+					for( SocketChannel channel : this.shards )
+					{
+						for( ByteBuffer frame : frames )
+							frame.rewind();
+						for( long n = bytes; n > 0; )
+							n -= channel.write( frames );
+					}
+			} catch( final ClosedChannelException e )
+			{
+				// closed
+			} catch( final IOException e )
+			{
+				LOG.error( "Hub failed", e );
+			} finally
+			{
+				close();
+			}
+		}
+
+		/** @return the number of bytes to return, or 0 if some shard closed */
+		private long relay( final ByteBuffer header,
+			final ByteBuffer[] frames ) throws IOException
+		{
+			int round = 0, total = 0;
+			for( int s = 0; s < this.shards.length; s++ )
+			{
+				header.clear();
+				if( !readFully( this.shards[s], header ) ) return 0;
+				final int r = header.getInt( 4 ), n = header.getInt( 8 );
+				if( header.getInt( 0 ) != s || (s > 0 && r != round) )
+					throw new IllegalStateException( "Shard " + s
+							+ " out of sync, round " + r + " vs " + round );
+				round = r;
+				ByteBuffer frame = frames[s + 1];
+				if( frame == null || frame.capacity() != VALUE_BYTES * n )
+					frame = frames[s + 1] = ByteBuffer
+							.allocateDirect( VALUE_BYTES * n );
+				frame.clear();
+				if( !readFully( this.shards[s], frame ) ) return 0;
+				total += n;
+			}
+			frames[0].putInt( 0, round ).putInt( 4, total );
+			return REPLY_BYTES + (long) VALUE_BYTES * total;
+		}
+
+		@Override
+		public void close()
+		{
+			try
+			{
+				this.server.close();
+				for( SocketChannel channel : this.shards )
+					if( channel != null ) channel.close();
+			} catch( final IOException e )
+			{
+				LOG.warn( "Closing hub failed", e );
+			}
+		}
+	}
+}
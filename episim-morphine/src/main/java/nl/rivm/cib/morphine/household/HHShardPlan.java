@@ -0,0 +1,642 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.ujmp.core.Matrix;
+
+/**
+ * {@link HHShardPlan} assigns the attractors of a (static) {@link HHNetwork},
+ * and with them their households, to some number of {@link HHShard}s,
+ * balancing the households' degrees by a greedy longest-processing-time
+ * assignment. As (assortative) households link mostly within their
+ * attractor, only the attitudes of boundary households, i.e. those linked
+ * to some household of another shard, need to be exchanged each round. Each
+ * shard's boundary households occupy a contiguous range of exchange slots.
+ * <p>
+ * Each shard's {@link Part} holds only what its {@link HHShard} needs, i.e.
+ * its local network, exchange slots and attractor owners, and can be
+ * {@link Part#write written} to a file from which a separate process
+ * {@link Part#read reads} it, without the global network.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHShardPlan
+{
+
+	/**
+	 * @param network the (static) {@link HHNetwork} adjacency
+	 * @param hhAttributes the household attributes {@link Matrix}, providing
+	 *            each household's {@link HHAttribute#ATTRACTOR_REF}
+	 * @param attractorCount the number of (top) attractor rows
+	 * @param shards the number of shards
+	 * @return a {@link HHShardPlan}
+	 */
+	public static HHShardPlan of( final HHNetwork network,
+		final Matrix hhAttributes, final int attractorCount, final int shards )
+	{
+		Objects.requireNonNull( network, "network null" );
+		if( network.isDynamic() )
+			throw new IllegalStateException( "Dynamic network" );
+		if( shards < 1 || shards > Math.max( 1, attractorCount ) )
+			throw new IllegalArgumentException(
+					"Illegal shards: " + shards + " for " + attractorCount
+							+ " attractor(s)" );
+		final int n = network.size(), from = Math.min( attractorCount, n );
+
+		// per attractor: its households' total degree (plus one each)
+		final int[] attractor = new int[n];
+		final long[] cost = new long[attractorCount];
+		for( int i = 0; i < n; i++ )
+		{
+			attractor[i] = i < from ? i
+					: hhAttributes.getAsInt( network.row( i ),
+							HHAttribute.ATTRACTOR_REF.ordinal() );
+			if( attractor[i] >= 0 && attractor[i] < attractorCount )
+				cost[attractor[i]] += 1 + network.indexDegree( i );
+		}
+
+		// assign the costliest attractors first, to the least loaded shard
+		final Integer[] order = new Integer[attractorCount];
+		for( int a = 0; a < attractorCount; a++ )
+			order[a] = a;
+		Arrays.sort( order, ( a, b ) -> cost[a] != cost[b]
+				? Long.compare( cost[b], cost[a] ) : Integer.compare( a, b ) );
+		final int[] shardOf = new int[attractorCount];
+		final long[] load = new long[shards];
+		for( int a : order )
+		{
+			int s = 0;
+			for( int t = 1; t < shards; t++ )
+				if( load[t] < load[s] ) s = t;
+			shardOf[a] = s;
+			load[s] += cost[a];
+		}
+
+		// households of unknown attractors go to the first shard
+		final int[] owner = new int[n];
+		for( int i = 0; i < n; i++ )
+			owner[i] = attractor[i] >= 0 && attractor[i] < attractorCount
+					? shardOf[attractor[i]] : 0;
+
+		// number the boundary households, shard by shard
+		final int[] slot = new int[n], bounds = new int[shards + 1];
+		Arrays.fill( slot, -1 );
+		final boolean[] boundary = new boolean[n];
+		final int[] buffer = new int[network.maxDegree()];
+		long cut = 0;
+		for( int i = from; i < n; i++ )
+		{
+			final int[] peers = network.peersAt( i, buffer );
+			final int base = network.base( i );
+			for( int s = network.offsets[i], end = network
+					.end( i ); s < end; s++ )
+			{
+				final int j = peers[s - base];
+				if( j < from || owner[j] == owner[i] ) continue;
+				boundary[i] = true;
+				if( j > i ) cut++;
+			}
+		}
+		for( int i = from; i < n; i++ )
+			if( boundary[i] ) bounds[owner[i] + 1]++;
+		for( int s = 0; s < shards; s++ )
+			bounds[s + 1] += bounds[s];
+		final int[] fill = Arrays.copyOf( bounds, shards );
+		for( int i = from; i < n; i++ )
+			if( boundary[i] ) slot[i] = fill[owner[i]]++;
+		return new HHShardPlan( network, from, owner, slot, bounds, load,
+				cut );
+	}
+
+	private final HHNetwork network;
+
+	/** the number of (replicated) attractor indices */
+	private final int from;
+
+	/** per index: the owning shard */
+	private final int[] owner;
+
+	/** per index: its exchange slot, or -1 if not on the boundary */
+	private final int[] slot;
+
+	/** shard s exports exchange slots {@code [bounds[s], bounds[s+1])} */
+	private final int[] bounds;
+
+	/** per shard: its households' total degree (plus one each) */
+	private final long[] load;
+
+	/** the number of links between households of different shards */
+	private final long cut;
+
+	private HHShardPlan( final HHNetwork network, final int from,
+		final int[] owner, final int[] slot, final int[] bounds,
+		final long[] load, final long cut )
+	{
+		this.network = network;
+		this.from = from;
+		this.owner = owner;
+		this.slot = slot;
+		this.bounds = bounds;
+		this.load = load;
+		this.cut = cut;
+	}
+
+	/** @return the planned {@link HHNetwork} */
+	public HHNetwork network()
+	{
+		return this.network;
+	}
+
+	/** @return the number of (replicated) attractor indices */
+	public int attractorCount()
+	{
+		return this.from;
+	}
+
+	/** @return the number of shards */
+	public int shards()
+	{
+		return this.load.length;
+	}
+
+	/**
+	 * @param i an (internal) {@link HHNetwork} index
+	 * @return the shard owning index i
+	 */
+	public int owner( final int i )
+	{
+		return this.owner[i];
+	}
+
+	/**
+	 * @param i an (internal) {@link HHNetwork} index
+	 * @return the exchange slot of index i, or -1 if not on the boundary
+	 */
+	public int slot( final int i )
+	{
+		return this.slot[i];
+	}
+
+	/** @return the total number of exchange slots */
+	public int boundary()
+	{
+		return this.bounds[this.bounds.length - 1];
+	}
+
+	/**
+	 * @param shard the shard
+	 * @return the first exchange slot exported by given shard
+	 */
+	public int boundaryStart( final int shard )
+	{
+		return this.bounds[shard];
+	}
+
+	/**
+	 * @param shard the shard
+	 * @return the exchange slot following those exported by given shard
+	 */
+	public int boundaryEnd( final int shard )
+	{
+		return this.bounds[shard + 1];
+	}
+
+	/**
+	 * @param shard the shard
+	 * @return the total degree (plus one per household) of given shard
+	 */
+	public long load( final int shard )
+	{
+		return this.load[shard];
+	}
+
+	/** @return the number of links between households of different shards */
+	public long cut()
+	{
+		return this.cut;
+	}
+
+	/**
+	 * @param shard the shard
+	 * @return the (ascending) indices local to given shard, i.e. the
+	 *         (replicated) attractors, followed by its own households and
+	 *         the (ghost) households of other shards linked to these
+	 */
+	public int[] locals( final int shard )
+	{
+		final int n = this.network.size();
+		final boolean[] local = new boolean[n];
+		final int[] buffer = new int[this.network.maxDegree()];
+		int count = 0;
+		for( int i = 0; i < n; i++ )
+		{
+			if( i < this.from || this.owner[i] != shard ) continue;
+			if( !local[i] ) count++;
+			local[i] = true;
+			if( this.slot[i] < 0 ) continue;
+			final int[] peers = this.network.peersAt( i, buffer );
+			final int base = this.network.base( i );
+			for( int s = this.network.offsets[i], end = this.network
+					.end( i ); s < end; s++ )
+				if( !local[peers[s - base]] )
+				{
+					local[peers[s - base]] = true;
+					count++;
+				}
+		}
+		for( int i = 0; i < this.from; i++ )
+			if( !local[i] )
+			{
+				local[i] = true;
+				count++;
+			}
+		final int[] result = new int[count];
+		for( int i = 0, k = 0; i < n; i++ )
+			if( local[i] ) result[k++] = i;
+		return result;
+	}
+
+	/**
+	 * @param shard the shard
+	 * @return the {@link Part} of given shard
+	 */
+	public Part part( final int shard )
+	{
+		if( shard < 0 || shard >= shards() )
+			throw new IllegalArgumentException( "Illegal shard: " + shard );
+		final HHNetwork global = this.network;
+		final int[] locals = locals( shard );
+		final int[] local = new int[global.size()];
+		Arrays.fill( local, -1 );
+		for( int k = 0; k < locals.length; k++ )
+			local[locals[k]] = k;
+
+		// keep (in order) the links with a peer of own shard
+		final int[] offsets = new int[locals.length + 1],
+				buffer = new int[global.maxDegree()];
+		int[] peers = new int[16], slots = new int[16];
+		double[] weights = new double[16];
+		int m = 0;
+		for( int k = 0; k < locals.length; k++ )
+		{
+			final int i = locals[k];
+			final boolean own = this.owner[i] == shard;
+			final int[] p = global.peersAt( i, buffer );
+			final int base = global.base( i );
+			for( int s = global.offsets[i], end = global
+					.end( i ); s < end; s++ )
+			{
+				final int j = p[s - base];
+				if( local[j] < 0 || !own && this.owner[j] != shard ) continue;
+				if( m == peers.length )
+				{
+					peers = Arrays.copyOf( peers, 2 * m );
+					slots = Arrays.copyOf( slots, 2 * m );
+					weights = Arrays.copyOf( weights, 2 * m );
+				}
+				peers[m] = local[j];
+				slots[m] = s;
+				weights[m++] = global.weight( s );
+			}
+			offsets[k + 1] = m;
+		}
+
+		// own boundary households in slot order, then the ghosts
+		final int start = boundaryStart( shard );
+		final int[] exports = new int[boundaryEnd( shard ) - start];
+		int ghostCount = 0;
+		for( int k = this.from; k < locals.length; k++ )
+			if( this.owner[locals[k]] != shard ) ghostCount++;
+			else if( this.slot[locals[k]] >= 0 )
+				exports[this.slot[locals[k]] - start] = k;
+		final int[] ghosts = new int[ghostCount],
+				ghostSlots = new int[ghostCount];
+		for( int k = this.from, g = 0; k < locals.length; k++ )
+			if( this.owner[locals[k]] != shard )
+			{
+				ghostSlots[g] = this.slot[locals[k]];
+				ghosts[g++] = k;
+			}
+		final int[] rows = new int[locals.length];
+		for( int k = 0; k < locals.length; k++ )
+			rows[k] = global.row( locals[k] );
+		return new Part( shard, shards(), boundary(),
+				Arrays.copyOf( this.owner, this.from ), locals, rows, offsets,
+				Arrays.copyOf( peers, m ), Arrays.copyOf( weights, m ),
+				Arrays.copyOf( slots, m ), exports, ghosts, ghostSlots );
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "[shards="
+				+ this.load.length + ", load=" + Arrays.toString( this.load )
+				+ ", boundary=" + boundary() + ", cut=" + this.cut + "]";
+	}
+
+	/**
+	 * {@link Part} is the (serializable) share of a {@link HHShardPlan} that
+	 * a single {@link HHShard} needs: its local network over the (replicated)
+	 * attractors, its own households and their ghosts, its exchange slots
+	 * and the owner of each attractor. Its size is proportional to the shard
+	 * rather than to the global network.
+	 */
+	public static class Part
+	{
+		/** the file signature, i.e. "HHSP" */
+		public static final int MAGIC = 0x48485350;
+
+		/** the current format version */
+		public static final int VERSION = 1;
+
+		/**
+		 * @param file the file to read
+		 * @return the {@link Part} read from given file
+		 * @throws IOException
+		 */
+		public static Part read( final Path file ) throws IOException
+		{
+			try( final DataInputStream in = new DataInputStream(
+					new BufferedInputStream( Files.newInputStream( file ) ) ) )
+			{
+				if( in.readInt() != MAGIC ) throw new IOException(
+						"Not a " + Part.class.getSimpleName() + ": " + file );
+				final int version = in.readInt();
+				if( version != VERSION ) throw new IOException(
+						"Unsupported version " + version + ": " + file );
+				final int shard = in.readInt(), shards = in.readInt(),
+						boundary = in.readInt();
+				return new Part( shard, shards, boundary, readInts( in ),
+						readInts( in ), readInts( in ), readInts( in ),
+						readInts( in ), readDoubles( in ), readInts( in ),
+						readInts( in ), readInts( in ), readInts( in ) );
+			}
+		}
+
+		private static int[] readInts( final DataInputStream in )
+			throws IOException
+		{
+			final int[] result = new int[in.readInt()];
+			for( int k = 0; k < result.length; k++ )
+				result[k] = in.readInt();
+			return result;
+		}
+
+		private static double[] readDoubles( final DataInputStream in )
+			throws IOException
+		{
+			final double[] result = new double[in.readInt()];
+			for( int k = 0; k < result.length; k++ )
+				result[k] = in.readDouble();
+			return result;
+		}
+
+		private static void writeInts( final DataOutputStream out,
+			final int[] values ) throws IOException
+		{
+			out.writeInt( values.length );
+			for( int v : values )
+				out.writeInt( v );
+		}
+
+		private final int shard;
+
+		private final int shards;
+
+		/** the total number of exchange slots */
+		private final int boundary;
+
+		/** per attractor: the owning shard */
+		private final int[] attractorOwner;
+
+		/** per local index: its (global) {@link HHNetwork} index */
+		private final int[] indices;
+
+		/** per local index: its (global) attributes row */
+		private final int[] rows;
+
+		/** the local network, in compressed sparse rows */
+		private final int[] offsets, peers;
+
+		private final double[] weights;
+
+		/** per local slot: its (global) {@link HHNetwork} slot */
+		private final int[] slots;
+
+		/** the local indices of own boundary households, in exchange order */
+		private final int[] exports;
+
+		/** the local indices of (ghost) households of other shards */
+		private final int[] ghosts;
+
+		/** per ghost: its exchange slot */
+		private final int[] ghostSlots;
+
+		private Part( final int shard, final int shards, final int boundary,
+			final int[] attractorOwner, final int[] indices, final int[] rows,
+			final int[] offsets, final int[] peers, final double[] weights,
+			final int[] slots, final int[] exports, final int[] ghosts,
+			final int[] ghostSlots )
+		{
+			this.shard = shard;
+			this.shards = shards;
+			this.boundary = boundary;
+			this.attractorOwner = attractorOwner;
+			this.indices = indices;
+			this.rows = rows;
+			this.offsets = offsets;
+			this.peers = peers;
+			this.weights = weights;
+			this.slots = slots;
+			this.exports = exports;
+			this.ghosts = ghosts;
+			this.ghostSlots = ghostSlots;
+		}
+
+		/**
+		 * @param file the file to (over)write
+		 * @throws IOException
+		 */
+		public void write( final Path file ) throws IOException
+		{
+			if( file.getParent() != null )
+				Files.createDirectories( file.getParent() );
+			try( final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream( Files.newOutputStream( file ) ) ) )
+			{
+				out.writeInt( MAGIC );
+				out.writeInt( VERSION );
+				out.writeInt( this.shard );
+				out.writeInt( this.shards );
+				out.writeInt( this.boundary );
+				writeInts( out, this.attractorOwner );
+				writeInts( out, this.indices );
+				writeInts( out, this.rows );
+				writeInts( out, this.offsets );
+				writeInts( out, this.peers );
+				out.writeInt( this.weights.length );
+				for( double w : this.weights )
+					out.writeDouble( w );
+				writeInts( out, this.slots );
+				writeInts( out, this.exports );
+				writeInts( out, this.ghosts );
+				writeInts( out, this.ghostSlots );
+			}
+		}
+
+		/** @return the shard of the {@link HHShardPlan} */
+		public int shard()
+		{
+			return this.shard;
+		}
+
+		/** @return the number of shards of the {@link HHShardPlan} */
+		public int shards()
+		{
+			return this.shards;
+		}
+
+		/** @return the number of (replicated) attractor indices */
+		public int attractorCount()
+		{
+			return this.attractorOwner.length;
+		}
+
+		/** @return the total number of exchange slots */
+		public int boundary()
+		{
+			return this.boundary;
+		}
+
+		/**
+		 * @param a an attractor index
+		 * @return the shard owning given attractor
+		 */
+		public int attractorOwner( final int a )
+		{
+			return this.attractorOwner[a];
+		}
+
+		/** @return the number of local indices */
+		public int size()
+		{
+			return this.indices.length;
+		}
+
+		/**
+		 * @param k a local index
+		 * @return its (global) {@link HHNetwork} index
+		 */
+		public int index( final int k )
+		{
+			return this.indices[k];
+		}
+
+		/**
+		 * @param k a local index
+		 * @return its (global) household attributes row
+		 */
+		public int row( final int k )
+		{
+			return this.rows[k];
+		}
+
+		/**
+		 * @param s a local {@link HHNetwork} slot
+		 * @return its (global) {@link HHNetwork} slot
+		 */
+		public int slot( final int s )
+		{
+			return this.slots[s];
+		}
+
+		/** @return the number of local {@link HHNetwork} slots */
+		public int slots()
+		{
+			return this.slots.length;
+		}
+
+		/** @return a new local {@link HHNetwork}, by local index */
+		public HHNetwork network()
+		{
+			return new HHNetwork( this.offsets, this.peers, this.weights );
+		}
+
+		/** @return the number of own boundary households */
+		public int exports()
+		{
+			return this.exports.length;
+		}
+
+		/**
+		 * @param e an export position
+		 * @return the local index of the own boundary household at given
+		 *         position of this shard's exchange slots
+		 */
+		public int export( final int e )
+		{
+			return this.exports[e];
+		}
+
+		/** @return the number of (ghost) households of other shards */
+		public int ghosts()
+		{
+			return this.ghosts.length;
+		}
+
+		/**
+		 * @param g a ghost position
+		 * @return the local index of given ghost
+		 */
+		public int ghost( final int g )
+		{
+			return this.ghosts[g];
+		}
+
+		/**
+		 * @param g a ghost position
+		 * @return the exchange slot of given ghost
+		 */
+		public int ghostSlot( final int g )
+		{
+			return this.ghostSlots[g];
+		}
+
+		@Override
+		public String toString()
+		{
+			return getClass().getSimpleName() + "[shard=" + this.shard + "/"
+					+ this.shards + ", size=" + size() + ", ghosts="
+					+ ghosts() + ", exports=" + exports() + ", links="
+					+ slots() / 2 + "]";
+		}
+	}
+}
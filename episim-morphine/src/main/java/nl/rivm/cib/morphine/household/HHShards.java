@@ -0,0 +1,281 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.Logger;
+import org.ujmp.core.Matrix;
+
+import io.coala.exception.Thrower;
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHShards} runs all {@link HHShard}s of a {@link HHShardPlan} within
+ * this process, each on its own thread, exchanging their boundary attitudes
+ * via a loopback {@link HHShard.Hub}, as a drop-in replacement of a
+ * (synchronous) {@link HHPropagation}: each round, it loads the global
+ * attributes into the shards and merges their results back. Each shard
+ * thus holds only its own households, the attractors and its ghosts, though
+ * this process still holds the global network and attributes. To spread the
+ * population over processes instead, each may run a single {@link HHShard}
+ * of a {@link HHShardPlan.Part} written by the planning process, and
+ * initialize its local attributes and links itself.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHShards implements Closeable
+{
+	/** */
+	private static final Logger LOG = LogUtil.getLogger( HHShards.class );
+
+	/**
+	 * @param network the (static) {@link HHNetwork} adjacency
+	 * @param hhAttributes the household attributes {@link Matrix}
+	 * @param attractorCount the number of (top) attractor rows
+	 * @param shards the number of shards
+	 * @param epsilon see {@link HHPropagation#of}
+	 * @param fullRounds see {@link HHPropagation#of}
+	 * @param parallelism the total number of worker threads, or 0 for all
+	 *            available processors
+	 * @return a {@link HHShards}
+	 */
+	public static HHShards of( final HHNetwork network,
+		final Matrix hhAttributes, final int attractorCount, final int shards,
+		final double epsilon, final int fullRounds, final int parallelism )
+	{
+		if( parallelism < 0 ) throw new IllegalArgumentException(
+				"Illegal parallelism: " + parallelism );
+		final HHShardPlan plan = HHShardPlan.of( network, hhAttributes,
+				attractorCount, shards );
+		final int workers = Math.max( 1, (parallelism > 0 ? parallelism
+				: Runtime.getRuntime().availableProcessors()) / shards );
+		HHShard.Hub hub = null;
+		final HHShard[] result = new HHShard[shards];
+		try
+		{
+			hub = HHShard.Hub.open( shards );
+			final Thread thread = new Thread( hub, "hh-shard-hub" );
+			thread.setDaemon( true );
+			thread.start();
+			for( int s = 0; s < shards; s++ )
+				result[s] = HHShard.of( plan, s, hub.address(), epsilon,
+						fullRounds, workers );
+		} catch( final IOException e )
+		{
+			if( hub != null ) hub.close();
+			return Thrower.rethrowUnchecked( e );
+		}
+		LOG.trace( "Sharded {}", plan );
+		return new HHShards( plan, hub, result );
+	}
+
+	/** {@link Visits} records the visits of a shard's round, to replay */
+	private static class Visits implements HHPropagation.Visitor
+	{
+		int size = 0;
+
+		int[] index = new int[16], feeds = new int[16];
+
+		boolean[] updated = new boolean[16];
+
+		@Override
+		public void visit( final int i, final int n, final boolean updated )
+		{
+			if( this.size == this.index.length )
+			{
+				this.index = Arrays.copyOf( this.index, 2 * this.size );
+				this.feeds = Arrays.copyOf( this.feeds, 2 * this.size );
+				this.updated = Arrays.copyOf( this.updated, 2 * this.size );
+			}
+			this.index[this.size] = i;
+			this.feeds[this.size] = n;
+			this.updated[this.size++] = updated;
+		}
+	}
+
+	private final HHShardPlan plan;
+
+	private final HHShard.Hub hub;
+
+	private final HHShard[] shards;
+
+	private final Visits[] visits;
+
+	private final ExecutorService executor;
+
+	private HHShards( final HHShardPlan plan, final HHShard.Hub hub,
+		final HHShard[] shards )
+	{
+		this.plan = plan;
+		this.hub = hub;
+		this.shards = shards;
+		this.visits = new Visits[shards.length];
+		for( int s = 0; s < shards.length; s++ )
+			this.visits[s] = new Visits();
+		this.executor = Executors.newFixedThreadPool( shards.length, r ->
+		{
+			final Thread result = new Thread( r, "hh-shard" );
+			result.setDaemon( true );
+			return result;
+		} );
+	}
+
+	/** @return the {@link HHShardPlan} */
+	public HHShardPlan plan()
+	{
+		return this.plan;
+	}
+
+	/** @return the number of rounds propagated so far */
+	public int round()
+	{
+		return this.shards[0].round();
+	}
+
+	/**
+	 * propagate one (synchronous) round across all shards, updating changed
+	 * {@link HHAttribute#CONFIDENCE} and {@link HHAttribute#COMPLACENCY}
+	 * values in {@code hhAttributes}
+	 * 
+	 * @param propagator the {@link HHAttitudePropagator} filtering appreciation
+	 * @param hhAttributes the household attributes {@link Matrix}
+	 * @param visitor the {@link HHPropagation.Visitor} of households fed in
+	 *            this round
+	 * @return the round's {@link HHPropagation.Convergence}
+	 */
+	public HHPropagation.Convergence propagate(
+		final HHAttitudePropagator propagator, final Matrix hhAttributes,
+		final HHPropagation.Visitor visitor )
+	{
+		final List<Future<HHPropagation.Convergence>> futures = new ArrayList<>(
+				this.shards.length );
+		for( int s = 0; s < this.shards.length; s++ )
+		{
+			final HHShard shard = this.shards[s];
+			final Visits visits = this.visits[s];
+			visits.size = 0;
+			shard.load( hhAttributes, this.plan.network() );
+			futures.add( this.executor
+					.submit( () -> shard.propagate( propagator, visits ) ) );
+		}
+		final int attractors = this.plan.attractorCount();
+		final double[] max = new double[attractors],
+				mean = new double[attractors];
+		for( int s = 0; s < this.shards.length; s++ )
+		{
+			final HHPropagation.Convergence convergence;
+			try
+			{
+				convergence = futures.get( s ).get();
+			} catch( final InterruptedException | ExecutionException e )
+			{
+				return Thrower.rethrowUnchecked(
+						e instanceof ExecutionException ? e.getCause() : e );
+			}
+			// attractors (and their households) belong to a single shard
+			for( int a = 0; a < attractors; a++ )
+			{
+				max[a] = Math.max( max[a], convergence.max( a ) );
+				mean[a] += convergence.mean( a );
+			}
+			final HHShard shard = this.shards[s];
+			final HHAttitudeBatch changes = shard.changes();
+			for( int k = 0; k < changes.size(); k++ )
+			{
+				final int row = shard.row( changes.index( k ) );
+				hhAttributes.setAsBigDecimal(
+						BigDecimal.valueOf( changes.confidence( k ) ), row,
+						HHAttribute.CONFIDENCE.ordinal() );
+				hhAttributes.setAsBigDecimal(
+						BigDecimal.valueOf( changes.complacency( k ) ), row,
+						HHAttribute.COMPLACENCY.ordinal() );
+			}
+			final Visits visits = this.visits[s];
+			for( int v = 0; v < visits.size; v++ )
+				visitor.visit( shard.row( visits.index[v] ),
+						visits.feeds[v], visits.updated[v] );
+		}
+		return new HHPropagation.Convergence( round(), max, mean );
+	}
+
+	/**
+	 * @return the {@link HHAttitudeBatch} of households updated in the last
+	 *         round (by ascending row), to be called before propagating the
+	 *         next round
+	 */
+	public HHAttitudeBatch changes()
+	{
+		int n = 0;
+		for( HHShard shard : this.shards )
+			n += shard.changes().size();
+		final long[] keys = new long[n];
+		final double[] conf = new double[n], comp = new double[n];
+		int m = 0;
+		for( HHShard shard : this.shards )
+		{
+			final HHAttitudeBatch batch = shard.changes();
+			for( int k = 0; k < batch.size(); k++, m++ )
+			{
+				// sort by row, keeping the position in the lower bits
+				keys[m] = (long) shard.row( batch.index( k ) ) << 32 | m;
+				conf[m] = batch.confidence( k );
+				comp[m] = batch.complacency( k );
+			}
+		}
+		Arrays.sort( keys );
+		final int[] indices = new int[n];
+		final double[] confidence = new double[n], complacency = new double[n];
+		for( int k = 0; k < n; k++ )
+		{
+			final int at = (int) keys[k];
+			indices[k] = (int) (keys[k] >>> 32);
+			confidence[k] = conf[at];
+			complacency[k] = comp[at];
+		}
+		return new HHAttitudeBatch( round(), indices, confidence,
+				complacency );
+	}
+
+	@Override
+	public void close()
+	{
+		this.executor.shutdownNow();
+		for( HHShard shard : this.shards )
+			try
+			{
+				shard.close();
+			} catch( final IOException e )
+			{
+				LOG.warn( "Closing shard {} failed", shard.shard(), e );
+			}
+		this.hub.close();
+	}
+}
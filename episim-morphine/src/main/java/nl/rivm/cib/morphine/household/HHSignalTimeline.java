@@ -0,0 +1,189 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * {@link HHSignalTimeline} holds the (attractor) signals of a whole run,
+ * compiled at initialization into primitive columns sorted by time, so a
+ * single driver event can apply each next batch of due signals without
+ * building maps or scheduling an event per series step
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHSignalTimeline
+{
+
+	/** {@link Visitor} receives the due signals */
+	@FunctionalInterface
+	public interface Visitor
+	{
+		/**
+		 * @param row the (attractor) row
+		 * @param col the {@link HHAttribute#ordinal()} column
+		 * @param value the new value
+		 */
+		void apply( int row, int col, double value );
+	}
+
+	/** {@link Builder} collects signals in any order */
+	public static class Builder
+	{
+		private double[] days = new double[16];
+
+		private int[] rows = new int[16], cols = new int[16];
+
+		private double[] values = new double[16];
+
+		private int size = 0;
+
+		/**
+		 * @param day the time in (primitive) days since the scheduler offset
+		 * @param row the (attractor) row
+		 * @param col the {@link HHAttribute#ordinal()} column
+		 * @param value the new value
+		 * @return this {@link Builder} for chaining
+		 */
+		public Builder add( final double day, final int row, final int col,
+			final double value )
+		{
+			if( Double.isNaN( day ) ) throw new IllegalArgumentException(
+					"Illegal signal time: " + day );
+			if( this.size == this.days.length )
+			{
+				final int n = 2 * this.size;
+				this.days = Arrays.copyOf( this.days, n );
+				this.rows = Arrays.copyOf( this.rows, n );
+				this.cols = Arrays.copyOf( this.cols, n );
+				this.values = Arrays.copyOf( this.values, n );
+			}
+			this.days[this.size] = day;
+			this.rows[this.size] = row;
+			this.cols[this.size] = col;
+			this.values[this.size] = value;
+			this.size++;
+			return this;
+		}
+
+		/**
+		 * @return the {@link HHSignalTimeline}, sorted (stably) by time so
+		 *         simultaneous signals apply in order of addition
+		 */
+		public HHSignalTimeline build()
+		{
+			final int[] order = IntStream.range( 0, this.size ).boxed()
+					.sorted( Comparator.comparingDouble( k -> this.days[k] ) )
+					.mapToInt( Integer::intValue ).toArray();
+			final double[] days = new double[this.size],
+					values = new double[this.size];
+			final int[] rows = new int[this.size], cols = new int[this.size];
+			for( int k = 0; k < this.size; k++ )
+			{
+				days[k] = this.days[order[k]];
+				rows[k] = this.rows[order[k]];
+				cols[k] = this.cols[order[k]];
+				values[k] = this.values[order[k]];
+			}
+			return new HHSignalTimeline( days, rows, cols, values );
+		}
+	}
+
+	/**
+	 * @param offset the scheduler offset
+	 * @param time some (absolute) time
+	 * @return the (elapsed) time since {@code offset} in (primitive) days
+	 */
+	public static double toDays( final ZonedDateTime offset,
+		final ZonedDateTime time )
+	{
+		return (double) Duration.between( offset, time ).toMillis()
+				/ TimeUnit.DAYS.toMillis( 1 );
+	}
+
+	/** @return a new {@link Builder} */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	private final double[] days;
+
+	private final int[] rows;
+
+	private final int[] cols;
+
+	private final double[] values;
+
+	/** the position of the next signal due */
+	private int next = 0;
+
+	private HHSignalTimeline( final double[] days, final int[] rows,
+		final int[] cols, final double[] values )
+	{
+		this.days = days;
+		this.rows = rows;
+		this.cols = cols;
+		this.values = values;
+	}
+
+	/** @return the total number of signals */
+	public int size()
+	{
+		return this.days.length;
+	}
+
+	/** @return the number of signals not yet applied */
+	public int remaining()
+	{
+		return this.days.length - this.next;
+	}
+
+	/**
+	 * @return the time of the next signal in (primitive) days, or
+	 *         {@link Double#POSITIVE_INFINITY} if none remain
+	 */
+	public double nextDay()
+	{
+		return this.next < this.days.length ? this.days[this.next]
+				: Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @param day the current time in (primitive) days
+	 * @param visitor the {@link Visitor} to apply each signal due
+	 * @return the number of signals applied
+	 */
+	public int apply( final double day, final Visitor visitor )
+	{
+		final int start = this.next;
+		for( ; this.next < this.days.length
+				&& this.days[this.next] <= day; this.next++ )
+			visitor.apply( this.rows[this.next], this.cols[this.next],
+					this.values[this.next] );
+		return this.next - start;
+	}
+}
@@ -20,6 +20,7 @@
 package nl.rivm.cib.morphine.json;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Arrays;
 import java.util.EnumMap;
 
@@ -36,6 +37,7 @@ import io.coala.math.DecimalUtil;
 import io.coala.math.Range;
 import io.coala.math.Tuple;
 import io.coala.random.ProbabilityDistribution;
+import io.coala.random.PseudoRandom;
 import io.coala.random.QuantityDistribution;
 import io.coala.time.TimeUnits;
 
@@ -198,6 +200,110 @@ public class RelationFrequencyJson
 		}
 	}
 
+	/**
+	 * {@link IntervalIndex} precompiles a list of {@link RelationFrequencyJson}
+	 * entries into primitive (log-normal) sampler parameters, indexed by
+	 * {@link Gender}, {@link Relation} and whole age years, for O(1) draws of
+	 * contact intervals (in days) without any {@link Range} or
+	 * {@link BigDecimal} comparisons. Like a linear first-match scan, each age
+	 * bucket {@code [a,a+1)} maps to the first entry whose age range covers it,
+	 * where open ranges (e.g. {@code ">75"}) extend to {@link #AGE_MAX}.
+	 */
+	public static class IntervalIndex
+	{
+		/** the highest indexed age (in years), older ages are capped */
+		public static final int AGE_MAX = 120;
+
+		private static final int AGE_COUNT = AGE_MAX + 1;
+
+		private static final int RELATION_COUNT = Relation.values().length;
+
+		public static IntervalIndex of(
+			final Iterable<RelationFrequencyJson> entries,
+			final PseudoRandom rng, final double defaultDays )
+		{
+			final int n = Gender.values().length * RELATION_COUNT * AGE_COUNT;
+			final double[] meanLog = new double[n], stdevLog = new double[n];
+			Arrays.fill( meanLog, Double.NaN );
+			for( RelationFrequencyJson json : entries )
+			{
+				if( json.dist.type != DistType.LOG_NORMAL )
+					Thrower.throwNew( IllegalArgumentException::new,
+							() -> "Unknown distribution: " + json.dist.type );
+				final Range<BigDecimal> range = json.ageRange();
+				final int from = Math.max( 0, range.lowerValue()
+						.setScale( 0, RoundingMode.CEILING ).intValue() );
+				final int to = json.ageRange.contains( "-" )
+						? Math.min( AGE_MAX,
+								range.upperValue()
+										.setScale( 0, RoundingMode.CEILING )
+										.intValue() - 1 )
+						: AGE_MAX;
+				final double mu = json.dist.params.get( ParamName.MEAN_LOG )
+						.doubleValue(),
+						sigma = json.dist.params.get( ParamName.STDEV_LOG )
+								.doubleValue();
+				for( int age = from; age <= to; age++ )
+				{
+					final int i = offset( json.gender.ordinal(),
+							json.relation.ordinal(), age );
+					if( !Double.isNaN( meanLog[i] ) ) continue; // first match
+					meanLog[i] = mu;
+					stdevLog[i] = sigma;
+				}
+			}
+			return new IntervalIndex( meanLog, stdevLog, defaultDays, rng );
+		}
+
+		private static int offset( final int gender, final int relation,
+			final int age )
+		{
+			return (gender * RELATION_COUNT + relation) * AGE_COUNT + age;
+		}
+
+		private final double[] meanLog;
+
+		private final double[] stdevLog;
+
+		private final double defaultDays;
+
+		private final PseudoRandom rng;
+
+		private IntervalIndex( final double[] meanLog, final double[] stdevLog,
+			final double defaultDays, final PseudoRandom rng )
+		{
+			this.meanLog = meanLog;
+			this.stdevLog = stdevLog;
+			this.defaultDays = defaultDays;
+			this.rng = rng;
+		}
+
+		/**
+		 * @param male whether the (referent) person is male
+		 * @param relation the contact {@link Relation}
+		 * @param ageYears the (referent) person's age in years
+		 * @return a contact interval draw in days, or the default interval if
+		 *         no entry covers this category
+		 */
+		public double drawDays( final boolean male, final Relation relation,
+			final double ageYears )
+		{
+			return drawDays( male ? Gender.male : Gender.female, relation,
+					ageYears );
+		}
+
+		public double drawDays( final Gender gender, final Relation relation,
+			final double ageYears )
+		{
+			final int i = offset( gender.ordinal(), relation.ordinal(),
+					ageYears < 0 ? 0
+							: ageYears > AGE_MAX ? AGE_MAX : (int) ageYears );
+			final double mu = this.meanLog[i];
+			return Double.isNaN( mu ) ? this.defaultDays
+					: Math.exp( mu + this.stdevLog[i] * this.rng.nextGaussian() );
+		}
+	}
+
 	public static class DistParams
 	{
 		@JsonProperty( "type" )
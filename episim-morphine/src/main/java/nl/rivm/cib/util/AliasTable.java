@@ -0,0 +1,109 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.util;
+
+import io.coala.random.PseudoRandom;
+
+/**
+ * {@link AliasTable} is a <a
+ * href=https://www.wikiwand.com/en/Alias_method>Walker alias table</a> (built
+ * using Vose's method) for drawing categorical indices in O(1) time, using a
+ * single uniform draw and without allocating
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class AliasTable
+{
+
+	/**
+	 * @param weights the (non-negative, not necessarily normalized) weight per
+	 *            index
+	 * @return an {@link AliasTable}
+	 */
+	public static AliasTable of( final double... weights )
+	{
+		final int n = weights.length;
+		if( n == 0 ) throw new IllegalArgumentException( "No weights" );
+		double sum = 0;
+		for( double w : weights )
+			if( w < 0 || Double.isNaN( w ) )
+				throw new IllegalArgumentException( "Illegal weight: " + w );
+			else
+				sum += w;
+		if( sum <= 0 ) throw new IllegalArgumentException( "Zero weights" );
+
+		final double[] prob = new double[n];
+		final int[] alias = new int[n];
+		final int[] small = new int[n], large = new int[n];
+		int s = 0, l = 0;
+		for( int i = 0; i < n; i++ )
+		{
+			prob[i] = weights[i] * n / sum;
+			if( prob[i] < 1 )
+				small[s++] = i;
+			else
+				large[l++] = i;
+		}
+		while( s > 0 && l > 0 )
+		{
+			final int less = small[--s], more = large[--l];
+			alias[less] = more;
+			prob[more] = prob[more] + prob[less] - 1;
+			if( prob[more] < 1 )
+				small[s++] = more;
+			else
+				large[l++] = more;
+		}
+		// remaining entries are (numerically) full
+		while( l > 0 )
+			prob[large[--l]] = 1;
+		while( s > 0 )
+			prob[small[--s]] = 1;
+		return new AliasTable( prob, alias );
+	}
+
+	private final double[] prob;
+
+	private final int[] alias;
+
+	private AliasTable( final double[] prob, final int[] alias )
+	{
+		this.prob = prob;
+		this.alias = alias;
+	}
+
+	/** @return the number of indices */
+	public int size()
+	{
+		return this.prob.length;
+	}
+
+	/**
+	 * @param rng the {@link PseudoRandom} stream to draw from
+	 * @return an index in {@code [0,size)} drawn by its relative weight
+	 */
+	public int draw( final PseudoRandom rng )
+	{
+		final double u = rng.nextDouble() * this.prob.length;
+		final int i = Math.min( (int) u, this.prob.length - 1 );
+		return u - i < this.prob[i] ? i : this.alias[i];
+	}
+}
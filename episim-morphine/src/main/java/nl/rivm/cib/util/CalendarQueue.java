@@ -0,0 +1,247 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.util;
+
+import java.util.Arrays;
+
+/**
+ * {@link CalendarQueue} is a bucketed calendar queue (or hashed timing wheel)
+ * for large numbers of fine-grained, mutually independent events, e.g. one per
+ * household. Each of its (integer) entries is pending at most once, linked
+ * into the bucket covering its due time, so (re)scheduling and cancelling are
+ * O(1) without allocation. Rather than registering each entry with the
+ * simulation scheduler, the queue registers a single {@link Driver} event per
+ * non-empty bucket (at the end of its earliest pending tick), which then fires
+ * all entries due within that tick in due order (ties by entry), passing their
+ * exact due times, including entries (re)scheduled into that tick meanwhile.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class CalendarQueue
+{
+	/** registers a single (bucket) driver event with the scheduler */
+	@FunctionalInterface
+	public interface Driver
+	{
+		/**
+		 * @param time the absolute time to fire
+		 * @param fire the callback to run at given time
+		 * @return a callback cancelling the scheduled event
+		 */
+		Runnable schedule( double time, Runnable fire );
+	}
+
+	/** handles an entry that became due */
+	@FunctionalInterface
+	public interface Handler
+	{
+		/**
+		 * @param entry the (no longer pending) entry
+		 * @param due the exact time the entry was due, at most one bucket
+		 *            width before the current scheduler time
+		 */
+		void fire( int entry, double due );
+	}
+
+	private static final int NIL = -1;
+
+	private static final long NONE = Long.MIN_VALUE;
+
+	private final double width;
+
+	private final Driver driver;
+
+	private final Handler handler;
+
+	/** due time per entry, or {@link Double#NaN} if not pending */
+	private final double[] due;
+
+	/** intrusive doubly-linked bucket lists */
+	private final int[] next, prev;
+
+	private final int[] head;
+
+	/** per bucket: the tick of its registered driver, or {@link #NONE} */
+	private final long[] driverTick;
+
+	/** per bucket: cancels its registered driver, or {@code null} */
+	private final Runnable[] driverCancel;
+
+	/** the bucket currently firing, or {@link #NIL} */
+	private int firing = NIL;
+
+	/** the tick currently firing */
+	private long firingTick = NONE;
+
+	/** the entries due in the {@link #firingTick}, by due time */
+	private final DueHeap firingOrder = new DueHeap();
+
+	/**
+	 * @param capacity the number of entries, i.e. {@code [0,capacity)}
+	 * @param width the (positive) time span of each bucket's tick
+	 * @param buckets the number of buckets, i.e. ticks per rotation
+	 * @param driver registers bucket driver events with the scheduler
+	 * @param handler handles due entries
+	 */
+	public CalendarQueue( final int capacity, final double width,
+		final int buckets, final Driver driver, final Handler handler )
+	{
+		if( !(width > 0) ) throw new IllegalArgumentException(
+				"Illegal bucket width: " + width );
+		if( buckets < 1 ) throw new IllegalArgumentException(
+				"Illegal bucket count: " + buckets );
+		this.width = width;
+		this.driver = driver;
+		this.handler = handler;
+		this.due = new double[capacity];
+		Arrays.fill( this.due, Double.NaN );
+		this.next = new int[capacity];
+		this.prev = new int[capacity];
+		this.head = new int[buckets];
+		Arrays.fill( this.head, NIL );
+		this.driverTick = new long[buckets];
+		Arrays.fill( this.driverTick, NONE );
+		this.driverCancel = new Runnable[buckets];
+	}
+
+	/**
+	 * @param entry the entry to check
+	 * @return {@code true} iff the entry is pending
+	 */
+	public boolean isPending( final int entry )
+	{
+		return !Double.isNaN( this.due[entry] );
+	}
+
+	/**
+	 * @param entry the entry to check
+	 * @return the entry's due time, or {@link Double#NaN} if not pending
+	 */
+	public double due( final int entry )
+	{
+		return this.due[entry];
+	}
+
+	/**
+	 * (re)schedule an entry, cancelling its pending due time (if any)
+	 * 
+	 * @param entry the entry to schedule
+	 * @param time the absolute due time
+	 */
+	public void schedule( final int entry, final double time )
+	{
+		cancel( entry );
+		final long tick = tick( time );
+		final int b = bucket( tick );
+		this.due[entry] = time;
+		this.prev[entry] = NIL;
+		this.next[entry] = this.head[b];
+		if( this.head[b] != NIL ) this.prev[this.head[b]] = entry;
+		this.head[b] = entry;
+
+		if( b == this.firing )
+		{
+			// fire in this tick, or pick up after firing
+			if( tick <= this.firingTick ) this.firingOrder.push( entry, time );
+			return;
+		}
+		if( this.driverTick[b] == NONE )
+			register( b, tick );
+		else if( tick < this.driverTick[b] )
+		{
+			this.driverCancel[b].run();
+			register( b, tick );
+		}
+	}
+
+	/**
+	 * @param entry the entry to cancel
+	 * @return {@code true} iff the entry was pending
+	 */
+	public boolean cancel( final int entry )
+	{
+		final double time = this.due[entry];
+		if( Double.isNaN( time ) ) return false;
+		final int p = this.prev[entry], n = this.next[entry];
+		if( p == NIL )
+			this.head[bucket( tick( time ) )] = n;
+		else
+			this.next[p] = n;
+		if( n != NIL ) this.prev[n] = p;
+		this.due[entry] = Double.NaN;
+		// any driver of an emptied bucket simply fires without effect
+		return true;
+	}
+
+	private void register( final int b, final long tick )
+	{
+		this.driverTick[b] = tick;
+		this.driverCancel[b] = this.driver
+				.schedule( (tick + 1) * this.width, () -> fire( b, tick ) );
+	}
+
+	private void fire( final int b, final long tick )
+	{
+		this.firing = b;
+		this.firingTick = tick;
+		try
+		{
+			for( int e = this.head[b]; e != NIL; e = this.next[e] )
+				if( tick( this.due[e] ) <= tick )
+					this.firingOrder.push( e, this.due[e] );
+			while( !this.firingOrder.isEmpty() )
+			{
+				final double time = this.firingOrder.peekDue();
+				final int e = this.firingOrder.poll();
+				// skip entries rescheduled or cancelled meanwhile
+				if( this.due[e] != time ) continue;
+				cancel( e );
+				this.handler.fire( e, time );
+			}
+		} finally
+		{
+			this.firingOrder.clear();
+			this.firing = NIL;
+			this.firingTick = NONE;
+			this.driverTick[b] = NONE;
+			this.driverCancel[b] = null;
+		}
+
+		// register the driver for the bucket's next rotation, if any
+		long min = NONE;
+		for( int e = this.head[b]; e != NIL; e = this.next[e] )
+		{
+			final long t = tick( this.due[e] );
+			if( min == NONE || t < min ) min = t;
+		}
+		if( min != NONE ) register( b, min );
+	}
+
+	private long tick( final double time )
+	{
+		return (long) Math.floor( time / this.width );
+	}
+
+	private int bucket( final long tick )
+	{
+		return (int) Math.floorMod( tick, (long) this.head.length );
+	}
+}
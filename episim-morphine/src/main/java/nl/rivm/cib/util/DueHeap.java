@@ -0,0 +1,140 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link DueHeap} is a primitive binary min-heap of (integer) entries by their
+ * due time, breaking ties by entry, for firing transitions in due order
+ * without boxing. It does not track entries: one may be pushed more than once
+ * (e.g. when rescheduled), so callers should skip any polled entry whose due
+ * time no longer matches its {@link #peekDue()}.
+ *
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class DueHeap
+{
+	private int[] entries;
+
+	private double[] dues;
+
+	private int size = 0;
+
+	public DueHeap()
+	{
+		this( 64 );
+	}
+
+	/**
+	 * @param capacity the initial capacity
+	 */
+	public DueHeap( final int capacity )
+	{
+		this.entries = new int[Math.max( 1, capacity )];
+		this.dues = new double[this.entries.length];
+	}
+
+	/** @return the number of pushed entries not yet polled */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/** @return {@code true} iff no entries remain */
+	public boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	/** remove all remaining entries */
+	public void clear()
+	{
+		this.size = 0;
+	}
+
+	/**
+	 * @param entry the entry to add
+	 * @param due its due time
+	 */
+	public void push( final int entry, final double due )
+	{
+		if( this.size == this.entries.length )
+		{
+			this.entries = Arrays.copyOf( this.entries, 2 * this.size );
+			this.dues = Arrays.copyOf( this.dues, 2 * this.size );
+		}
+		int k = this.size++;
+		while( k > 0 )
+		{
+			final int p = (k - 1) >>> 1;
+			if( !before( entry, due, this.entries[p], this.dues[p] ) ) break;
+			this.entries[k] = this.entries[p];
+			this.dues[k] = this.dues[p];
+			k = p;
+		}
+		this.entries[k] = entry;
+		this.dues[k] = due;
+	}
+
+	/** @return the first entry, i.e. the earliest due */
+	public int peek()
+	{
+		if( this.size == 0 ) throw new NoSuchElementException();
+		return this.entries[0];
+	}
+
+	/** @return the due time of the first entry */
+	public double peekDue()
+	{
+		if( this.size == 0 ) throw new NoSuchElementException();
+		return this.dues[0];
+	}
+
+	/** @return the first entry, removing it */
+	public int poll()
+	{
+		final int result = peek();
+		final int last = this.entries[--this.size];
+		final double lastDue = this.dues[this.size];
+		int k = 0;
+		for( int c; (c = 2 * k + 1) < this.size; k = c )
+		{
+			if( c + 1 < this.size && before( this.entries[c + 1],
+					this.dues[c + 1], this.entries[c], this.dues[c] ) )
+				c++;
+			if( !before( this.entries[c], this.dues[c], last, lastDue ) )
+				break;
+			this.entries[k] = this.entries[c];
+			this.dues[k] = this.dues[c];
+		}
+		this.entries[k] = last;
+		this.dues[k] = lastDue;
+		return result;
+	}
+
+	private static boolean before( final int entry1, final double due1,
+		final int entry2, final double due2 )
+	{
+		return due1 < due2 || (due1 == due2 && entry1 < entry2);
+	}
+}
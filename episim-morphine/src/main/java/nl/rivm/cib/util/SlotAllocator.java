@@ -0,0 +1,246 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.util;
+
+import java.util.Arrays;
+
+/**
+ * {@link SlotAllocator} assigns (row) slots to {@code long} identifiers, using
+ * a primitive open-addressing (linear probing) hash table for O(1) identifier
+ * lookups and a free-list for reusing released rows. Once its capacity is
+ * reached, neither {@link #replace} nor {@link #release} followed by
+ * {@link #allocate} allocate any objects.
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class SlotAllocator
+{
+	/** the value returned for unknown identifiers or rows */
+	public static final int NA = -1;
+
+	/** reserved key marking an empty hash table position */
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	/** hash table keys, i.e. identifiers */
+	private long[] keys;
+
+	/** hash table values, i.e. rows */
+	private int[] values;
+
+	/** hash table index mask, i.e. its capacity - 1 */
+	private int mask;
+
+	/** identifier per row, or {@link #EMPTY} */
+	private long[] ids;
+
+	/** released rows, available for reuse */
+	private int[] free;
+
+	private int freeCount = 0;
+
+	/** high-water mark of allocated rows */
+	private int rows = 0;
+
+	/** number of identifiers currently assigned a row */
+	private int size = 0;
+
+	/**
+	 * @param expectedRows the expected maximum number of rows, to size the
+	 *            table and avoid rehashing
+	 */
+	public SlotAllocator( final int expectedRows )
+	{
+		final int n = Math.max( 2, expectedRows );
+		final int capacity = Integer.highestOneBit( 2 * n - 1 ) << 1;
+		this.keys = new long[capacity];
+		Arrays.fill( this.keys, EMPTY );
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+		this.ids = new long[n];
+		Arrays.fill( this.ids, EMPTY );
+		this.free = new int[16];
+	}
+
+	/** @return the number of identifiers currently assigned a row */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/** @return the number of rows ever allocated, including released ones */
+	public int rows()
+	{
+		return this.rows;
+	}
+
+	/**
+	 * @param id the identifier to look up
+	 * @return the row assigned to {@code id}, or {@link #NA}
+	 */
+	public int rowOf( final long id )
+	{
+		for( int i = slot( id );; i = (i + 1) & this.mask )
+		{
+			final long key = this.keys[i];
+			if( key == id ) return this.values[i];
+			if( key == EMPTY ) return NA;
+		}
+	}
+
+	/**
+	 * @param row the row to look up
+	 * @return the identifier currently assigned {@code row}, or {@link #NA}
+	 */
+	public long idOf( final int row )
+	{
+		if( row < 0 || row >= this.rows ) return NA;
+		final long id = this.ids[row];
+		return id == EMPTY ? NA : id;
+	}
+
+	/**
+	 * @param id the new identifier, which must not be assigned yet
+	 * @return a row for {@code id}, reusing any previously released row
+	 */
+	public int allocate( final long id )
+	{
+		final int row;
+		if( this.freeCount > 0 )
+			row = this.free[--this.freeCount];
+		else
+		{
+			row = this.rows++;
+			if( row == this.ids.length )
+			{
+				final int n = this.ids.length;
+				this.ids = Arrays.copyOf( this.ids, 2 * n );
+				Arrays.fill( this.ids, n, 2 * n, EMPTY );
+			}
+		}
+		put( id, row );
+		return row;
+	}
+
+	/**
+	 * reassign the row of one identifier to another, e.g. upon replacement
+	 * 
+	 * @param oldId the identifier to release
+	 * @param newId the identifier to assign the released row
+	 * @return the reassigned row
+	 */
+	public int replace( final long oldId, final long newId )
+	{
+		final int row = remove( oldId );
+		if( row == NA ) throw new IllegalArgumentException(
+				"Unknown identifier: " + oldId );
+		put( newId, row );
+		return row;
+	}
+
+	/**
+	 * @param id the identifier to release
+	 * @return the released row (now available for reuse), or {@link #NA}
+	 */
+	public int release( final long id )
+	{
+		final int row = remove( id );
+		if( row == NA ) return NA;
+		if( this.freeCount == this.free.length )
+			this.free = Arrays.copyOf( this.free, 2 * this.free.length );
+		this.free[this.freeCount++] = row;
+		return row;
+	}
+
+	private void put( final long id, final int row )
+	{
+		if( id == EMPTY )
+			throw new IllegalArgumentException( "Reserved identifier: " + id );
+		if( 2 * (this.size + 1) > this.keys.length ) rehash();
+		int i = slot( id );
+		for( ; this.keys[i] != EMPTY; i = (i + 1) & this.mask )
+			if( this.keys[i] == id ) throw new IllegalArgumentException(
+					"Identifier already assigned: " + id );
+		this.keys[i] = id;
+		this.values[i] = row;
+		this.ids[row] = id;
+		this.size++;
+	}
+
+	private int remove( final long id )
+	{
+		int i = slot( id );
+		for( ; this.keys[i] != id; i = (i + 1) & this.mask )
+			if( this.keys[i] == EMPTY ) return NA;
+		final int row = this.values[i];
+		this.ids[row] = EMPTY;
+		this.size--;
+
+		// backward-shift deletion, keeping probe sequences intact
+		for( int j = i;; )
+		{
+			j = (j + 1) & this.mask;
+			final long key = this.keys[j];
+			if( key == EMPTY ) break;
+			final int k = slot( key );
+			if( i <= j ? (i < k && k <= j) : (i < k || k <= j) ) continue;
+			this.keys[i] = key;
+			this.values[i] = this.values[j];
+			i = j;
+		}
+		this.keys[i] = EMPTY;
+		return row;
+	}
+
+	private void rehash()
+	{
+		final long[] oldKeys = this.keys;
+		final int[] oldValues = this.values;
+		this.keys = new long[2 * oldKeys.length];
+		Arrays.fill( this.keys, EMPTY );
+		this.values = new int[this.keys.length];
+		this.mask = this.keys.length - 1;
+		for( int i = 0; i < oldKeys.length; i++ )
+			if( oldKeys[i] != EMPTY )
+			{
+				int j = slot( oldKeys[i] );
+				while( this.keys[j] != EMPTY )
+					j = (j + 1) & this.mask;
+				this.keys[j] = oldKeys[i];
+				this.values[j] = oldValues[i];
+			}
+	}
+
+	/**
+	 * @param id the identifier
+	 * @return its home position in the hash table (at its current capacity)
+	 */
+	int slot( final long id )
+	{
+		// finalizer of MurmurHash3, spreading sequential identifiers
+		long h = id;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h & this.mask;
+	}
+}
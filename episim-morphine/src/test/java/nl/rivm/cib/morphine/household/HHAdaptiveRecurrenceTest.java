@@ -0,0 +1,164 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHAdaptiveRecurrenceTest} tests {@link HHAdaptiveRecurrence} and
+ * {@link HHPropagation.Convergence}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHAdaptiveRecurrenceTest
+{
+	/** */
+	private static final Logger LOG = LogUtil
+			.getLogger( HHAdaptiveRecurrenceTest.class );
+
+	/** @return a {@link HHPropagation.Convergence} of two attractors */
+	private static HHPropagation.Convergence convergence( final double max )
+	{
+		return new HHPropagation.Convergence( 1, new double[] { max / 2, max },
+				new double[] { max / 4, max / 3 } );
+	}
+
+	/** @return the number of base occurrences until (and incl.) due */
+	private static int untilDue( final HHAdaptiveRecurrence recurrence )
+	{
+		int n = 1;
+		while( !recurrence.isDue() )
+			n++;
+		return n;
+	}
+
+	@Test
+	public void testConvergence()
+	{
+		LOG.info( "Test {}", HHPropagation.Convergence.class.getSimpleName() );
+		final HHPropagation.Convergence convergence = convergence( .1 );
+		Assert.assertEquals( "round", 1, convergence.round() );
+		Assert.assertEquals( "attractors", 2, convergence.attractorCount() );
+		Assert.assertEquals( "max", .1, convergence.max(), 0 );
+		Assert.assertEquals( "max #0", .05, convergence.max( 0 ), 0 );
+		Assert.assertEquals( "mean #1", .1 / 3, convergence.mean( 1 ), 0 );
+		Assert.assertEquals( "none", 0, new HHPropagation.Convergence( 1,
+				new double[0], new double[0] ).max(), 0 );
+	}
+
+	@Test
+	public void testThreshold()
+	{
+		LOG.info( "Test {} threshold",
+				HHAdaptiveRecurrence.class.getSimpleName() );
+		final HHAdaptiveRecurrence recurrence = HHAdaptiveRecurrence.of( 1e-3,
+				2, 16 );
+		Assert.assertEquals( "base", 1, recurrence.interval() );
+		Assert.assertTrue( "due", recurrence.isDue() );
+		Assert.assertTrue( "due", recurrence.isDue() );
+
+		// at or above the threshold: remain at the base recurrence
+		recurrence.update( convergence( 1e-3 ) );
+		Assert.assertEquals( "at threshold", 1, recurrence.interval() );
+		recurrence.update( convergence( .5 ) );
+		Assert.assertEquals( "above threshold", 1, recurrence.interval() );
+
+		// below: stretch, until changing again
+		recurrence.update( convergence( 1e-4 ) );
+		Assert.assertEquals( "below threshold", 2, recurrence.interval() );
+		Assert.assertEquals( "stretched", 2, untilDue( recurrence ) );
+		recurrence.update( convergence( .5 ) );
+		Assert.assertEquals( "changed", 1, recurrence.interval() );
+		Assert.assertEquals( "base", 1, untilDue( recurrence ) );
+
+		// a zero threshold never stretches
+		final HHAdaptiveRecurrence never = HHAdaptiveRecurrence.of( 0, 2, 16 );
+		never.update( convergence( 0 ) );
+		Assert.assertEquals( "never", 1, never.interval() );
+	}
+
+	@Test
+	public void testGrowth()
+	{
+		LOG.info( "Test {} growth", HHAdaptiveRecurrence.class.getSimpleName() );
+		final HHAdaptiveRecurrence recurrence = HHAdaptiveRecurrence.of( 1e-3,
+				3, 20 );
+		// grow by the factor, capped at the maximum interval
+		final int[] expected = { 3, 9, 20, 20 };
+		for( int k = 0; k < expected.length; k++ )
+		{
+			recurrence.update( convergence( 0 ) );
+			Assert.assertEquals( "interval #" + k, expected[k],
+					recurrence.interval() );
+			Assert.assertEquals( "due #" + k, expected[k],
+					untilDue( recurrence ) );
+		}
+
+		// no overflow at large factors
+		final HHAdaptiveRecurrence large = HHAdaptiveRecurrence.of( 1e-3,
+				Integer.MAX_VALUE, Integer.MAX_VALUE );
+		large.update( convergence( 0 ) );
+		large.update( convergence( 0 ) );
+		Assert.assertEquals( "capped", Integer.MAX_VALUE, large.interval() );
+	}
+
+	@Test
+	public void testReset()
+	{
+		LOG.info( "Test {} reset", HHAdaptiveRecurrence.class.getSimpleName() );
+		final HHAdaptiveRecurrence recurrence = HHAdaptiveRecurrence.of( 1e-3,
+				2, 8 );
+		recurrence.update( convergence( 0 ) );
+		recurrence.update( convergence( 0 ) );
+		Assert.assertEquals( "stretched", 4, recurrence.interval() );
+		Assert.assertFalse( "skipped", recurrence.isDue() );
+		Assert.assertFalse( "skipped", recurrence.isDue() );
+
+		// a disturbance halfway: the next base occurrence is due
+		recurrence.reset();
+		Assert.assertEquals( "base", 1, recurrence.interval() );
+		Assert.assertTrue( "due", recurrence.isDue() );
+		Assert.assertTrue( "due", recurrence.isDue() );
+	}
+
+	@Test
+	public void testIllegal()
+	{
+		LOG.info( "Test {} illegal arguments",
+				HHAdaptiveRecurrence.class.getSimpleName() );
+		for( Runnable illegal : new Runnable[] {
+				() -> HHAdaptiveRecurrence.of( -1, 2, 8 ),
+				() -> HHAdaptiveRecurrence.of( 1e-3, 0, 8 ),
+				() -> HHAdaptiveRecurrence.of( 1e-3, 2, 0 ) } )
+			try
+			{
+				illegal.run();
+				Assert.fail( "accepted illegal argument" );
+			} catch( final IllegalArgumentException expected )
+			{
+				// ok
+			}
+	}
+}
@@ -0,0 +1,110 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.math.BigDecimal;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHAppreciationTableTest} validates {@link HHAppreciationTable}
+ * lookups against their {@link BigDecimal} originals
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHAppreciationTableTest
+{
+	/** */
+	private static final Logger LOG = LogUtil
+			.getLogger( HHAppreciationTableTest.class );
+
+	private static final double[] APPRECIATIONS = { 0, .1, .25, .5, .75, 1,
+			1, 2, 3 };
+
+	private static final double[] LEVELS = { 0, .1, .25, .5, .75, .9, 1 };
+
+	private static void validate( final HHAttitudePropagator propagator )
+	{
+		final HHAppreciationTable table = HHAppreciationTable.of( propagator,
+				APPRECIATIONS );
+		for( double calc : LEVELS )
+		{
+			final int level = table.level( calc );
+			Assert.assertEquals( "cached level", level, table.level( calc ) );
+			for( double w : APPRECIATIONS )
+			{
+				final int k = table.appreciation( w );
+				Assert.assertNotEquals( "compiled", HHAppreciationTable.NA, k );
+				final double expected = propagator
+						.filteredAppreciation( BigDecimal.valueOf( w ),
+								BigDecimal.valueOf( calc ) )
+						.doubleValue();
+				Assert.assertEquals( "f(" + w + "," + calc + ")", expected,
+						table.get( level, k ), 0 );
+			}
+		}
+		Assert.assertEquals( "levels", LEVELS.length, table.levelCount() );
+
+		// uncompiled appreciations fall back on the propagator
+		final double w = .3, calc = LEVELS[0];
+		Assert.assertEquals( "uncompiled", HHAppreciationTable.NA,
+				table.appreciation( w ) );
+		Assert.assertEquals( "fallback",
+				propagator.filteredAppreciation( w, calc ),
+				table.filteredAppreciation( table.level( calc ),
+						HHAppreciationTable.NA, w, calc ),
+				0 );
+	}
+
+	@Test
+	public void testThreshold()
+	{
+		LOG.info( "Test {} for {}", HHAppreciationTable.class.getSimpleName(),
+				HHAttitudePropagator.Threshold.class.getSimpleName() );
+		validate( new HHAttitudePropagator.Threshold() );
+	}
+
+	@Test
+	public void testShifted()
+	{
+		LOG.info( "Test {} for {}", HHAppreciationTable.class.getSimpleName(),
+				HHAttitudePropagator.Shifted.class.getSimpleName() );
+		validate( new HHAttitudePropagator.Shifted() );
+	}
+
+	@Test
+	public void testMaxLevels()
+	{
+		LOG.info( "Test {} level limit",
+				HHAppreciationTable.class.getSimpleName() );
+		final HHAppreciationTable table = HHAppreciationTable
+				.of( new HHAttitudePropagator.Shifted(), APPRECIATIONS );
+		for( int l = 0; l < HHAppreciationTable.MAX_LEVELS; l++ )
+			Assert.assertEquals( "level", l,
+					table.level( (double) l / HHAppreciationTable.MAX_LEVELS ) );
+		Assert.assertEquals( "exhausted", HHAppreciationTable.NA,
+				table.level( 1 ) );
+	}
+}
@@ -0,0 +1,184 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.aeonbits.owner.ConfigCache;
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.coala.bind.LocalBinder;
+import io.coala.bind.LocalConfig;
+import io.coala.dsol3.Dsol3Scheduler;
+import io.coala.exception.Thrower;
+import io.coala.log.LogUtil;
+import io.coala.time.ReplicateConfig;
+import io.coala.time.Scheduler;
+import io.coala.util.MapBuilder;
+import nl.rivm.cib.episim.cbs.TimeUtil;
+
+/**
+ * {@link HHAttractorTest} tests {@link HHAttractor.SignalSchedule}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHAttractorTest
+{
+	/** */
+	private static final Logger LOG = LogUtil.getLogger( HHAttractorTest.class );
+
+	/** noon signals, never at the (midnight) horizon */
+	private static final String CONFIG = "{'confidence':.5,'schedule':["
+			// yearly, stepping cumulatively by month: Jan 31, Feb 29, Mar 29..
+			+ "{'occurrence':'0 0 12 31 1 ? *','period':'P1M','series':{"
+			+ "'confidence':{'0':.5,'1':.6,'2':.7,'3':.8},"
+			+ "'complacency':{'0':.4,'1':.3}}},"
+			// weekly, each incidence overlapping the next, the last truncated
+			+ "{'occurrence':'0 0 12 ? * MON *','period':'P3D','series':{"
+			+ "'calculation':{'0':.1,'1':.2,'2':.3,'3':.4}}},"
+			// monthly, without period: only the first value
+			+ "{'occurrence':'0 0 12 15 * ? *','series':{"
+			+ "'complacency':{'0':.9,'1':.8}}}]}";
+
+	/** the horizon, in days since the offset */
+	private static final int DAYS = 120;
+
+	/** (day, column, value) signals, by day then column */
+	private static final Comparator<double[]> ORDER = ( s1,
+		s2 ) -> s1[0] != s2[0] ? Double.compare( s1[0], s2[0] )
+				: Double.compare( s1[1], s2[1] );
+
+	@Test
+	public void testCompile() throws IOException
+	{
+		LOG.info( "Test {} compile",
+				HHAttractor.SignalSchedule.class.getSimpleName() );
+		final ZonedDateTime offset = ZonedDateTime.of( 2012, 1, 1, 0, 0, 0, 0,
+				TimeUtil.NL_TZ ), until = offset.plusDays( DAYS );
+		ConfigCache.remove( ReplicateConfig.class );
+		ConfigCache.getOrCreate( ReplicateConfig.class, MapBuilder.unordered()
+				.put( ReplicateConfig.ID_KEY, "signalTest" )
+				.put( ReplicateConfig.OFFSET_KEY, "" + offset )
+				.put( ReplicateConfig.DURATION_KEY, "" + DAYS ).build() );
+		final LocalBinder binder = LocalConfig.builder().withId( "signalTest" )
+				.withProvider( Scheduler.class, Dsol3Scheduler.class ).build()
+				.createBinder();
+		final JsonNode config = new ObjectMapper()
+				.readTree( CONFIG.replace( '\'', '"' ) );
+		final Scheduler scheduler = binder.inject( Scheduler.class );
+
+		final List<double[]> observed = new ArrayList<>();
+		final HHSignalTimeline.Builder builder = HHSignalTimeline.builder();
+		scheduler.onReset( s ->
+		{
+			try
+			{
+				final HHAttractor observable = binder
+						.inject( HHAttractor.SignalSchedule.class )
+						.reset( config ),
+						compiled = binder
+								.inject( HHAttractor.SignalSchedule.class )
+								.reset( config );
+				observable.adjustments().subscribe( map ->
+				{
+					final double day = HHSignalTimeline.toDays( offset,
+							s.now().toJava8( offset ) );
+					map.forEach( ( attr, value ) -> observed
+							.add( new double[]
+							{ day, attr.ordinal(), value.doubleValue() } ) );
+				}, e -> LOG.error( "Problem observing signals", e ) );
+				Assert.assertTrue( "compiled",
+						compiled.compile( 0, until, builder ) );
+			} catch( final ParseException e )
+			{
+				Thrower.rethrowUnchecked( e );
+			}
+		} );
+		scheduler.run();
+
+		final HHSignalTimeline timeline = builder.build();
+		final List<double[]> expected = new ArrayList<>();
+		for( double day; (day = timeline.nextDay()) < Double.POSITIVE_INFINITY; )
+		{
+			final double at = day;
+			timeline.apply( day, ( row, col, value ) -> expected
+					.add( new double[]
+			{ at, col, value } ) );
+		}
+		expected.sort( ORDER );
+		observed.sort( ORDER );
+		LOG.trace( "Compiled {}, observed {} signals", expected.size(),
+				observed.size() );
+
+		final int conf = HHAttribute.CONFIDENCE.ordinal(),
+				comp = HHAttribute.COMPLACENCY.ordinal(),
+				calc = HHAttribute.CALCULATION.ordinal();
+		// cumulative months from Jan 31: Feb 29, then Mar 29 (not Mar 31)
+		Assert.assertEquals( "cumulative", 1,
+				count( expected, conf, .7,
+						HHSignalTimeline.toDays( offset, ZonedDateTime.of( 2012,
+								3, 29, 12, 0, 0, 0, TimeUtil.NL_TZ ) ) ) );
+		// the last weekly incidence (from Apr 23) is truncated at Apr 30
+		Assert.assertEquals( "truncated", count( expected, calc, .1, -1 ) - 1,
+				count( expected, calc, .4, -1 ) );
+		// without period, only the first value of each occurrence
+		Assert.assertEquals( "no period", 4, count( expected, comp, .9, -1 ) );
+		Assert.assertEquals( "no period", 0, count( expected, comp, .8, -1 ) );
+		for( double[] signal : expected )
+			Assert.assertTrue( "horizon", signal[0] < DAYS );
+
+		Assert.assertEquals( "signals", expected.size(), observed.size() );
+		for( int k = 0; k < expected.size(); k++ )
+		{
+			Assert.assertEquals( "day #" + k, expected.get( k )[0],
+					observed.get( k )[0], 1e-6 );
+			Assert.assertEquals( "key #" + k, expected.get( k )[1],
+					observed.get( k )[1], 0 );
+			Assert.assertEquals( "value #" + k, expected.get( k )[2],
+					observed.get( k )[2], 0 );
+		}
+	}
+
+	/**
+	 * @return the number of signals of given column and value, on given day
+	 *         or (if negative) any day
+	 */
+	private static int count( final List<double[]> signals, final int col,
+		final double value, final double day )
+	{
+		int result = 0;
+		for( double[] signal : signals )
+			if( signal[1] == col && signal[2] == value
+					&& (day < 0 || Math.abs( signal[0] - day ) < 1e-6) )
+				result++;
+		return result;
+	}
+}
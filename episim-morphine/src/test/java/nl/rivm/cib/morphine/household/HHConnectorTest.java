@@ -0,0 +1,261 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.util.Arrays;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ujmp.core.Matrix;
+
+import io.coala.log.LogUtil;
+import io.coala.math3.Math3PseudoRandom;
+import io.coala.random.PseudoRandom;
+
+/**
+ * {@link HHConnectorTest} tests {@link HHConnector}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHConnectorTest
+{
+	/** */
+	private static final Logger LOG = LogUtil
+			.getLogger( HHConnectorTest.class );
+
+	private static final int N = 1000;
+
+	private final PseudoRandom rng = new Math3PseudoRandom.MersenneTwisterFactory()
+			.create( PseudoRandom.Config.NAME_DEFAULT, 1L );
+
+	private static void assertSimple( final HHEdgeList edges )
+	{
+		final long[] keys = new long[edges.size()];
+		for( int e = 0; e < edges.size(); e++ )
+		{
+			Assert.assertTrue( "self-loop or unordered",
+					edges.from( e ) < edges.to( e ) );
+			keys[e] = (long) edges.from( e ) * N + edges.to( e );
+		}
+		Arrays.sort( keys );
+		for( int e = 1; e < keys.length; e++ )
+			Assert.assertNotEquals( "multi-link", keys[e - 1], keys[e] );
+	}
+
+	/** @return the number of non-zero links in W */
+	private static long links( final Matrix W )
+	{
+		long result = 0;
+		for( long[] x : W.availableCoordinates() )
+			if( W.getAsDouble( x ) != 0 ) result++;
+		return result;
+	}
+
+	@Test
+	public void testBarabasiAlbert()
+	{
+		final int m = 3;
+		final HHEdgeList edges = new HHConnector.BarabasiAlbert( this.rng )
+				.edges( N, () -> (long) m, x -> true );
+		assertSimple( edges );
+		final int[] degrees = edges.degrees( N );
+		int max = 0;
+		for( int i = 0; i < N; i++ )
+		{
+			Assert.assertTrue( "unconnected #" + i, degrees[i] >= m );
+			max = Math.max( max, degrees[i] );
+		}
+		LOG.trace( "BA links: {}, max degree: {}", edges.size(), max );
+		// m(m-1)/2 seed links + m links per next peer, a few draws may fail
+		Assert.assertTrue( edges.size() <= m * (m - 1) / 2 + m * (N - m) );
+		Assert.assertTrue( edges.size() > m * (N - m) * 9 / 10 );
+		// preferential attachment yields hubs well above the mean degree
+		Assert.assertTrue( "no hubs: " + max, max > 4 * 2 * m );
+	}
+
+	@Test
+	public void testConfiguration()
+	{
+		final int[] target = new int[N];
+		for( int i = 0; i < N; i++ )
+			target[i] = 1 + i % 7;
+		final int[] next = { 0 };
+		final HHEdgeList edges = new HHConnector.Configuration( this.rng )
+				.edges( N, () -> (long) target[next[0]++], x -> true );
+		assertSimple( edges );
+		final int[] degrees = edges.degrees( N );
+		long sum = 0, dropped = 0;
+		// two stubs per link drawn, as for the other connectors
+		for( int i = 0; i < N; i++ )
+		{
+			Assert.assertTrue( degrees[i] <= 2 * target[i] );
+			sum += 2 * target[i];
+			dropped += 2 * target[i] - degrees[i];
+		}
+		LOG.trace( "CM links: {}, dropped stubs: {} of {}", edges.size(),
+				dropped, sum );
+		// few stubs are lost to self-loops and repeats
+		Assert.assertTrue( dropped < sum / 50 );
+	}
+
+	@Test
+	public void testDegree()
+	{
+		// each connector's degree K yields a mean degree of about 2K
+		final int k = 5;
+		for( HHConnector.Type type : HHConnector.Type.values() )
+		{
+			final double mean = 2. * links(
+					type.create( this.rng, .1, 4, .8 ).connect( N, k ) ) / N;
+			LOG.trace( "{} mean degree: {}", type, mean );
+			Assert.assertEquals( type + " mean degree", 2 * k, mean, 1 );
+		}
+	}
+
+	@Test
+	public void testLegal()
+	{
+		for( HHConnector.Type type : new HHConnector.Type[] {
+				HHConnector.Type.BARABASI_ALBERT,
+				HHConnector.Type.CONFIGURATION } )
+		{
+			final HHConnector conn = type.create( this.rng, 0, 1, 0 );
+			final HHEdgeList edges = conn instanceof HHConnector.BarabasiAlbert
+					? ((HHConnector.BarabasiAlbert) conn).edges( N, () -> 4L,
+							x -> (x[0] + x[1]) % 2 == 1 )
+					: ((HHConnector.Configuration) conn).edges( N, () -> 4L,
+							x -> (x[0] + x[1]) % 2 == 1 );
+			Assert.assertTrue( type + " empty", edges.size() > 0 );
+			for( int e = 0; e < edges.size(); e++ )
+				Assert.assertEquals( type + " illegal", 1,
+						(edges.from( e ) + edges.to( e )) % 2 );
+		}
+	}
+
+	@Test
+	public void testRejoin()
+	{
+		final int k = 10;
+		for( HHConnector.Type type : HHConnector.Type.values() )
+		{
+			final long[] peers = type.create( this.rng, 0, 1, 0 ).rejoin( 0, k,
+					() -> this.rng.nextInt( N ), () -> this.rng.nextInt( 10 ),
+					x -> x[1] % 2 == 0 );
+			Assert.assertTrue( type + " count", peers.length <= k );
+			for( int l = 0; l < peers.length; l++ )
+			{
+				Assert.assertNotEquals( type + " self", 0, peers[l] );
+				Assert.assertEquals( type + " legal", 0, peers[l] % 2 );
+				for( int m = 0; m < l; m++ )
+					Assert.assertNotEquals( type + " distinct", peers[m],
+							peers[l] );
+			}
+		}
+		// preferential rules draw from the preferential supplier
+		for( long j : new HHConnector.BarabasiAlbert( this.rng ).rejoin( 0, k,
+				() -> N, () -> 2, x -> true ) )
+			Assert.assertEquals( 2, j );
+	}
+
+	@Test
+	public void testStochasticBlock()
+	{
+		final int B = 4, k = 10;
+		final double assortativity = .8;
+		final HHConnector.StochasticBlock conn = new HHConnector.StochasticBlock(
+				this.rng, B, assortativity );
+		final HHEdgeList edges = conn.edges( N, k, x -> true );
+		assertSimple( edges );
+		int within = 0;
+		for( int e = 0; e < edges.size(); e++ )
+			if( conn.block( edges.from( e ) ) == conn.block( edges.to( e ) ) )
+				within++;
+		final double mean = 2. * edges.size() / N,
+				fraction = (double) within / edges.size();
+		LOG.trace( "SBM links: {}, mean degree: {}, assortative: {}",
+				edges.size(), mean, fraction );
+		Assert.assertEquals( 2 * k, mean, 1 );
+		Assert.assertEquals( assortativity, fraction, .03 );
+	}
+
+	@Test
+	public void testRegionalBlocks()
+	{
+		final double[] shares = { 1, 2, 3, 4 };
+		final int B = shares.length, k = 10;
+		final double assortativity = .8;
+		final HHAttractorBroker modulo = HHAttractorBroker.Type.MODULO
+				.create( shares, this.rng ),
+				regional = HHAttractorBroker.Type.REGIONAL.create( shares,
+						this.rng );
+		final int[] blockOf = new int[N], counts = new int[B];
+		for( int x = 0; x < N; x++ )
+		{
+			Assert.assertEquals( x % B, modulo.next( x ) );
+			counts[blockOf[x] = regional.next( x )]++;
+		}
+		for( int b = 0; b < B; b++ )
+			Assert.assertEquals( "share of block " + b, shares[b] / 10,
+					(double) counts[b] / N, .05 );
+
+		final HHEdgeList edges = new HHConnector.StochasticBlock( this.rng, B,
+				assortativity ).edges( blockOf, k, x -> true );
+		assertSimple( edges );
+		int within = 0;
+		for( int e = 0; e < edges.size(); e++ )
+			if( blockOf[edges.from( e )] == blockOf[edges.to( e )] ) within++;
+		final double mean = 2. * edges.size() / N,
+				fraction = (double) within / edges.size();
+		LOG.trace( "Regional SBM links: {}, mean degree: {}, assortative: {}",
+				edges.size(), mean, fraction );
+		Assert.assertEquals( 2 * k, mean, 1 );
+		Assert.assertEquals( assortativity, fraction, .03 );
+	}
+
+	@Test
+	public void testManyBlocks()
+	{
+		// thousands of (regional) blocks of uneven size
+		final int B = 2000, n = 20000, k = 3;
+		final double assortativity = .8;
+		final int[] blockOf = new int[n];
+		for( int x = 0; x < n; x++ )
+			blockOf[x] = x % 3 == 0 ? 0 : x % B;
+		final HHEdgeList edges = new HHConnector.StochasticBlock( this.rng, B,
+				assortativity ).edges( blockOf, k, x -> true );
+		final long[] keys = new long[edges.size()];
+		int within = 0;
+		for( int e = 0; e < edges.size(); e++ )
+		{
+			keys[e] = (long) edges.from( e ) * n + edges.to( e );
+			if( blockOf[edges.from( e )] == blockOf[edges.to( e )] ) within++;
+		}
+		Arrays.sort( keys );
+		for( int e = 1; e < keys.length; e++ )
+			Assert.assertNotEquals( "multi-link", keys[e - 1], keys[e] );
+		final double cross = 2. * (edges.size() - within) / n;
+		LOG.trace( "Many-block SBM links: {}, between-block degree: {}",
+				edges.size(), cross );
+		// each peer expects (1-a)k links to and from other blocks
+		Assert.assertEquals( (1 - assortativity) * 2 * k, cross, .1 );
+	}
+}
@@ -0,0 +1,134 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.coala.log.LogUtil;
+import io.coala.math3.Math3PseudoRandom;
+import io.coala.random.PseudoRandom;
+
+/**
+ * {@link HHEdgeFileTest} tests {@link HHEdgeFile}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHEdgeFileTest
+{
+	/** */
+	private static final Logger LOG = LogUtil.getLogger( HHEdgeFileTest.class );
+
+	private static final int N = 500;
+
+	private final PseudoRandom rng = new Math3PseudoRandom.MersenneTwisterFactory()
+			.create( PseudoRandom.Config.NAME_DEFAULT, 1L );
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		LOG.info( "Test {} round trip", HHEdgeFile.class.getSimpleName() );
+		final HHEdgeList edges = new HHConnector.BarabasiAlbert( this.rng )
+				.edges( N, () -> 3L, x -> true );
+		for( int e = 0; e < edges.size(); e++ )
+			edges.weight( e, this.rng.nextDouble() );
+		final Path file = Files.createTempFile( "network", ".bin" );
+		file.toFile().deleteOnExit();
+		HHEdgeFile.write( file, edges, N );
+
+		Assert.assertEquals( N, HHEdgeFile.nodes( file ) );
+		Assert.assertEquals( HHEdgeFile.HEADER_BYTES + 16L * edges.size(),
+				Files.size( file ) );
+		final HHEdgeList read = new HHConnector.FromFile( file ).edges( N );
+		Assert.assertEquals( edges.size(), read.size() );
+		for( int e = 0; e < edges.size(); e++ )
+		{
+			Assert.assertEquals( edges.from( e ), read.from( e ) );
+			Assert.assertEquals( edges.to( e ), read.to( e ) );
+			Assert.assertEquals( edges.weight( e ), read.weight( e ), 0 );
+		}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testNodeCount() throws IOException
+	{
+		final Path file = Files.createTempFile( "network", ".bin" );
+		file.toFile().deleteOnExit();
+		HHEdgeFile.write( file, HHEdgeList.of( 1 ), N );
+		new HHConnector.FromFile( file ).edges( N + 1 );
+	}
+
+	@Test( expected = IOException.class )
+	public void testMagic() throws IOException
+	{
+		final Path file = Files.createTempFile( "network", ".bin" );
+		file.toFile().deleteOnExit();
+		Files.write( file, new byte[HHEdgeFile.HEADER_BYTES] );
+		HHEdgeFile.read( file );
+	}
+
+	@Test( expected = IOException.class )
+	public void testNegativeFromGap() throws IOException
+	{
+		// a single link, its from gap at the start of the from gaps
+		read( HHEdgeFile.HEADER_BYTES, -1 );
+	}
+
+	@Test( expected = IOException.class )
+	public void testNegativeToGap() throws IOException
+	{
+		// a single link, its to gap at the start of the to gaps
+		read( HHEdgeFile.HEADER_BYTES + Integer.BYTES, -1 );
+	}
+
+	@Test( expected = IOException.class )
+	public void testFromRange() throws IOException
+	{
+		read( HHEdgeFile.HEADER_BYTES, N );
+	}
+
+	/** read a single-link edge file, corrupted at given byte offset */
+	private static HHEdgeList read( final int offset, final int value )
+		throws IOException
+	{
+		final Path file = Files.createTempFile( "network", ".bin" );
+		file.toFile().deleteOnExit();
+		final HHEdgeList edges = HHEdgeList.of( 1 );
+		edges.add( 1, 2, 1 );
+		HHEdgeFile.write( file, edges, N );
+		try( final FileChannel channel = FileChannel.open( file,
+				StandardOpenOption.WRITE ) )
+		{
+			final ByteBuffer buf = ByteBuffer.allocate( Integer.BYTES );
+			buf.putInt( value ).flip();
+			channel.write( buf, offset );
+		}
+		return HHEdgeFile.read( file );
+	}
+}
@@ -0,0 +1,137 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ujmp.core.Matrix;
+import org.ujmp.core.enums.ValueType;
+
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHJournalTest} tests {@link HHJournal}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHJournalTest
+{
+	/** */
+	private static final Logger LOG = LogUtil.getLogger( HHJournalTest.class );
+
+	@Test
+	public void testReplay() throws IOException
+	{
+		LOG.info( "Test {} replay", HHJournal.class.getSimpleName() );
+		final Path dir = Files.createTempDirectory( "journal" );
+		dir.toFile().deleteOnExit();
+		final int rows = 4, segmentRecords = 3;
+		try( final HHJournal journal = HHJournal.open( dir, segmentRecords ) )
+		{
+			for( int i = 1; i < rows; i++ )
+			{
+				journal.append( 0, HHJournal.Type.HOUSEHOLD, i, 10 + i, 0 );
+				journal.append( 0, HHJournal.Type.ATTITUDE, i, .1 * i, .2 * i );
+			}
+			journal.append( 1, HHJournal.Type.IMPRESSION, 1, 2, 1 );
+			journal.append( 2, HHJournal.Type.ATTITUDE, 2, .5, .6 );
+			journal.append( 3, HHJournal.Type.DISTURBANCE, 0,
+					HHAttribute.CONFIDENCE.ordinal(), .9 );
+			Assert.assertEquals( "count", 9, journal.count() );
+		}
+		final long segments;
+		try( final Stream<Path> files = Files.list( dir ) )
+		{
+			segments = files.filter( HHJournal::isSegment ).count();
+		}
+		Assert.assertEquals( "segments", 3, segments );
+
+		final HHJournal.Reader reader = HHJournal.read( dir );
+		final AtomicInteger impressions = new AtomicInteger();
+		Assert.assertEquals( "all", 9,
+				reader.replay( Double.POSITIVE_INFINITY,
+						( time, type, row, value0, value1 ) ->
+						{
+							if( type == HHJournal.Type.IMPRESSION )
+								impressions.incrementAndGet();
+						} ) );
+		Assert.assertEquals( "impressions", 1, impressions.get() );
+
+		final Matrix hhAttributes = Matrix.Factory.zeros( ValueType.DOUBLE,
+				rows, HHAttribute.values().length );
+		Assert.assertEquals( "until t=1", 7,
+				reader.replay( 1, hhAttributes ) );
+		Assert.assertEquals( "identifier", 12, hhAttributes.getAsLong( 2,
+				HHAttribute.IDENTIFIER.ordinal() ) );
+		Assert.assertEquals( "initial", .2, hhAttributes.getAsDouble( 2,
+				HHAttribute.CONFIDENCE.ordinal() ), 0 );
+		Assert.assertEquals( "undisturbed", 0, hhAttributes.getAsDouble( 0,
+				HHAttribute.CONFIDENCE.ordinal() ), 0 );
+
+		Assert.assertEquals( "until t=3", 9,
+				reader.replay( 3, hhAttributes ) );
+		Assert.assertEquals( "propagated", .5, hhAttributes.getAsDouble( 2,
+				HHAttribute.CONFIDENCE.ordinal() ), 0 );
+		Assert.assertEquals( "disturbed", .9, hhAttributes.getAsDouble( 0,
+				HHAttribute.CONFIDENCE.ordinal() ), 0 );
+	}
+
+	@Test
+	public void testReopen() throws IOException
+	{
+		LOG.info( "Test {} reopen", HHJournal.class.getSimpleName() );
+		final Path dir = Files.createTempDirectory( "journal" );
+		dir.toFile().deleteOnExit();
+		final int segmentRecords = 3;
+		try( final HHJournal journal = HHJournal.open( dir, segmentRecords ) )
+		{
+			for( int i = 0; i < 3 * segmentRecords; i++ )
+				journal.append( i, HHJournal.Type.ATTITUDE, 0, .1, .2 );
+		}
+		// a shorter run, filling its last segment exactly
+		try( final HHJournal journal = HHJournal.open( dir, segmentRecords ) )
+		{
+			for( int i = 0; i < segmentRecords; i++ )
+				journal.append( i, HHJournal.Type.ATTITUDE, 1, .3, .4 );
+		}
+		final long segments;
+		try( final Stream<Path> files = Files.list( dir ) )
+		{
+			segments = files.filter( HHJournal::isSegment ).count();
+		}
+		Assert.assertEquals( "stale segments", 1, segments );
+		final AtomicInteger stale = new AtomicInteger();
+		Assert.assertEquals( "records", segmentRecords,
+				HHJournal.read( dir ).replay( Double.POSITIVE_INFINITY,
+						( time, type, row, value0, value1 ) ->
+						{
+							if( row != 1 ) stale.incrementAndGet();
+						} ) );
+		Assert.assertEquals( "stale records", 0, stale.get() );
+	}
+}
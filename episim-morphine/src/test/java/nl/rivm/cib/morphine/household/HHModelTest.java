@@ -0,0 +1,209 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.aeonbits.owner.ConfigCache;
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.coala.bind.LocalBinder;
+import io.coala.bind.LocalConfig;
+import io.coala.dsol3.Dsol3Scheduler;
+import io.coala.log.LogUtil;
+import io.coala.math3.Math3ProbabilityDistribution;
+import io.coala.math3.Math3PseudoRandom;
+import io.coala.random.DistributionParser;
+import io.coala.random.ProbabilityDistribution;
+import io.coala.random.PseudoRandom;
+import io.coala.time.ReplicateConfig;
+import io.coala.time.Scheduler;
+import io.coala.util.MapBuilder;
+import nl.rivm.cib.episim.cbs.TimeUtil;
+
+/**
+ * {@link HHModelTest} tests {@link HHModel}
+ *
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHModelTest
+{
+	/** */
+	private static final Logger LOG = LogUtil.getLogger( HHModelTest.class );
+
+	private static final ObjectMapper JSON = new ObjectMapper();
+
+	/** the statistics and attitude changes of a run */
+	private static class Outputs
+	{
+		final List<JsonNode> statistics = new ArrayList<>();
+		final List<double[]> changes = new ArrayList<>();
+	}
+
+	/**
+	 * run a small population with its transition ticks (on the hour) apart
+	 * from its statistics and propagation (at a quarter resp. half past), to
+	 * avoid any ambiguous ordering of simultaneous events
+	 * 
+	 * @param mode the {@link HHConfig.ExecutionMode}
+	 * @return the {@link Outputs}
+	 */
+	private Outputs run( final HHConfig.ExecutionMode mode )
+		throws IOException
+	{
+		ConfigCache.remove( HHConfig.class );
+		final HHConfig hhConfig = HHConfig.getOrCreate(
+				HHConfig.CONF_ARG + "=" + HHConfig.CONFIG_BASE_DIR
+						+ "morphine.dist.yaml",
+				HHConfig.REPLICATION_PREFIX + "random-seed=1",
+				HHConfig.REPLICATION_PREFIX + "duration-period=P3M",
+				HHConfig.REPLICATION_PREFIX + "execution-mode=" + mode,
+				HHConfig.REPLICATION_PREFIX + "execution-step=1 h",
+				HHConfig.REPLICATION_PREFIX + "calendar-bucket-width=1 h",
+				HHConfig.STATISTICS_PREFIX + "recurrence=0 45 0 1 * ? *",
+				HHConfig.STATISTICS_PREFIX + "db-enabled=false",
+				HHConfig.STATISTICS_PREFIX + "network-metrics-wedges=0",
+				HHConfig.POPULATION_PREFIX + "size=400",
+				HHConfig.HESITANCY_PREFIX
+						+ "propagator-recurrence=0 30 0 ? * MON *" );
+		LOG.info( "Run {}, config: {}", mode,
+				hhConfig.toJSON( HHConfig.MORPHINE_BASE ) );
+
+		final LocalConfig binderConfig = LocalConfig.builder()
+				.withId( hhConfig.setupName() )
+				.withProvider( Scheduler.class, Dsol3Scheduler.class )
+				.withProvider( ProbabilityDistribution.Parser.class,
+						DistributionParser.class )
+				.build();
+		final ZonedDateTime offset = hhConfig.offset()
+				.atStartOfDay( TimeUtil.NL_TZ );
+		final long durationDays = Duration
+				.between( offset, offset.plus( hhConfig.duration() ) ).toDays();
+		ConfigCache.remove( ReplicateConfig.class );
+		ConfigCache.getOrCreate( ReplicateConfig.class, MapBuilder.unordered()
+				.put( ReplicateConfig.ID_KEY, "" + binderConfig.rawId() )
+				.put( ReplicateConfig.OFFSET_KEY, "" + offset )
+				.put( ReplicateConfig.DURATION_KEY, "" + durationDays )
+				.build() );
+		final LocalBinder binder = binderConfig
+				.createBinder( MapBuilder.<Class<?>, Object>unordered()
+						.put( ProbabilityDistribution.Factory.class,
+								new Math3ProbabilityDistribution.Factory(
+										new Math3PseudoRandom.MersenneTwisterFactory()
+												.create( PseudoRandom.Config.NAME_DEFAULT,
+														hhConfig.randomSeed() ) ) )
+						.build() );
+
+		final HHModel model = binder.inject( HHModel.class );
+		final Outputs result = new Outputs();
+		model.statistics().subscribe( dao ->
+		{
+			dao.config = null; // differs by execution mode
+			result.statistics.add( JSON.readTree( dao.toString() ) );
+		}, e -> LOG.error( "Problem generating household stats", e ) );
+		model.network().subscribe( e ->
+		{
+			@SuppressWarnings( "unchecked" )
+			final Map<HHAttribute, BigDecimal> values = (Map<HHAttribute, BigDecimal>) e
+					.getNewValue();
+			result.changes.add( new double[] {
+					((Number) e.getSource()).doubleValue(),
+					values.get( HHAttribute.CONFIDENCE ).doubleValue(),
+					values.get( HHAttribute.COMPLACENCY ).doubleValue() } );
+		}, e -> LOG.error( "Problem propagating", e ) );
+		model.run();
+		LOG.info( "Run {}: {} statistics, {} changes", mode,
+				result.statistics.size(), result.changes.size() );
+		return result;
+	}
+
+	@Test
+	public void testExecutionModes() throws IOException
+	{
+		LOG.info( "Test {} execution modes", HHModel.class.getSimpleName() );
+		final Outputs expected = run( HHConfig.ExecutionMode.EVENT_DRIVEN ),
+				actual = run( HHConfig.ExecutionMode.TIME_STEPPED );
+
+		Assert.assertFalse( "statistics", expected.statistics.isEmpty() );
+		Assert.assertEquals( "statistics", expected.statistics.size(),
+				actual.statistics.size() );
+		for( int k = 0; k < expected.statistics.size(); k++ )
+			assertEquivalent( "statistics[" + k + "]",
+					expected.statistics.get( k ), actual.statistics.get( k ) );
+
+		Assert.assertFalse( "changes", expected.changes.isEmpty() );
+		Assert.assertEquals( "changes", expected.changes.size(),
+				actual.changes.size() );
+		for( int k = 0; k < expected.changes.size(); k++ )
+			Assert.assertArrayEquals( "changes[" + k + "]",
+					expected.changes.get( k ), actual.changes.get( k ), 1e-9 );
+	}
+
+	/**
+	 * compare JSON trees, allowing rounding differences in their numbers,
+	 * e.g. due to the (decimal) arithmetic of the respective event times
+	 */
+	private static void assertEquivalent( final String path,
+		final JsonNode expected, final JsonNode actual )
+	{
+		Assert.assertNotNull( path, actual );
+		if( expected.isObject() )
+		{
+			Assert.assertEquals( path + " size", expected.size(),
+					actual.size() );
+			for( Iterator<String> it = expected.fieldNames(); it.hasNext(); )
+			{
+				final String name = it.next();
+				assertEquivalent( path + "." + name, expected.get( name ),
+						actual.get( name ) );
+			}
+		} else if( expected.isArray() )
+		{
+			Assert.assertEquals( path + " size", expected.size(),
+					actual.size() );
+			for( int k = 0; k < expected.size(); k++ )
+				assertEquivalent( path + "[" + k + "]", expected.get( k ),
+						actual.get( k ) );
+		} else if( !expected.asText().equals( actual.asText() ) )
+			try
+			{
+				Assert.assertEquals( path,
+						Double.parseDouble( expected.asText() ),
+						Double.parseDouble( actual.asText() ), 1e-6 );
+			} catch( final NumberFormatException e )
+			{
+				Assert.assertEquals( path, expected.asText(),
+						actual.asText() );
+			}
+	}
+}
@@ -0,0 +1,138 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ujmp.core.Matrix;
+import org.ujmp.core.SparseMatrix;
+import org.ujmp.core.enums.ValueType;
+
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHNetworkMetricsTest} tests {@link HHNetworkMetrics}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHNetworkMetricsTest
+{
+	/** */
+	private static final Logger LOG = LogUtil
+			.getLogger( HHNetworkMetricsTest.class );
+
+	private static final int A = 2, N = 1000;
+
+	/** @return a ring lattice linking each household to k on either side */
+	private static Matrix lattice( final int k )
+	{
+		final Matrix W = SparseMatrix.Factory.zeros( A + N, A + N );
+		for( int x = 0; x < N; x++ )
+			for( int d = 1; d <= k; d++ )
+			{
+				final int y = (x + d) % N;
+				W.setAsDouble( 1, A + Math.min( x, y ), A + Math.max( x, y ) );
+			}
+		return W;
+	}
+
+	/** @return attributes having household i in attractor i % A */
+	private static Matrix attributes()
+	{
+		final Matrix result = Matrix.Factory.zeros( ValueType.BIGDECIMAL,
+				A + N, HHAttribute.values().length );
+		for( int i = 0; i < A + N; i++ )
+		{
+			result.setAsInt( i % A, i, HHAttribute.ATTRACTOR_REF.ordinal() );
+			result.setAsDouble( i % A, i, HHAttribute.CONFIDENCE.ordinal() );
+		}
+		return result;
+	}
+
+	@Test
+	public void testLattice()
+	{
+		LOG.info( "Test {} lattice", HHNetworkMetrics.class.getSimpleName() );
+		final HHNetwork network = HHNetwork.of( lattice( 2 ) );
+		final Matrix hhAttributes = attributes();
+		// a ring lattice of degree K=4 has clustering 3(K-2)/(4(K-1)) = 1/2
+		final HHNetworkMetrics exact = HHNetworkMetrics.of( network,
+				hhAttributes, A, 6, 1L );
+		LOG.trace( "Exact: {}", exact );
+		Assert.assertEquals( "households", N, exact.households() );
+		Assert.assertEquals( "mean degree", 4, exact.meanDegree(), 1e-12 );
+		Assert.assertArrayEquals( "degrees", new long[] { 0, 0, 0, 0, N },
+				exact.degreeHistogram() );
+		Assert.assertEquals( "clustering", .5, exact.clustering(), 1e-12 );
+		Assert.assertEquals( "transitivity", .5, exact.transitivity(),
+				1e-12 );
+
+		final HHNetworkMetrics sampled = HHNetworkMetrics.of( network,
+				hhAttributes, A, 3, 1L );
+		LOG.trace( "Sampled: {}", sampled );
+		Assert.assertEquals( "sampled", .5, sampled.clustering(), .05 );
+		Assert.assertEquals( "deterministic", sampled.clustering(),
+				HHNetworkMetrics.of( network, hhAttributes, A, 3, 1L )
+						.clustering(),
+				0 );
+	}
+
+	@Test
+	public void testMixing()
+	{
+		LOG.info( "Test {} mixing", HHNetworkMetrics.class.getSimpleName() );
+		// odd distances link across, even distances within the attractors
+		final HHNetworkMetrics metrics = HHNetworkMetrics
+				.of( HHNetwork.of( lattice( 2 ) ), attributes(), A, 6, 1L );
+		Assert.assertEquals( "within", 2 * N,
+				metrics.within( 0 ) + metrics.within( 1 ) );
+		Assert.assertEquals( "between",
+				metrics.links( 0 ) - metrics.within( 0 ),
+				metrics.links( 1 ) - metrics.within( 1 ) );
+		Assert.assertEquals( "links", 4 * N,
+				metrics.links( 0 ) + metrics.links( 1 ) );
+		Assert.assertEquals( "assortativity", .5, metrics.assortativity(),
+				1e-12 );
+		for( int a = 0; a < A; a++ )
+			Assert.assertEquals( "assortativity #" + a, .5,
+					metrics.assortativity( a ), 1e-12 );
+		Assert.assertEquals( "r", 0, metrics.attractorAssortativity(),
+				1e-12 );
+		Assert.assertEquals( "confidence", 0,
+				metrics.confidenceAssortativity(), 1e-12 );
+
+		// even distances only: all within
+		final Matrix W = SparseMatrix.Factory.zeros( A + N, A + N );
+		for( int x = 0; x < N; x++ )
+		{
+			final int y = (x + 2) % N;
+			W.setAsDouble( 1, A + Math.min( x, y ), A + Math.max( x, y ) );
+		}
+		final HHNetworkMetrics within = HHNetworkMetrics
+				.of( HHNetwork.of( W ), attributes(), A, 6, 1L );
+		Assert.assertEquals( "r", 1, within.attractorAssortativity(), 1e-12 );
+		Assert.assertEquals( "assortativity", 1, within.assortativity(),
+				1e-12 );
+		Assert.assertEquals( "confidence", 1,
+				within.confidenceAssortativity(), 1e-12 );
+	}
+}
@@ -0,0 +1,128 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.util.Arrays;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.coala.log.LogUtil;
+import io.coala.math3.Math3PseudoRandom;
+import io.coala.random.PseudoRandom;
+
+/**
+ * {@link HHPackedAdjacencyTest} tests {@link HHPackedAdjacency}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHPackedAdjacencyTest
+{
+	/** */
+	private static final Logger LOG = LogUtil
+			.getLogger( HHPackedAdjacencyTest.class );
+
+	private static final int N = 1000;
+
+	private final PseudoRandom rng = new Math3PseudoRandom.MersenneTwisterFactory()
+			.create( PseudoRandom.Config.NAME_DEFAULT, 1L );
+
+	private int[] offsets, peers;
+
+	/** fill {@link #offsets} and {@link #peers} with random ascending rows */
+	private void adjacency( final int degree )
+	{
+		this.offsets = new int[N + 1];
+		this.peers = new int[N * degree];
+		int s = 0;
+		for( int i = 0; i < N; i++ )
+		{
+			this.offsets[i] = s;
+			final int[] row = new int[degree];
+			for( int k = 0; k < degree; k++ )
+				row[k] = this.rng.nextInt( N );
+			final int self = i;
+			final int[] distinct = Arrays.stream( row ).distinct()
+					.filter( j -> j != self ).sorted().toArray();
+			System.arraycopy( distinct, 0, this.peers, s, distinct.length );
+			s += distinct.length;
+		}
+		this.offsets[N] = s;
+		this.peers = Arrays.copyOf( this.peers, s );
+	}
+
+	@Test
+	public void testDictionary()
+	{
+		LOG.info( "Test {} dictionary", HHPackedAdjacency.class.getSimpleName() );
+		adjacency( 10 );
+		final double[] weights = new double[this.peers.length];
+		for( int s = 0; s < weights.length; s++ )
+			weights[s] = .1 * this.rng.nextInt( 10 );
+		final HHPackedAdjacency packed = HHPackedAdjacency.of( this.offsets,
+				this.peers, weights );
+		Assert.assertTrue( "exact", packed.isExact() );
+		Assert.assertTrue( "bytes", packed.bytes() < 12L * this.peers.length );
+
+		final int[] buffer = new int[N];
+		for( int i = 0; i < N; i++ )
+		{
+			final int degree = this.offsets[i + 1] - this.offsets[i];
+			Assert.assertEquals( "degree #" + i, degree,
+					packed.decode( i, buffer ) );
+			for( int k = 0; k < degree; k++ )
+			{
+				final int s = this.offsets[i] + k;
+				Assert.assertEquals( "peer #" + s, this.peers[s], buffer[k] );
+				Assert.assertEquals( "find #" + s, k,
+						packed.find( i, this.peers[s] ) );
+				Assert.assertEquals( "weight #" + s, weights[s],
+						packed.weight( s ), 0 );
+			}
+			Assert.assertEquals( "unlinked #" + i, -1, packed.find( i, i ) );
+		}
+	}
+
+	@Test
+	public void testHalf()
+	{
+		LOG.info( "Test {} half precision",
+				HHPackedAdjacency.class.getSimpleName() );
+		adjacency( 100 );
+		final double[] weights = new double[this.peers.length];
+		for( int s = 0; s < weights.length; s++ )
+			weights[s] = this.rng.nextDouble();
+		final HHPackedAdjacency packed = HHPackedAdjacency.of( this.offsets,
+				this.peers, weights );
+		Assert.assertTrue( "distinct", HHPackedAdjacency.MAX_DICTIONARY < Arrays
+				.stream( weights ).distinct().count() );
+		Assert.assertFalse( "exact", packed.isExact() );
+		for( int s = 0; s < weights.length; s++ )
+			Assert.assertEquals( "weight #" + s, weights[s], packed.weight( s ),
+					Math.max( weights[s] * 0x1p-11, 0x1p-25 ) );
+
+		for( double w : new double[] { 0, 1, -2, .5, 65504, 0x1p-24 } )
+			Assert.assertEquals( "half " + w, w,
+					HHPackedAdjacency.fromHalf( HHPackedAdjacency.toHalf( w ) ),
+					0 );
+	}
+}
@@ -0,0 +1,497 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ujmp.core.Matrix;
+import org.ujmp.core.SparseMatrix;
+import org.ujmp.core.enums.ValueType;
+
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHPropagationTest} tests {@link HHPropagation}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHPropagationTest
+{
+	/** */
+	private static final Logger LOG = LogUtil
+			.getLogger( HHPropagationTest.class );
+
+	private static final int A = 2, N = 30;
+
+	private static final long CONF = HHAttribute.CONFIDENCE.ordinal(),
+			COMP = HHAttribute.COMPLACENCY.ordinal();
+
+	private final Random rnd = new Random( 1 );
+
+	private Matrix network()
+	{
+		return network( .3 );
+	}
+
+	private Matrix network( final double density )
+	{
+		final Matrix W = SparseMatrix.Factory.zeros( A + N, A + N );
+		for( int i = A; i < A + N; i++ )
+			for( int j = i + 1; j < A + N; j++ )
+				if( this.rnd.nextDouble() < density )
+					W.setAsDouble( 1 + this.rnd.nextInt( 3 ), i, j );
+		return W;
+	}
+
+	private Matrix attributes()
+	{
+		final Matrix result = Matrix.Factory.zeros( ValueType.BIGDECIMAL,
+				A + N, HHAttribute.values().length );
+		for( int i = 0; i < A + N; i++ )
+		{
+			result.setAsInt( i < A ? i : i % A, i,
+					HHAttribute.ATTRACTOR_REF.ordinal() );
+			result.setAsDouble( this.rnd.nextDouble(), i, CONF );
+			result.setAsDouble( this.rnd.nextDouble(), i, COMP );
+			result.setAsDouble( .5, i, HHAttribute.CALCULATION.ordinal() );
+			result.setAsDouble( 2, i,
+					HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal() );
+			result.setAsDouble( 1, i,
+					HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER.ordinal() );
+		}
+		return result;
+	}
+
+	private static HHNetwork activated( final Matrix W )
+	{
+		final HHNetwork result = HHNetwork.of( W );
+		for( int i = 0; i < result.size(); i++ )
+			for( long j : result.peers( i ) )
+				result.activate( i, (int) j );
+		return result;
+	}
+
+	@Test
+	public void testMatrixEquivalence()
+	{
+		LOG.info( "Test {} equivalence", HHPropagation.class.getSimpleName() );
+		final Matrix W = network(), actual = attributes(),
+				expected = actual.clone();
+		final HHAttitudePropagator propagator = new HHAttitudePropagator.Shifted();
+		propagator.propagate( W, expected );
+		HHPropagation.of( activated( W ), A, 0, 0 ).propagate( propagator,
+				actual, ( i, n, updated ) ->
+				{
+				} );
+		for( int i = A; i < A + N; i++ )
+		{
+			Assert.assertEquals( "confidence #" + i,
+					expected.getAsDouble( i, CONF ),
+					actual.getAsDouble( i, CONF ), 1e-9 );
+			Assert.assertEquals( "complacency #" + i,
+					expected.getAsDouble( i, COMP ),
+					actual.getAsDouble( i, COMP ), 1e-9 );
+		}
+	}
+
+	@Test
+	public void testPartitions()
+	{
+		LOG.info( "Test {}", HHPartitions.class.getSimpleName() );
+		final HHNetwork network = HHNetwork.of( network() );
+		final int count = 4;
+		final HHPartitions partitions = HHPartitions.of( network, A, count );
+		Assert.assertEquals( "count", count, partitions.count() );
+		Assert.assertEquals( "first", A, partitions.start( 0 ) );
+		Assert.assertEquals( "last", A + N, partitions.end( count - 1 ) );
+		long total = 0, maxRow = 0;
+		for( int i = A; i < A + N; i++ )
+		{
+			total += 1 + network.degree( i );
+			maxRow = Math.max( maxRow, 1 + network.degree( i ) );
+		}
+		for( int p = 0; p < count; p++ )
+		{
+			if( p > 0 ) Assert.assertEquals( "contiguous",
+					partitions.end( p - 1 ), partitions.start( p ) );
+			Assert.assertTrue( "balanced",
+					partitions.cost( p ) <= total / count + maxRow );
+		}
+	}
+
+	@Test
+	public void testParallelEquivalence()
+	{
+		LOG.info( "Test {} parallelism",
+				HHPropagation.class.getSimpleName() );
+		final Matrix W = network(), actual = attributes(),
+				expected = actual.clone();
+		final HHAttitudePropagator propagator = new HHAttitudePropagator.Shifted();
+		final HHPropagation serial = HHPropagation.of( activated( W ), A, 0,
+				0, 1 ), parallel = HHPropagation.of( activated( W ), A, 0, 0, 3 );
+		for( int round = 0; round < 10; round++ )
+		{
+			serial.propagate( propagator, expected, ( i, n, updated ) ->
+			{
+			} );
+			parallel.propagate( propagator, actual, ( i, n, updated ) ->
+			{
+			} );
+		}
+		for( int i = A; i < A + N; i++ )
+		{
+			Assert.assertEquals( "confidence #" + i,
+					expected.getAsDouble( i, CONF ),
+					actual.getAsDouble( i, CONF ), 0 );
+			Assert.assertEquals( "complacency #" + i,
+					expected.getAsDouble( i, COMP ),
+					actual.getAsDouble( i, COMP ), 0 );
+		}
+	}
+
+	@Test
+	public void testLanesEquivalence()
+	{
+		LOG.info( "Test {} kernels", HHPropagation.class.getSimpleName() );
+		for( double density : new double[] { .05, .3, .9 } )
+		{
+			final Matrix W = network( density ), actual = attributes(),
+					expected = actual.clone();
+			final HHNetwork network = activated( W );
+			final HHPropagation scalar = HHPropagation.of( activated( W ), A,
+					0, 0, 1 ), lanes = HHPropagation.of( network, A, 0, 0, 1 );
+			final HHAttitudePropagator scalarKernel = new HHAttitudePropagator.Shifted(),
+					lanesKernel = new HHAttitudePropagator.ShiftedLanes();
+			long scalarNanos = 0, lanesNanos = 0;
+			for( int round = 0; round < 10; round++ )
+			{
+				final long t0 = System.nanoTime();
+				scalar.propagate( scalarKernel, expected, ( i, n, updated ) ->
+				{
+				} );
+				final long t1 = System.nanoTime();
+				lanes.propagate( lanesKernel, actual, ( i, n, updated ) ->
+				{
+				} );
+				scalarNanos += t1 - t0;
+				lanesNanos += System.nanoTime() - t1;
+			}
+			LOG.info( "avg. degree {}: scalar {}us, lanes {}us",
+					(double) network.slots() / N, scalarNanos / 1000,
+					lanesNanos / 1000 );
+			for( int i = A; i < A + N; i++ )
+			{
+				Assert.assertEquals( "confidence #" + i,
+						expected.getAsDouble( i, CONF ),
+						actual.getAsDouble( i, CONF ), 1e-12 );
+				Assert.assertEquals( "complacency #" + i,
+						expected.getAsDouble( i, COMP ),
+						actual.getAsDouble( i, COMP ), 1e-12 );
+			}
+		}
+	}
+
+	@Test
+	public void testColouring()
+	{
+		LOG.info( "Test {} colouring", HHNetwork.class.getSimpleName() );
+		final HHNetwork network = HHNetwork.of( network() );
+		final int[] colours = new int[network.size()];
+		final int n = network.colour( A, colours );
+		for( int i = 0; i < A; i++ )
+			Assert.assertEquals( "attractor", -1, colours[i] );
+		int maxDegree = 0;
+		for( int i = A; i < A + N; i++ )
+		{
+			maxDegree = Math.max( maxDegree, network.degree( i ) );
+			Assert.assertTrue( "colour", colours[i] >= 0 && colours[i] < n );
+			for( long j : network.peers( i ) )
+				Assert.assertNotEquals( "proper", colours[i],
+						colours[(int) j] );
+		}
+		Assert.assertTrue( "greedy", n <= maxDegree + 1 );
+	}
+
+	@Test
+	public void testGaussSeidel()
+	{
+		LOG.info( "Test {} Gauss-Seidel", HHPropagation.class.getSimpleName() );
+		final Matrix W = network(), jacobi = attributes(),
+				serial = jacobi.clone(), parallel = jacobi.clone();
+		final HHAttitudePropagator propagator = new HHAttitudePropagator.Shifted();
+		final HHPropagation synchronous = HHPropagation.of( activated( W ), A,
+				0, 0, 1 ),
+				serialGS = HHPropagation.of( activated( W ), A, 0, 0, 1,
+						HHPropagation.Schedule.GAUSS_SEIDEL ),
+				parallelGS = HHPropagation.of( activated( W ), A, 0, 0, 3,
+						HHPropagation.Schedule.GAUSS_SEIDEL );
+		Assert.assertTrue( "colours", serialGS.colours() > 1 );
+		for( int round = 0; round < 200; round++ )
+		{
+			synchronous.propagate( propagator, jacobi, ( i, n, updated ) ->
+			{
+			} );
+			serialGS.propagate( propagator, serial, ( i, n, updated ) ->
+			{
+			} );
+			parallelGS.propagate( propagator, parallel, ( i, n, updated ) ->
+			{
+			} );
+		}
+		for( int i = A; i < A + N; i++ )
+		{
+			// deterministic despite parallelism
+			Assert.assertEquals( "confidence #" + i,
+					serial.getAsDouble( i, CONF ),
+					parallel.getAsDouble( i, CONF ), 0 );
+			Assert.assertEquals( "complacency #" + i,
+					serial.getAsDouble( i, COMP ),
+					parallel.getAsDouble( i, COMP ), 0 );
+			// same fixed point as the synchronous schedule
+			Assert.assertEquals( "fixed point #" + i,
+					jacobi.getAsDouble( i, CONF ),
+					serial.getAsDouble( i, CONF ), 1e-6 );
+		}
+	}
+
+	@Test
+	public void testReorder()
+	{
+		LOG.info( "Test {} reorder", HHNetwork.class.getSimpleName() );
+		final Matrix W = network( .1 ), expected = attributes(),
+				actual = expected.clone();
+		final HHNetwork network = activated( W ), reordered = HHNetwork.of( W )
+				.reorder( HHNetwork.Ordering.RCM, A );
+		for( int i = 0; i < reordered.size(); i++ )
+		{
+			Assert.assertArrayEquals( "peers #" + i, network.peers( i ),
+					reordered.peers( i ) );
+			for( long j : reordered.peers( i ) )
+				reordered.activate( i, (int) j );
+		}
+		Assert.assertTrue( "locality",
+				reordered.meanPeerGap() < network.meanPeerGap() );
+
+		final HHAttitudePropagator propagator = new HHAttitudePropagator.Shifted();
+		final HHPropagation unordered = HHPropagation.of( network, A, 0, 0 ),
+				ordered = HHPropagation.of( reordered, A, 0, 0 );
+		for( int round = 0; round < 5; round++ )
+		{
+			unordered.propagate( propagator, expected, ( i, n, updated ) ->
+			{
+			} );
+			ordered.propagate( propagator, actual, ( i, n, updated ) ->
+			{
+			} );
+		}
+		final HHAttitudeBatch expectedChanges = unordered.changes(),
+				actualChanges = ordered.changes();
+		Assert.assertEquals( "changes", expectedChanges.size(),
+				actualChanges.size() );
+		for( int k = 0; k < actualChanges.size(); k++ )
+			Assert.assertEquals( "change #" + k, expectedChanges.index( k ),
+					actualChanges.index( k ) );
+		for( int i = A; i < A + N; i++ )
+		{
+			Assert.assertEquals( "confidence #" + i,
+					expected.getAsDouble( i, CONF ),
+					actual.getAsDouble( i, CONF ), 1e-12 );
+			Assert.assertEquals( "complacency #" + i,
+					expected.getAsDouble( i, COMP ),
+					actual.getAsDouble( i, COMP ), 1e-12 );
+		}
+	}
+
+	@Test
+	public void testPacked()
+	{
+		LOG.info( "Test {} pack", HHNetwork.class.getSimpleName() );
+		final Matrix W = network( .1 ), expected = attributes(),
+				actual = expected.clone();
+		final HHNetwork network = activated( W ), packed = network.pack();
+		Assert.assertTrue( "bytes", packed.bytes() < network.bytes() );
+		Assert.assertEquals( "slots", network.slots(), packed.slots() );
+		for( int i = 0; i < packed.size(); i++ )
+			Assert.assertArrayEquals( "peers #" + i, network.peers( i ),
+					packed.peers( i ) );
+
+		final HHAttitudePropagator propagator = new HHAttitudePropagator.Shifted();
+		final HHPropagation unpacked = HHPropagation.of( network, A, 0, 0 ),
+				compressed = HHPropagation.of( packed, A, 0, 0 );
+		for( int round = 0; round < 5; round++ )
+		{
+			unpacked.propagate( propagator, expected, ( i, n, updated ) ->
+			{
+			} );
+			compressed.propagate( propagator, actual, ( i, n, updated ) ->
+			{
+			} );
+		}
+		for( int i = A; i < A + N; i++ )
+		{
+			Assert.assertEquals( "confidence #" + i,
+					expected.getAsDouble( i, CONF ),
+					actual.getAsDouble( i, CONF ), 0 );
+			Assert.assertEquals( "complacency #" + i,
+					expected.getAsDouble( i, COMP ),
+					actual.getAsDouble( i, COMP ), 0 );
+		}
+	}
+
+	@Test
+	public void testDynamic()
+	{
+		LOG.info( "Test {} rewiring", HHNetwork.class.getSimpleName() );
+		final Matrix W = network( .1 ), expected = attributes(),
+				actual = expected.clone();
+		final int slack = 2, i = A + 1;
+		final HHNetwork network = activated( W ).dynamic( A, slack );
+		Assert.assertTrue( "dynamic", network.isDynamic() );
+		Assert.assertEquals( "spare", slack, network.spare( i ) );
+		final HHAttitudePropagator propagator = new HHAttitudePropagator.Shifted();
+		final HHPropagation dynamic = HHPropagation.of( network, A, 0, 0 );
+		HHPropagation.of( activated( W ), A, 0, 0 ).propagate( propagator,
+				expected, ( k, n, updated ) ->
+				{
+				} );
+		dynamic.propagate( propagator, actual, ( k, n, updated ) ->
+		{
+		} );
+
+		// replace the ties of household i, mirrored in W
+		final long[] old = network.detach( i );
+		Assert.assertEquals( "detached", 0, network.degree( i ) );
+		for( long j : old )
+		{
+			Assert.assertEquals( "unlinked #" + j, -1,
+					network.slot( (int) j, i ) );
+			W.setAsDouble( 0, Math.min( i, j ), Math.max( i, j ) );
+		}
+		int linked = 0;
+		for( int j = A + N - 1; j > i && network.spare( i ) > 0; j-- )
+			if( network.link( i, j, 2 ) )
+			{
+				W.setAsDouble( 2, i, j );
+				linked++;
+			}
+		Assert.assertEquals( "linked", old.length + slack, linked );
+		Assert.assertFalse( "full", network.link( i, A, 1 ) );
+
+		final HHNetwork rebuilt = activated( W );
+		for( int k = 0; k < A + N; k++ )
+		{
+			Assert.assertArrayEquals( "peers #" + k, rebuilt.peers( k ),
+					network.peers( k ) );
+			for( long j : network.peers( k ) )
+				network.activate( k, (int) j );
+		}
+		final HHPropagation rewired = HHPropagation.of( rebuilt, A, 0, 0 );
+		for( int round = 0; round < 3; round++ )
+		{
+			rewired.propagate( propagator, expected, ( k, n, updated ) ->
+			{
+			} );
+			dynamic.propagate( propagator, actual, ( k, n, updated ) ->
+			{
+			} );
+		}
+		for( int k = A; k < A + N; k++ )
+		{
+			Assert.assertEquals( "confidence #" + k,
+					expected.getAsDouble( k, CONF ),
+					actual.getAsDouble( k, CONF ), 1e-12 );
+			Assert.assertEquals( "complacency #" + k,
+					expected.getAsDouble( k, COMP ),
+					actual.getAsDouble( k, COMP ), 1e-12 );
+		}
+	}
+
+	@Test
+	public void testChanges()
+	{
+		LOG.info( "Test {}", HHAttitudeBatch.class.getSimpleName() );
+		final Matrix hhAttributes = attributes();
+		final HHPropagation propagation = HHPropagation
+				.of( activated( network() ), A, 0, 0 );
+		final AtomicInteger updates = new AtomicInteger();
+		propagation.propagate( new HHAttitudePropagator.Shifted(),
+				hhAttributes, ( i, n, updated ) ->
+				{
+					if( updated ) updates.incrementAndGet();
+				} );
+		final HHAttitudeBatch batch = propagation.changes();
+		Assert.assertEquals( "round", 1, batch.round() );
+		Assert.assertEquals( "size", updates.get(), batch.size() );
+		Assert.assertEquals( "events", batch.size(),
+				batch.toEvents().size() );
+		for( int k = 0; k < batch.size(); k++ )
+		{
+			final int i = batch.index( k );
+			if( k > 0 ) Assert.assertTrue( "ascending",
+					batch.index( k - 1 ) < i );
+			Assert.assertEquals( "confidence #" + i,
+					hhAttributes.getAsDouble( i, CONF ),
+					batch.confidence( k ), 0 );
+			Assert.assertEquals( "complacency #" + i,
+					hhAttributes.getAsDouble( i, COMP ),
+					batch.complacency( k ), 0 );
+			Assert.assertEquals( "event", (long) i,
+					batch.toEvent( k ).getSource() );
+		}
+	}
+
+	@Test
+	public void testIncremental()
+	{
+		LOG.info( "Test {} incremental", HHPropagation.class.getSimpleName() );
+		final Matrix hhAttributes = attributes();
+		final HHNetwork network = activated( network() );
+		final HHPropagation propagation = HHPropagation.of( network, A, 1e-9,
+				0 );
+		final HHAttitudePropagator propagator = new HHAttitudePropagator.Shifted();
+		final AtomicInteger updates = new AtomicInteger();
+		for( int round = 0; round < 500; round++ )
+		{
+			updates.set( 0 );
+			propagation.propagate( propagator, hhAttributes,
+					( i, n, updated ) ->
+					{
+						if( updated ) updates.incrementAndGet();
+					} );
+		}
+		Assert.assertEquals( "settled", 0, updates.get() );
+
+		// disturb one household: recompute only itself and its peers
+		final int i = A + 3;
+		hhAttributes.setAsDouble( .99, i, CONF );
+		updates.set( 0 );
+		propagation.propagate( propagator, hhAttributes, ( j, n, updated ) ->
+		{
+			if( updated ) updates.incrementAndGet();
+		} );
+		Assert.assertTrue( "disturbed", updates.get() > 0 );
+		Assert.assertTrue( "local", updates.get() <= network.degree( i ) + 1 );
+	}
+}
@@ -0,0 +1,316 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ujmp.core.Matrix;
+import org.ujmp.core.SparseMatrix;
+import org.ujmp.core.enums.ValueType;
+
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHShardTest} tests {@link HHShardPlan}, {@link HHShard} and
+ * {@link HHShards}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHShardTest
+{
+	/** */
+	private static final Logger LOG = LogUtil.getLogger( HHShardTest.class );
+
+	private static final int A = 5, N = 200;
+
+	private static final long CONF = HHAttribute.CONFIDENCE.ordinal(),
+			COMP = HHAttribute.COMPLACENCY.ordinal();
+
+	private final Random rnd = new Random( 1 );
+
+	/** @return an assortative network, linking mostly within attractors */
+	private Matrix network()
+	{
+		final Matrix W = SparseMatrix.Factory.zeros( A + N, A + N );
+		for( int i = A; i < A + N; i++ )
+			for( int j = i + 1; j < A + N; j++ )
+				if( this.rnd.nextDouble() < (i % A == j % A ? .2 : .01) )
+					W.setAsDouble( 1 + this.rnd.nextInt( 3 ), i, j );
+		return W;
+	}
+
+	private Matrix attributes()
+	{
+		final Matrix result = Matrix.Factory.zeros( ValueType.BIGDECIMAL,
+				A + N, HHAttribute.values().length );
+		for( int i = 0; i < A + N; i++ )
+		{
+			result.setAsInt( i % A, i, HHAttribute.ATTRACTOR_REF.ordinal() );
+			result.setAsDouble( this.rnd.nextDouble(), i, CONF );
+			result.setAsDouble( this.rnd.nextDouble(), i, COMP );
+			result.setAsDouble( this.rnd.nextInt( 3 ) / 2., i,
+					HHAttribute.CALCULATION.ordinal() );
+			result.setAsDouble( 1 + i % 3, i,
+					HHAttribute.IMPRESSION_SELF_MULTIPLIER.ordinal() );
+			result.setAsDouble( 1, i,
+					HHAttribute.IMPRESSION_ATTRACTOR_MULTIPLIER.ordinal() );
+		}
+		return result;
+	}
+
+	/** (de)activate each link at random */
+	private void activate( final HHNetwork network, final long seed )
+	{
+		final Random rnd = new Random( seed );
+		network.deactivateAll();
+		for( int i = A; i < network.size(); i++ )
+			for( long j : network.peers( i ) )
+				if( j > i && rnd.nextDouble() < .8 )
+					network.activate( i, (int) j );
+	}
+
+	@Test
+	public void testPlan()
+	{
+		LOG.info( "Test {}", HHShardPlan.class.getSimpleName() );
+		final HHNetwork network = HHNetwork.of( network() );
+		final HHShardPlan plan = HHShardPlan.of( network, attributes(), A,
+				3 );
+		LOG.trace( "Plan: {}", plan );
+		long load = 0, cut = 0;
+		for( int s = 0; s < plan.shards(); s++ )
+			load += plan.load( s );
+		// one per attractor and household, plus its degree
+		Assert.assertEquals( "load", A + N + network.slots(), load );
+		for( int i = A; i < A + N; i++ )
+		{
+			final int s = plan.owner( i );
+			Assert.assertEquals( "attractor #" + i, plan.owner( i % A ), s );
+			boolean boundary = false;
+			for( long j : network.peers( i ) )
+				if( plan.owner( (int) j ) != s )
+				{
+					boundary = true;
+					if( j > i ) cut++;
+				}
+			Assert.assertEquals( "boundary #" + i, boundary,
+					plan.slot( i ) >= 0 );
+			if( boundary ) Assert.assertTrue( "slot #" + i,
+					plan.slot( i ) >= plan.boundaryStart( s )
+							&& plan.slot( i ) < plan.boundaryEnd( s ) );
+		}
+		Assert.assertEquals( "cut", cut, plan.cut() );
+		Assert.assertTrue( "assortative", 2 * plan.cut() < network.slots() );
+	}
+
+	@Test
+	public void testEquivalence()
+	{
+		LOG.info( "Test {} equivalence", HHShards.class.getSimpleName() );
+		final Matrix W = network(), attributes = attributes();
+		final HHAttitudePropagator propagator = new HHAttitudePropagator.Shifted();
+		for( double epsilon : new double[] { 0, 1e-6 } )
+			for( int shards : new int[] { 2, A } )
+			{
+				final Matrix single = attributes.clone(),
+						sharded = attributes.clone();
+				final HHNetwork network = HHNetwork.of( W );
+				final HHPropagation propagation = HHPropagation.of( network, A,
+						epsilon, 3, 1 );
+				final int[] feeds = new int[A + N];
+				try( final HHShards shard = HHShards.of( network, sharded, A,
+						shards, epsilon, 3, 2 ) )
+				{
+					Assert.assertTrue( "boundary",
+							shard.plan().boundary() > 0 );
+					for( int round = 0; round < 20; round++ )
+					{
+						activate( network, round );
+						// disturb a household now and then
+						if( round % 7 == 6 )
+						{
+							single.setAsDouble( .99, A + round, CONF );
+							sharded.setAsDouble( .99, A + round, CONF );
+						}
+						propagation.propagate( propagator, single,
+								( i, n, updated ) -> feeds[i] += n );
+						shard.propagate( propagator, sharded,
+								( i, n, updated ) -> feeds[i] -= n );
+						final HHAttitudeBatch expected = propagation
+								.changes(), actual = shard.changes();
+						Assert.assertEquals( "changes", expected.size(),
+								actual.size() );
+						for( int k = 0; k < expected.size(); k++ )
+							Assert.assertEquals( "change #" + k,
+									expected.index( k ), actual.index( k ) );
+					}
+				}
+				for( int i = A; i < A + N; i++ )
+				{
+					Assert.assertEquals( "feeds #" + i, 0, feeds[i] );
+					Assert.assertEquals( "confidence #" + i,
+							single.getAsDouble( i, CONF ),
+							sharded.getAsDouble( i, CONF ), 0 );
+					Assert.assertEquals( "complacency #" + i,
+							single.getAsDouble( i, COMP ),
+							sharded.getAsDouble( i, COMP ), 0 );
+				}
+			}
+	}
+
+	@Test
+	public void testParts() throws IOException, InterruptedException,
+		ExecutionException
+	{
+		LOG.info( "Test {} parts", HHShardPlan.class.getSimpleName() );
+		final Matrix W = network(), attributes = attributes(),
+				single = attributes.clone();
+		final HHNetwork network = HHNetwork.of( W );
+		activate( network, 1 );
+		final HHShardPlan plan = HHShardPlan.of( network, attributes, A, 3 );
+		final HHShardPlan.Part[] parts = new HHShardPlan.Part[plan.shards()];
+		for( int s = 0; s < parts.length; s++ )
+		{
+			final HHShardPlan.Part expected = plan.part( s );
+			final Path file = Files.createTempFile( "shard", ".bin" );
+			try
+			{
+				expected.write( file );
+				parts[s] = HHShardPlan.Part.read( file );
+			} finally
+			{
+				Files.delete( file );
+			}
+			final HHShardPlan.Part part = parts[s];
+			LOG.trace( "Part: {}", part );
+			Assert.assertEquals( "shard", s, part.shard() );
+			Assert.assertEquals( "attractors", A, part.attractorCount() );
+			Assert.assertEquals( "boundary", plan.boundary(),
+					part.boundary() );
+			Assert.assertEquals( "size", expected.size(), part.size() );
+			Assert.assertTrue( "partial", part.size() < A + N );
+			Assert.assertEquals( "links", expected.slots(), part.slots() );
+			Assert.assertEquals( "exports",
+					plan.boundaryEnd( s ) - plan.boundaryStart( s ),
+					part.exports() );
+			for( int a = 0; a < A; a++ )
+				Assert.assertEquals( "attractor #" + a, plan.owner( a ),
+						part.attractorOwner( a ) );
+			for( int k = 0; k < part.size(); k++ )
+			{
+				Assert.assertEquals( "index #" + k, expected.index( k ),
+						part.index( k ) );
+				Assert.assertEquals( "row #" + k,
+						network.row( part.index( k ) ), part.row( k ) );
+			}
+			for( int l = 0; l < part.slots(); l++ )
+				Assert.assertEquals( "slot #" + l, expected.slot( l ),
+						part.slot( l ) );
+			for( int g = 0; g < part.ghosts(); g++ )
+			{
+				final int i = part.index( part.ghost( g ) );
+				Assert.assertNotEquals( "ghost #" + g, s, plan.owner( i ) );
+				Assert.assertEquals( "ghost slot #" + g, plan.slot( i ),
+						part.ghostSlot( g ) );
+			}
+		}
+
+		// run each part as a separate process would: from its own rows only
+		final HHAttitudePropagator propagator = new HHAttitudePropagator.Shifted();
+		final HHPropagation propagation = HHPropagation.of( network, A, 0, 3,
+				1 );
+		final HHShard[] shards = new HHShard[parts.length];
+		final ExecutorService executor = Executors
+				.newFixedThreadPool( parts.length );
+		try( final HHShard.Hub hub = HHShard.Hub.open( parts.length ) )
+		{
+			final Thread thread = new Thread( hub, "hh-shard-hub" );
+			thread.setDaemon( true );
+			thread.start();
+			for( int s = 0; s < parts.length; s++ )
+			{
+				final HHShardPlan.Part part = parts[s];
+				final HHShard shard = shards[s] = HHShard.of( part,
+						hub.address(), 0, 3, 1 );
+				final boolean[] ghost = new boolean[part.size()];
+				for( int g = 0; g < part.ghosts(); g++ )
+					ghost[part.ghost( g )] = true;
+				for( int k = 0; k < part.size(); k++ )
+					if( !ghost[k] ) for( int col = 0; col < HHAttribute
+							.values().length; col++ )
+						shard.attributes().setAsDouble(
+								attributes.getAsDouble( part.row( k ), col ),
+								k, col );
+				for( int l = 0; l < part.slots(); l++ )
+					shard.network().active[l] = network.active[part.slot( l )];
+			}
+			for( int round = 0; round < 5; round++ )
+			{
+				propagation.propagate( propagator, single,
+						( i, n, updated ) ->
+						{
+						} );
+				final List<Future<?>> futures = new ArrayList<>();
+				for( HHShard shard : shards )
+					futures.add( executor.submit( () -> shard
+							.propagate( propagator, ( i, n, updated ) ->
+							{
+							} ) ) );
+				for( Future<?> future : futures )
+					future.get();
+			}
+			for( int s = 0; s < parts.length; s++ )
+			{
+				final HHShardPlan.Part part = parts[s];
+				for( int k = A; k < part.size(); k++ )
+					if( plan.owner( part.index( k ) ) == s )
+					{
+						final int row = part.row( k );
+						Assert.assertEquals( "confidence row " + row,
+								single.getAsDouble( row, CONF ),
+								shards[s].attributes().getAsDouble( k, CONF ),
+								0 );
+						Assert.assertEquals( "complacency row " + row,
+								single.getAsDouble( row, COMP ),
+								shards[s].attributes().getAsDouble( k, COMP ),
+								0 );
+					}
+			}
+		} finally
+		{
+			executor.shutdownNow();
+			for( HHShard shard : shards )
+				if( shard != null ) shard.close();
+		}
+	}
+}
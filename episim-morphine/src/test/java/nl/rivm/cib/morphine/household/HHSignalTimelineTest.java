@@ -0,0 +1,87 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.morphine.household;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.coala.log.LogUtil;
+
+/**
+ * {@link HHSignalTimelineTest} tests {@link HHSignalTimeline}
+ * 
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class HHSignalTimelineTest
+{
+	/** */
+	private static final Logger LOG = LogUtil
+			.getLogger( HHSignalTimelineTest.class );
+
+	@Test
+	public void testApply()
+	{
+		LOG.info( "Test {} apply", HHSignalTimeline.class.getSimpleName() );
+		final int conf = HHAttribute.CONFIDENCE.ordinal(),
+				comp = HHAttribute.COMPLACENCY.ordinal();
+		// two attractors, added per attractor as when compiled
+		final HHSignalTimeline timeline = HHSignalTimeline.builder()
+				.add( 0, 0, conf, 1 ).add( 0, 0, comp, 0 )
+				.add( 60, 0, conf, .5 ).add( 120, 0, conf, .6 )
+				.add( 0, 1, conf, .2 ).add( 60, 1, conf, .3 )
+				.add( 90, 1, comp, .4 ).build();
+		Assert.assertEquals( "size", 7, timeline.size() );
+		Assert.assertEquals( "first", 0, timeline.nextDay(), 0 );
+
+		final List<String> applied = new ArrayList<>();
+		final HHSignalTimeline.Visitor visitor = ( row, col, value ) -> applied
+				.add( row + ":" + col + "=" + value );
+		Assert.assertEquals( "initial", 3, timeline.apply( 0, visitor ) );
+		// simultaneous signals apply in order of addition
+		Assert.assertEquals( Arrays.asList( "0:" + conf + "=1.0",
+				"0:" + comp + "=0.0", "1:" + conf + "=0.2" ), applied );
+		Assert.assertEquals( "none due", 0, timeline.apply( 59.9, visitor ) );
+		Assert.assertEquals( "next", 60, timeline.nextDay(), 0 );
+		Assert.assertEquals( "batch", 2, timeline.apply( 60, visitor ) );
+		Assert.assertEquals( "catch up", 2, timeline.apply( 200, visitor ) );
+		Assert.assertEquals( "order", "0:" + conf + "=0.6",
+				applied.get( applied.size() - 1 ) );
+		Assert.assertEquals( "remaining", 0, timeline.remaining() );
+		Assert.assertTrue( "done", Double.isInfinite( timeline.nextDay() ) );
+	}
+
+	@Test
+	public void testToDays()
+	{
+		final ZonedDateTime offset = ZonedDateTime.of( 2012, 1, 1, 0, 0, 0, 0,
+				ZoneOffset.UTC );
+		Assert.assertEquals( 0, HHSignalTimeline.toDays( offset, offset ), 0 );
+		Assert.assertEquals( 31.5, HHSignalTimeline.toDays( offset,
+				offset.plusDays( 31 ).plusHours( 12 ) ), 0 );
+	}
+}
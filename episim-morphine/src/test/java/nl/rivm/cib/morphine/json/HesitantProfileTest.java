@@ -20,9 +20,11 @@
 package nl.rivm.cib.morphine.json;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.List;
 
 import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -38,6 +40,7 @@ import io.coala.random.ProbabilityDistribution;
 import io.coala.random.PseudoRandom;
 import io.coala.util.FileUtil;
 import nl.rivm.cib.morphine.household.HHConfig;
+import nl.rivm.cib.morphine.household.HHProfileSampler;
 import nl.rivm.cib.morphine.json.HesitancyProfileJson;
 import nl.rivm.cib.morphine.json.HesitancyProfileJson.HesitancyDimension;
 import nl.rivm.cib.morphine.json.HesitancyProfileJson.VaccineStatus;
@@ -125,4 +128,39 @@ public class HesitantProfileTest
 				DecimalUtil.toScale( DecimalUtil.multiply( k, 100. / j ), 1 ),
 				l );
 	}
+
+	@Test
+	public void testProfileSampler() throws IOException
+	{
+		LOG.info( "Testing {}", HHProfileSampler.class.getSimpleName() );
+		final ProbabilityDistribution.Factory distFact = this.binder
+				.inject( ProbabilityDistribution.Factory.class );
+		final HHProfileSampler sampler = HHProfileSampler.of(
+				HesitancyProfileJson.parse( PROFILES_FILE ).toList()
+						.blockingGet(),
+				JsonUtil.valueOf( FileUtil.toInputStream( HESITANCY_FILE ),
+						BigDecimal[][].class ),
+				distFact.getStream() );
+
+		final double[] attitude = new double[2];
+		for( boolean religious : new boolean[] { false, true } )
+			for( boolean alternative : new boolean[] { false, true } )
+			{
+				final int cat = HHProfileSampler.categoryIndex( religious,
+						alternative );
+				for( int i = 0; i < 1000; i++ )
+				{
+					final HesitancyProfileJson hes = sampler
+							.profile( sampler.drawProfile( cat ) );
+					Assert.assertEquals( "religious", religious,
+							hes.religious );
+					Assert.assertEquals( "alternative", alternative,
+							hes.alternative );
+					sampler.drawAttitude( sampler.drawProfile( cat ),
+							attitude );
+				}
+				LOG.trace( "religious: {}, alternative: {}, last draw: {}",
+						religious, alternative, attitude );
+			}
+	}
 }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.List;
 
 import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -88,4 +89,32 @@ public class RelationFrequencyTest
 				LOG.trace( "cat: {}, draw #{}: {}", cat, i, QuantityUtil
 						.pretty( cat.intervalDist( distFact ).draw(), 1 ) );
 	}
+
+	@Test
+	public void testIntervalIndex() throws IOException
+	{
+		LOG.info( "Testing {}",
+				RelationFrequencyJson.IntervalIndex.class.getSimpleName() );
+		final ProbabilityDistribution.Factory distFact = this.binder
+				.inject( ProbabilityDistribution.Factory.class );
+
+		final List<RelationFrequencyJson> json = JsonUtil.readArrayAsync(
+				() -> FileUtil.toInputStream( FREQUENCIES_FILE ),
+				RelationFrequencyJson.class ).toList().blockingGet();
+		final double defaultDays = 365;
+		final RelationFrequencyJson.IntervalIndex index = RelationFrequencyJson.IntervalIndex
+				.of( json, distFact.getStream(), defaultDays );
+
+		// no entries cover children, so expect the default interval
+		Assert.assertEquals( "default interval", defaultDays, index.drawDays(
+				true, RelationFrequencyJson.Relation.family, 10 ), 0 );
+		for( RelationFrequencyJson cat : json )
+		{
+			final double age = cat.ageRange().lowerValue().doubleValue() + .5;
+			final double days = index.drawDays( cat.gender, cat.relation,
+					age );
+			Assert.assertTrue( "positive interval", days > 0 );
+			LOG.trace( "cat: {}, age: {}, draw: {} days", cat, age, days );
+		}
+	}
 }
@@ -0,0 +1,261 @@
+/* $Id$
+ * 
+ * Part of ZonMW project no. 50-53000-98-156
+ * 
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment 
+ */
+package nl.rivm.cib.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.coala.log.LogUtil;
+
+/**
+ * {@link CalendarQueueTest} tests {@link CalendarQueue} and {@link DueHeap}
+ *
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class CalendarQueueTest
+{
+	/** */
+	private static final Logger LOG = LogUtil
+			.getLogger( CalendarQueueTest.class );
+
+	/** a minimal discrete-event scheduler driving the {@link CalendarQueue} */
+	static class Driver implements CalendarQueue.Driver
+	{
+		static class Event
+		{
+			final double time;
+			final long seq;
+			final Runnable fire;
+			boolean cancelled = false;
+
+			Event( final double time, final long seq, final Runnable fire )
+			{
+				this.time = time;
+				this.seq = seq;
+				this.fire = fire;
+			}
+		}
+
+		final PriorityQueue<Event> events = new PriorityQueue<>(
+				( e1, e2 ) -> e1.time != e2.time
+						? Double.compare( e1.time, e2.time )
+						: Long.compare( e1.seq, e2.seq ) );
+
+		double now = 0;
+
+		long registered = 0, cancelled = 0;
+
+		@Override
+		public Runnable schedule( final double time, final Runnable fire )
+		{
+			final Event event = new Event( Math.max( time, this.now ),
+					this.registered++, fire );
+			this.events.add( event );
+			return () ->
+			{
+				event.cancelled = true;
+				this.cancelled++;
+			};
+		}
+
+		/** @return the number of registered events not (yet) cancelled */
+		long pending()
+		{
+			return this.events.stream().filter( e -> !e.cancelled ).count();
+		}
+
+		void run()
+		{
+			for( Event e; (e = this.events.poll()) != null; )
+				if( !e.cancelled )
+				{
+					this.now = e.time;
+					e.fire.run();
+				}
+		}
+	}
+
+	/** the entries fired, their due times and the driver time of firing */
+	private final List<Integer> fired = new ArrayList<>();
+
+	private final List<Double> dues = new ArrayList<>(),
+			firedAt = new ArrayList<>();
+
+	private CalendarQueue.Handler recorder( final Driver driver )
+	{
+		return ( entry, due ) ->
+		{
+			this.fired.add( entry );
+			this.dues.add( due );
+			this.firedAt.add( driver.now );
+		};
+	}
+
+	@Test
+	public void testScheduleCancel()
+	{
+		LOG.info( "Test {} schedule/cancel",
+				CalendarQueue.class.getSimpleName() );
+		final Driver driver = new Driver();
+		final CalendarQueue queue = new CalendarQueue( 8, 1, 16, driver,
+				recorder( driver ) );
+		queue.schedule( 0, 2.5 );
+		queue.schedule( 1, 3.5 );
+		queue.schedule( 2, 4.5 );
+		queue.schedule( 3, 5.5 );
+		Assert.assertTrue( "pending", queue.isPending( 1 ) );
+		Assert.assertEquals( "due", 3.5, queue.due( 1 ), 0 );
+
+		Assert.assertTrue( "cancel pending", queue.cancel( 1 ) );
+		Assert.assertFalse( "cancelled", queue.isPending( 1 ) );
+		Assert.assertTrue( "cancelled due", Double.isNaN( queue.due( 1 ) ) );
+		Assert.assertFalse( "cancel again", queue.cancel( 1 ) );
+		Assert.assertFalse( "cancel unknown", queue.cancel( 7 ) );
+
+		// reschedule queued entries: later within its bucket, and elsewhere
+		queue.schedule( 2, 4.75 );
+		queue.schedule( 0, 6.25 );
+		Assert.assertEquals( "rescheduled", 6.25, queue.due( 0 ), 0 );
+
+		driver.run();
+		Assert.assertEquals( Arrays.asList( 2, 3, 0 ), this.fired );
+		Assert.assertEquals( Arrays.asList( 4.75, 5.5, 6.25 ), this.dues );
+		// each fires at the end of its tick
+		Assert.assertEquals( Arrays.asList( 5., 6., 7. ), this.firedAt );
+		for( int e = 0; e < 8; e++ )
+			Assert.assertFalse( "done #" + e, queue.isPending( e ) );
+	}
+
+	@Test
+	public void testRotation()
+	{
+		LOG.info( "Test {} rotation", CalendarQueue.class.getSimpleName() );
+		final Driver driver = new Driver();
+		final CalendarQueue queue = new CalendarQueue( 4, 1, 4, driver,
+				recorder( driver ) );
+		// same bucket, one resp. two rotations ahead of entry 0
+		queue.schedule( 2, 9.5 );
+		queue.schedule( 1, 5.5 );
+		queue.schedule( 0, 1.5 );
+		Assert.assertEquals( "one driver", 1, driver.pending() );
+
+		driver.run();
+		Assert.assertEquals( Arrays.asList( 0, 1, 2 ), this.fired );
+		Assert.assertEquals( "not early", Arrays.asList( 2., 6., 10. ),
+				this.firedAt );
+	}
+
+	@Test
+	public void testRescheduleWhileFiring()
+	{
+		LOG.info( "Test {} reschedule while firing",
+				CalendarQueue.class.getSimpleName() );
+		final Driver driver = new Driver();
+		final CalendarQueue.Handler recorder = recorder( driver );
+		final CalendarQueue[] queue = { null };
+		queue[0] = new CalendarQueue( 4, 1, 4, driver, ( entry, due ) ->
+		{
+			recorder.fire( entry, due );
+			if( entry == 0 && due < 1.5 )
+				// repeat within the firing tick, passing entry 1
+				queue[0].schedule( 0, due + .25 );
+			else if( entry == 0 && due < 5 )
+				// one rotation ahead, i.e. into the firing bucket
+				queue[0].schedule( 0, due + 4 );
+			else if( entry == 1 )
+				// postpone another entry in the firing tick
+				queue[0].schedule( 2, 1.9 );
+		} );
+		queue[0].schedule( 0, 1 );
+		queue[0].schedule( 1, 1.3 );
+		queue[0].schedule( 2, 1.4 );
+		queue[0].schedule( 3, 1.6 );
+
+		driver.run();
+		Assert.assertEquals( Arrays.asList( 0, 0, 1, 0, 3, 2, 0 ),
+				this.fired );
+		Assert.assertEquals( Arrays.asList( 1., 1.25, 1.3, 1.5, 1.6, 1.9, 5.5 ),
+				this.dues );
+		Assert.assertEquals( Arrays.asList( 2., 2., 2., 2., 2., 2., 6. ),
+				this.firedAt );
+	}
+
+	@Test
+	public void testDueOrder()
+	{
+		LOG.info( "Test {} due order", CalendarQueue.class.getSimpleName() );
+		final int n = 1000, buckets = 8;
+		final Driver driver = new Driver();
+		final CalendarQueue queue = new CalendarQueue( n, 1, buckets, driver,
+				recorder( driver ) );
+		final Random rnd = new Random( 1 );
+		final double[] due = new double[n];
+		for( int e = 0; e < n; e++ )
+		{
+			// (reverse) insertion order differs from due order, with ties
+			due[e] = rnd.nextInt( 4 * buckets * 8 ) / 8.;
+			queue.schedule( e, due[e] );
+		}
+		Assert.assertEquals( "one driver per bucket", buckets,
+				driver.pending() );
+		// registering earlier ticks replaces (rather than adds) drivers
+		Assert.assertEquals( "replaced", driver.registered - buckets,
+				driver.cancelled );
+
+		driver.run();
+		Assert.assertEquals( "all fired", n, this.fired.size() );
+		for( int k = 1; k < n; k++ )
+		{
+			final int e0 = this.fired.get( k - 1 ), e1 = this.fired.get( k );
+			Assert.assertTrue( "order " + e0 + "@" + due[e0] + " < " + e1 + "@"
+					+ due[e1],
+					due[e0] < due[e1] || (due[e0] == due[e1] && e0 < e1) );
+			Assert.assertEquals( "due", due[e1], this.dues.get( k ), 0 );
+			Assert.assertEquals( "driver", Math.floor( due[e1] ) + 1,
+					this.firedAt.get( k ), 0 );
+		}
+	}
+
+	@Test
+	public void testDueHeap()
+	{
+		LOG.info( "Test {}", DueHeap.class.getSimpleName() );
+		final DueHeap heap = new DueHeap( 1 );
+		final double[] due = { 3, 1, 2, 1, 0.5, 3 };
+		for( int e = due.length; e-- > 0; )
+			heap.push( e, due[e] );
+		Assert.assertEquals( "size", due.length, heap.size() );
+		final int[] expected = { 4, 1, 3, 2, 0, 5 };
+		for( int e : expected )
+		{
+			Assert.assertEquals( "due", due[e], heap.peekDue(), 0 );
+			Assert.assertEquals( "entry", e, heap.poll() );
+		}
+		Assert.assertTrue( "empty", heap.isEmpty() );
+	}
+}
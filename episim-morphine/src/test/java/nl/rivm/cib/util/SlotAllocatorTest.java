@@ -0,0 +1,229 @@
+/* $Id$
+ *
+ * Part of ZonMW project no. 50-53000-98-156
+ *
+ * @license
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright (c) 2016 RIVM National Institute for Health and Environment
+ */
+package nl.rivm.cib.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import io.coala.log.LogUtil;
+
+/**
+ * {@link SlotAllocatorTest} tests {@link SlotAllocator}
+ *
+ * @version $Id$
+ * @author Rick van Krevelen
+ */
+public class SlotAllocatorTest
+{
+	/** */
+	private static final Logger LOG = LogUtil
+			.getLogger( SlotAllocatorTest.class );
+
+	/**
+	 * @param slots the allocator whose table to probe
+	 * @param slot the home position to match
+	 * @param count the number of identifiers to find
+	 * @return identifiers (from 1) sharing given home position
+	 */
+	private static long[] colliding( final SlotAllocator slots,
+		final int slot, final int count )
+	{
+		final long[] result = new long[count];
+		for( long id = 1, k = 0; k < count; id++ )
+			if( slots.slot( id ) == slot ) result[(int) k++] = id;
+		return result;
+	}
+
+	private static void assertRows( final SlotAllocator slots,
+		final long[] ids, final int[] rows )
+	{
+		for( int k = 0; k < ids.length; k++ )
+		{
+			Assert.assertEquals( "row of " + ids[k], rows[k],
+					slots.rowOf( ids[k] ) );
+			Assert.assertEquals( "id of " + rows[k], ids[k],
+					slots.idOf( rows[k] ) );
+		}
+	}
+
+	@Test
+	public void testCollisions()
+	{
+		LOG.info( "Test {} collisions", SlotAllocator.class.getSimpleName() );
+		// 4 rows: 8 positions, i.e. no rehash
+		final SlotAllocator slots = new SlotAllocator( 4 );
+		// probe sequences wrapping around the table's end: 7, 0, 1, 2
+		final long[] last = colliding( slots, 7, 3 ),
+				first = colliding( slots, 0, 1 );
+		final long[] ids = { last[0], last[1], first[0], last[2] };
+		for( int k = 0; k < ids.length; k++ )
+			Assert.assertEquals( "allocate", k, slots.allocate( ids[k] ) );
+		assertRows( slots, ids, new int[] { 0, 1, 2, 3 } );
+
+		// remove a middle entry, shifting back entries of both home positions
+		Assert.assertEquals( "release", 1, slots.release( ids[1] ) );
+		Assert.assertEquals( "released", SlotAllocator.NA,
+				slots.rowOf( ids[1] ) );
+		Assert.assertEquals( "released row", SlotAllocator.NA,
+				slots.idOf( 1 ) );
+		assertRows( slots, new long[] { ids[0], ids[2], ids[3] },
+				new int[] { 0, 2, 3 } );
+
+		// remove the head of the chain, then re-add
+		Assert.assertEquals( "release", 0, slots.release( ids[0] ) );
+		assertRows( slots, new long[] { ids[2], ids[3] }, new int[] { 2, 3 } );
+		Assert.assertEquals( "reuse", 0, slots.allocate( ids[0] ) );
+		assertRows( slots, new long[] { ids[0], ids[2], ids[3] },
+				new int[] { 0, 2, 3 } );
+		Assert.assertEquals( "size", 3, slots.size() );
+		Assert.assertEquals( "unknown", SlotAllocator.NA,
+				slots.release( ids[1] ) );
+	}
+
+	@Test
+	public void testReplace()
+	{
+		LOG.info( "Test {} replace", SlotAllocator.class.getSimpleName() );
+		final SlotAllocator slots = new SlotAllocator( 4 );
+		for( long id = 1; id <= 4; id++ )
+			slots.allocate( id );
+		Assert.assertEquals( "same row", 1, slots.replace( 2, 10 ) );
+		Assert.assertEquals( "old", SlotAllocator.NA, slots.rowOf( 2 ) );
+		assertRows( slots, new long[] { 1, 10, 3, 4 },
+				new int[] { 0, 1, 2, 3 } );
+		Assert.assertEquals( "size", 4, slots.size() );
+		Assert.assertEquals( "rows", 4, slots.rows() );
+		try
+		{
+			slots.replace( 2, 11 );
+			Assert.fail( "replaced unknown identifier" );
+		} catch( final IllegalArgumentException expected )
+		{
+			// ok
+		}
+		try
+		{
+			slots.replace( 1, 10 );
+			Assert.fail( "replaced by assigned identifier" );
+		} catch( final IllegalArgumentException expected )
+		{
+			// ok
+		}
+	}
+
+	@Test
+	public void testFreeList()
+	{
+		LOG.info( "Test {} free-list", SlotAllocator.class.getSimpleName() );
+		final SlotAllocator slots = new SlotAllocator( 8 );
+		for( int k = 0; k < 6; k++ )
+			Assert.assertEquals( "allocate", k, slots.allocate( 100 + k ) );
+		Assert.assertEquals( 1, slots.release( 101 ) );
+		Assert.assertEquals( 4, slots.release( 104 ) );
+		// released rows are reused last-in first-out, then new rows
+		Assert.assertEquals( "reuse", 4, slots.allocate( 200 ) );
+		Assert.assertEquals( "reuse", 1, slots.allocate( 201 ) );
+		Assert.assertEquals( "new", 6, slots.allocate( 202 ) );
+		Assert.assertEquals( "rows", 7, slots.rows() );
+		Assert.assertEquals( "size", 7, slots.size() );
+		assertRows( slots, new long[] { 100, 201, 102, 103, 200, 105, 202 },
+				new int[] { 0, 1, 2, 3, 4, 5, 6 } );
+	}
+
+	@Test
+	public void testGrowth()
+	{
+		LOG.info( "Test {} growth", SlotAllocator.class.getSimpleName() );
+		final int n = 10000;
+		final SlotAllocator slots = new SlotAllocator( 2 );
+		final long[] ids = new long[n];
+		for( int k = 0; k < n; k++ )
+		{
+			ids[k] = 7919L * (k - n / 2); // incl. zero and negative
+			Assert.assertEquals( "allocate", k, slots.allocate( ids[k] ) );
+		}
+		Assert.assertEquals( "rows", n, slots.rows() );
+		Assert.assertEquals( "size", n, slots.size() );
+		for( int k = 0; k < n; k++ )
+		{
+			Assert.assertEquals( "row", k, slots.rowOf( ids[k] ) );
+			Assert.assertEquals( "id", ids[k], slots.idOf( k ) );
+		}
+		for( int k = 0; k < n; k += 2 )
+			Assert.assertEquals( "release", k, slots.release( ids[k] ) );
+		for( int k = 0; k < n; k++ )
+			Assert.assertEquals( "row", k % 2 == 0 ? SlotAllocator.NA : k,
+					slots.rowOf( ids[k] ) );
+		Assert.assertEquals( "size", n / 2, slots.size() );
+		Assert.assertEquals( "beyond", SlotAllocator.NA, slots.idOf( n ) );
+	}
+
+	@Test
+	public void testReplaceWithoutAllocation()
+	{
+		LOG.info( "Test {} replace without allocation",
+				SlotAllocator.class.getSimpleName() );
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue( "thread allocation measurable",
+				bean instanceof com.sun.management.ThreadMXBean
+						&& ((com.sun.management.ThreadMXBean) bean)
+								.isThreadAllocatedMemorySupported() );
+		final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+		mx.setThreadAllocatedMemoryEnabled( true );
+
+		final int n = 1000, rounds = 200;
+		final SlotAllocator slots = new SlotAllocator( n );
+		for( int k = 0; k < n; k++ )
+			slots.allocate( k );
+		long next = n;
+		next = churn( slots, next, n, rounds ); // warm up
+		final long tid = Thread.currentThread().getId(),
+				before = mx.getThreadAllocatedBytes( tid );
+		next = churn( slots, next, n, rounds );
+		final long bytes = mx.getThreadAllocatedBytes( tid ) - before;
+		LOG.info( "Allocated {} bytes for {} replacements", bytes,
+				n * rounds );
+		// well below a single object per replacement
+		Assert.assertTrue( "allocated " + bytes + " bytes", bytes < 1024 );
+		Assert.assertEquals( "size", n, slots.size() );
+		Assert.assertEquals( "rows", n, slots.rows() );
+	}
+
+	/** replace (and release/re-allocate) each identifier in turn */
+	private static long churn( final SlotAllocator slots, long next,
+		final int n, final int rounds )
+	{
+		for( int r = 0; r < rounds; r++ )
+			for( int row = 0; row < n; row++ )
+			{
+				final long id = slots.idOf( row );
+				if( (row & 1) == 0 )
+					slots.replace( id, next++ );
+				else if( slots.release( id ) != slots.allocate( next++ ) )
+					throw new IllegalStateException( "row not reused" );
+			}
+		return next;
+	}
+}